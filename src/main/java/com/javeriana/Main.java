@@ -6,30 +6,60 @@ import com.javeriana.controllers.FileManagementController;
 import com.javeriana.controllers.ReportController;
 import com.javeriana.exceptions.WrongLogInException;
 import com.javeriana.services.ArtistService;
+import com.javeriana.services.CascadeDeleteService;
+import com.javeriana.services.CatalogVersions;
 import com.javeriana.services.CustomerService;
 import com.javeriana.services.FileManagementService;
+import com.javeriana.services.MutationJournal;
 import com.javeriana.services.PlayListService;
 import com.javeriana.services.ReportService;
+import com.javeriana.services.SessionRegistry;
 import com.javeriana.services.SongService;
 import com.javeriana.views.AdminView;
 import com.javeriana.views.CustomerView;
 import com.javeriana.views.FileManagementView;
 import com.javeriana.views.ReportView;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.InputMismatchException;
 import java.util.Scanner;
 
 public class Main {
+
+    // The directory where the data files are saved by default, and where the mutation journal is kept.
+    private static final String DEFAULT_PATH = "src/main/resources/";
+    private static final String JOURNAL_DIRECTORY = "journal";
+
     public static void main(String[] args) {
 
+        // The versions of the catalog, to which the services publish their changes, so the reports read a consistent catalog.
+        CatalogVersions catalogVersions = new CatalogVersions();
+
+        // Open the mutation journal
+        // The journal records every change made through the controllers, so no change is lost if the application stops before the data is saved.
+        // It numbers the changes in the order they are published to the versions of the catalog.
+        MutationJournal journal;
+        try {
+            journal = MutationJournal.open(Path.of(DEFAULT_PATH, JOURNAL_DIRECTORY), catalogVersions);
+        } catch (IOException e) {
+            System.out.println("No se pudo abrir el diario de cambios: " + e.getMessage());
+            return;
+        }
+
         // Create Services
         // These are the service classes that contain the business logic of the application.
         // Each service is responsible for a specific part of the application's functionality.
-        ArtistService artistService = new ArtistService();
-        PlayListService playListService = new PlayListService();
-        CustomerService customerService = new CustomerService();
-        SongService songService = new SongService();
+        // The services share the versions of the catalog above.
+        ArtistService artistService = new ArtistService(catalogVersions);
+        PlayListService playListService = new PlayListService(catalogVersions);
+        CustomerService customerService = new CustomerService(new SessionRegistry(), catalogVersions);
+        SongService songService = new SongService(catalogVersions);
         FileManagementService fileManagementService = new FileManagementService();
         ReportService reportService = new ReportService();
+        // The cascade deletes use the services above, and remove the deleted entities from everything that refers to them.
+        // Each cascade delete is published to the shared versions of the catalog as a single change.
+        CascadeDeleteService cascadeDeleteService = new CascadeDeleteService(artistService, songService, playListService, customerService,
+            catalogVersions);
 
         // Create Controllers
         // Controllers are responsible for handling user input and calling the appropriate services.
@@ -40,25 +70,32 @@ public class Main {
             artistService,
             playListService,
             customerService,
-            songService);
+            songService,
+            cascadeDeleteService,
+            journal);
         FileManagementController fileService = new FileManagementController(
             fileManagementService,
             artistService,
             songService,
             customerService,
-            playListService
+            playListService,
+            cascadeDeleteService,
+            catalogVersions,
+            journal
             );
         CustomerController customerController = new CustomerController(customerService,
             artistService,
             playListService,
-            songService);
+            songService,
+            journal);
 
         ReportController reportController = new ReportController(
             reportService,
             artistService,
             songService,
             customerService,
-            playListService
+            playListService,
+            catalogVersions
         );
 
         // Create Views
@@ -67,10 +104,22 @@ public class Main {
         // This is another example of IoC, where the views do not create their own dependencies (the controllers), but are provided with them when they are created.
         Scanner scanner = new Scanner(System.in);
         AdminView adminView = new AdminView(adminController, scanner);
-        FileManagementView fileManagementView = new FileManagementView(fileService, scanner, "src/main/resources/", "artists", "customers", "playlists", "songs");
+        FileManagementView fileManagementView = new FileManagementView(fileService, scanner, DEFAULT_PATH, "artists", "customers", "playlists", "songs");
         CustomerView customerView = new CustomerView(customerController, scanner);
         ReportView reportView = new ReportView(reportController, scanner);
 
+        // Recover the data
+        // The last checkpoint is loaded and the changes recorded in the journal after it are applied again.
+        try {
+            int replayedChanges = fileService.recover();
+            if (replayedChanges > 0) {
+                System.out.println("Se recuperaron " + replayedChanges + " cambios del diario de cambios.");
+            }
+        } catch (IOException e) {
+            System.out.println("No se pudieron recuperar los datos: " + e.getMessage());
+            return;
+        }
+
         int option = 0;
         do {
             try{
@@ -109,6 +158,13 @@ public class Main {
 
         } while (option != 0);
 
+        // Take a checkpoint before leaving, so the next start does not need to replay the journal
+        try {
+            fileService.checkpointIfNeeded();
+            journal.close();
+        } catch (IOException e) {
+            System.out.println("No se pudo guardar el punto de control, los cambios se recuperarán del diario de cambios: " + e.getMessage());
+        }
 
         scanner.close();
     }
@@ -3,15 +3,19 @@ package com.javeriana.controllers;
 import com.javeriana.exceptions.AlreadyExistsException;
 import com.javeriana.exceptions.NotFoundException;
 import com.javeriana.models.Artist;
+import com.javeriana.models.Customer;
+import com.javeriana.models.Page;
 import com.javeriana.models.Song;
 import com.javeriana.services.ArtistService;
+import com.javeriana.services.CascadeDeleteService;
 import com.javeriana.services.CustomerService;
+import com.javeriana.services.MutationJournal;
+import com.javeriana.services.MutationJournal.Operation;
 import com.javeriana.services.PlayListService;
 import com.javeriana.services.SongService;
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
 import java.util.Set;
-import java.util.UUID;
 
 /**
  * The AdminController class is responsible for handling administrative tasks in the application.
@@ -21,16 +25,26 @@ import java.util.UUID;
  * - Adding and deleting artists
  * - Adding and deleting songs
  * - Adding and deleting customers
- * - Retrieving all artists, songs, customers, and playlists
+ * - Retrieving the artists, songs, customers, and playlists a page at a time
  * - Validating song attributes
  * - Deleting songs and artists from the database
  *
- * The class has four attributes: artistService, playListService, customerService, and songService. These are instances of the respective services used by this controller.
+ * The class has five attributes: artistService, playListService, customerService, songService and cascadeDeleteService. These are instances of the respective services used by this controller.
+ * Deletions go through the cascadeDeleteService, which also deletes what refers to the deleted entities, visiting only the entities that do.
+ * Every change is also appended to the mutation journal, and the methods that make changes only return once the change is on disk.
+ * That is why they throw an `IOException` when the journal cannot be written. A change holds a ticket of the journal from before it is
+ * applied until its record is appended, and the ticket takes its place in the journal when the change is published, so changes made by
+ * several administrators and customers at once are recorded in the order they took effect. Each change is published as a single version
+ * of the catalog, so a checkpoint never splits a change.
  *
- * The class provides a constructor that takes instances of ArtistService, PlayListService, CustomerService, and SongService as parameters.
+ * The class provides a constructor that takes instances of ArtistService, PlayListService, CustomerService, SongService, CascadeDeleteService and MutationJournal as parameters.
  */
 public class AdminController {
 
+    // The minimum similarity of the name of an existing artist to the name of a new one for the new artist to be taken as a duplicate.
+    // It is reached by names that only differ in case, accents or punctuation, and by most one-letter typos in names of two words.
+    public static final double DUPLICATE_ARTIST_NAME_SIMILARITY = 0.7;
+
     // The ArtistService instance used by this controller.
     private final ArtistService artistService;
 
@@ -43,6 +57,12 @@ public class AdminController {
     // The SongService instance used by this controller.
     private final SongService songService;
 
+    // The CascadeDeleteService instance used by this controller to delete artists, songs and customers with what refers to them.
+    private final CascadeDeleteService cascadeDeleteService;
+
+    // The MutationJournal where the changes made by this controller are recorded.
+    private final MutationJournal journal;
+
     /**
      * Constructs a new AdminController with the specified services.
      *
@@ -50,65 +70,83 @@ public class AdminController {
      * @param playListService the PlayListService instance to be used by this controller.
      * @param customerService the CustomerService instance to be used by this controller.
      * @param songService the SongService instance to be used by this controller.
+     * @param cascadeDeleteService the CascadeDeleteService instance to be used by this controller.
+     * @param journal the MutationJournal where the changes made by this controller are recorded.
      */
     public AdminController(ArtistService artistService, PlayListService playListService,
-                           CustomerService customerService, SongService songService) {
+                           CustomerService customerService, SongService songService,
+                           CascadeDeleteService cascadeDeleteService, MutationJournal journal) {
         this.artistService = artistService;
         this.playListService = playListService;
         this.customerService = customerService;
         this.songService = songService;
+        this.cascadeDeleteService = cascadeDeleteService;
+        this.journal = journal;
     }
 
     /**
-     * This method is responsible for adding an artist to the database. It retrieves the `Artist` object with the provided name
-     * and then uses the `ArtistService` to add the artist to the database if it does not already exist.
+     * This method is responsible for adding an artist to the database. It retrieves the `Artist` objects with the same or the most similar
+     * name to the provided one and then uses the `ArtistService` to add the artist to the database if no artist with the same or a similar name exists,
+     * so "ed sheeran" is not added next to "Ed Sheeran".
      *
      * Here's a breakdown of what each part of the method does:
-     * 1. It retrieves the `Artist` object with the provided name from the `ArtistService`.
-     * 2. If the artist is already present, it throws an `AlreadyExistsException`.
-     * 3. If the artist is not present, it uses the `ArtistService` to add the artist to the database.
+     * 1. It uses the `ArtistService` to add the artist to the database, which first looks for an artist with the provided name, and for
+     *    the artist whose name is the most similar to the provided name, if its similarity reaches `DUPLICATE_ARTIST_NAME_SIMILARITY`.
+     *    If either is present, it throws an `AlreadyExistsException`, with the name of the similar artist if there is one.
+     * 2. If neither is present, the artist is added, under the same lock as the search, so two similar artists added at once cannot both be.
+     * 3. It records the new artist, with its generated ID, in the mutation journal.
      *
-     * The method throws an `AlreadyExistsException` if the artist is already present in the database.
+     * The method throws an `AlreadyExistsException` if an artist with the same or a similar name is already present in the database.
      *
      * @param name the name of the artist.
-     * @throws AlreadyExistsException if the artist is already present in the database.
+     * @throws AlreadyExistsException if an artist with the same or a similar name is already present in the database.
+     * @throws IOException if the change could not be recorded in the mutation journal.
      */
-    public void addArtistToDatabase(String name) throws AlreadyExistsException {
-        Artist artist = artistService.searchArtistByName(name);
+    public void addArtistToDatabase(String name) throws AlreadyExistsException, IOException {
 
-        if (artist != null) {
-            throw new AlreadyExistsException("El artista con nombre " + name + " ya existe");
-        }
+        try (MutationJournal.Ticket ticket = journal.begin()) {
 
-        artistService.addArtist(name);
+            // The names are checked by the ArtistService under the same lock as the addition
+            Artist newArtist = artistService.addArtist(name, DUPLICATE_ARTIST_NAME_SIMILARITY);
 
+            ticket.append(Operation.ADD_ARTIST, newArtist.getId().toString(), newArtist.getName());
+        }
     }
 
     /**
-     * Retrieves all artists from the database.
+     * Retrieves a page of the artists. Only the artists of the page are converted to strings.
      *
-     * @return a list of all artist names.
+     * @param cursor the cursor of the page, as returned with the previous page, or null for the first page.
+     * @param pageSize the maximum number of artists of the page.
+     * @return the page, with the string representation of each of its artists.
+     * @throws IllegalArgumentException if the page size is not positive or the cursor is not valid.
      */
-    public List<String> getAllArtists() {
-        return artistService.getArtistsToString();
+    public Page<String> getArtistsPage(String cursor, int pageSize) {
+        return artistService.getArtistsPage(cursor, pageSize).map(Object::toString);
     }
 
     /**
-     * Retrieves all songs from the database.
+     * Retrieves a page of the songs. Only the songs of the page are converted to strings.
      *
-     * @return a list of all songs.
+     * @param cursor the cursor of the page, as returned with the previous page, or null for the first page.
+     * @param pageSize the maximum number of songs of the page.
+     * @return the page, with the string representation of each of its songs.
+     * @throws IllegalArgumentException if the page size is not positive or the cursor is not valid.
      */
-    public List<String> getAllSongs() {
-       return new ArrayList<>();
+    public Page<String> getSongsPage(String cursor, int pageSize) {
+        return songService.getSongsPage(cursor, pageSize).map(Object::toString);
     }
 
     /**
-     * Retrieves all customers from the database.
+     * Retrieves a page of the customers. Only the customers of the page are converted to strings.
      *
-     * @return a list of all customer names.
+     * @param cursor the cursor of the page, as returned with the previous page, or null for the first page.
+     * @param pageSize the maximum number of customers of the page.
+     * @return the page, with the string representation of each of its customers.
+     * @throws IllegalArgumentException if the page size is not positive or the cursor is not valid.
      */
-    public List<String> getAllCustomers() {
-        return new ArrayList<>();
+    public Page<String> getCustomersPage(String cursor, int pageSize) {
+        return customerService.getCustomersPage(cursor, pageSize).map(Object::toString);
     }
 
     /**
@@ -119,7 +157,7 @@ public class AdminController {
      * These parameters represent the username, password, name, last name, and age of the customer respectively.
      *
      * The method calls the addCustomer method of the CustomerService instance, passing the username, password, name, lastName, and age as parameters.
-     * This operation adds a new customer to the database.
+     * This operation adds a new customer to the database, which is then recorded, with its generated ID, in the mutation journal.
      *
      * The method throws an AlreadyExistsException if a customer with the same username already exists in the database.
      *
@@ -129,32 +167,47 @@ public class AdminController {
      * @param lastName the last name of the customer.
      * @param age the age of the customer.
      * @throws AlreadyExistsException if a customer with the same username already exists in the database.
+     * @throws IOException if the change could not be recorded in the mutation journal.
      */
-    public void addCustomerToDatabase(String username, String password, String name, String lastName, int age) {
+    public void addCustomerToDatabase(String username, String password, String name, String lastName, int age)
+        throws AlreadyExistsException, IOException {
+
+        try (MutationJournal.Ticket ticket = journal.begin()) {
 
+            Customer customer = customerService.addCustomer(username, password, name, lastName, age);
 
+            ticket.append(Operation.ADD_CUSTOMER,
+                customer.getId().toString(),
+                customer.getUsername(),
+                customer.getPassword(),
+                customer.getName(),
+                customer.getLastName(),
+                String.valueOf(customer.getAge()));
+        }
     }
 
     /**
      * The deleteCustomerFromDatabase method is responsible for deleting a customer from the database.
-     * It performs this operation in three main steps:
+     * It performs this operation in two main steps:
      *
-     * 1. Retrieve Customer's Playlists: The method starts by calling the getCustomerPlayListsIds method of the CustomerService instance,
-     *    passing the username as a parameter. This operation retrieves a list of UUIDs representing the playlists associated with the customer.
-     *    The list is stored in the playListsIds variable.
+     * 1. Delete Customer: The method calls the deleteCustomers method of the CascadeDeleteService instance, passing the username.
+     *    This operation deletes the customer from the database, closes their sessions, removes them from the followers of the artists
+     *    they follow, and deletes all the playlists associated with the customer.
      *
-     * 2. Delete Playlists: The method then calls the deletePlayLists method of the PlayListService instance, passing the playListsIds as a parameter.
-     *    This operation deletes all the playlists associated with the customer from the database.
-     *
-     * 3. Delete Customer: Finally, the method calls the deleteCustomer method of the CustomerService instance, passing the username as a parameter.
-     *    This operation deletes the customer from the database.
+     * 2. Record the Change: The deletion is recorded in the mutation journal.
      *
      * @param username the username of the customer to delete.
+     * @throws IllegalArgumentException if the customer does not exist.
+     * @throws IOException if the change could not be recorded in the mutation journal.
      */
-    public void deleteCustomerFromDatabase(String username) {
+    public void deleteCustomerFromDatabase(String username) throws IOException {
 
+        try (MutationJournal.Ticket ticket = journal.begin()) {
 
+            cascadeDeleteService.deleteCustomers(List.of(username));
 
+            ticket.append(Operation.DELETE_CUSTOMER, username);
+        }
     }
 
     /**
@@ -168,6 +221,7 @@ public class AdminController {
      * 2. It validates the song attributes (name, genre, duration) using the `validateSongAttributes` method.
      * 3. It retrieves a list of `Artist` objects with the provided artist IDs from the `ArtistService`.
      * 4. It uses the `SongService` to add the song with the provided details and the list of artists to the database.
+     * 5. It records the new song, with its generated ID and the IDs of its artists, in the mutation journal.
      *
      * The method throws a `NotFoundException` if any of the artists are not found in the database.
      *
@@ -177,10 +231,36 @@ public class AdminController {
      * @param album the album of the song.
      * @param artists the set of artist IDs.
      * @throws NotFoundException if any of the artists are not found in the database.
+     * @throws IOException if the change could not be recorded in the mutation journal.
      */
-    public void addSongToDatabase(String name, String genre, int duration, String album, Set<String> artists) {
+    public void addSongToDatabase(String name, String genre, int duration, String album, Set<String> artists)
+        throws NotFoundException, IOException {
+
+        if (artists == null || artists.isEmpty()) {
+            throw new IllegalArgumentException("La canción debe tener al menos un artista");
+        }
+
+        validateSongAttributes(name, genre, duration);
+
+        try (MutationJournal.Ticket ticket = journal.begin()) {
 
+            List<Artist> artistsList = artistService.getArtistsByIds(artists);
 
+            Song song = songService.addSong(name, genre, duration, album, artistsList);
+
+            // The arguments are the attributes of the song followed by the IDs of its artists
+            String[] arguments = new String[5 + artistsList.size()];
+            arguments[0] = song.getId().toString();
+            arguments[1] = song.getName();
+            arguments[2] = song.getGenre();
+            arguments[3] = String.valueOf(song.getDurationInSeconds());
+            arguments[4] = song.getAlbum();
+            for (int i = 0; i < artistsList.size(); i++) {
+                arguments[5 + i] = artistsList.get(i).getId().toString();
+            }
+
+            ticket.append(Operation.ADD_SONG, arguments);
+        }
     }
 
     /**
@@ -199,58 +279,92 @@ public class AdminController {
      */
     public static void validateSongAttributes(String name, String genre, int duration) {
 
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("El nombre de la canción no puede ser nulo o vacío");
+        }
 
+        if (genre == null || genre.isEmpty()) {
+            throw new IllegalArgumentException("El género de la canción no puede ser nulo o vacío");
+        }
+
+        if (duration <= 0) {
+            throw new IllegalArgumentException("La duración de la canción debe ser mayor a 0");
+        }
     }
 
     /**
      * This method is responsible for deleting a song from the database. It checks if the provided song ID is null or empty, and if it is,
-     * it throws an `IllegalArgumentException`. Then, it uses the `PlayListService` to delete the song with the provided ID from all playlists,
-     * and the `SongService` to delete the song from the database.
+     * it throws an `IllegalArgumentException`. Then, it uses the `CascadeDeleteService` to delete the song from the database and from all playlists.
      *
      * Here's a breakdown of what each part of the method does:
      * 1. It checks if the provided song ID is null or empty. If it is, it throws an `IllegalArgumentException`.
-     * 2. It uses the `PlayListService` to delete the song with the provided ID from all playlists.
-     * 3. It uses the `SongService` to delete the song with the provided ID from the database.
+     * 2. It uses the `CascadeDeleteService` to delete the song with the provided ID from the database, and then from the playlists
+     *    that contain it, found in the index of playlists by song.
+     * 3. It records the deletion in the mutation journal.
      *
      * The method throws a `NotFoundException` if the song is not found in the database.
      *
      * @param songId the ID of the song.
      * @throws NotFoundException if the song is not found in the database.
+     * @throws IOException if the change could not be recorded in the mutation journal.
      */
-    public void deleteSongFromDatabase(String songId)  {
+    public void deleteSongFromDatabase(String songId) throws NotFoundException, IOException {
 
+        if (songId == null || songId.isEmpty()) {
+            throw new IllegalArgumentException("El id de la canción no puede ser nulo o vacío");
+        }
+
+        try (MutationJournal.Ticket ticket = journal.begin()) {
 
+            cascadeDeleteService.deleteSongs(List.of(songId));
 
+            ticket.append(Operation.DELETE_SONG, songId);
+        }
     }
 
     /**
      * This method is responsible for deleting an artist from the database. It checks if the provided artist ID is null or empty, and if it is,
-     * it throws an `IllegalArgumentException`. Then, it retrieves all songs associated with the artist ID using the `SongService` and deletes each song
-     * from the database using the `deleteSongFromDatabase` method. Finally, it uses the `ArtistService` to delete the artist from the database.
+     * it throws an `IllegalArgumentException`. Then, it uses the `CascadeDeleteService` to delete the artist, all songs associated with the artist,
+     * those songs from all playlists, and the artist from the customers that follow it.
      *
      * Here's a breakdown of what each part of the method does:
      * 1. It checks if the provided artist ID is null or empty. If it is, it throws an `IllegalArgumentException`.
-     * 2. It retrieves all songs associated with the artist ID using the `SongService`.
-     * 3. It iterates over each song and deletes it from the database using the `deleteSongFromDatabase` method.
-     * 4. It uses the `ArtistService` to delete the artist with the provided ID from the database.
+     * 2. It uses the `CascadeDeleteService` to delete the artist with the provided ID from the database. If the artist does not exist,
+     *    nothing is deleted.
+     * 3. The `CascadeDeleteService` deletes the songs of the artist, found in the index of songs by artist, as a single batch, removes them
+     *    from the playlists that contain them, and makes the customers that follow the artist stop following it.
+     * 4. It records the deletion of the artist in the mutation journal. Replaying it deletes the songs of the artist again,
+     *    so the deletion of each song is not recorded on its own.
      *
      * The method throws a `NotFoundException` if the artist is not found in the database.
      *
      * @param artistId the ID of the artist.
      * @throws NotFoundException if the artist is not found in the database.
+     * @throws IOException if the change could not be recorded in the mutation journal.
      */
-    public void deleteArtistFromDatabase(String artistId) {
+    public void deleteArtistFromDatabase(String artistId) throws NotFoundException, IOException {
 
+        if (artistId == null || artistId.isEmpty()) {
+            throw new IllegalArgumentException("El id del artista no puede ser nulo o vacío");
+        }
+
+        try (MutationJournal.Ticket ticket = journal.begin()) {
 
+            cascadeDeleteService.deleteArtists(List.of(artistId));
 
+            ticket.append(Operation.DELETE_ARTIST, artistId);
+        }
     }
 
     /**
-     * Retrieves all playlists from the database.
+     * Retrieves a page of the playlists. Only the playlists of the page are converted to strings.
      *
-     * @return a list of all playlist names.
+     * @param cursor the cursor of the page, as returned with the previous page, or null for the first page.
+     * @param pageSize the maximum number of playlists of the page.
+     * @return the page, with the string representation of each of its playlists.
+     * @throws IllegalArgumentException if the page size is not positive or the cursor is not valid.
      */
-    public List<String> getAllPlaylists() {
-        return playListService.getPlayListsToString();
+    public Page<String> getPlaylistsPage(String cursor, int pageSize) {
+        return playListService.getPlayListsPage(cursor, pageSize).map(Object::toString);
     }
 }
@@ -4,38 +4,57 @@ import com.javeriana.exceptions.AlreadyExistsException;
 import com.javeriana.exceptions.NotFoundException;
 import com.javeriana.exceptions.WrongLogInException;
 import com.javeriana.models.Artist;
+import com.javeriana.models.Customer;
+import com.javeriana.models.Page;
 import com.javeriana.models.PlayList;
+import com.javeriana.models.Session;
 import com.javeriana.models.Song;
 import com.javeriana.services.ArtistService;
 import com.javeriana.services.CustomerService;
+import com.javeriana.services.MutationJournal;
+import com.javeriana.services.MutationJournal.Operation;
 import com.javeriana.services.PlayListService;
 import com.javeriana.services.SongService;
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
+import java.util.Set;
 
 /**
  * The CustomerController class is responsible for handling customer-related tasks in the application.
  * It uses various services to perform operations related to artists, playlists, and songs.
  *
  * This class provides methods for:
- * - Logging in a customer
- * - Adding a new playlist for the logged-in customer
- * - Retrieving the playlists of the logged-in customer
- * - Retrieving all songs
+ * - Logging in a customer, which opens a session
+ * - Adding a new playlist for the customer of a session
+ * - Retrieving the playlists of the customer of a session
+ * - Retrieving the songs a page at a time
+ * - Searching songs by words of their names, albums and artist names, and completing the words of a search
+ * - Filtering songs by genre and duration
  * - Adding a song to a playlist
  * - Retrieving all songs from a playlist
  * - Deleting a song from a playlist
- * - Retrieving all artists
+ * - Retrieving the artists a page at a time
  * - Following an artist
- * - Retrieving the artists followed by the currently logged in customer
- * - Logging out the currently logged in customer
+ * - Retrieving the artists followed by the customer of a session
+ * - Logging out the customer of a session
  *
+ * Every operation made on behalf of a customer takes the handle of the session returned by logIn, and throws a `WrongLogInException`
+ * if the session was closed or has expired. Each caller keeps its own handle, so the controller serves many customers at the same time.
  * The class has four attributes: customerService, artistService, playListService, and songService. These are instances of the respective services used by this controller.
+ * Every change is also appended to the mutation journal, and the methods that make changes only return once the change is on disk.
+ * That is why they throw an `IOException` when the journal cannot be written. Each change is applied and appended under a ticket of the
+ * journal, which takes its place in the journal when the change is published, so the journal records the changes in the order they were applied.
  *
- * The class provides a constructor that takes instances of CustomerService, ArtistService, PlayListService, and SongService as parameters.
+ * The class provides a constructor that takes instances of CustomerService, ArtistService, PlayListService, SongService and MutationJournal as parameters.
  */
 public class CustomerController {
 
+    // The maximum number of songs returned by a search.
+    public static final int SEARCH_RESULTS_LIMIT = 20;
+
+    // The maximum number of words suggested to complete a search.
+    public static final int SEARCH_SUGGESTIONS_LIMIT = 5;
+
     // The CustomerService instance used by this controller.
     private final CustomerService customerService;
 
@@ -48,6 +67,9 @@ public class CustomerController {
     // The SongService instance used by this controller.
     private final SongService songService;
 
+    // The MutationJournal where the changes made by this controller are recorded.
+    private final MutationJournal journal;
+
     /**
      * Constructs a new CustomerController with the specified services.
      *
@@ -55,12 +77,15 @@ public class CustomerController {
      * @param artistService the ArtistService instance to be used by this controller.
      * @param playListService the PlayListService instance to be used by this controller.
      * @param songService the SongService instance to be used by this controller.
+     * @param journal the MutationJournal where the changes made by this controller are recorded.
      */
-    public CustomerController(CustomerService customerService, ArtistService artistService, PlayListService playListService, SongService songService) {
+    public CustomerController(CustomerService customerService, ArtistService artistService, PlayListService playListService,
+                              SongService songService, MutationJournal journal) {
         this.customerService = customerService;
         this.artistService = artistService;
         this.playListService = playListService;
         this.songService = songService;
+        this.journal = journal;
     }
 
     /**
@@ -68,74 +93,173 @@ public class CustomerController {
      *
      * @param username the username of the customer.
      * @param password the password of the customer.
-     * @return true if the login was successful, false otherwise.
+     * @return the handle of the new session if the login was successful, null otherwise.
      */
-    public boolean logIn(String username, String password) {
+    public Session logIn(String username, String password) {
         return customerService.logIn(username, password);
     }
 
     /**
-     * The addNewPlayList method is responsible for adding a new playlist for the currently logged in customer.
+     * The addNewPlayList method is responsible for adding a new playlist for the customer of a session.
      * It performs this operation in three main steps:
      *
-     * 1. Check if Customer is Logged In: The method starts by calling the isCustomerLogged method of the CustomerService instance.
-     *    If no customer is currently logged in, it throws a WrongLogInException.
+     * 1. Check the Session: The method starts by calling the getLoggedCustomer method of the CustomerService instance.
+     *    If the session is not valid, it throws a WrongLogInException.
      *
-     * 2. Create New Playlist: The method then calls the addPlayList method of the PlayListService instance, passing the playListName as a parameter.
-     *    This operation creates a new playlist and returns it. The new playlist is stored in the newPlayList variable.
+     * 2. Create the Playlist for the Customer: The method then calls the addNewPlayList method of the CustomerService instance, passing
+     *    the customer found in step 1, the playListName and the PlayListService instance. This operation creates a new playlist and adds it
+     *    to the customer as a single change. The session is not checked again, so a session that expires in the meantime does not leave
+     *    the new playlist without an owner or out of the journal. If the customer is deleted in the meantime, the playlist is refused
+     *    with a NotFoundException.
      *
-     * 3. Add Playlist to Logged Customer: Finally, the method calls the addPlayListToLoggedCustomer method of the CustomerService instance,
-     *    passing the newPlayList as a parameter. This operation adds the new playlist to the currently logged in customer.
+     * 3. Record the Change: The new playlist, with its generated ID and its owner, is recorded in the mutation journal.
      *
+     * @param session the session of the customer.
      * @param playListName the name of the new playlist.
-     * @throws WrongLogInException if no customer is currently logged in.
+     * @throws WrongLogInException if the session is not valid.
+     * @throws NotFoundException if the customer was deleted.
+     * @throws IOException if the change could not be recorded in the mutation journal.
+     */
+    public void addNewPlayList(Session session, String playListName) throws WrongLogInException, NotFoundException, IOException {
+
+        Customer customer = customerService.getLoggedCustomer(session);
+
+        try (MutationJournal.Ticket ticket = journal.begin()) {
+
+            PlayList newPlayList = customerService.addNewPlayList(customer, playListName, playListService);
+
+            ticket.append(Operation.ADD_PLAYLIST,
+                customer.getUsername(),
+                newPlayList.getId().toString(),
+                newPlayList.getName());
+        }
+    }
+
+    /**
+     * Retrieves the playlists of the customer of a session.
+     *
+     * @param session the session of the customer.
+     * @return a list of the customer's playlists.
+     * @throws WrongLogInException if the session is not valid.
      */
-    public void addNewPlayList(String playListName) {
+    public List<String> getLoggedCustomerPlaylists(Session session) throws WrongLogInException {
 
+        return customerService.getLoggedCustomerPlayLists(session);
+    }
+
+    /**
+     * Retrieves a page of the songs. Only the songs of the page are converted to strings.
+     *
+     * @param cursor the cursor of the page, as returned with the previous page, or null for the first page.
+     * @param pageSize the maximum number of songs of the page.
+     * @return the page, with the string representation of each of its songs.
+     * @throws IllegalArgumentException if the page size is not positive or the cursor is not valid.
+     */
+    public Page<String> getSongsPage(String cursor, int pageSize) {
+        return songService.getSongsPage(cursor, pageSize).map(Object::toString);
+    }
+
+    /**
+     * Searches the songs whose name, album or artist names contain every word of the given query.
+     * The last word may be incomplete, so the search can be run while the user types.
+     *
+     * @param query the words to search for.
+     * @return the best matching songs, best first, at most SEARCH_RESULTS_LIMIT of them.
+     */
+    public List<String> searchSongs(String query) {
+
+        return songService.searchSongs(query, SEARCH_RESULTS_LIMIT).stream()
+            .map(Song::toString)
+            .toList();
 
     }
 
     /**
-     * Retrieves the playlists of the currently logged in customer.
+     * Filters the songs of any of the given genres whose duration is within the given range.
      *
-     * @return a list of the logged in customer's playlists.
-     * @throws WrongLogInException if no customer is currently logged in.
+     * @param genres the genres of the songs, or an empty set for songs of any genre.
+     * @param minDurationInSeconds the minimum duration of the songs in seconds, included.
+     * @param maxDurationInSeconds the maximum duration of the songs in seconds, included.
+     * @return the first songs that pass the filter, at most SEARCH_RESULTS_LIMIT of them.
      */
-    public List<String> getLoggedCustomerPlaylists()  {
+    public List<String> filterSongs(Set<String> genres, int minDurationInSeconds, int maxDurationInSeconds) {
+
+        return songService.filterSongs(genres, minDurationInSeconds, maxDurationInSeconds, SEARCH_RESULTS_LIMIT).stream()
+            .map(Song::toString)
+            .toList();
 
-        return new ArrayList<>();
     }
 
     /**
-     * Retrieves all songs.
+     * Counts the songs of any of the given genres whose duration is within the given range.
      *
-     * @return a list of all songs.
+     * @param genres the genres of the songs, or an empty set for songs of any genre.
+     * @param minDurationInSeconds the minimum duration of the songs in seconds, included.
+     * @param maxDurationInSeconds the maximum duration of the songs in seconds, included.
+     * @return the number of songs that pass the filter.
      */
-    public List<String> getAllSongs() {
+    public int countFilteredSongs(Set<String> genres, int minDurationInSeconds, int maxDurationInSeconds) {
 
-        return songService.getSongsToString();
+        return songService.countSongs(genres, minDurationInSeconds, maxDurationInSeconds);
 
     }
 
     /**
-     * This method is responsible for adding a song to a playlist. It retrieves the `PlayList` and `Song` objects with the provided IDs
-     * and then adds the song to the playlist.
+     * Retrieves the words that complete the last word of a search, the most common first.
+     *
+     * @param prefix the text to complete.
+     * @return at most SEARCH_SUGGESTIONS_LIMIT words.
+     */
+    public List<String> autocompleteSongSearch(String prefix) {
+
+        return songService.autocompleteSongs(prefix, SEARCH_SUGGESTIONS_LIMIT);
+
+    }
+
+    /**
+     * This method is responsible for adding a song to a playlist on behalf of the customer of a session. It retrieves the `PlayList` and `Song` objects
+     * with the provided IDs and then adds the song to the playlist.
      *
      * Here's a breakdown of what each part of the method does:
-     * 1. It retrieves the `PlayList` object with the provided ID from the `PlayListService`.
-     * 2. If the playlist is not found, it throws a `NotFoundException`.
-     * 3. It retrieves the `Song` object with the provided ID from the `SongService`.
-     * 4. If the song is not found, it throws a `NotFoundException`.
-     * 5. It adds the song to the playlist.
+     * 1. It checks the session. If the session is not valid, it throws a `WrongLogInException`.
+     * 2. It retrieves the `PlayList` object with the provided ID from the `PlayListService`.
+     * 3. If the playlist is not found, it throws a `NotFoundException`.
+     * 4. It retrieves the `Song` object with the provided ID from the `SongService`.
+     * 5. If the song is not found, it throws a `NotFoundException`.
+     * 6. It adds the song to the playlist. If the playlist or the song is deleted after it was retrieved, the `PlayListService` refuses
+     *    the song with a `NotFoundException`.
+     * 7. It records the change in the mutation journal.
      *
+     * @param session the session of the customer.
      * @param playListId the ID of the playlist.
      * @param songId the ID of the song.
      * @throws NotFoundException if the playlist or the song is not found.
+     * @throws WrongLogInException if the session is not valid.
+     * @throws IOException if the change could not be recorded in the mutation journal.
      */
-    public void addSongToPlayList(String playListId, String songId) throws NotFoundException {
+    public void addSongToPlayList(Session session, String playListId, String songId)
+        throws NotFoundException, WrongLogInException, IOException {
+
+        customerService.getLoggedCustomer(session);
+
+        try (MutationJournal.Ticket ticket = journal.begin()) {
+
+            PlayList playList = playListService.getPlayListById(playListId);
+
+            if (playList == null) {
+                throw new NotFoundException("La playlist con id " + playListId + " no existe");
+            }
+
+            Song song = songService.searchSongById(songId);
 
+            if (song == null) {
+                throw new NotFoundException("La canción con id " + songId + " no existe");
+            }
 
+            playListService.addSongToPlayList(playList, song);
 
+            ticket.append(Operation.ADD_SONG_TO_PLAYLIST, playList.getId().toString(), song.getId().toString());
+        }
     }
 
     /**
@@ -143,19 +267,30 @@ public class CustomerController {
      * and then retrieves all songs from the playlist.
      *
      * Here's a breakdown of what each part of the method does:
-     * 1. It retrieves the `PlayList` object with the provided ID from the `PlayListService`.
-     * 2. If the playlist is not found, it throws a `NotFoundException`.
-     * 3. It retrieves all songs from the playlist and returns them as a list of strings.
+     * 1. It checks the session. If the session is not valid, it throws a `WrongLogInException`.
+     * 2. It retrieves the `PlayList` object with the provided ID from the `PlayListService`.
+     * 3. If the playlist is not found, it throws a `NotFoundException`.
+     * 4. It retrieves all songs from the playlist and returns them as a list of strings.
      *
      * The method returns a list of all songs in the playlist.
      *
+     * @param session the session of the customer.
      * @param playListId the ID of the playlist.
      * @return a list of all songs in the playlist.
      * @throws NotFoundException if the playlist is not found.
+     * @throws WrongLogInException if the session is not valid.
      */
-    public List<String> getAllSongsFromPlayList(String playListId) throws NotFoundException {
+    public List<String> getAllSongsFromPlayList(Session session, String playListId) throws NotFoundException, WrongLogInException {
 
-       return new ArrayList<>();
+        customerService.getLoggedCustomer(session);
+
+        PlayList playList = playListService.getPlayListById(playListId);
+
+        if (playList == null) {
+            throw new NotFoundException("La playlist con id " + playListId + " no existe");
+        }
+
+        return playList.getSongsToString();
     }
 
     /**
@@ -163,73 +298,115 @@ public class CustomerController {
      * from the playlist with the provided ID.
      *
      * Here's a breakdown of what each part of the method does:
-     * 1. It takes in two parameters: the ID of the playlist and the ID of the song.
-     * 2. It uses the `PlayListService` to delete the song with the provided ID from the playlist with the provided ID.
+     * 1. It takes in three parameters: the session of the customer, the ID of the playlist and the ID of the song.
+     * 2. It checks the session. If the session is not valid, it throws a `WrongLogInException`.
+     * 3. It uses the `PlayListService` to delete the song with the provided ID from the playlist with the provided ID.
+     * 4. If the song was deleted, it records the change in the mutation journal.
      *
      * The method returns a boolean indicating whether the song was successfully deleted from the playlist.
      *
+     * @param session the session of the customer.
      * @param playListId the ID of the playlist.
      * @param songId the ID of the song.
      * @return a boolean indicating whether the song was successfully deleted from the playlist.
+     * @throws WrongLogInException if the session is not valid.
+     * @throws IOException if the change could not be recorded in the mutation journal.
      */
-    public boolean deleteSongFromPlayList(String playListId, String songId) {
+    public boolean deleteSongFromPlayList(Session session, String playListId, String songId) throws WrongLogInException, IOException {
+
+        customerService.getLoggedCustomer(session);
+
+        try (MutationJournal.Ticket ticket = journal.begin()) {
+
+            boolean songWasDeleted = playListService.deleteSongFromPlayList(playListId, songId);
 
-        return false;
+            if (songWasDeleted) {
+                ticket.append(Operation.DELETE_SONG_FROM_PLAYLIST, playListId, songId);
+            }
 
+            return songWasDeleted;
+        }
     }
 
     /**
-     * Retrieves all artists.
+     * Retrieves a page of the artists. Only the artists of the page are converted to strings.
      *
-     * @return a list of all artists.
+     * @param cursor the cursor of the page, as returned with the previous page, or null for the first page.
+     * @param pageSize the maximum number of artists of the page.
+     * @return the page, with the string representation of each of its artists.
+     * @throws IllegalArgumentException if the page size is not positive or the cursor is not valid.
      */
-    public List<String> getAllArtists() {
-
-        return artistService.getArtistsToString();
+    public Page<String> getArtistsPage(String cursor, int pageSize) {
+        return artistService.getArtistsPage(cursor, pageSize).map(Object::toString);
     }
 
     /**
      * This method is responsible for allowing a customer to follow an artist. It retrieves the `Artist` object with the provided ID
-     * and then uses the `CustomerService` to allow the logged-in customer to follow the artist.
+     * and then uses the `CustomerService` to allow the customer of the session to follow the artist.
      *
      * Here's a breakdown of what each part of the method does:
-     * 1. It retrieves the `Artist` object with the provided ID from the `ArtistService`.
-     * 2. If the artist is not found, it throws a `NotFoundException`.
-     * 3. It uses the `CustomerService` to allow the logged-in customer to follow the artist.
+     * 1. It resolves the customer of the session. If the session is not valid, it throws a `WrongLogInException`.
+     * 2. It retrieves the `Artist` object with the provided ID from the `ArtistService`.
+     * 3. If the artist is not found, it throws a `NotFoundException`.
+     * 4. It uses the `CustomerService` to make the customer found in step 1 follow the artist. The session is not checked again,
+     *    so a session that expires in the meantime does not keep the follow out of the journal. If the customer is deleted in the meantime,
+     *    the follow is refused with a `NotFoundException`.
+     * 5. It records the change in the mutation journal.
      *
      * The method throws a `NotFoundException` if the artist is not found and an `AlreadyExistsException` if the artist is already followed.
      *
+     * @param session the session of the customer.
      * @param artistId the ID of the artist.
-     * @throws NotFoundException if the artist is not found.
+     * @throws NotFoundException if the artist is not found, or the customer was deleted.
      * @throws AlreadyExistsException if the artist is already followed.
+     * @throws WrongLogInException if the session is not valid.
+     * @throws IOException if the change could not be recorded in the mutation journal.
      */
-    public void followArtist(String artistId) {
+    public void followArtist(Session session, String artistId)
+        throws NotFoundException, AlreadyExistsException, WrongLogInException, IOException {
+
+        Customer customer = customerService.getLoggedCustomer(session);
+
+        try (MutationJournal.Ticket ticket = journal.begin()) {
 
+            Artist artist = artistService.searchArtistById(artistId);
 
+            if (artist == null) {
+                throw new NotFoundException("El artista con id " + artistId + " no existe");
+            }
 
+            if (!customerService.followArtist(customer, artist)) {
+                throw new AlreadyExistsException("El artista " + artist.getName() + " ya es seguido por el cliente");
+            }
+
+            ticket.append(Operation.FOLLOW_ARTIST, customer.getUsername(), artist.getId().toString());
+        }
     }
 
     /**
-     * The getFollowedArtists method is responsible for retrieving the artists followed by the currently logged in customer.
+     * The getFollowedArtists method is responsible for retrieving the artists followed by the customer of a session.
      * It performs this operation in two main steps:
      *
-     * 1. Check if Customer is Logged In: The method starts by calling the getFollowedArtistsByLoggedUser method of the CustomerService instance.
-     *    If no customer is currently logged in, it throws a WrongLogInException.
+     * 1. Check the Session: The method starts by calling the getFollowedArtistsByLoggedUser method of the CustomerService instance.
+     *    If the session is not valid, it throws a WrongLogInException.
      *
-     * 2. Return Followed Artists: The method then returns the list of artists followed by the currently logged in customer.
+     * 2. Return Followed Artists: The method then returns the list of artists followed by the customer of the session.
      *
-     * @return a list of the logged in customer's followed artists.
-     * @throws WrongLogInException if no customer is currently logged in.
+     * @param session the session of the customer.
+     * @return a list of the customer's followed artists.
+     * @throws WrongLogInException if the session is not valid.
      */
-    public List<String> getFollowedArtists() throws WrongLogInException {
+    public List<String> getFollowedArtists(Session session) throws WrongLogInException {
 
-        return customerService.getFollowedArtistsByLoggedUser();
+        return customerService.getFollowedArtistsByLoggedUser(session);
     }
 
     /**
-     * Logs out the currently logged in customer.
+     * Logs out the customer of a session.
+     *
+     * @param session the session to close.
      */
-    public void logOut() {
-        customerService.logOut();
+    public void logOut(Session session) {
+        customerService.logOut(session);
     }
 }
@@ -1,17 +1,28 @@
 package com.javeriana.controllers;
 
+import com.javeriana.exceptions.NotFoundException;
 import com.javeriana.models.Artist;
 import com.javeriana.models.Customer;
 import com.javeriana.models.PlayList;
 import com.javeriana.models.Song;
 import com.javeriana.services.ArtistService;
+import com.javeriana.services.CascadeDeleteService;
+import com.javeriana.services.CatalogSnapshot;
+import com.javeriana.services.CatalogVersions;
 import com.javeriana.services.CustomerService;
 import com.javeriana.services.FileManagementService;
+import com.javeriana.services.MappedSongCatalog;
+import com.javeriana.services.MutationJournal;
 import com.javeriana.services.PlayListService;
 import com.javeriana.services.SongService;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * The FileManagementController class is responsible for handling file-related tasks in the application.
@@ -22,15 +33,26 @@ import java.util.Map;
  * - Exporting data to CSV files
  * - Saving data to binary files
  * - Loading data from binary files
+ * - Recovering the data at startup from the last checkpoint and the mutation journal
+ * - Taking checkpoints of the data, so the mutation journal can be emptied
  *
- * The class has five attributes: fileManagementService, artistService, songService, customerService, and playListService.
- * These are instances of the respective services used by this controller.
+ * The class has six attributes: fileManagementService, artistService, songService, customerService, playListService and cascadeDeleteService.
+ * These are instances of the respective services used by this controller. It also has the versions of the catalog, from which the
+ * binary files are saved, and the mutation journal, which records the changes made through the other controllers since the last checkpoint.
+ * Deletions are replayed through the cascadeDeleteService, as they were made.
  *
  * The class provides a constructor that takes instances of FileManagementService, ArtistService, SongService, CustomerService,
- * and PlayListService as parameters.
+ * PlayListService, CascadeDeleteService, CatalogVersions and MutationJournal as parameters.
  */
 public class FileManagementController {
 
+    // The extension and file names of the binary files written in each checkpoint of the mutation journal.
+    private static final String CHECKPOINT_EXTENSION = ".spot";
+    private static final String CHECKPOINT_ARTISTS_FILE_NAME = "artists";
+    private static final String CHECKPOINT_SONGS_FILE_NAME = "songs";
+    private static final String CHECKPOINT_PLAYLISTS_FILE_NAME = "playlists";
+    private static final String CHECKPOINT_CUSTOMERS_FILE_NAME = "customers";
+
     // The FileManagementService instance used by this controller.
     private final FileManagementService fileManagementService;
 
@@ -46,6 +68,15 @@ public class FileManagementController {
     // The PlayListService instance used by this controller.
     private final PlayListService playListService;
 
+    // The CascadeDeleteService instance used by this controller to replay deletions.
+    private final CascadeDeleteService cascadeDeleteService;
+
+    // The versions of the catalog the services publish their changes to.
+    private final CatalogVersions versions;
+
+    // The MutationJournal that records the changes made since the last checkpoint.
+    private final MutationJournal journal;
+
     /**
      * Constructs a new FileManagementController with the specified services.
      *
@@ -54,24 +85,37 @@ public class FileManagementController {
      * @param songService the SongService instance to be used by this controller.
      * @param customerService the CustomerService instance to be used by this controller.
      * @param playListService the PlayListService instance to be used by this controller.
+     * @param cascadeDeleteService the CascadeDeleteService instance to be used by this controller.
+     * @param versions the versions of the catalog the services publish their changes to.
+     * @param journal the MutationJournal that records the changes made since the last checkpoint.
      */
     public FileManagementController(FileManagementService fileManagementService,
                                     ArtistService artistService,
                                     SongService songService,
                                     CustomerService customerService,
-                                    PlayListService playListService) {
+                                    PlayListService playListService,
+                                    CascadeDeleteService cascadeDeleteService,
+                                    CatalogVersions versions,
+                                    MutationJournal journal) {
         this.fileManagementService = fileManagementService;
         this.artistService = artistService;
         this.songService = songService;
         this.customerService = customerService;
         this.playListService = playListService;
+        this.cascadeDeleteService = cascadeDeleteService;
+        this.versions = versions;
+        this.journal = journal;
     }
 
     /**
      * This method is responsible for importing data from CSV files. It uses the FileManagementService
-     * to read artists and songs from CSV files, and then loads this data into the ArtistService, SongService,
+     * to read artists, songs, playlists and customers from CSV files, and then loads this data into the ArtistService, SongService,
      * playListService, and CustomerService.
-     *
+     * The four files are parsed at the same time, each one in parallel chunks, and the IDs they refer to are linked afterwards,
+     * so the import takes about as long as the largest file.
+     * The imported data replaces all the data, which the mutation journal cannot express as changes, so a checkpoint is taken right after
+     * it is loaded into the services, and the import only returns once the snapshot holds it. The changes made meanwhile are applied to
+     * the imported data, and they are kept by the snapshot or by the journal after it, as they are ordered.
      *
      * @param path the path where the CSV files are located.
      * @param separator the separator used in the CSV files.
@@ -91,23 +135,19 @@ public class FileManagementController {
                                String customersFileName)
         throws IOException {
 
-        String artistsCSVFileName = artistsFileName + extension;
-        List<Artist> artists = fileManagementService.importArtistsFromCSV(path, separator ,artistsCSVFileName);
-        artistService.loadArtists(artists);
-        Map<String, Artist> artistsById = artistService.getMapOfArtistsById();
-
-        String songsCSVFileName = songsFileName + extension;
-        List<Song> songs = fileManagementService.importSongsFromCSV(path, separator, songsCSVFileName, artistsById);
-        songService.loadSongs(songs);
-        Map<String, Song> songsById = songService.getSongsById();
-
-        String playListsCSVFileName = playListsFileName + extension;
-        List<PlayList> playLists = fileManagementService.importPlayListsFromCSV(path, separator, playListsCSVFileName, songsById);
-        playListService.loadPlayLists(playLists);
-        Map<String, PlayList> playListsById = playListService.getPlayListsById();
-
+        FileManagementService.ImportedFiles importedFiles = fileManagementService.importCSVFilesConcurrently(path,
+            separator,
+            artistsFileName + extension,
+            songsFileName + extension,
+            playListsFileName + extension,
+            customersFileName + extension);
 
+        artistService.loadArtists(importedFiles.artists());
+        songService.loadSongs(importedFiles.songs());
+        playListService.loadPlayLists(importedFiles.playLists());
+        customerService.loadCustomers(importedFiles.customers());
 
+        checkpoint();
     }
 
     /**
@@ -153,15 +193,17 @@ public class FileManagementController {
     }
 
     /**
-     * This method is responsible for saving data to binary files. It retrieves artists, songs, playlists, and customers
-     * from their respective services, and then uses the `FileManagementService` to write this data to binary files.
+     * This method is responsible for saving data to binary files. It pins the current version of the catalog, which holds the artists,
+     * songs, playlists, and customers as they were at the same point, and then uses the `FileManagementService` to write this data
+     * to binary files, while the services keep changing.
      *
      * Here's a breakdown of what each part of the method does:
-     * 1. It first retrieves a list of `Artist` objects from the `ArtistService`.
+     * 1. It first retrieves the list of `Artist` objects of the pinned version.
      * 2. It then constructs the filename for the artists binary file by appending the provided extension to the provided filename.
      * 3. It uses the `FileManagementService` to export the list of artists to a binary file at the specified path.
-     * This process is then repeated for songs, playlists, and customers, each time retrieving the relevant data from the appropriate service,
-     * constructing the filename, and using the `FileManagementService` to export the data to a binary file.
+     * This process is then repeated for songs, playlists, and customers, each time retrieving the relevant data from the pinned version,
+     * constructing the filename, and using the `FileManagementService` to export the data to a binary file. The songs of the playlists,
+     * and the followed artists and playlists of the customers, are also those of the pinned version.
      *
      * The method throws an `IOException` if an I/O error occurs during the process.
      *
@@ -180,17 +222,35 @@ public class FileManagementController {
                                  String playListsFileName,
                                  String customersFileName  ) throws IOException {
 
-        List<Artist> artists = artistService.getArtists();
+        try (CatalogSnapshot snapshot = versions.pin()) {
+            writeSpotifyFiles(path, extension, artistsFileName, songsFileName, playListsFileName, customersFileName, snapshot);
+        }
+    }
+
+    /**
+     * Writes the binary files of a version of the catalog, as described in saveSpotifyFiles.
+     */
+    private void writeSpotifyFiles(String path,
+                                   String extension,
+                                   String artistsFileName,
+                                   String songsFileName,
+                                   String playListsFileName,
+                                   String customersFileName,
+                                   CatalogSnapshot snapshot) throws IOException {
+
+        List<Artist> artists = snapshot.getArtists();
         String artistsSpotifyFileName = artistsFileName + extension;
         fileManagementService.exportArtistsToBinary(path, artistsSpotifyFileName, artists);
 
-        List<Song> songs = songService.getSongs();
+        List<Song> songs = snapshot.getSongs();
         String songsSpotifyFileName = songsFileName + extension;
         fileManagementService.exportSongsToBinary(path, songsSpotifyFileName, songs);
 
+        String playListsSpotifyFileName = playListsFileName + extension;
+        fileManagementService.exportPlayListsToBinary(path, playListsSpotifyFileName, snapshot);
 
-
-
+        String customersSpotifyFileName = customersFileName + extension;
+        fileManagementService.exportCustomersToBinary(path, customersSpotifyFileName, snapshot);
     }
 
     /**
@@ -201,9 +261,14 @@ public class FileManagementController {
      * 1. It uses the `FileManagementService` to import a list of `Artist` objects from a binary file at the specified path.
      * 2. It then loads this list of artists into the `ArtistService`.
      * This process is then repeated for songs, playlists, and customers, each time importing the relevant data from a binary file
-     * and loading it into the appropriate service.
+     * and loading it into the appropriate service. The files store references by ID, so the entities loaded in a previous step
+     * are passed by ID to the next one: artists to songs, songs to playlists, and artists and playlists to customers.
+     * Songs are not imported: the songs file is opened as a memory-mapped catalog, and each song is only decoded when it is first used.
+     * Songs files saved before the binary format had an index cannot be opened as a catalog, so their songs are imported instead.
+     * The loaded data replaces all the data, which the mutation journal cannot express as changes, so a checkpoint is taken right after
+     * it is loaded into the services, as in importCSVFiles.
      *
-     * The method throws an `IOException` and `ClassNotFoundException` if an I/O error occurs during the process or the class of a serialized object cannot be found.
+     * The method throws an `IOException` if an I/O error occurs during the process or a file does not have the expected format.
      *
      * @param path the path where the binary files are located.
      * @param extension the extension of the binary files.
@@ -212,7 +277,6 @@ public class FileManagementController {
      * @param playListsFileName the filename for the playlists binary file.
      * @param customersFileName the filename for the customers binary file.
      * @throws IOException if an I/O error occurs.
-     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
      */
     public void loadSpotifyFiles(String path,
                                  String extension,
@@ -221,15 +285,220 @@ public class FileManagementController {
                                  String playListsFileName,
                                  String customersFileName
 
-                                 ) throws IOException, ClassNotFoundException {
+                                 ) throws IOException {
+
+        readSpotifyFiles(path, extension, artistsFileName, songsFileName, playListsFileName, customersFileName);
+
+        checkpoint();
+    }
+
+    /**
+     * This method is responsible for recovering the data when the application starts. It loads the snapshot of the last checkpoint,
+     * if there is one, and then replays on top of it the changes recorded in the mutation journal since that checkpoint.
+     * Changes whose records were only partly written when the application stopped were already discarded by the journal,
+     * and they were never acknowledged.
+     *
+     * @return the number of changes replayed.
+     * @throws IOException if an I/O error occurs reading the snapshot.
+     */
+    public int recover() throws IOException {
+
+        Path snapshotDirectory = journal.getSnapshotDirectory();
+
+        if (snapshotDirectory != null) {
+            readSpotifyFiles(snapshotDirectory + File.separator,
+                CHECKPOINT_EXTENSION,
+                CHECKPOINT_ARTISTS_FILE_NAME,
+                CHECKPOINT_SONGS_FILE_NAME,
+                CHECKPOINT_PLAYLISTS_FILE_NAME,
+                CHECKPOINT_CUSTOMERS_FILE_NAME);
+        }
+
+        List<MutationJournal.Entry> entries = journal.getRecoveredEntries();
+
+        for (MutationJournal.Entry entry : entries) {
+            replay(entry);
+        }
+
+        return entries.size();
+    }
+
+    /**
+     * This method is responsible for taking a checkpoint: it saves the current version of the catalog as the snapshot of the mutation
+     * journal and empties the journal of the changes in it, so the next start does not need to replay the changes made so far.
+     * The changes are not stopped while the snapshot is written.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void checkpoint() throws IOException {
+
+        journal.checkpoint(this::writeCheckpointFiles);
+    }
+
+    /**
+     * Saves the given version of the catalog as the binary files of a checkpoint in the given snapshot directory.
+     */
+    private void writeCheckpointFiles(Path snapshotDirectory, CatalogSnapshot snapshot) throws IOException {
+        writeSpotifyFiles(snapshotDirectory + File.separator,
+            CHECKPOINT_EXTENSION,
+            CHECKPOINT_ARTISTS_FILE_NAME,
+            CHECKPOINT_SONGS_FILE_NAME,
+            CHECKPOINT_PLAYLISTS_FILE_NAME,
+            CHECKPOINT_CUSTOMERS_FILE_NAME,
+            snapshot);
+    }
+
+    /**
+     * Takes a checkpoint only if the mutation journal has changes since the last one.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void checkpointIfNeeded() throws IOException {
+        if (!journal.isEmpty()) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Loads the binary files into the services, as described in loadSpotifyFiles.
+     */
+    private void readSpotifyFiles(String path,
+                                  String extension,
+                                  String artistsFileName,
+                                  String songsFileName,
+                                  String playListsFileName,
+                                  String customersFileName) throws IOException {
 
         List<Artist> artists = fileManagementService.importArtistsFromBinary(path, artistsFileName + extension);
         artistService.loadArtists(artists);
+        Map<UUID, Artist> artistsById = artistService.getMapOfArtistsById();
+
+        // Songs are usually the largest file, so they are served from the mapped file and only decoded when used
+        // Files saved before the catalog index have no index, so their songs are imported instead
+        MappedSongCatalog songsCatalog = fileManagementService.openSongsCatalogFromBinary(path, songsFileName + extension, artistsById);
+        if (songsCatalog != null) {
+            songService.loadSongCatalog(songsCatalog);
+        } else {
+            songService.loadSongs(fileManagementService.importSongsFromBinary(path, songsFileName + extension, artistsById));
+        }
+        Map<UUID, Song> songsById = songService.getSongsById();
+
+        List<PlayList> playLists = fileManagementService.importPlayListsFromBinary(path, playListsFileName + extension, songsById);
+        playListService.loadPlayLists(playLists);
+        Map<UUID, PlayList> playListsById = playListService.getPlayListsById();
 
-        List<Song> songs = fileManagementService.importSongsFromBinary(path, songsFileName + extension);
-        songService.loadSongs(songs);
+        List<Customer> customers = fileManagementService.importCustomersFromBinary(path, customersFileName + extension,
+            artistsById, playListsById);
+        customerService.loadCustomers(customers);
+    }
 
+    //region journal replay
 
+    /**
+     * Applies again a change read from the mutation journal.
+     *
+     * The changes are replayed on top of the snapshot they were recorded after, so each one finds the data as it was when
+     * it was made. Even so, the replay does not fail on a missing reference: a change that refers to an entity that no longer
+     * exists is skipped, and entities that already exist are not added twice.
+     */
+    private void replay(MutationJournal.Entry entry) {
+
+        switch (entry.operation()) {
+
+            case ADD_ARTIST -> artistService.addArtist(new Artist(UUID.fromString(entry.argument(0)), entry.argument(1)));
+
+            case DELETE_ARTIST -> {
+                String artistId = entry.argument(0);
+                try {
+                    cascadeDeleteService.deleteArtists(List.of(artistId));
+                } catch (NotFoundException e) {
+                    // The artist was already deleted, or its songs refer to an unknown artist, whose songs are deleted anyway
+                    for (Song song : songService.searchSongsByArtistId(artistId)) {
+                        replayDeleteSong(song.getId().toString());
+                    }
+                }
+            }
+
+            case ADD_SONG -> {
+                List<Artist> artists = new ArrayList<>();
+                for (int i = 5; i < entry.arguments().size(); i++) {
+                    Artist artist = artistService.searchArtistById(entry.argument(i));
+                    artists.add(artist != null ? artist : Artist.GetUnknownArtist(entry.argument(i)));
+                }
+                songService.addSong(new Song(UUID.fromString(entry.argument(0)),
+                    entry.argument(1),
+                    artists,
+                    entry.argument(2),
+                    Integer.parseInt(entry.argument(3)),
+                    entry.argument(4)));
+            }
+
+            case DELETE_SONG -> replayDeleteSong(entry.argument(0));
+
+            case ADD_CUSTOMER -> customerService.addCustomer(new Customer(UUID.fromString(entry.argument(0)),
+                entry.argument(1),
+                entry.argument(2),
+                entry.argument(3),
+                entry.argument(4),
+                Integer.parseInt(entry.argument(5)),
+                new HashSet<>(),
+                new ArrayList<>()));
+
+            case DELETE_CUSTOMER -> {
+                String username = entry.argument(0);
+                if (customerService.searchCustomerByUsername(username) != null) {
+                    cascadeDeleteService.deleteCustomers(List.of(username));
+                }
+            }
+
+            case ADD_PLAYLIST -> {
+                Customer customer = customerService.searchCustomerByUsername(entry.argument(0));
+                // A playlist is only added for an existing customer, so one whose owner no longer exists is not restored
+                if (customer != null) {
+                    UUID playListId = UUID.fromString(entry.argument(1));
+                    PlayList playList = playListService.addPlayList(new PlayList(playListId, entry.argument(2), new ArrayList<>()));
+                    if (!customer.getPlayListsIds().contains(playListId)) {
+                        customerService.addPlayList(customer, playList);
+                    }
+                }
+            }
+
+            case ADD_SONG_TO_PLAYLIST -> {
+                PlayList playList = playListService.getPlayListById(entry.argument(0));
+                Song song = songService.searchSongById(entry.argument(1));
+                if (playList != null && song != null) {
+                    try {
+                        playListService.addSongToPlayList(playList, song);
+                    } catch (NotFoundException e) {
+                        // The playlist and the song were found above, so they can only be refused if deleted meanwhile, which leaves nothing to restore
+                    }
+                }
+            }
+
+            case DELETE_SONG_FROM_PLAYLIST -> playListService.deleteSongFromPlayList(entry.argument(0), entry.argument(1));
+
+            case FOLLOW_ARTIST -> {
+                Customer customer = customerService.searchCustomerByUsername(entry.argument(0));
+                Artist artist = artistService.searchArtistById(entry.argument(1));
+                if (customer != null && artist != null) {
+                    try {
+                        customerService.followArtist(customer, artist);
+                    } catch (NotFoundException e) {
+                        // The artist was found above, so it can only be refused if it is deleted meanwhile, which leaves nothing to restore
+                    }
+                }
+            }
+        }
+    }
 
+    private void replayDeleteSong(String songId) {
+        try {
+            cascadeDeleteService.deleteSongs(List.of(songId));
+        } catch (NotFoundException e) {
+            // The song was already deleted, but the playlists may still refer to it
+            playListService.deleteSongFromPlayLists(songId);
+        }
     }
+
+    //endregion
 }
\ No newline at end of file
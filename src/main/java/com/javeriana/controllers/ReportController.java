@@ -1,13 +1,19 @@
 package com.javeriana.controllers;
 
 import com.javeriana.models.Artist;
+import com.javeriana.models.Customer;
+import com.javeriana.models.Page;
+import com.javeriana.models.PlayList;
 import com.javeriana.models.Song;
 import com.javeriana.services.ArtistService;
+import com.javeriana.services.CatalogSnapshot;
+import com.javeriana.services.CatalogVersions;
 import com.javeriana.services.CustomerService;
 import com.javeriana.services.PlayListService;
 import com.javeriana.services.ReportService;
 import com.javeriana.services.SongService;
-import java.util.HashMap;
+import com.javeriana.utils.UUIDCodec;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -19,14 +25,19 @@ import java.util.UUID;
  * This class provides methods for:
  * - Showing the most followed artists
  * - Showing the most added song in playlists
- * - Getting all artists
+ * - Getting the artists a page at a time
  * - Showing the most added song of a specific artist in playlists
  *
- * The class has five attributes: reportService, artistService, songService, customerService, and playListService.
- * These are instances of the respective services used by this controller.
+ * The class has six attributes: reportService, artistService, songService, customerService, playListService and catalogVersions.
+ * The first five are instances of the respective services used by this controller, and the last one the versions of the catalog
+ * to which those services publish their changes.
+ *
+ * Each report pins a version of the catalog and reads the customers, playlists, artists and songs of that version, so it sees the catalog
+ * as of a single point however long it takes, without taking the locks of the services: the administrators and customers changing the
+ * catalog meanwhile do not wait for the report, and the report does not wait for them.
  *
  * The class provides a constructor that takes instances of ReportService, ArtistService, SongService, CustomerService,
- * and PlayListService as parameters.
+ * PlayListService and CatalogVersions as parameters.
  */
 public class ReportController {
 
@@ -35,13 +46,16 @@ public class ReportController {
     private final SongService songService;
     private final CustomerService customerService;
     private final PlayListService playListService;
+    private final CatalogVersions catalogVersions;
 
-    public ReportController(ReportService reportService, ArtistService artistService, SongService songService, CustomerService customerService, PlayListService playListService) {
+    public ReportController(ReportService reportService, ArtistService artistService, SongService songService, CustomerService customerService,
+                            PlayListService playListService, CatalogVersions catalogVersions) {
         this.reportService = reportService;
         this.artistService = artistService;
         this.songService = songService;
         this.customerService = customerService;
         this.playListService = playListService;
+        this.catalogVersions = catalogVersions;
     }
 
     /**
@@ -49,7 +63,7 @@ public class ReportController {
      * and then uses the `ReportService` to get a map of the most followed artists and their respective follower counts.
      *
      * Here's a breakdown of what each part of the method does:
-     * 1. It retrieves a list of `Artist` objects that are followed by customers from the `CustomerService`.
+     * 1. It pins a version of the catalog, and retrieves the `Artist` objects followed by each customer of that version.
      * 2. It uses the `ReportService` to get a map where the keys are the names of the artists and the values are the number of followers for each artist.
      *
      * The method returns this map.
@@ -58,7 +72,15 @@ public class ReportController {
      */
     public Map<String, Integer> showMostFollowedArtists() {
 
-       return new HashMap<>();
+        List<Artist> followedArtists = new ArrayList<>();
+
+        try (CatalogSnapshot snapshot = catalogVersions.pin()) {
+            for (Customer customer : snapshot.getCustomers()) {
+                followedArtists.addAll(snapshot.getFollowedArtistsOf(customer));
+            }
+        }
+
+        return reportService.getMostFollowedArtists(followedArtists);
     }
 
     /**
@@ -66,24 +88,37 @@ public class ReportController {
      * and then uses the `ReportService` to get a map of the songs and their respective counts of being added to playlists.
      *
      * Here's a breakdown of what each part of the method does:
-     * 1. It retrieves a list of `Song` objects that are in playlists from the `PlayListService`.
+     * 1. It pins a version of the catalog, and retrieves the `Song` objects of each playlist of that version.
      * 2. It uses the `ReportService` to get a map where the keys are the IDs of the songs and the values are the number of times each song has been added to playlists.
      * 3. It identifies the song that has been added the most to playlists.
-     * 4. It retrieves the details of this song from the `SongService` and returns these details as a string.
+     * 4. It returns the details of this song as a string.
      *
      * The method returns the details of the most added song in playlists.
      *
-     * @return a string representing the details of the most added song in playlists.
+     * @return a string representing the details of the most added song in playlists, or a message if no playlist has songs.
      */
     public String showMostAddedSongInPlayList() {
 
-        return "";
+        List<Song> songsInPlayLists;
+
+        try (CatalogSnapshot snapshot = catalogVersions.pin()) {
+            songsInPlayLists = songsInPlayLists(snapshot, null);
+        }
 
+        return mostAddedSong(songsInPlayLists);
     }
 
 
-    public List<String> getAllArtists() {
-        return artistService.getArtistsToString();
+    /**
+     * Retrieves a page of the artists. Only the artists of the page are converted to strings.
+     *
+     * @param cursor the cursor of the page, as returned with the previous page, or null for the first page.
+     * @param pageSize the maximum number of artists of the page.
+     * @return the page, with the string representation of each of its artists.
+     * @throws IllegalArgumentException if the page size is not positive or the cursor is not valid.
+     */
+    public Page<String> getArtistsPage(String cursor, int pageSize) {
+        return artistService.getArtistsPage(cursor, pageSize).map(Object::toString);
     }
 
     /**
@@ -91,18 +126,85 @@ public class ReportController {
      * and then uses the `ReportService` to get a map of the songs and their respective counts of being added to playlists.
      *
      * Here's a breakdown of what each part of the method does:
-     * 1. It retrieves a list of `Song` objects by the artist from the `SongService`.
+     * 1. It looks the artist up in the index of artists by ID of the `ArtistService`, and then pins a version of the catalog and retrieves
+     *    the `Song` objects by the artist in each playlist of that version. An artist deleted between the lookup and the pin has no songs
+     *    in that version.
      * 2. It uses the `ReportService` to get a map where the keys are the IDs of the songs and the values are the number of times each song has been added to playlists.
      * 3. It identifies the song that has been added the most to playlists.
-     * 4. It retrieves the details of this song from the `SongService` and returns these details as a string.
+     * 4. It returns the details of this song as a string.
      *
      * The method returns the details of the most added song of a specific artist in playlists.
      *
      * @param artistId the ID of the artist.
-     * @return a string representing the details of the most added song of a specific artist in playlists.
+     * @return a string representing the details of the most added song of a specific artist in playlists, or a message if no playlist has songs by the artist.
+     * @throws IllegalArgumentException if the ID is not a valid UUID or no artist has that ID.
      */
     public String showMostAddedSongOfArtist(String artistId) {
 
-        return "";
+        UUID id = UUIDCodec.decode(artistId);
+        if (artistService.searchArtistById(artistId) == null) {
+            throw new IllegalArgumentException("El artista con id " + artistId + " no existe");
+        }
+
+        List<Song> songsOfArtistInPlayLists;
+        try (CatalogSnapshot snapshot = catalogVersions.pin()) {
+            songsOfArtistInPlayLists = songsInPlayLists(snapshot, id);
+        }
+
+        return mostAddedSong(songsOfArtistInPlayLists);
+    }
+
+    /**
+     * Returns the songs of every playlist of a version of the catalog, once for each time they were added, keeping only the songs
+     * of the given artist if there is one.
+     */
+    private static List<Song> songsInPlayLists(CatalogSnapshot snapshot, UUID artistId) {
+
+        List<Song> songs = new ArrayList<>();
+
+        for (PlayList playList : snapshot.getPlayLists()) {
+            for (Song song : snapshot.getSongsOf(playList)) {
+                if (artistId == null || isByArtist(song, artistId)) {
+                    songs.add(song);
+                }
+            }
+        }
+
+        return songs;
+    }
+
+    private static boolean isByArtist(Song song, UUID artistId) {
+        for (Artist artist : song.getArtists()) {
+            if (artist.getId().equals(artistId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the details of the song that appears the most times in the given list, or a message if the list is empty.
+     * The song is looked up in the index of songs by ID of the `SongService`; only a song deleted since the list was read is searched
+     * in the list instead.
+     */
+    private String mostAddedSong(List<Song> songs) {
+
+        UUID mostAddedSongId = reportService.maxSong(reportService.getCountOfSongsByArtist(songs));
+
+        if (mostAddedSongId == null) {
+            return "No hay canciones agregadas a las playlists";
+        }
+
+        Song mostAddedSong = songService.searchSongById(mostAddedSongId.toString());
+        if (mostAddedSong == null) {
+            for (Song song : songs) {
+                if (song.getId().equals(mostAddedSongId)) {
+                    mostAddedSong = song;
+                    break;
+                }
+            }
+        }
+
+        return mostAddedSong.toString();
     }
 }
@@ -1,5 +1,6 @@
 package com.javeriana.models;
 
+import com.javeriana.utils.CSVTokenizer;
 import java.io.Serializable;
 import java.util.UUID;
 
@@ -34,6 +35,12 @@ public class Artist implements Serializable {
      */
     private String name;
 
+    /**
+     * Whether the artist was deleted from the catalog. It is set once, by the ArtistService class, and is not saved, so an artist
+     * read from a file is never deleted.
+     */
+    private transient volatile boolean deleted;
+
     // endregion
 
     // region Constructors
@@ -69,8 +76,19 @@ public class Artist implements Serializable {
     public String getName() {
         return name;
     }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
     // endregion
 
+    /**
+     * Marks the artist as deleted from the catalog, so it can no longer be followed.
+     */
+    public void markDeleted() {
+        this.deleted = true;
+    }
+
     /**
      * Returns a CSV representation of the Artist object.
      * The separator is passed as an argument.
@@ -94,16 +112,28 @@ public class Artist implements Serializable {
      * @throws IllegalArgumentException If the format of the CSV line is incorrect.
      */
     public static Artist fromCSV(String csvLine, String separator) {
-        String[] data = csvLine.split(separator);
+        return fromCSV(new CSVTokenizer(separator).reset(csvLine));
+    }
 
-        if (data.length != 2) {
+    /**
+     * Creates an Artist object from the line a tokenizer was reset to.
+     * This allows a single tokenizer to be reused for every line of a file.
+     * The expected format is: id;name
+     *
+     * @param tokenizer The tokenizer positioned at the start of a CSV line that represents an Artist.
+     * @return An Artist object created from the CSV line.
+     * @throws IllegalArgumentException If the format of the CSV line is incorrect.
+     */
+    public static Artist fromCSV(CSVTokenizer tokenizer) {
+
+        if (tokenizer.countFields() != 2) {
             throw new IllegalArgumentException("El formato de la línea no es correcto, se esperan 2 campos"
-             + " y se envío " + csvLine + " con el separador " + separator);
+             + " y se envío " + tokenizer.line());
         }
 
         // Create an Artist object with the data from the line
-        UUID id = UUID.fromString(data[0]);
-        String name = data[1];
+        UUID id = tokenizer.expectField().fieldAsUUID();
+        String name = tokenizer.expectField().fieldAsString();
 
         return new Artist(id,name);
     }
@@ -126,7 +156,17 @@ public class Artist implements Serializable {
      * @return An Artist object with the provided id and name set as "Unknown Artist".
      */
     public static Artist GetUnknownArtist(String id) {
-        return new Artist(UUID.fromString(id), "Unknown Artist");
+        return GetUnknownArtist(UUID.fromString(id));
+    }
+
+    /**
+     * Returns an Artist object with unknown data. This method is used when the artist is not found in the file.
+     *
+     * @param id The id of the unknown artist.
+     * @return An Artist object with the provided id and name set as "Unknown Artist".
+     */
+    public static Artist GetUnknownArtist(UUID id) {
+        return new Artist(id, "Unknown Artist");
     }
 
 }
@@ -1,5 +1,6 @@
 package com.javeriana.models;
 
+import com.javeriana.utils.SnapshotList;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -26,7 +27,8 @@ import java.util.UUID;
  * The id is a UUID (Universally Unique Identifier), which is used to uniquely identify each Customer instance.
  * The username, password, name, and lastName are String values that represent the username, password, name, and last name of the customer respectively.
  * The age is an int that represents the age of the customer.
- * The followedArtists is a Set of Artist objects, representing the artists that the customer is following.
+ * The followedArtists is a Set of Artist objects, representing the artists that the customer is following. The same artists are also kept
+ * in a list, in the order they were followed, so they can be returned without copying the set.
  * The playLists is a List of PlayList objects, representing the playlists that the customer has created.
  */
 public class Customer implements Serializable {
@@ -69,11 +71,23 @@ public class Customer implements Serializable {
      */
     private final Set<Artist> followedArtists;
 
+    /**
+     * The followedArtistsList attribute holds the artists of followedArtists in the order they were followed.
+     * Its snapshots are returned by getFollowedArtists.
+     */
+    private final SnapshotList<Artist> followedArtistsList;
+
     /**
      * The playLists attribute is a List of PlayList objects.
      * It represents the playlists that the customer has created.
      */
-    private final List<PlayList> playLists;
+    private final SnapshotList<PlayList> playLists;
+
+    /**
+     * Whether the customer was deleted. It is set once, by the CustomerService class, and is not saved, so a customer
+     * read from a file is never deleted.
+     */
+    private transient volatile boolean deleted;
 
     // endregion
 
@@ -87,7 +101,7 @@ public class Customer implements Serializable {
      * @param name The name of the customer.
      * @param lastName The last name of the customer.
      * @param age The age of the customer.
-     * @param followedArtists The set of artists followed by the customer.
+     * @param followedArtists The set of artists followed by the customer, which iterates them in the order they were followed.
      * @param playLists The list of playlists owned by the customer.
      */
     public Customer(UUID id, String username, String password, String name, String lastName, int age,
@@ -100,7 +114,8 @@ public class Customer implements Serializable {
         this.lastName = lastName;
         this.age = age;
         this.followedArtists = followedArtists;
-        this.playLists = playLists;
+        this.followedArtistsList = new SnapshotList<>(followedArtists);
+        this.playLists = new SnapshotList<>(playLists);
     }
 
     /**
@@ -120,7 +135,8 @@ public class Customer implements Serializable {
         this.lastName = lastName;
         this.age = age;
         this.followedArtists = new HashSet<>();
-        this.playLists = new ArrayList<>();
+        this.followedArtistsList = new SnapshotList<>();
+        this.playLists = new SnapshotList<>();
     }
     // endregion
 
@@ -141,10 +157,29 @@ public class Customer implements Serializable {
         return name;
     }
 
+    public String getLastName() {
+        return lastName;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
     // endregion
 
     //region methods
 
+    /**
+     * Marks the customer as deleted, so it can no longer log in, follow artists or add playlists.
+     */
+    public void markDeleted() {
+        this.deleted = true;
+    }
+
     /**
      * Adds a playlist to the customer's list of playlists.
      *
@@ -162,18 +197,49 @@ public class Customer implements Serializable {
      */
     public boolean followArtist(Artist artist) {
 
-        return this.followedArtists.add(artist);
+        if (!this.followedArtists.add(artist)) {
+            return false;
+        }
+
+        this.followedArtistsList.add(artist);
+        return true;
+
+    }
+
+    /**
+     * Checks if the customer follows the given artist.
+     *
+     * @param artist The artist to check.
+     * @return True if the customer follows the artist, false otherwise.
+     */
+    public boolean isFollowing(Artist artist) {
+        return this.followedArtists.contains(artist);
+    }
+
+    /**
+     * Stops following the artists with the given ids, removing them from the customer's set of followed artists in a single pass.
+     *
+     * @param artistIds The ids of the artists to stop following.
+     * @return True if the customer followed any of the artists, false otherwise.
+     */
+    public boolean unfollowArtists(Set<UUID> artistIds) {
+
+        if (!this.followedArtists.removeIf(artist -> artistIds.contains(artist.getId()))) {
+            return false;
+        }
 
+        this.followedArtistsList.removeIf(artist -> artistIds.contains(artist.getId()));
+        return true;
     }
 
 
     /*
-    *  Method to get the playlists of the customer
+    *  Method to get a read-only snapshot of the playlists of the customer, taken without copying them
     *
     * @return List of PlayList
     * */
     public List<PlayList> getPlayLists() {
-        return new ArrayList<>(playLists);
+        return playLists.snapshot();
     }
 
 
@@ -235,12 +301,13 @@ public class Customer implements Serializable {
     }
 
     /**
-     * Returns a list of the artists that the customer is following.
+     * Returns a read-only snapshot of the artists that the customer is following, in the order they were followed.
+     * The snapshot is taken without copying the artists.
      *
-     * @return A list of followed artists.
+     * @return A read-only list of followed artists.
      */
     public List<Artist> getFollowedArtists() {
-        return new ArrayList<>(followedArtists);
+        return followedArtistsList.snapshot();
     }
 
     /**
@@ -0,0 +1,43 @@
+package com.javeriana.models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The Page record is one page of a listing of entities in a music application, such as the songs or the customers of the catalog.
+ *
+ * A listing is read page by page: the first page is requested without a cursor, and each page carries the cursor of the page that follows it,
+ * which is passed back to get the next one. The cursor is opaque to the caller. It remembers where the page ended, so the next page starts
+ * right after the last entity shown even if entities before it were deleted in between.
+ *
+ * @param items The entities of the page, in the order of the listing.
+ * @param nextCursor The cursor of the next page, or null if this is the last page.
+ * @param <T> The type of the entities.
+ */
+public record Page<T>(List<T> items, String nextCursor) {
+
+    /**
+     * Returns whether there are more entities after this page.
+     *
+     * @return true if there is a next page.
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Returns a page with the same cursor whose entities are converted with the given function, such as to their string representations.
+     *
+     * @param mapper The function that converts each entity.
+     * @param <R> The type of the converted entities.
+     * @return A new page with the converted entities.
+     */
+    public <R> Page<R> map(Function<? super T, ? extends R> mapper) {
+        List<R> mappedItems = new ArrayList<>(items.size());
+        for (T item : items) {
+            mappedItems.add(mapper.apply(item));
+        }
+        return new Page<>(mappedItems, nextCursor);
+    }
+}
@@ -1,8 +1,10 @@
 package com.javeriana.models;
 
+import com.javeriana.utils.SnapshotList;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -45,7 +47,7 @@ public class PlayList implements Serializable {
      * The songs attribute is a List of Song objects.
      * It represents the songs that are included in the playlist.
      */
-    private List<Song> songs;
+    private final SnapshotList<Song> songs;
 
     // endregion
 
@@ -59,7 +61,7 @@ public class PlayList implements Serializable {
     public PlayList(UUID id, String name, List<Song> songs) {
         this.id = id;
         this.name = name;
-        this.songs = songs;
+        this.songs = new SnapshotList<>(songs);
     }
 
     /**
@@ -71,7 +73,7 @@ public class PlayList implements Serializable {
     public PlayList(String name) {
         this.id = UUID.randomUUID();
         this.name = name;
-        this.songs = new ArrayList<>();
+        this.songs = new SnapshotList<>();
     }
 
     // region Getters
@@ -82,8 +84,15 @@ public class PlayList implements Serializable {
     public String getName() {
         return name;
     }
+
+    /**
+     * Returns a read-only snapshot of the songs of the playlist, taken without copying them.
+     * Later changes to the playlist do not affect the snapshot.
+     *
+     * @return A read-only list of the songs of the playlist.
+     */
     public List<Song> getSongs() {
-        return new ArrayList<>(songs);
+        return songs.snapshot();
     }
 
     // endregion
@@ -131,6 +140,61 @@ public class PlayList implements Serializable {
 
     }
 
+    /**
+     * Checks if the playlist contains the song with the given id.
+     *
+     * @param songId The id of the song.
+     * @return True if the song is in the playlist, false otherwise.
+     */
+    public boolean containsSong(UUID songId) {
+
+        for (Song song : songs) {
+            if (song.getId().equals(songId)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes the first occurrence of the song with the given id from the playlist.
+     *
+     * @param songId The id of the song to be removed.
+     * @return A boolean indicating whether the song was successfully removed.
+     */
+    public boolean removeSong(UUID songId) {
+
+        for (int i = 0; i < songs.size(); i++) {
+            if (songs.get(i).getId().equals(songId)) {
+                songs.remove(i);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes every occurrence of the song with the given id from the playlist, in a single pass over the songs.
+     *
+     * @param songId The id of the song to be removed.
+     * @return A boolean indicating whether any song was removed.
+     */
+    public boolean removeAllOccurrences(UUID songId) {
+        return songs.removeIf(song -> song.getId().equals(songId));
+    }
+
+    /**
+     * Removes every occurrence of the songs with the given ids from the playlist, in a single pass over the songs.
+     *
+     * @param songIds The ids of the songs to be removed.
+     * @return A boolean indicating whether any song was removed.
+     */
+    public boolean removeAllOccurrences(Set<UUID> songIds) {
+        return songs.removeIf(song -> songIds.contains(song.getId()));
+    }
+
     /**
      * Returns a list of string representations of the songs in the playlist.
      *
@@ -177,7 +241,17 @@ public class PlayList implements Serializable {
      * @return A PlayList object with the provided id and name set as "Unknown PlayList".
      */
     public static PlayList getUnknownPlayList(String playListId) {
-        return new PlayList(UUID.fromString(playListId), "Unknown PlayList", new ArrayList<>());
+        return getUnknownPlayList(UUID.fromString(playListId));
+    }
+
+    /**
+     * Returns a PlayList object with unknown data. This method is used when the playlist is not found in the file.
+     *
+     * @param playListId The id of the unknown playlist.
+     * @return A PlayList object with the provided id and name set as "Unknown PlayList".
+     */
+    public static PlayList getUnknownPlayList(UUID playListId) {
+        return new PlayList(playListId, "Unknown PlayList", new ArrayList<>());
     }
 
     // endregion
@@ -0,0 +1,24 @@
+package com.javeriana.models;
+
+/**
+ * The Session record is the handle of a customer session in a music application.
+ *
+ * A session is opened when a customer logs in and is identified by a random token, which is the only data the handle holds.
+ * The caller keeps the handle and passes it to every operation made on behalf of the customer, so several customers can be logged in
+ * at the same time, each one with their own handle. The state of the session, such as its customer and the time it was last used,
+ * stays in the SessionRegistry that issued it, so a handle of a closed or expired session is simply rejected.
+ *
+ * @param token The random token that identifies the session.
+ */
+public record Session(String token) {
+
+    /**
+     * Returns a string representation of the session that does not reveal its token.
+     *
+     * @return A string representation of the session.
+     */
+    @Override
+    public String toString() {
+        return "Sesión " + token.substring(0, Math.min(6, token.length())) + "...";
+    }
+}
@@ -1,5 +1,6 @@
 package com.javeriana.models;
 
+import com.javeriana.utils.SnapshotList;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -47,7 +48,7 @@ public class Song implements Serializable {
      * The artists attribute is a List of Artist objects.
      * It represents the artists that are associated with the song.
      */
-    private List<Artist> artists;
+    private final SnapshotList<Artist> artists;
 
     /**
      * The genre attribute is a String that represents the genre of the song.
@@ -63,6 +64,12 @@ public class Song implements Serializable {
      * The album attribute is a String that represents the album of the song.
      */
     private String album;
+
+    /**
+     * Whether the song was deleted from the catalog. It is set once, by the SongService class, and is not saved, so a song
+     * read from a file is never deleted.
+     */
+    private transient volatile boolean deleted;
     // endregion
 
     // region Constructors
@@ -79,7 +86,7 @@ public class Song implements Serializable {
     public Song(UUID id, String name, List<Artist> artists, String genre, int durationInSeconds, String album) {
         this.id = id;
         this.name = name;
-        this.artists = artists;
+        this.artists = new SnapshotList<>(artists);
         this.genre = genre;
         this.durationInSeconds = durationInSeconds;
         this.album = album;
@@ -100,7 +107,7 @@ public class Song implements Serializable {
         this.genre = genre;
         this.durationInSeconds = durationInSeconds;
         this.album = album;
-        this.artists = new ArrayList<>();
+        this.artists = new SnapshotList<>();
     }
 
     // endregion
@@ -109,8 +116,13 @@ public class Song implements Serializable {
 
     // region Getters
 
+    /**
+     * Returns a read-only snapshot of the artists of the song, taken without copying them.
+     *
+     * @return A read-only list of the artists of the song.
+     */
     public List<Artist> getArtists() {
-        return new ArrayList<>(artists);
+        return artists.snapshot();
     }
 
     public UUID getId() {
@@ -121,10 +133,33 @@ public class Song implements Serializable {
         return name;
     }
 
+    public String getGenre() {
+        return genre;
+    }
+
+    public int getDurationInSeconds() {
+        return durationInSeconds;
+    }
+
+    public String getAlbum() {
+        return album;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
     // endregion
 
     // region Methods
 
+    /**
+     * Marks the song as deleted from the catalog, so it can no longer be added to a playlist.
+     */
+    public void markDeleted() {
+        this.deleted = true;
+    }
+
     /**
      * Adds a list of artists to the song.
      *
@@ -192,7 +227,17 @@ public class Song implements Serializable {
      * @return A Song object with the provided id and name set as "Unknown Song", genre as "Unknown Genre", duration as 0, and album as "Unknown Album".
      */
     public static Song getUnknownSong(String songId) {
-        return new Song(UUID.fromString(songId),
+        return getUnknownSong(UUID.fromString(songId));
+    }
+
+    /**
+     * Returns a Song object with unknown data. This method is used when the song is not found in the file.
+     *
+     * @param songId The id of the unknown song.
+     * @return A Song object with the provided id and name set as "Unknown Song", genre as "Unknown Genre", duration as 0, and album as "Unknown Album".
+     */
+    public static Song getUnknownSong(UUID songId) {
+        return new Song(songId,
             "Unknown Song",
             List.of(Artist.GetUnknownArtist(songId)),
             "Unknown Genre",
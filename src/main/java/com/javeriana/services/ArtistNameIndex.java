@@ -0,0 +1,412 @@
+package com.javeriana.services;
+
+import com.javeriana.models.Artist;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ArtistNameIndex class is a trigram index over the names of artists, used to find the artists whose names are similar to a given one.
+ *
+ * The class does the following:
+ * 1. Splits each name into words the same way the full-text index of songs does: lowercased, without accents, and keeping only the runs
+ *    of letters and digits. "Ed Sheeran", "ed sheeran" and "Ed  Sheerán" all give the words "ed" and "sheeran".
+ * 2. Takes the trigrams of each word, the runs of three characters of the word padded with two spaces before and one after, so the start
+ *    of a word counts more than its middle. "ed" gives "  e", " ed" and "ed ". Each trigram is packed into a long, and each artist gets a
+ *    document number when it is added.
+ * 3. Keeps, for each trigram, the document numbers of the artists whose names contain it, in ascending order, in a primitive hash table.
+ * 4. Measures the similarity of two names as the number of trigrams they share divided by the number of trigrams of either of them,
+ *    which is 1 for names with the same words and 0 for names with no trigram in common.
+ * 5. Answers a query with a threshold without reading every posting list of the query. A name that reaches the threshold must share at least
+ *    a given number of trigrams with the query, so it is in at least one of the shortest posting lists of the query; only the artists of
+ *    those lists are candidates, and each candidate is then looked up in the other lists. Candidates with too few or too many trigrams to
+ *    reach the threshold are skipped without any lookup.
+ * 6. Is updated artist by artist. A deleted artist is only marked as deleted and skipped by the searches; when deleted artists outnumber
+ *    the live ones, the index is rebuilt from the live artists.
+ *
+ * The index is owned by the ArtistService class, which is the only class that changes it. It is not synchronized.
+ */
+final class ArtistNameIndex {
+
+    /**
+     * The minimum number of deleted artists before the index is compacted.
+     */
+    private static final int MIN_DELETED_ARTISTS_TO_COMPACT = 1024;
+
+    /**
+     * The posting lists of the trigrams.
+     */
+    private TrigramTable postingsByTrigram = new TrigramTable();
+
+    /**
+     * The artists by their document numbers. Deleted artists are null.
+     */
+    private Artist[] documents = new Artist[1024];
+
+    /**
+     * The number of distinct trigrams of the name of each artist, by document number.
+     */
+    private int[] trigramCounts = new int[1024];
+
+    /**
+     * The document numbers of the artists in the index.
+     */
+    private final Map<Artist, Integer> documentNumbers = new IdentityHashMap<>();
+
+    /**
+     * The number of document numbers given so far, and the number of them that belong to deleted artists.
+     */
+    private int documentCount;
+    private int deletedCount;
+
+    /**
+     * Adds an artist to the index. Adding an artist that is already in the index has no effect.
+     *
+     * @param artist The artist to add.
+     */
+    void add(Artist artist) {
+
+        if (documentNumbers.containsKey(artist)) {
+            return;
+        }
+
+        if (documentCount == documents.length) {
+            documents = Arrays.copyOf(documents, documents.length * 2);
+            trigramCounts = Arrays.copyOf(trigramCounts, trigramCounts.length * 2);
+        }
+
+        long[] trigrams = trigrams(artist.getName());
+
+        int document = documentCount++;
+        documents[document] = artist;
+        trigramCounts[document] = trigrams.length;
+        documentNumbers.put(artist, document);
+
+        for (long trigram : trigrams) {
+            postingsByTrigram.getOrCreate(trigram).add(document);
+        }
+    }
+
+    /**
+     * Removes an artist from the index. Removing an artist that is not in the index has no effect.
+     *
+     * @param artist The artist to remove.
+     */
+    void remove(Artist artist) {
+
+        Integer document = documentNumbers.remove(artist);
+
+        if (document == null) {
+            return;
+        }
+
+        documents[document] = null;
+        deletedCount++;
+
+        if (deletedCount >= MIN_DELETED_ARTISTS_TO_COMPACT && deletedCount > documentCount - deletedCount) {
+            compact();
+        }
+    }
+
+    /**
+     * Returns the artists whose names are at least as similar to the given name as the threshold, the most similar first.
+     *
+     * The method does the following:
+     * 1. Takes the trigrams of the name. If it has none, because it has no letters or digits, it returns an empty list.
+     * 2. Works out the number of trigrams a name must share with the query to reach the threshold, and sorts the posting lists of the
+     *    query from the shortest to the longest.
+     * 3. Takes as candidates the artists of the shortest lists, as many lists as it takes for every artist that reaches the threshold
+     *    to be in one of them, and counts in how many of those lists each candidate is.
+     * 4. Skips the candidates whose number of trigrams is too far from the number of trigrams of the query, looks the others up in the
+     *    remaining lists, stopping as soon as they can no longer reach the threshold, and keeps the ones that reach it.
+     *
+     * @param name The name to compare with.
+     * @param threshold The minimum similarity, greater than 0 and at most 1.
+     * @param limit The maximum number of artists to return.
+     * @return The artists that reach the threshold, the most similar first.
+     */
+    List<Artist> search(String name, double threshold, int limit) {
+
+        long[] queryTrigrams = trigrams(name);
+
+        if (queryTrigrams.length == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        int queryCount = queryTrigrams.length;
+
+        // A name that shares fewer trigrams than this with the query cannot reach the threshold, even if it has no other trigram
+        int minShared = Math.max(1, (int) Math.ceil(threshold * queryCount - 1e-9));
+        // Nor can a name with fewer trigrams than the minimum shared, or with so many that the shared ones are too small a part of them
+        double maxCandidateCount = queryCount / threshold + 1e-9;
+
+        Postings[] postingLists = new Postings[queryCount];
+        for (int i = 0; i < queryCount; i++) {
+            Postings postings = postingsByTrigram.get(queryTrigrams[i]);
+            postingLists[i] = postings != null ? postings : Postings.EMPTY;
+        }
+        Arrays.sort(postingLists, Comparator.comparingInt(postings -> postings.size));
+
+        // Every name that shares minShared trigrams with the query is in at least one of the first candidateListCount lists
+        int candidateListCount = queryCount - minShared + 1;
+
+        int candidateCount = 0;
+        for (int i = 0; i < candidateListCount; i++) {
+            candidateCount += postingLists[i].size;
+        }
+        int[] candidates = new int[candidateCount];
+        candidateCount = 0;
+        for (int i = 0; i < candidateListCount; i++) {
+            System.arraycopy(postingLists[i].documents, 0, candidates, candidateCount, postingLists[i].size);
+            candidateCount += postingLists[i].size;
+        }
+        Arrays.sort(candidates);
+
+        List<Match> matches = new ArrayList<>();
+
+        int end;
+        for (int start = 0; start < candidateCount; start = end) {
+            int document = candidates[start];
+
+            // The copies of the same document are next to each other, and their number is the number of shortest lists it is in
+            end = start + 1;
+            while (end < candidateCount && candidates[end] == document) {
+                end++;
+            }
+
+            int documentTrigramCount = trigramCounts[document];
+            if (documents[document] == null || documentTrigramCount < minShared || documentTrigramCount > maxCandidateCount) {
+                continue;
+            }
+
+            int shared = end - start;
+            for (int i = candidateListCount; i < queryCount && shared + queryCount - i >= minShared; i++) {
+                if (postingLists[i].contains(document)) {
+                    shared++;
+                }
+            }
+
+            double similarity = (double) shared / (queryCount + documentTrigramCount - shared);
+            if (similarity >= threshold - 1e-9) {
+                matches.add(new Match(documents[document], similarity));
+            }
+        }
+
+        matches.sort(Comparator.comparingDouble(Match::similarity).reversed());
+
+        List<Artist> artists = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            artists.add(matches.get(i).artist());
+        }
+
+        return artists;
+    }
+
+    /**
+     * Returns the similarity of two names, from 0 for names with no trigram in common to 1 for names with the same words.
+     *
+     * @param name The first name.
+     * @param otherName The second name.
+     * @return The number of trigrams the names share divided by the number of trigrams of either of them.
+     */
+    static double similarity(String name, String otherName) {
+
+        long[] trigrams = trigrams(name);
+        long[] otherTrigrams = trigrams(otherName);
+
+        if (trigrams.length == 0 || otherTrigrams.length == 0) {
+            return 0;
+        }
+
+        int shared = 0;
+        for (int i = 0, j = 0; i < trigrams.length && j < otherTrigrams.length; ) {
+            if (trigrams[i] == otherTrigrams[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (trigrams[i] < otherTrigrams[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+
+        return (double) shared / (trigrams.length + otherTrigrams.length - shared);
+    }
+
+    //region trigrams
+
+    /**
+     * Returns the distinct trigrams of the words of a name, each packed into a long with one character every 16 bits, in ascending order.
+     */
+    static long[] trigrams(String name) {
+
+        List<String> words = SongSearchIndex.tokenize(name);
+
+        int trigramCount = 0;
+        for (String word : words) {
+            trigramCount += word.length() + 1;
+        }
+
+        long[] trigrams = new long[trigramCount];
+        trigramCount = 0;
+        for (String word : words) {
+            // The word is read as if it had two spaces before it and one after it
+            long trigram = pack(' ', ' ');
+            for (int i = 0; i <= word.length(); i++) {
+                char character = i < word.length() ? word.charAt(i) : ' ';
+                trigram = ((trigram << 16) | character) & 0xFFFFFFFFFFFFL;
+                trigrams[trigramCount++] = trigram;
+            }
+        }
+
+        Arrays.sort(trigrams);
+
+        int distinctCount = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinctCount++] = trigrams[i];
+            }
+        }
+
+        return distinctCount == trigrams.length ? trigrams : Arrays.copyOf(trigrams, distinctCount);
+    }
+
+    private static long pack(char first, char second) {
+        return ((long) first << 16) | second;
+    }
+
+    //endregion
+
+    //region maintenance
+
+    /**
+     * Rebuilds the index from the live artists, in document number order, dropping the deleted ones.
+     */
+    private void compact() {
+
+        Artist[] liveArtists = new Artist[documentCount - deletedCount];
+        int liveCount = 0;
+        for (int i = 0; i < documentCount; i++) {
+            if (documents[i] != null) {
+                liveArtists[liveCount++] = documents[i];
+            }
+        }
+
+        postingsByTrigram = new TrigramTable();
+        documentNumbers.clear();
+        documents = new Artist[Math.max(1024, liveArtists.length * 2)];
+        trigramCounts = new int[documents.length];
+        documentCount = 0;
+        deletedCount = 0;
+
+        for (Artist artist : liveArtists) {
+            add(artist);
+        }
+    }
+
+    //endregion
+
+    //region posting lists
+
+    private record Match(Artist artist, double similarity) {
+    }
+
+    /**
+     * The document numbers of the artists whose names contain a trigram, in ascending order.
+     */
+    private static final class Postings {
+
+        private static final Postings EMPTY = new Postings();
+
+        private int[] documents = new int[2];
+        private int size;
+
+        private void add(int document) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+            }
+            documents[size++] = document;
+        }
+
+        private boolean contains(int document) {
+            return Arrays.binarySearch(documents, 0, size, document) >= 0;
+        }
+    }
+
+    /**
+     * A hash table from packed trigrams to their posting lists, using open addressing with linear probing. No trigram is 0, since a trigram
+     * always has a letter or a digit, so 0 marks an empty slot. Trigrams are never removed from the table; compacting the index replaces it.
+     */
+    private static final class TrigramTable {
+
+        private long[] keys = new long[1024];
+        private Postings[] values = new Postings[1024];
+        private int size;
+
+        private Postings get(long trigram) {
+            int mask = keys.length - 1;
+            for (int slot = slot(trigram, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == trigram) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        private Postings getOrCreate(long trigram) {
+
+            int mask = keys.length - 1;
+            int slot = slot(trigram, mask);
+            for (; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == trigram) {
+                    return values[slot];
+                }
+            }
+
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                return getOrCreate(trigram);
+            }
+
+            Postings postings = new Postings();
+            keys[slot] = trigram;
+            values[slot] = postings;
+            size++;
+            return postings;
+        }
+
+        private void grow() {
+
+            long[] oldKeys = keys;
+            Postings[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Postings[oldValues.length * 2];
+
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slot(oldKeys[i], mask);
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        /**
+         * Spreads the bits of the trigram before masking, since the low bits of a trigram are just its last character.
+         */
+        private static int slot(long trigram, int mask) {
+            long hash = trigram * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+
+    //endregion
+}
@@ -1,9 +1,15 @@
 package com.javeriana.services;
 
+import com.javeriana.exceptions.AlreadyExistsException;
 import com.javeriana.exceptions.NotFoundException;
 import com.javeriana.models.Artist;
+import com.javeriana.models.Page;
+import com.javeriana.utils.SnapshotList;
+import com.javeriana.utils.UUIDIndex;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -15,113 +21,164 @@ import java.util.UUID;
  *
  * This class provides methods for:
  * - Adding new artists
- * - Deleting artists
+ * - Deleting artists, one at a time or many as a single change
  * - Finding an artist by their ID or name
- * - Retrieving a list of all artists, a list of the names of all artists, or a list of artists by their IDs
+ * - Retrieving a list of all artists, a page of the artists, or a list of artists by their IDs
  * - Replacing the current list of artists with a given list
- * - Creating a map where the keys are artist IDs and the values are Artist objects
+ * - Getting a read-only, live map where the keys are artist IDs and the values are Artist objects
+ * - Finding the artists whose names are similar to a given name, such as "Ed Sheeran" and "ed sheeran"
  *
- * This class uses a list to store artists. It also uses several methods for validating artist names and IDs.
+ * This class uses a list to store artists, and an index of the same artists by their IDs, which is updated whenever the list changes.
+ * Searches by name are answered from an ArtistNameIndex, a trigram index over the names of the artists. It is built the first time a name
+ * is searched for, and then updated artist by artist.
+ * It also uses several methods for validating artist names and IDs.
+ *
+ * The service can be used by several threads at the same time. Its list and indexes are guarded by a ServiceLock, and every public method
+ * is linearizable: it takes effect at a single point between its call and its return. The changes (loadArtists, addArtist, deleteArtist, deleteArtists)
+ * take the write lock. searchArtistById, and lookups through the map of getMapOfArtistsById, are optimistic reads, which do not lock unless
+ * an artist is added or deleted while they run. The other reads (getArtists, getArtistsPage, searchArtistByName, searchArtistsBySimilarName,
+ * getArtistsByIds) take the read lock, so they see the artists as of a single point even when they read many of them.
+ *
+ * Every change publishes a new version of the artists to the CatalogVersions object of the service, so a reader that pins a version of the
+ * catalog, such as a report, reads the artists as they were at that version without taking the lock of the service.
  */
 public class ArtistService {
 
     // region Attributes
-    private List<Artist> artists ;
+    private final SnapshotList<Artist> artists;
+
+    // The artists of the list by their IDs, with the number of each artist in the list, by which it is removed from the list
+    private final UUIDIndex<Artist> artistsIndex;
+
+    // The trigram index of the names of the artists of the list, or null until the first search by name after the artists are loaded
+    private ArtistNameIndex nameIndex;
+
+    // The lock that guards the list and the indexes above
+    private final ServiceLock lock;
+
+    // The read-only map view of the index of artists by ID, whose lookups are optimistic reads
+    private final Map<UUID, Artist> artistsById;
+
+    // The versions of the catalog, to which the changes to the artists are published
+    private final CatalogVersions versions;
 
     // endregion
 
     // region Constructors
     /**
-     * Constructs an ArtistService object.
-     * Initializes the list of artists as an empty ArrayList.
+     * Constructs an ArtistService object with its own versions of the catalog.
+     * Initializes the list of artists as an empty numbered SnapshotList.
      */
     public ArtistService() {
-        this.artists = new ArrayList<>();
+        this(new CatalogVersions());
+    }
+
+    /**
+     * Constructs an ArtistService object that publishes its changes to the given versions of the catalog.
+     * Initializes the list of artists as an empty numbered SnapshotList.
+     *
+     * @param versions The versions of the catalog, shared with the other services.
+     */
+    public ArtistService(CatalogVersions versions) {
+        this.artists = SnapshotList.numbered();
+        this.artistsIndex = UUIDIndex.numbered();
+        this.lock = new ServiceLock();
+        this.artistsById = lock.guard(artistsIndex.asMap());
+        this.versions = versions;
     }
 
     // endregion
 
     // region getters
     /**
-     * Returns a list of all artists.
+     * Returns a read-only snapshot of all artists. The snapshot is taken without copying the artists, and later changes to the artists
+     * do not affect it.
      *
-     * @return A list of all Artist objects.
+     * @return A read-only list of all Artist objects.
      */
     public List<Artist> getArtists() {
-        return new ArrayList<>(artists);
+        long stamp = lock.readLock();
+        try {
+            return artists.snapshot();
+        } finally {
+            lock.unlock(stamp);
+        }
     }
     // endregion
 
     // region Methods
     /**
-     * Loads a list of artists into the service, replacing any existing artists.
+     * Loads a list of artists into the service, replacing any existing artists, and rebuilds the index of artists by ID.
+     * If two artists have the same ID, the first one is indexed, as a search over the list would find.
      *
      * @param artists The list of artists to be loaded into the service.
      */
     public void loadArtists(List<Artist> artists) {
-        this.artists.clear();
-        this.artists.addAll(artists);
+        long stamp = lock.writeLock();
+        try {
+            this.artists.clear();
+            this.artists.addAll(artists);
+
+            nameIndex = null;
+
+            artistsIndex.clear();
+            artistsIndex.ensureCapacity(artists.size());
+            for (int i = 0; i < this.artists.size(); i++) {
+                Artist artist = this.artists.get(i);
+                artistsIndex.putIfAbsent(artist.getId(), artist, this.artists.numberAt(i));
+            }
+
+            publishArtists();
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
     /**
-     * This method is responsible for creating a map of artists by their IDs. It creates a new `HashMap` where the keys are artist IDs (as strings)
-     * and the values are `Artist` objects. It iterates over the list of artists, and for each artist, it adds an entry to the map where the key is
-     * the artist's ID (converted to a string) and the value is the artist object. Finally, it returns the created map.
-     *
-     * Here's a breakdown of what each part of the method does:
-     * 1. It creates a new `HashMap` where the keys are artist IDs (as strings) and the values are `Artist` objects.
-     * 2. It iterates over the list of artists.
-     * 3. For each artist, it adds an entry to the map where the key is the artist's ID (converted to a string) and the value is the artist object.
+     * This method is responsible for getting a map of artists by their IDs. It returns a read-only view of the index of artists by ID,
+     * so no map is built and nothing is copied. The view is live: artists added or deleted afterwards are seen through it.
+     * Each lookup through the view is an optimistic read, like searchArtistById, so the view can be used while other threads change the artists.
      *
-     * @return a map where the key is the artist's ID and the value is the Artist object.
+     * @return a read-only map where the key is the artist's ID and the value is the Artist object.
      */
-    public Map<String, Artist> getMapOfArtistsById() {
-        Map <String, Artist> artistsById = new HashMap<>();
-
-        for (Artist artist : artists) {
-            artistsById.put(artist.getId().toString(), artist);
-        }
+    public Map<UUID, Artist> getMapOfArtistsById() {
         return artistsById;
     }
 
     /**
-     * This method is responsible for getting a list of artist names. It creates a new `ArrayList` of strings to store the artist names,
-     * iterates over the list of artists, and for each artist, it adds the artist's name to the list. The `toString` method of the `Artist` class
-     * is used to get the artist's name. Finally, it returns the created list of artist names.
-     *
-     * Here's a breakdown of what each part of the method does:
-     * 1. It creates a new `ArrayList` of strings to store the artist names.
-     * 2. It iterates over the list of artists.
-     * 3. For each artist, it adds the artist's name to the list.
+     * Returns a page of the list of artists. Only the artists of the page are read, so listing the artists page by page
+     * costs in proportion to the artists shown.
      *
-     * @return a list of artist names.
+     * @param cursor The cursor of the page, as returned with the previous page, or null for the first page.
+     * @param pageSize The maximum number of artists of the page.
+     * @return The page of artists, in the order of the list.
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is not valid.
      */
-    public List<String> getArtistsToString() {
-        List<String> artistsNames = new ArrayList<>();
-
-        for (Artist artist : artists) {
-            artistsNames.add(artist.toString());
+    public Page<Artist> getArtistsPage(String cursor, int pageSize) {
+        long stamp = lock.readLock();
+        try {
+            return PageCursor.page(artists::get, artists::numberAt, artists.size(), cursor, pageSize);
+        } finally {
+            lock.unlock(stamp);
         }
-        return artistsNames;
     }
 
     /**
-     * This method is responsible for searching an artist by their ID. It takes in a parameter: the ID of the artist, which it converts from a string to a `UUID`.
-     * It then iterates over the list of artists, and for each artist, it checks if the artist's ID matches the provided ID. If it does, it returns the artist.
-     * If no artist is found with the provided ID, it returns null.
+     * This method is responsible for searching an artist by their ID. It takes in a parameter: the ID of the artist,
+     * and looks it up in the index of artists by ID. If no artist is found with the provided ID, it returns null.
      *
      * Here's a breakdown of what each part of the method does:
      * 1. It takes in a parameter: the ID of the artist.
-     * 2. It converts the artist ID from a string to a `UUID`.
-     * 3. It iterates over the list of artists.
-     * 4. For each artist, it checks if the artist's ID matches the provided ID. If it does, it returns the artist.
-     * 5. If no artist is found with the provided ID, it returns null.
+     * 2. It looks the ID up in the index of artists by ID, which reads the digits of the ID straight from the string without creating a `UUID`.
+     *    The lookup is an optimistic read: it only takes the read lock if an artist was added or deleted while it ran.
+     * 3. If no artist is found with the provided ID, it returns null.
      *
      * @param artistId The ID of the artist to search for.
      * @return The Artist object if found, null otherwise.
+     * @throws IllegalArgumentException If the ID is not a valid UUID.
      */
     public Artist searchArtistById(String artistId) {
-        return Artist.GetUnknownArtist(UUID.randomUUID().toString());
+        return lock.readOptimistically(() -> artistsIndex.get(artistId));
     }
 
     /**
@@ -133,38 +190,158 @@ public class ArtistService {
      * 1. It takes in a parameter: the name of the artist.
      * 2. It checks if the provided name is null or empty. If it is, it throws an `IllegalArgumentException`.
      * 3. It creates a new `Artist` object with the provided name.
-     * 4. It adds the new artist to the list of artists.
+     * 4. It adds the new artist to the list of artists, to the index of artists by ID and to the index of names, and returns it.
      *
      * @param name The name of the artist to add.
+     * @return The new artist.
      * @throws IllegalArgumentException If the name is null or empty.
      */
-    public void addArtist(String name) {
+    public Artist addArtist(String name) {
 
         if (name == null || name.isEmpty()) {
             throw new IllegalArgumentException("El nombre del artista no puede ser nulo o vacío");
         }
 
         Artist artist = new Artist(name);
-        artists.add(artist);
+
+        long stamp = lock.writeLock();
+        try {
+            artistsIndex.put(artist.getId(), artist, artists.append(artist));
+            if (nameIndex != null) {
+                nameIndex.add(artist);
+            }
+            publishArtists();
+        } finally {
+            lock.unlock(stamp);
+        }
+
+        return artist;
+    }
+
+    /**
+     * Adds a new artist with the given name, unless an artist with the same or a similar name exists, so "ed sheeran" is not added
+     * next to "Ed Sheeran".
+     *
+     * The method does the following:
+     * 1. Checks if the provided name is null or empty, and if the threshold is greater than 0 and at most 1. If not, it throws an
+     *    `IllegalArgumentException`.
+     * 2. Takes the write lock, and builds the index of names if it has not been built since the artists were loaded.
+     * 3. Looks for an artist with exactly the provided name, as searchArtistByName does. If there is one, it throws an `AlreadyExistsException`.
+     * 4. Looks for the artist whose name is the most similar to the provided name, as searchArtistsBySimilarName does. If its similarity
+     *    reaches the threshold, it throws an `AlreadyExistsException` with the name of that artist.
+     * 5. Adds the new artist to the list of artists, to the index of artists by ID and to the index of names, and returns it.
+     * The names are checked under the same lock as the addition, so two similar artists added at once cannot both pass the check.
+     *
+     * @param name The name of the artist to add.
+     * @param similarityThreshold The similarity from which an existing name is taken as the same name, greater than 0 and at most 1.
+     * @return The new artist.
+     * @throws AlreadyExistsException If an artist with the same or a similar name exists.
+     * @throws IllegalArgumentException If the name is null or empty, or the threshold is not greater than 0 and at most 1.
+     */
+    public Artist addArtist(String name, double similarityThreshold) throws AlreadyExistsException {
+
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("El nombre del artista no puede ser nulo o vacío");
+        }
+
+        if (!(similarityThreshold > 0 && similarityThreshold <= 1)) {
+            throw new IllegalArgumentException("El umbral de similitud debe ser mayor a 0 y menor o igual a 1");
+        }
+
+        Artist artist = new Artist(name);
+
+        long stamp = lock.writeLock();
+        try {
+            if (nameIndex == null) {
+                buildNameIndex();
+            }
+
+            if (findArtistByName(name) != null) {
+                throw new AlreadyExistsException("El artista con nombre " + name + " ya existe");
+            }
+
+            List<Artist> similarArtists = nameIndex.search(name, similarityThreshold, 1);
+
+            if (!similarArtists.isEmpty()) {
+                Artist similarArtist = similarArtists.get(0);
+                throw new AlreadyExistsException("El artista con nombre " + name + " es muy parecido al artista "
+                    + similarArtist.getName() + " con id " + similarArtist.getId() + ", que ya existe");
+            }
+
+            artistsIndex.put(artist.getId(), artist, artists.append(artist));
+            nameIndex.add(artist);
+            publishArtists();
+        } finally {
+            lock.unlock(stamp);
+        }
+
+        return artist;
+    }
+
+    /**
+     * Adds an artist that already has an ID, such as an artist restored from the mutation journal.
+     * If an artist with the same ID already exists, nothing is added, so restoring the same artist twice has no effect.
+     *
+     * @param artist The artist to add.
+     */
+    public void addArtist(Artist artist) {
+        long stamp = lock.writeLock();
+        try {
+            if (!artistsIndex.containsKey(artist.getId())) {
+                artistsIndex.put(artist.getId(), artist, artists.append(artist));
+                if (nameIndex != null) {
+                    nameIndex.add(artist);
+                }
+                publishArtists();
+            }
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
     /**
      * This method is responsible for searching an artist by their name. It takes in a parameter: the name of the artist,
-     * then iterates over the list of artists, and for each artist, it checks if the artist's name matches the provided name.
-     * If it does, it returns the artist. If no artist is found with the provided name, it returns null.
+     * and looks for an artist with exactly that name among the artists whose names have the same words, found in the index of names.
+     * If no artist is found with the provided name, it returns null.
      *
      * Here's a breakdown of what each part of the method does:
      * 1. It takes in a parameter: the name of the artist.
-     * 2. It iterates over the list of artists.
-     * 3. For each artist, it checks if the artist's name matches the provided name. If it does, it returns the artist.
-     * 4. If no artist is found with the provided name, it returns null.
+     * 2. If the name has no letters or digits, the index of names cannot tell names apart, so it iterates over the list of artists.
+     * 3. Otherwise, it searches the index of names for the artists whose names have the same words, whatever their case and accents.
+     * 4. For each of them, it checks if the artist's name matches the provided name. If it does, it returns the artist.
+     * 5. If no artist is found with the provided name, it returns null.
      *
      * @param name The name of the artist to search for.
      * @return The Artist object if found, null otherwise.
      */
     public Artist searchArtistByName(String name) {
 
-        for (Artist artist : artists) {
+        if (ArtistNameIndex.trigrams(name).length == 0) {
+            long stamp = lock.readLock();
+            try {
+                return findArtistByName(name);
+            } finally {
+                lock.unlock(stamp);
+            }
+        }
+
+        long stamp = lock.readLockBuilding(() -> nameIndex != null, this::buildNameIndex);
+        try {
+            return findArtistByName(name);
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Returns the artist with exactly the given name, as described in searchArtistByName. It is called while holding the lock, with the
+     * index of names built if the name has letters or digits.
+     */
+    private Artist findArtistByName(String name) {
+
+        Iterable<Artist> candidates = ArtistNameIndex.trigrams(name).length == 0 ? artists : nameIndex.search(name, 1, Integer.MAX_VALUE);
+
+        for (Artist artist : candidates) {
             if (artist.getName().equals(name)) {
                 return artist;
             }
@@ -173,6 +350,36 @@ public class ArtistService {
         return null;
     }
 
+    /**
+     * This method is responsible for searching the artists whose names are similar to a given name. The similarity of two names is the
+     * number of trigrams, runs of three characters, that their words share, divided by the number of trigrams of either name.
+     * Case and accents are ignored, so "Ed Sheeran" and "ed sheeran" have a similarity of 1, and "Ed Sheeran" and "Ed Sheran" of 0.75.
+     *
+     * Here's a breakdown of what each part of the method does:
+     * 1. It checks that the threshold is greater than 0 and at most 1. If it is not, it throws an `IllegalArgumentException`.
+     * 2. It builds the index of names from the list of artists if it has not been built since the artists were loaded, under the write lock.
+     * 3. It searches the index under the read lock, which only reads the artists that share enough trigrams with the name to reach the threshold.
+     *
+     * @param name The name to compare with.
+     * @param threshold The minimum similarity of the artists to return, greater than 0 and at most 1.
+     * @param limit The maximum number of artists to return.
+     * @return A list of at most limit artists, the most similar first, or an empty list if the name has no letters or digits.
+     * @throws IllegalArgumentException If the threshold is not greater than 0 and at most 1.
+     */
+    public List<Artist> searchArtistsBySimilarName(String name, double threshold, int limit) {
+
+        if (!(threshold > 0 && threshold <= 1)) {
+            throw new IllegalArgumentException("El umbral de similitud debe ser mayor a 0 y menor o igual a 1");
+        }
+
+        long stamp = lock.readLockBuilding(() -> nameIndex != null, this::buildNameIndex);
+        try {
+            return nameIndex.search(name, threshold, limit);
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
     /**
      * This method is responsible for retrieving a list of artists by their IDs. It takes in a parameter: a set of artist IDs,
      * creates a new `ArrayList` of `Artist` objects to store the found artists, and then iterates over the set of artist IDs.
@@ -183,15 +390,34 @@ public class ArtistService {
      * 1. It takes in a parameter: a set of artist IDs.
      * 2. It creates a new `ArrayList` of `Artist` objects to store the found artists.
      * 3. It iterates over the set of artist IDs.
-     * 4. For each ID, it calls the `searchArtistById` method to find the artist with that ID. If the artist is not found, it throws a `NotFoundException`.
+     * 4. For each ID, it looks the artist up in the index of artists by ID. If the artist is not found, it throws a `NotFoundException`.
      * 5. If the artist is found, it adds the artist to the list.
+     * The artists are looked up under a single read lock, so they are all found as of the same point.
      *
      * @param artists A set of artist IDs to search for.
      * @return A list of Artist objects.
      * @throws NotFoundException If an artist with the given ID does not exist.
      */
-    public List<Artist> getArtistsByIds(Set<String> artists)  {
-        return new ArrayList<>();
+    public List<Artist> getArtistsByIds(Set<String> artists) throws NotFoundException {
+
+        List<Artist> artistsFound = new ArrayList<>();
+
+        long stamp = lock.readLock();
+        try {
+            for (String artistId : artists) {
+                Artist artist = artistsIndex.get(artistId);
+
+                if (artist == null) {
+                    throw new NotFoundException("El artista con id " + artistId + " no existe");
+                }
+
+                artistsFound.add(artist);
+            }
+        } finally {
+            lock.unlock(stamp);
+        }
+
+        return artistsFound;
     }
 
     /**
@@ -201,15 +427,127 @@ public class ArtistService {
      *
      * Here's a breakdown of what each part of the method does:
      * 1. It takes in a parameter: the ID of the artist.
-     * 2. It calls the `searchArtistById` method to find the artist with the provided ID.
+     * 2. It takes the write lock and looks the artist up in the index of artists by ID.
      * 3. If the artist is not found, it throws a `NotFoundException`.
-     * 4. If the artist is found, it removes the artist from the list of artists.
+     * 4. If the artist is found, it removes the artist from the list of artists, from the index of artists by ID and from the index of names,
+     *    and marks it as deleted, so it can no longer be followed.
      *
      * @param artistId The ID of the artist to delete.
      * @throws NotFoundException If an artist with the given ID does not exist.
      */
-    public void deleteArtist(String artistId)  {
+    public void deleteArtist(String artistId) throws NotFoundException {
+
+        long stamp = lock.writeLock();
+        try {
+            Artist artist = artistsIndex.get(artistId);
 
+            if (artist == null) {
+                throw new NotFoundException("El artista con id " + artistId + " no existe");
+            }
+
+            artists.removeNumber(artistsIndex.numberOf(artist.getId()));
+            artistsIndex.remove(artist.getId());
+            if (nameIndex != null) {
+                nameIndex.remove(artist);
+            }
+            artist.markDeleted();
+            publishArtists();
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Deletes the artists with the given IDs, as a single change.
+     *
+     * The method does the following:
+     * 1. It takes the write lock and looks every artist up in the index of artists by ID. If any of them is not found, it throws a
+     *    `NotFoundException` before deleting anything.
+     * 2. It removes the artists from the list of artists by the numbers the index of artists by ID keeps for them, in a single pass that
+     *    starts at the first removed artist, so no artist of the list is compared, and from the index of artists by ID and the index of names.
+     * 3. It marks the artists as deleted, so they can no longer be followed.
+     * 4. It publishes a single version of the catalog without the artists.
+     * The songs of the artists and the customers that follow them are not changed: the CascadeDeleteService class deletes them.
+     *
+     * @param artistIds The IDs of the artists to delete. An ID that appears several times deletes the artist once.
+     * @return The deleted artists, in the order of their first ID.
+     * @throws NotFoundException If an artist with one of the given IDs does not exist.
+     * @throws IllegalArgumentException If an ID is not a valid UUID.
+     */
+    public List<Artist> deleteArtists(Collection<String> artistIds) throws NotFoundException {
+        try (CatalogVersions.Commit commit = versions.begin()) {
+            return deleteArtists(artistIds, commit);
+        }
+    }
+
+    /**
+     * Deletes the artists with the given IDs as part of the given commit, such as the one of a cascade delete.
+     * The write lock is taken as deleteArtists does, and handed to the commit, so no other change is made to the artists until the commit
+     * is published.
+     *
+     * @param artistIds The IDs of the artists to delete.
+     * @param commit The commit the deletion is part of.
+     * @return The deleted artists, in the order of their first ID.
+     * @throws NotFoundException If an artist with one of the given IDs does not exist.
+     * @throws IllegalArgumentException If an ID is not a valid UUID.
+     */
+    List<Artist> deleteArtists(Collection<String> artistIds, CatalogVersions.Commit commit) throws NotFoundException {
+
+        long stamp = lock.writeLock();
+        commit.holdUntilPublished(() -> lock.unlock(stamp));
+
+        Set<Artist> artistsToDelete = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Artist> deletedArtists = new ArrayList<>();
+
+        for (String artistId : artistIds) {
+            Artist artist = artistsIndex.get(artistId);
+
+            if (artist == null) {
+                throw new NotFoundException("El artista con id " + artistId + " no existe");
+            }
+
+            if (artistsToDelete.add(artist)) {
+                deletedArtists.add(artist);
+            }
+        }
+
+        if (deletedArtists.isEmpty()) {
+            return deletedArtists;
+        }
+
+        long[] numbers = new long[deletedArtists.size()];
+        for (int i = 0; i < numbers.length; i++) {
+            Artist artist = deletedArtists.get(i);
+            numbers[i] = artistsIndex.numberOf(artist.getId());
+            artistsIndex.remove(artist.getId());
+            if (nameIndex != null) {
+                nameIndex.remove(artist);
+            }
+            artist.markDeleted();
+        }
+        artists.removeNumbers(numbers);
+        commit.artists(artists.snapshot());
+
+        return deletedArtists;
+    }
+
+    /**
+     * Publishes a new version of the catalog with a snapshot of the artists. It is called while holding the write lock, after a change.
+     */
+    private void publishArtists() {
+        try (CatalogVersions.Commit commit = versions.begin()) {
+            commit.artists(artists.snapshot());
+        }
+    }
+
+    /**
+     * Builds the index of the names of the artists from the list of artists. It is called while holding the write lock.
+     */
+    private void buildNameIndex() {
+        nameIndex = new ArtistNameIndex();
+        for (Artist artist : artists) {
+            nameIndex.add(artist);
+        }
     }
 
     // endregion
@@ -0,0 +1,136 @@
+package com.javeriana.services;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * The AtomicFileWriter class replaces the content of a file so that readers, or the application after a crash,
+ * see either the complete old file or the complete new one, never a half-written file.
+ *
+ * The class does the following:
+ * 1. Creates a temporary file in the same directory as the target file.
+ * 2. Lets the caller write the whole content to the temporary file through a FileChannel.
+ * 3. Forces the content to the storage device and renames the temporary file over the target file with an atomic move.
+ *    If the file system does not support atomic moves, it falls back to a regular replacing move.
+ * 4. Forces the directory to the storage device, so the rename itself survives a crash. Until then, the directory may still
+ *    show the old file after a crash, even though the new content is on disk.
+ * 5. Deletes the temporary file if anything fails before the rename, leaving the target file untouched.
+ *
+ * It also forces files and directories written by other means, such as copies, to the storage device (force, forceDirectory).
+ */
+final class AtomicFileWriter {
+
+    /**
+     * The permissions given to a file that did not exist before.
+     */
+    private static final Set<PosixFilePermission> DEFAULT_PERMISSIONS = PosixFilePermissions.fromString("rw-r--r--");
+
+    private AtomicFileWriter() {
+    }
+
+    /**
+     * Writes the content of a file atomically.
+     *
+     * @param target The file to create or replace.
+     * @param contentWriter The code that writes the whole content of the file to the given channel.
+     * @throws IOException If an I/O error occurs writing or renaming the file.
+     */
+    static void write(Path target, ContentWriter contentWriter) throws IOException {
+
+        Path absoluteTarget = target.toAbsolutePath();
+        Path temporaryFile = Files.createTempFile(absoluteTarget.getParent(),
+            absoluteTarget.getFileName().toString(), ".tmp");
+
+        try {
+            copyPermissions(absoluteTarget, temporaryFile);
+
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                contentWriter.write(channel);
+                // Make sure the content is on disk before the new file becomes visible
+                channel.force(true);
+            }
+
+            try {
+                Files.move(temporaryFile, absoluteTarget,
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, absoluteTarget, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporaryFile);
+            throw e;
+        }
+
+        // Make sure the rename is on disk before the caller relies on the new file
+        forceDirectory(absoluteTarget.getParent());
+    }
+
+    /**
+     * Forces the content of a file that was written by other means, such as a copy, to the storage device.
+     *
+     * @param file The file to force.
+     * @throws IOException If an I/O error occurs opening or forcing the file.
+     */
+    static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Forces the entries of a directory, that is, the files created, renamed or deleted in it, to the storage device.
+     * File systems that do not let a directory be opened, such as the ones of Windows, make their renames durable on their own,
+     * so the directory is left alone there.
+     *
+     * @param directory The directory to force.
+     * @throws IOException If an I/O error occurs forcing the directory.
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // The directory cannot be opened on this file system
+        }
+    }
+
+    /**
+     * Gives the temporary file the permissions of the file it replaces, or rw-r--r-- for a new file,
+     * since temporary files are created readable only by their owner. File systems without POSIX permissions are left alone.
+     */
+    private static void copyPermissions(Path target, Path temporaryFile) throws IOException {
+
+        if (!Files.getFileStore(temporaryFile).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            return;
+        }
+
+        Set<PosixFilePermission> permissions = Files.exists(target)
+            ? Files.getPosixFilePermissions(target)
+            : DEFAULT_PERMISSIONS;
+        Files.setPosixFilePermissions(temporaryFile, permissions);
+    }
+
+    /**
+     * The ContentWriter interface writes the content of a file to a channel.
+     */
+    @FunctionalInterface
+    interface ContentWriter {
+
+        /**
+         * Writes the whole content of the file.
+         *
+         * @param channel The channel of the temporary file.
+         * @throws IOException If an I/O error occurs writing to the channel.
+         */
+        void write(FileChannel channel) throws IOException;
+    }
+}
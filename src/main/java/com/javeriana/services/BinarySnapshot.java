@@ -0,0 +1,663 @@
+package com.javeriana.services;
+
+import com.javeriana.models.Artist;
+import com.javeriana.models.Customer;
+import com.javeriana.models.PlayList;
+import com.javeriana.models.Song;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * The BinarySnapshot class reads and writes the .spotify files of the application in a compact binary format,
+ * replacing Java serialization (ObjectOutputStream), which stores class descriptors in the file, is slow to read back,
+ * and runs code from the file while reading it.
+ *
+ * Every file has the following layout. All numbers are big-endian.
+ * 1. Header: the magic number (int), the format version (short), the type of the records (byte) and the number of records (int).
+ * 2. String table: the number of strings (int) followed by the strings. Values that repeat a lot, such as the genre and
+ *    album of the songs, are stored once here and referenced from the records by their position in the table.
+ * 3. Records: each record is its length in bytes (int) followed by its fields. A reader skips any bytes of a record it does not understand,
+ *    so a newer version can append fields to a record without breaking older readers.
+ * 4. Index (since version 2): the offset of every record (long) in file order, then one entry per record sorted by id,
+ *    made of the two longs of the id and the position of the record (int). The file ends with the offset of the index (long)
+ *    and the index magic number (int), so the index can be found without reading the records.
+ *    The index lets the MappedSongCatalog class find a record by position or by id without decoding the rest of the file.
+ *
+ * Strings are stored as their length in bytes (int, -1 for null) followed by their UTF-8 bytes, and UUIDs as their two longs.
+ * References to other entities, such as the artists of a song, are stored as UUIDs and resolved with the maps passed to the read methods.
+ */
+final class BinarySnapshot {
+
+    /**
+     * The first four bytes of every file, "SPTF" in ASCII.
+     */
+    private static final int MAGIC = 0x53505446;
+
+    /**
+     * The version of the format written by this class. Version 1 files, which have no index, can still be read.
+     */
+    private static final short VERSION = 2;
+
+    /**
+     * The last four bytes of a file with an index, "INDX" in ASCII.
+     */
+    private static final int INDEX_MAGIC = 0x494E4458;
+
+    /**
+     * The size of the trailer that locates the index: its offset (long) and the index magic number (int).
+     */
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    /**
+     * The size of an entry of the id index: the two longs of the id and the position of the record (int).
+     */
+    static final int ID_INDEX_ENTRY_SIZE = 2 * Long.BYTES + Integer.BYTES;
+
+    /**
+     * The types of records a file can contain.
+     */
+    private static final byte ARTISTS = 1;
+    static final byte SONGS = 2;
+    private static final byte PLAYLISTS = 3;
+    private static final byte CUSTOMERS = 4;
+
+    /**
+     * The size of the buffer used to write the file.
+     */
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+    private BinarySnapshot() {
+    }
+
+    //region artists
+
+    /**
+     * Writes a list of artists to a file. Each record contains the id and the name of an artist.
+     *
+     * @param file The file to write.
+     * @param artists The artists to write.
+     * @throws IOException If an I/O error occurs writing to the file.
+     */
+    static void writeArtists(Path file, List<Artist> artists) throws IOException {
+        write(file, ARTISTS, new StringTable(), artists, Artist::getId, (artist, record, strings) -> {
+            writeUUID(record, artist.getId());
+            writeString(record, artist.getName());
+        });
+    }
+
+    /**
+     * Reads a list of artists from a file.
+     *
+     * @param file The file to read.
+     * @return The artists, in the order they were written.
+     * @throws IOException If an I/O error occurs reading from the file or the file is not an artists file.
+     */
+    static List<Artist> readArtists(Path file) throws IOException {
+        return read(file, ARTISTS, (record, strings) -> new Artist(readUUID(record), readString(record)));
+    }
+
+    //endregion
+
+    //region songs
+
+    /**
+     * Writes a list of songs to a file. Each record contains the id, the name, the ids of the artists,
+     * the genre and album as positions in the string table, and the duration of a song.
+     *
+     * @param file The file to write.
+     * @param songs The songs to write.
+     * @throws IOException If an I/O error occurs writing to the file.
+     */
+    static void writeSongs(Path file, List<Song> songs) throws IOException {
+
+        StringTable strings = new StringTable();
+        for (Song song : songs) {
+            strings.add(song.getGenre());
+            strings.add(song.getAlbum());
+        }
+
+        write(file, SONGS, strings, songs, Song::getId, (song, record, table) -> {
+            writeUUID(record, song.getId());
+            writeString(record, song.getName());
+
+            List<Artist> artists = song.getArtists();
+            record.writeInt(artists.size());
+            for (Artist artist : artists) {
+                writeUUID(record, artist.getId());
+            }
+
+            record.writeInt(table.indexOf(song.getGenre()));
+            record.writeInt(song.getDurationInSeconds());
+            record.writeInt(table.indexOf(song.getAlbum()));
+        });
+    }
+
+    /**
+     * Reads a list of songs from a file. Artists that are not in the given map are replaced by unknown artists, one per missing ID.
+     *
+     * @param file The file to read.
+     * @param artistsById The known artists by their IDs.
+     * @return The songs, in the order they were written.
+     * @throws IOException If an I/O error occurs reading from the file or the file is not a songs file.
+     */
+    static List<Song> readSongs(Path file, Map<UUID, Artist> artistsById) throws IOException {
+        PlaceholderRegistry placeholders = new PlaceholderRegistry();
+        return read(file, SONGS, (record, strings) -> readSong(record, strings, artistsById, placeholders));
+    }
+
+    /**
+     * Decodes a song from the fields of its record.
+     *
+     * @param record The bytes of the record, starting at its first field.
+     * @param strings The string table of the file.
+     * @param artistsById The known artists by their IDs.
+     * @param placeholders The registry that gives the unknown artist of each missing artist ID.
+     * @return The decoded song.
+     */
+    static Song readSong(ByteBuffer record, String[] strings, Map<UUID, Artist> artistsById, PlaceholderRegistry placeholders) {
+
+        UUID id = readUUID(record);
+        String name = readString(record);
+
+        int artistCount = readCount(record);
+        List<Artist> artists = new ArrayList<>(artistCount);
+        for (int i = 0; i < artistCount; i++) {
+            artists.add(placeholders.resolveArtist(artistsById, readUUID(record)));
+        }
+
+        String genre = strings[record.getInt()];
+        int durationInSeconds = record.getInt();
+        String album = strings[record.getInt()];
+
+        return new Song(id, name, artists, genre, durationInSeconds, album);
+    }
+
+    //endregion
+
+    //region playlists
+
+    /**
+     * Writes a list of playlists to a file. Each record contains the id, the name and the ids of the songs of a playlist.
+     *
+     * @param file The file to write.
+     * @param playLists The playlists to write.
+     * @throws IOException If an I/O error occurs writing to the file.
+     */
+    static void writePlayLists(Path file, List<PlayList> playLists) throws IOException {
+        writePlayLists(file, playLists, PlayList::getSongs);
+    }
+
+    /**
+     * Writes a list of playlists to a file, with the songs of each playlist given by a function, such as the songs of a version
+     * of the catalog, which stay the same while the playlists keep changing.
+     *
+     * @param file The file to write.
+     * @param playLists The playlists to write.
+     * @param songsOf The songs of each playlist.
+     * @throws IOException If an I/O error occurs writing to the file.
+     */
+    static void writePlayLists(Path file, List<PlayList> playLists, Function<PlayList, List<Song>> songsOf) throws IOException {
+        write(file, PLAYLISTS, new StringTable(), playLists, PlayList::getId, (playList, record, strings) -> {
+            writeUUID(record, playList.getId());
+            writeString(record, playList.getName());
+
+            List<Song> songs = songsOf.apply(playList);
+            record.writeInt(songs.size());
+            for (Song song : songs) {
+                writeUUID(record, song.getId());
+            }
+        });
+    }
+
+    /**
+     * Reads a list of playlists from a file. Songs that are not in the given map are replaced by unknown songs, one per missing ID.
+     *
+     * @param file The file to read.
+     * @param songsById The known songs by their IDs.
+     * @return The playlists, in the order they were written.
+     * @throws IOException If an I/O error occurs reading from the file or the file is not a playlists file.
+     */
+    static List<PlayList> readPlayLists(Path file, Map<UUID, Song> songsById) throws IOException {
+        PlaceholderRegistry placeholders = new PlaceholderRegistry();
+        return read(file, PLAYLISTS, (record, strings) -> {
+            UUID id = readUUID(record);
+            String name = readString(record);
+
+            int songCount = readCount(record);
+            List<Song> songs = new ArrayList<>(songCount);
+            for (int i = 0; i < songCount; i++) {
+                songs.add(placeholders.resolveSong(songsById, readUUID(record)));
+            }
+
+            return new PlayList(id, name, songs);
+        });
+    }
+
+    //endregion
+
+    //region customers
+
+    /**
+     * Writes a list of customers to a file. Each record contains the id, the username, the password, the name, the last name and the age
+     * of a customer, followed by the ids of the artists they follow and the ids of their playlists.
+     *
+     * @param file The file to write.
+     * @param customers The customers to write.
+     * @throws IOException If an I/O error occurs writing to the file.
+     */
+    static void writeCustomers(Path file, List<Customer> customers) throws IOException {
+        writeCustomers(file, customers, Customer::getFollowedArtists, Customer::getPlayLists);
+    }
+
+    /**
+     * Writes a list of customers to a file, with the followed artists and the playlists of each customer given by functions, such as
+     * those of a version of the catalog, which stay the same while the customers keep changing.
+     *
+     * @param file The file to write.
+     * @param customers The customers to write.
+     * @param followedArtistsOf The artists followed by each customer.
+     * @param playListsOf The playlists of each customer.
+     * @throws IOException If an I/O error occurs writing to the file.
+     */
+    static void writeCustomers(Path file,
+                               List<Customer> customers,
+                               Function<Customer, List<Artist>> followedArtistsOf,
+                               Function<Customer, List<PlayList>> playListsOf) throws IOException {
+        write(file, CUSTOMERS, new StringTable(), customers, Customer::getId, (customer, record, strings) -> {
+            writeUUID(record, customer.getId());
+            writeString(record, customer.getUsername());
+            writeString(record, customer.getPassword());
+            writeString(record, customer.getName());
+            writeString(record, customer.getLastName());
+            record.writeInt(customer.getAge());
+
+            List<Artist> followedArtists = followedArtistsOf.apply(customer);
+            record.writeInt(followedArtists.size());
+            for (Artist artist : followedArtists) {
+                writeUUID(record, artist.getId());
+            }
+
+            List<PlayList> playLists = playListsOf.apply(customer);
+            record.writeInt(playLists.size());
+            for (PlayList playList : playLists) {
+                writeUUID(record, playList.getId());
+            }
+        });
+    }
+
+    /**
+     * Reads a list of customers from a file. Artists and playlists that are not in the given maps are replaced by unknown ones, one per missing ID.
+     *
+     * @param file The file to read.
+     * @param artistsById The known artists by their IDs.
+     * @param playListsById The known playlists by their IDs.
+     * @return The customers, in the order they were written.
+     * @throws IOException If an I/O error occurs reading from the file or the file is not a customers file.
+     */
+    static List<Customer> readCustomers(Path file,
+                                        Map<UUID, Artist> artistsById,
+                                        Map<UUID, PlayList> playListsById) throws IOException {
+        PlaceholderRegistry placeholders = new PlaceholderRegistry();
+        return read(file, CUSTOMERS, (record, strings) -> {
+            UUID id = readUUID(record);
+            String username = readString(record);
+            String password = readString(record);
+            String name = readString(record);
+            String lastName = readString(record);
+            int age = record.getInt();
+
+            int followedArtistCount = readCount(record);
+            Set<Artist> followedArtists = new LinkedHashSet<>();
+            for (int i = 0; i < followedArtistCount; i++) {
+                followedArtists.add(placeholders.resolveArtist(artistsById, readUUID(record)));
+            }
+
+            int playListCount = readCount(record);
+            List<PlayList> playLists = new ArrayList<>(playListCount);
+            for (int i = 0; i < playListCount; i++) {
+                playLists.add(placeholders.resolvePlayList(playListsById, readUUID(record)));
+            }
+
+            return new Customer(id, username, password, name, lastName, age, followedArtists, playLists);
+        });
+    }
+
+    //endregion
+
+    //region file layout
+
+    /**
+     * Writes a whole file: the header, the string table and one length-prefixed record per item.
+     *
+     * The method does the following:
+     * 1. Opens a temporary file through the AtomicFileWriter class, so the previous file is only replaced once the new one is complete.
+     * 2. Writes the header and the string table.
+     * 3. Writes each item into a reusable record buffer, then writes the length of the record followed by the record.
+     * 4. Writes the index: the offset of every record, the ids sorted with their record positions, and the trailer that locates the index.
+     */
+    private static <T> void write(Path file,
+                                  byte recordType,
+                                  StringTable strings,
+                                  List<T> items,
+                                  Function<T, UUID> idOf,
+                                  RecordWriter<T> recordWriter) throws IOException {
+
+        AtomicFileWriter.write(file, channel -> {
+
+            DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE));
+
+            output.writeInt(MAGIC);
+            output.writeShort(VERSION);
+            output.writeByte(recordType);
+            output.writeInt(items.size());
+
+            output.writeInt(strings.size());
+            for (String value : strings.values()) {
+                writeString(output, value);
+            }
+
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(recordBytes);
+
+            long[] recordOffsets = new long[items.size()];
+            for (int i = 0; i < items.size(); i++) {
+                recordOffsets[i] = output.size();
+                recordBytes.reset();
+                recordWriter.write(items.get(i), record, strings);
+                output.writeInt(recordBytes.size());
+                recordBytes.writeTo(output);
+            }
+
+            writeIndex(output, items, idOf, recordOffsets);
+
+            // Do not close the stream, the channel is closed by the AtomicFileWriter after forcing it to disk
+            output.flush();
+        });
+    }
+
+    /**
+     * Writes the index of the file and the trailer that locates it.
+     */
+    private static <T> void writeIndex(DataOutputStream output,
+                                       List<T> items,
+                                       Function<T, UUID> idOf,
+                                       long[] recordOffsets) throws IOException {
+
+        long indexOffset = output.size();
+        if (indexOffset == Integer.MAX_VALUE) {
+            // DataOutputStream stops counting at Integer.MAX_VALUE, and files this large cannot be mapped anyway
+            throw new IOException("El archivo es demasiado grande para ser indexado");
+        }
+
+        for (long recordOffset : recordOffsets) {
+            output.writeLong(recordOffset);
+        }
+
+        UUID[] ids = new UUID[items.size()];
+        Integer[] positions = new Integer[items.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = idOf.apply(items.get(i));
+            positions[i] = i;
+        }
+        Arrays.sort(positions, (first, second) -> compareIds(ids[first], ids[second]));
+
+        for (int position : positions) {
+            writeUUID(output, ids[position]);
+            output.writeInt(position);
+        }
+
+        output.writeLong(indexOffset);
+        output.writeInt(INDEX_MAGIC);
+    }
+
+    /**
+     * Reads a whole file written by the write method.
+     *
+     * The method does the following:
+     * 1. Maps the file in memory and reads its header and string table with the readHeader method.
+     * 2. Reads each record with the given record reader, then moves to the end of the record, skipping any field the reader did not read.
+     */
+    private static <T> List<T> read(Path file, byte recordType, RecordReader<T> recordReader) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            ByteBuffer buffer = map(file, channel);
+
+            try {
+                Header header = readHeader(file, buffer, recordType);
+
+                List<T> items = new ArrayList<>(header.recordCount());
+                for (int i = 0; i < header.recordCount(); i++) {
+                    int length = readCount(buffer);
+                    int recordEnd = buffer.position() + length;
+                    if (recordEnd > buffer.limit()) {
+                        throw new BufferUnderflowException();
+                    }
+
+                    // The reader only sees the bytes of the record
+                    ByteBuffer record = buffer.slice(buffer.position(), length);
+                    items.add(recordReader.read(record, header.strings()));
+                    buffer.position(recordEnd);
+                }
+
+                return items;
+
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw corrupted(file, e);
+            }
+        }
+    }
+
+    /**
+     * Maps a whole file in memory, read only. The mapping stays valid after the channel is closed.
+     *
+     * @param file The file, used in error messages.
+     * @param channel The channel of the file.
+     * @return The mapped bytes of the file.
+     * @throws IOException If an I/O error occurs or the file is too large to be mapped in a single buffer.
+     */
+    static ByteBuffer map(Path file, FileChannel channel) throws IOException {
+
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("El archivo " + file + " es demasiado grande para ser leído");
+        }
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    /**
+     * Reads the header and the string table at the start of the buffer, and leaves the buffer positioned on the first record.
+     *
+     * The method does the following:
+     * 1. Checks the magic number, the version and the type of the records, throwing an IOException if any of them is not the expected one.
+     * 2. Reads the number of records and the string table.
+     * 3. If the file has an index, reads its offset from the trailer at the end of the file.
+     *
+     * @param file The file, used in error messages.
+     * @param buffer The bytes of the file, positioned at its start.
+     * @param recordType The expected type of the records.
+     * @return The header of the file.
+     * @throws IOException If the file does not have the expected format.
+     */
+    static Header readHeader(Path file, ByteBuffer buffer, byte recordType) throws IOException {
+
+        if (buffer.remaining() < Integer.BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("El archivo " + file + " no tiene el formato de un archivo de Spotify");
+        }
+
+        short version = buffer.getShort();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("La versión " + version + " del archivo " + file + " no es soportada");
+        }
+
+        byte type = buffer.get();
+        if (type != recordType) {
+            throw new IOException("El archivo " + file + " no contiene el tipo de datos esperado");
+        }
+
+        int recordCount = readCount(buffer);
+
+        String[] strings = new String[readCount(buffer)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(buffer);
+        }
+
+        int indexOffset = -1;
+        if (version >= 2) {
+            int trailer = buffer.limit() - TRAILER_SIZE;
+            if (trailer < buffer.position() || buffer.getInt(trailer + Long.BYTES) != INDEX_MAGIC) {
+                throw new BufferUnderflowException();
+            }
+            long offset = buffer.getLong(trailer);
+            if (offset < buffer.position() || offset > trailer) {
+                throw new BufferUnderflowException();
+            }
+            indexOffset = (int) offset;
+        }
+
+        return new Header(recordCount, strings, indexOffset);
+    }
+
+    /**
+     * Compares two ids by their most significant bits and then their least significant bits, both as signed longs.
+     * This is the order of the id index.
+     *
+     * @return A negative number, zero or a positive number if the first id is smaller than, equal to or greater than the second one.
+     */
+    static int compareIds(long firstMostSignificantBits, long firstLeastSignificantBits,
+                          long secondMostSignificantBits, long secondLeastSignificantBits) {
+        int comparison = Long.compare(firstMostSignificantBits, secondMostSignificantBits);
+        return comparison != 0 ? comparison : Long.compare(firstLeastSignificantBits, secondLeastSignificantBits);
+    }
+
+    private static int compareIds(UUID first, UUID second) {
+        return compareIds(first.getMostSignificantBits(), first.getLeastSignificantBits(),
+            second.getMostSignificantBits(), second.getLeastSignificantBits());
+    }
+
+    /**
+     * Creates the exception thrown when a file ends before its expected end or contains impossible values.
+     */
+    static IOException corrupted(Path file, RuntimeException cause) {
+        return new IOException("El archivo " + file + " está incompleto o dañado", cause);
+    }
+
+    private static void writeUUID(DataOutputStream output, UUID id) throws IOException {
+        output.writeLong(id.getMostSignificantBits());
+        output.writeLong(id.getLeastSignificantBits());
+    }
+
+    static UUID readUUID(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a count or a length, which can never be negative.
+     */
+    static int readCount(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+
+    //endregion
+
+    /**
+     * The Header record holds what is read from the start of a file.
+     *
+     * @param recordCount The number of records of the file.
+     * @param strings The string table of the file.
+     * @param indexOffset The offset of the index, or -1 if the file has no index.
+     */
+    record Header(int recordCount, String[] strings, int indexOffset) {
+    }
+
+    /**
+     * The StringTable class assigns a position to each distinct string written to a file.
+     */
+    private static final class StringTable {
+
+        private final Map<String, Integer> positions = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        void add(String value) {
+            positions.computeIfAbsent(value, key -> {
+                values.add(key);
+                return values.size() - 1;
+            });
+        }
+
+        int indexOf(String value) {
+            return positions.get(value);
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        List<String> values() {
+            return values;
+        }
+    }
+
+    /**
+     * The RecordWriter interface writes the fields of an item to its record.
+     *
+     * @param <T> The type of the items.
+     */
+    @FunctionalInterface
+    private interface RecordWriter<T> {
+        void write(T item, DataOutputStream record, StringTable strings) throws IOException;
+    }
+
+    /**
+     * The RecordReader interface creates an item from the fields of its record.
+     *
+     * @param <T> The type of the items.
+     */
+    @FunctionalInterface
+    private interface RecordReader<T> {
+        T read(ByteBuffer record, String[] strings);
+    }
+}
@@ -0,0 +1,193 @@
+package com.javeriana.services;
+
+import com.javeriana.models.Artist;
+import com.javeriana.models.Customer;
+import com.javeriana.models.PlayList;
+import com.javeriana.models.Song;
+import com.javeriana.utils.CSVTokenizer;
+import com.javeriana.utils.StringDictionary;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * The CSVImportPipeline class imports the four CSV files of the application, linking each record as soon as it is parsed.
+ *
+ * Each file refers to the entities of another one by ID: songs to artists, playlists to songs, and customers to artists and playlists.
+ * The files are read in the order given by the references: artists, songs, playlists, then customers. Each file is parsed in parallel
+ * chunks with the ParallelCSVReader, and each line goes through two steps in the worker that reads it:
+ * 1. Parse: Artist.fromCSV or a parser of the FileManagementService class reads the line into a record that keeps the IDs it refers to as raw UUIDs.
+ * 2. Link: the record is turned into the model object right away, replacing each ID with the entity it refers to, or with an unknown
+ *    entity if there is none. Missing IDs are resolved through a single PlaceholderRegistry, so each one becomes one unknown entity shared by all the files.
+ *
+ * No unlinked record outlives the line it was read from, so the memory used by the import is bounded by the imported entities, the
+ * indexes by ID of the files that are still referred to, and the chunks being read, instead of holding every parsed file at once
+ * before linking them.
+ * The result is the same as the one of importing the files one by one, in file order.
+ */
+final class CSVImportPipeline {
+
+    /**
+     * The reader used to parse each file in parallel chunks.
+     */
+    private final ParallelCSVReader parallelCSVReader;
+
+    /**
+     * Constructs a CSVImportPipeline that parses the files with the given reader.
+     *
+     * @param parallelCSVReader The reader used to parse each file in parallel chunks.
+     */
+    CSVImportPipeline(ParallelCSVReader parallelCSVReader) {
+        this.parallelCSVReader = parallelCSVReader;
+    }
+
+    /**
+     * Imports the four files.
+     *
+     * The method does the following:
+     * 1. Parses the artists file and indexes the artists by ID.
+     * 2. Parses the songs file, linking each song to its artists as it is parsed, and indexes the songs by ID.
+     * 3. Parses the playlists file, linking each playlist to its songs as it is parsed, and indexes the playlists by ID. The index of the
+     *    songs is no longer needed after this step.
+     * 4. Parses the customers file, linking each customer to the artists they follow and to their playlists as it is parsed.
+     *
+     * @param separator The separator used in the CSV files.
+     * @param artistsFile The artists CSV file.
+     * @param songsFile The songs CSV file.
+     * @param playListsFile The playlists CSV file.
+     * @param customersFile The customers CSV file.
+     * @return The imported entities.
+     * @throws IOException If an I/O error occurs reading from any of the files.
+     */
+    FileManagementService.ImportedFiles importFiles(String separator,
+                                                    File artistsFile,
+                                                    File songsFile,
+                                                    File playListsFile,
+                                                    File customersFile) throws IOException {
+
+        // A missing ID resolves to the same unknown entity in every file that refers to it
+        PlaceholderRegistry placeholders = new PlaceholderRegistry();
+
+        List<Artist> artists = read(artistsFile, separator, Artist::fromCSV);
+        Map<UUID, Artist> artistsById = indexById(artists, Artist::getId);
+
+        // Songs with the same genre or album share a single String
+        StringDictionary songAttributes = new StringDictionary();
+        List<Song> songs = read(songsFile, separator,
+            tokenizer -> FileManagementService.parseSong(tokenizer, songAttributes).resolve(artistsById, placeholders));
+
+        List<PlayList> playLists = readPlayLists(playListsFile, separator, songs, placeholders);
+        Map<UUID, PlayList> playListsById = indexById(playLists, PlayList::getId);
+
+        List<Customer> customers = read(customersFile, separator,
+            tokenizer -> FileManagementService.parseCustomer(tokenizer).resolve(artistsById, playListsById, placeholders));
+
+        return new FileManagementService.ImportedFiles(artists, songs, playLists, customers);
+    }
+
+    /**
+     * Reads the playlists file, linking each playlist to its songs. The index of the songs by ID only lives during this method.
+     */
+    private List<PlayList> readPlayLists(File playListsFile, String separator, List<Song> songs, PlaceholderRegistry placeholders)
+        throws IOException {
+
+        Map<UUID, Song> songsById = indexById(songs, Song::getId);
+
+        return read(playListsFile, separator,
+            tokenizer -> FileManagementService.parsePlayList(tokenizer).resolve(songsById, placeholders));
+    }
+
+    /**
+     * Reads a file in parallel chunks. Every worker thread reuses its own tokenizer.
+     */
+    private <T> List<T> read(File file, String separator, Function<CSVTokenizer, T> recordParser) throws IOException {
+
+        ThreadLocal<CSVTokenizer> tokenizers = ThreadLocal.withInitial(() -> new CSVTokenizer(separator));
+
+        return parallelCSVReader.read(file, line -> recordParser.apply(tokenizers.get().reset(line)));
+    }
+
+    /**
+     * Indexes the given entities by ID. If two entities have the same ID, the last one is kept, as in a sequential import.
+     */
+    private static <T> Map<UUID, T> indexById(List<T> entities, Function<T, UUID> idGetter) {
+
+        Map<UUID, T> entitiesById = new HashMap<>((int) (entities.size() / 0.75f) + 1);
+        for (T entity : entities) {
+            entitiesById.put(idGetter.apply(entity), entity);
+        }
+
+        return entitiesById;
+    }
+
+    //region unresolved records
+
+    /**
+     * A song as read from the CSV file by FileManagementService.parseSong, with the IDs of its artists.
+     */
+    record UnresolvedSong(UUID id, String name, UUID[] artistIds, String genre, int durationInSeconds, String album) {
+
+        Song resolve(Map<UUID, Artist> artistsById, PlaceholderRegistry placeholders) {
+
+            List<Artist> artists = new ArrayList<>(artistIds.length);
+            for (UUID artistId : artistIds) {
+                artists.add(placeholders.resolveArtist(artistsById, artistId));
+            }
+
+            return new Song(id, name, artists, genre, durationInSeconds, album);
+        }
+    }
+
+    /**
+     * A playlist as read from the CSV file by FileManagementService.parsePlayList, with the IDs of its songs.
+     */
+    record UnresolvedPlayList(UUID id, String name, UUID[] songIds) {
+
+        PlayList resolve(Map<UUID, Song> songsById, PlaceholderRegistry placeholders) {
+
+            List<Song> songs = new ArrayList<>(songIds.length);
+            for (UUID songId : songIds) {
+                songs.add(placeholders.resolveSong(songsById, songId));
+            }
+
+            return new PlayList(id, name, songs);
+        }
+    }
+
+    /**
+     * A customer as read from the CSV file by FileManagementService.parseCustomer, with the IDs of the artists they follow and of their playlists.
+     */
+    record UnresolvedCustomer(UUID id,
+                              String username,
+                              String password,
+                              String name,
+                              String lastName,
+                              int age,
+                              UUID[] followedArtistIds,
+                              UUID[] playListIds) {
+
+        Customer resolve(Map<UUID, Artist> artistsById, Map<UUID, PlayList> playListsById, PlaceholderRegistry placeholders) {
+
+            Set<Artist> followedArtists = new LinkedHashSet<>();
+            for (UUID artistId : followedArtistIds) {
+                followedArtists.add(placeholders.resolveArtist(artistsById, artistId));
+            }
+
+            List<PlayList> playLists = new ArrayList<>(playListIds.length);
+            for (UUID playListId : playListIds) {
+                playLists.add(placeholders.resolvePlayList(playListsById, playListId));
+            }
+
+            return new Customer(id, username, password, name, lastName, age, followedArtists, playLists);
+        }
+    }
+
+    //endregion
+}
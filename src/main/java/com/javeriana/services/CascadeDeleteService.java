@@ -0,0 +1,150 @@
+package com.javeriana.services;
+
+import com.javeriana.exceptions.NotFoundException;
+import com.javeriana.models.Artist;
+import com.javeriana.models.Customer;
+import com.javeriana.models.Song;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The CascadeDeleteService class deletes artists, songs and customers together with everything that refers to them, touching only
+ * the entities that do.
+ *
+ * The references between the entities are kept by the services as reverse indexes, which are updated with every change:
+ * - The songs of each artist are in the index of songs by artist of the SongService class.
+ * - The playlists that contain each song are in the index of playlists by song of the PlayListService class.
+ * - The customers that follow each artist are in the followers by artist of the CustomerService class.
+ * - The playlists of each customer are held by the customer.
+ * So the entities that refer to a deleted one are found without scanning any list.
+ *
+ * The class does the following:
+ * 1. Deletes artists (deleteArtists): the artists, every song of any of them, those songs from every playlist that contains them,
+ *    and the artists from the customers that follow them.
+ * 2. Deletes songs (deleteSongs): the songs, and the songs from every playlist that contains them.
+ * 3. Deletes customers (deleteCustomers): the customers, with their sessions and follows, and their playlists.
+ *
+ * Each method takes any number of entities, and runs as one batch: every service involved is changed once, filtering each of its lists
+ * in a single pass and visiting only the entities that refer to the deleted ones, so deleting thousands of entities costs about as much as
+ * deleting a few, plus the work on the entities they reach.
+ * The batch is a single commit of the versions of the catalog: every service hands its lock to the commit, which keeps it until the whole
+ * batch is published as one version, so a report never sees a deleted entity still referred to, and no other change to those services
+ * interleaves with the batch. The locks of the artists, songs and playlists are taken in that order in every batch. The deletion of
+ * customers takes the lock of the customers before the one of the playlists, and the deletion of artists takes the striped locks of the
+ * customers after it, as the addition of a playlist to a customer does, which is safe because no thread waits for the lock of the customers
+ * or the one of the playlists while holding a striped lock of a customer.
+ * The entities are deleted before the references to them, so they can no longer be found to be referred to again while the batch runs.
+ * Deleted artists are marked as such, so a customer that looked an artist up before the deletion cannot follow it afterwards.
+ * The entities are all checked first, and nothing is deleted if any of them does not exist.
+ */
+public class CascadeDeleteService {
+
+    private final ArtistService artistService;
+    private final SongService songService;
+    private final PlayListService playListService;
+    private final CustomerService customerService;
+    private final CatalogVersions versions;
+
+    /**
+     * Constructor for the CascadeDeleteService class.
+     *
+     * @param artistService The service of the artists.
+     * @param songService The service of the songs.
+     * @param playListService The service of the playlists.
+     * @param customerService The service of the customers.
+     * @param versions The versions of the catalog the services publish their changes to.
+     */
+    public CascadeDeleteService(ArtistService artistService, SongService songService, PlayListService playListService,
+                                CustomerService customerService, CatalogVersions versions) {
+        this.artistService = artistService;
+        this.songService = songService;
+        this.playListService = playListService;
+        this.customerService = customerService;
+        this.versions = versions;
+    }
+
+    /**
+     * Deletes the artists with the given IDs and everything that refers to them.
+     *
+     * The method does the following:
+     * 1. Deletes the artists from the ArtistService, which checks that all of them exist first, and marks them as deleted.
+     * 2. Deletes every song of any of the artists from the SongService, found in its index of songs by artist.
+     * 3. Removes those songs from every playlist that contains them, found in the index of playlists by song.
+     * 4. Makes every customer that follows any of the artists stop following them, found in the followers by artist.
+     * 5. Publishes the four changes as a single version of the catalog, and releases the locks of the services.
+     *
+     * @param artistIds The IDs of the artists to delete.
+     * @throws NotFoundException If an artist with one of the given IDs does not exist. Nothing is deleted in that case.
+     * @throws IllegalArgumentException If an ID is not a valid UUID.
+     */
+    public void deleteArtists(Collection<String> artistIds) throws NotFoundException {
+
+        try (CatalogVersions.Commit commit = versions.begin()) {
+
+            List<Artist> artists = artistService.deleteArtists(artistIds, commit);
+
+            List<Song> songs = songService.deleteSongsByArtists(artists, commit);
+
+            playListService.deleteSongsFromPlayLists(idsOf(songs), commit);
+
+            customerService.unfollowArtists(artists, commit);
+        }
+    }
+
+    /**
+     * Deletes the songs with the given IDs and removes them from every playlist that contains them.
+     *
+     * The method does the following:
+     * 1. Deletes the songs from the SongService, which checks that all of them exist first.
+     * 2. Removes the songs from every playlist that contains them, found in the index of playlists by song.
+     * 3. Publishes both changes as a single version of the catalog, and releases the locks of the services.
+     *
+     * @param songIds The IDs of the songs to delete.
+     * @throws NotFoundException If a song with one of the given IDs does not exist. Nothing is deleted in that case.
+     * @throws IllegalArgumentException If an ID is not a valid UUID.
+     */
+    public void deleteSongs(Collection<String> songIds) throws NotFoundException {
+
+        try (CatalogVersions.Commit commit = versions.begin()) {
+
+            List<Song> songs = songService.deleteSongs(songIds, commit);
+
+            playListService.deleteSongsFromPlayLists(idsOf(songs), commit);
+        }
+    }
+
+    /**
+     * Deletes the customers with the given usernames and their playlists.
+     *
+     * The method does the following:
+     * 1. Deletes the customers from the CustomerService, which checks that all of them exist first, closes their sessions and removes
+     *    them from the followers of the artists they follow.
+     * 2. Deletes the playlists of the customers from the PlayListService, in a single pass over the playlists. The playlists of each
+     *    customer are read under the lock of the playlists, which also guards the addition of a playlist to a customer.
+     * 3. Publishes both changes as a single version of the catalog, and releases the locks of the services.
+     *
+     * @param usernames The usernames of the customers to delete.
+     * @throws IllegalArgumentException If no customer with one of the given usernames exists. Nothing is deleted in that case.
+     */
+    public void deleteCustomers(Collection<String> usernames) {
+
+        try (CatalogVersions.Commit commit = versions.begin()) {
+
+            List<Customer> customers = customerService.deleteCustomers(usernames, commit);
+
+            playListService.deletePlayListsOf(customers, commit);
+        }
+    }
+
+    private static List<UUID> idsOf(List<Song> songs) {
+
+        List<UUID> ids = new ArrayList<>(songs.size());
+        for (Song song : songs) {
+            ids.add(song.getId());
+        }
+
+        return ids;
+    }
+}
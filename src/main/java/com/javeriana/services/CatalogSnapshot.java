@@ -0,0 +1,131 @@
+package com.javeriana.services;
+
+import com.javeriana.models.Artist;
+import com.javeriana.models.Customer;
+import com.javeriana.models.PlayList;
+import com.javeriana.models.Song;
+import java.util.List;
+
+/**
+ * The CatalogSnapshot class is a pinned version of the catalog, returned by CatalogVersions.pin, which reads the catalog as it was
+ * when it was pinned, whatever changes the services make afterwards.
+ *
+ * The class does the following:
+ * 1. Returns the artists, songs, playlists and customers of the version, as read-only lists.
+ * 2. Returns the contents of the entities as of the version: the songs of a playlist, and the followed artists and playlists of a customer.
+ *    The entities themselves are the live objects, so their other getters return their current values.
+ * 3. Keeps the version from being retired until it is closed. A snapshot should be used in a try-with-resources statement, since the old
+ *    contents of the entities that change are kept while any snapshot of an older version is open.
+ *
+ * A snapshot can be read from several threads. It throws IllegalStateException once closed.
+ */
+public final class CatalogSnapshot implements AutoCloseable {
+
+    private final CatalogVersions versions;
+    private final CatalogVersions.Version version;
+    private volatile boolean closed;
+
+    CatalogSnapshot(CatalogVersions versions, CatalogVersions.Version version) {
+        this.versions = versions;
+        this.version = version;
+    }
+
+    /**
+     * Returns the number of the version.
+     *
+     * @return The number of the version of the catalog that the snapshot reads.
+     */
+    public long getVersion() {
+        return version.number;
+    }
+
+    /**
+     * Returns the artists of the catalog as of the version.
+     *
+     * @return A read-only list of the artists the catalog had in the version, in the order of the service that keeps them.
+     */
+    public List<Artist> getArtists() {
+        checkOpen();
+        return version.artists;
+    }
+
+    /**
+     * Returns the songs of the catalog as of the version.
+     *
+     * @return A read-only list of the songs the catalog had in the version, in the order of the service that keeps them.
+     */
+    public List<Song> getSongs() {
+        checkOpen();
+        return version.songs;
+    }
+
+    /**
+     * Returns the playlists of the catalog as of the version.
+     *
+     * @return A read-only list of the playlists the catalog had in the version, in the order of the service that keeps them.
+     */
+    public List<PlayList> getPlayLists() {
+        checkOpen();
+        return version.playLists;
+    }
+
+    /**
+     * Returns the customers of the catalog as of the version.
+     *
+     * @return A read-only list of the customers the catalog had in the version, in the order of the service that keeps them.
+     */
+    public List<Customer> getCustomers() {
+        checkOpen();
+        return version.customers;
+    }
+
+    /**
+     * Returns the songs of a playlist as of the version.
+     *
+     * @param playList The playlist.
+     * @return A read-only list of the songs the playlist had in the version.
+     */
+    public List<Song> getSongsOf(PlayList playList) {
+        checkOpen();
+        return versions.songsOf(playList, version.number);
+    }
+
+    /**
+     * Returns the artists followed by a customer as of the version.
+     *
+     * @param customer The customer.
+     * @return A read-only list of the artists the customer followed in the version.
+     */
+    public List<Artist> getFollowedArtistsOf(Customer customer) {
+        checkOpen();
+        return versions.followedArtistsOf(customer, version.number);
+    }
+
+    /**
+     * Returns the playlists of a customer as of the version.
+     *
+     * @param customer The customer.
+     * @return A read-only list of the playlists the customer had in the version.
+     */
+    public List<PlayList> getPlayListsOf(Customer customer) {
+        checkOpen();
+        return versions.playListsOf(customer, version.number);
+    }
+
+    /**
+     * Releases the version, so it can be retired. Closing a snapshot more than once has no effect.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            versions.unpin(version);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("La versión del catálogo ya fue liberada");
+        }
+    }
+}
@@ -0,0 +1,520 @@
+package com.javeriana.services;
+
+import com.javeriana.models.Artist;
+import com.javeriana.models.Customer;
+import com.javeriana.models.PlayList;
+import com.javeriana.models.Song;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * The CatalogVersions class keeps the versions of the catalog (the artists, songs, playlists and customers of the services), so a long
+ * read such as a report sees the catalog as it was at a single point while the services keep changing it.
+ *
+ * The class does the following:
+ * 1. Keeps the current version of the catalog: a number and a read-only snapshot of the list of each service, taken without copying it.
+ *    Every change to the catalog publishes a new version, which becomes the current one.
+ * 2. Pins the current version for a reader (pin), in constant time and without taking any lock: the reader only increments the count of
+ *    readers of the version. The reader gets a CatalogSnapshot, which reads the catalog as of that version until it is closed.
+ * 3. Lets the services publish their changes (begin). A change is made under the locks of the service it changes only, and takes the commit
+ *    lock just to give the new version its number and make it the current one, so changes to different services, or to different stripes
+ *    of a service, only wait for each other for that moment. Readers never take the commit lock, so a report never makes a change wait,
+ *    and a change never makes a report wait.
+ * 4. Keeps the contents of the entities that change in place (the songs of a playlist, and the followed artists and playlists of a customer)
+ *    as they were before each change, with the number of the last version that saw them. A reader of an older version gets those contents
+ *    instead of the current ones. Before a change, the service records the contents it is about to change, which costs a snapshot of them.
+ *    Until the change is published, every reader gets the recorded contents, so no version sees a change before the version that publishes it.
+ *    The service only records the contents of an entity once it knows the entity will change, so a change that turns out to change nothing,
+ *    such as following an artist that is already followed, publishes no version.
+ *    The changes of an entity are linked from the newest one, so recording a change takes constant time, and a reader walks back only
+ *    over the changes made to the entity since its version.
+ * 5. Retires the versions that are neither current nor pinned, oldest first, and drops the recorded contents that only retired versions
+ *    could read, so the old versions only use memory while a reader holds them. A snapshot kept open while the catalog keeps changing
+ *    keeps every change made since, so snapshots should be closed as soon as the read is done.
+ *
+ * A service that is not given a CatalogVersions object creates its own, so its changes are versioned but not together with the other services.
+ * The services created by the application share one, so a snapshot is consistent across them: every change that was published before it is in it,
+ * and no later change is. A change made of calls to several services, such as deleting an artist with its songs, passes one commit to all of
+ * them, and each service hands the commit its lock (holdUntilPublished), so the whole change is published as a single version and no other
+ * change to those services is made until it is.
+ *
+ * A listener can be told of every version as it is published (onPublish), in the order of the versions, which the MutationJournal class
+ * uses to give each change its place in the journal.
+ *
+ * Since every version holds a snapshot of the lists of the services, the first removal from a list after a version is published copies the list,
+ * which costs about as much as the removal itself. Changes made directly to the entities, bypassing the services, are not recorded, and can be seen
+ * by the snapshots taken before them; only the loading of the data does that, before the snapshots are used.
+ */
+public final class CatalogVersions {
+
+    /**
+     * The lock taken to publish a version, which orders the changes of all the services. It is only held to number and link the new version.
+     */
+    private final ReentrantLock commitLock = new ReentrantLock();
+
+    /**
+     * The current version. It is only changed while holding the commit lock.
+     */
+    private volatile Version current = new Version(0, List.of(), List.of(), List.of(), List.of());
+
+    /**
+     * The oldest version that is not retired. The versions from it to the current one are linked in order. Guarded by the commit lock.
+     */
+    private Version oldest = current;
+
+    /**
+     * The newest recorded change of each entity, from which its older changes are linked, for the changes a version that is not retired may read.
+     */
+    private final Map<PlayList, Change<PlayList, Song>> songsOfPlayLists = new ConcurrentHashMap<>();
+    private final Map<Customer, Change<Customer, Artist>> followedArtistsOfCustomers = new ConcurrentHashMap<>();
+    private final Map<Customer, Change<Customer, PlayList>> playListsOfCustomers = new ConcurrentHashMap<>();
+
+    /**
+     * The recorded changes in the order they were recorded, so they are dropped oldest first. Guarded by the commit lock.
+     */
+    private final ArrayDeque<Change<?, ?>> records = new ArrayDeque<>();
+
+    /**
+     * The code run every time a version is published, while holding the commit lock, or null if there is none.
+     */
+    private volatile Runnable publishListener;
+
+    /**
+     * Pins the current version of the catalog.
+     *
+     * The method does the following:
+     * 1. Reads the current version.
+     * 2. Increments the count of readers of the version, unless it has just been retired because a newer version was published, in which case
+     *    it reads the current version again.
+     * Pinning does not take any lock and does not wait for the changes being made.
+     *
+     * @return A snapshot of the catalog as of the current version, which must be closed when it is no longer used.
+     */
+    public CatalogSnapshot pin() {
+
+        while (true) {
+            Version version = current;
+            int readers = version.readers.get();
+
+            // A version is retired by setting its count of readers to -1, and only once it is no longer the current one
+            if (readers >= 0 && version.readers.compareAndSet(readers, readers + 1)) {
+                return new CatalogSnapshot(this, version);
+            }
+        }
+    }
+
+    /**
+     * Pins the current version of the catalog and runs the given code at the same point, so no version is published between them.
+     *
+     * The method does the following:
+     * 1. Takes the commit lock, so the current version cannot change until the version is pinned.
+     * 2. Runs the given code, which must be short and must not publish a version.
+     * 3. Increments the count of readers of the current version, which is never retired while it is the current one.
+     * The MutationJournal class uses it to know which changes a checkpoint holds: the ones published up to the pinned version.
+     *
+     * @param atPin The code to run at the point the version is pinned.
+     * @return A snapshot of the catalog as of the current version, which must be closed when it is no longer used.
+     */
+    CatalogSnapshot pin(Runnable atPin) {
+        commitLock.lock();
+        try {
+            atPin.run();
+
+            Version version = current;
+            version.readers.incrementAndGet();
+            return new CatalogSnapshot(this, version);
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the code run every time a version is published, replacing the previous one. The code runs while holding the commit lock,
+     * right after the version becomes the current one, so it sees the versions one at a time and in order. It must be short, and must
+     * not publish a version nor pin one.
+     *
+     * @param listener The code to run, or null to run none.
+     */
+    void onPublish(Runnable listener) {
+        this.publishListener = listener;
+    }
+
+    /**
+     * Returns the number of the current version.
+     *
+     * @return The number of the current version, which is 0 until the first change and grows by one with each change.
+     */
+    public long currentVersion() {
+        return current.number;
+    }
+
+    /**
+     * Releases a pinned version, and retires the old versions if no change is being published.
+     */
+    void unpin(Version version) {
+
+        version.readers.decrementAndGet();
+
+        // A long read is often the last user of the old versions, so it drops them if it can, instead of leaving them to the next change
+        if (commitLock.tryLock()) {
+            try {
+                retireOldVersions();
+            } finally {
+                commitLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the songs of a playlist as of the given version.
+     */
+    List<Song> songsOf(PlayList playList, long versionNumber) {
+        return contentsAt(songsOfPlayLists, playList, PlayList::getSongs, versionNumber);
+    }
+
+    /**
+     * Returns the artists followed by a customer as of the given version.
+     */
+    List<Artist> followedArtistsOf(Customer customer, long versionNumber) {
+        return contentsAt(followedArtistsOfCustomers, customer, Customer::getFollowedArtists, versionNumber);
+    }
+
+    /**
+     * Returns the playlists of a customer as of the given version.
+     */
+    List<PlayList> playListsOf(Customer customer, long versionNumber) {
+        return contentsAt(playListsOfCustomers, customer, Customer::getPlayLists, versionNumber);
+    }
+
+    /**
+     * Returns the contents of an entity as of the given version.
+     *
+     * The version sees the contents recorded by the oldest change made after it, or the current contents if no change was made after it.
+     * The changes of the entity are walked from the newest one back to the first one the version saw, so the lookup costs in proportion
+     * to the changes made to the entity since the version.
+     * The current contents are read before the recorded ones. A change records the contents before making the change, so if the current
+     * contents already have a change that is newer than the version, the recorded contents of that change are found.
+     */
+    private static <E, T> List<T> contentsAt(Map<E, Change<E, T>> changes, E entity, Function<E, List<T>> currentContents, long versionNumber) {
+
+        List<T> contents = currentContents.apply(entity);
+
+        for (Change<E, T> change = changes.get(entity); change != null && change.versionNumber >= versionNumber; change = change.older) {
+            contents = change.contents;
+        }
+
+        return contents;
+    }
+
+    /**
+     * Starts a change. The caller holds the lock of the service it changes, tells the commit what is about to change, makes the change,
+     * and closes the commit to publish the new version. Beginning a change does not take any lock.
+     *
+     * @return The commit, which publishes the new version when it is closed.
+     */
+    Commit begin() {
+        return new Commit();
+    }
+
+    /**
+     * Retires the versions that are neither current nor pinned, from the oldest one, and drops the recorded contents that only they could read.
+     * It is called while holding the commit lock.
+     */
+    private void retireOldVersions() {
+
+        while (oldest != current && oldest.readers.compareAndSet(0, -1)) {
+            Version retired = oldest;
+            oldest = retired.next;
+
+            // A closed snapshot may still be referenced, and must not keep the newer versions and their lists from being collected
+            retired.next = null;
+        }
+
+        long oldestNumber = oldest.number;
+        while (!records.isEmpty() && records.peekFirst().versionNumber < oldestNumber) {
+            records.pollFirst().unlink();
+        }
+    }
+
+    /**
+     * A change being made. It is used from a single thread, which holds the locks of the entities it changes until the commit is closed.
+     * A service that is given a commit by its caller, instead of beginning its own, hands it the locks it took, which the commit releases
+     * once the change is published.
+     */
+    final class Commit implements AutoCloseable {
+
+        /**
+         * The lists of the new version, or null for the lists this commit does not change, which are taken from the current version when
+         * the commit is published.
+         */
+        private List<Artist> artists;
+        private List<Song> songs;
+        private List<PlayList> playLists;
+        private List<Customer> customers;
+
+        /**
+         * The contents recorded by this commit, which are numbered when it is published.
+         */
+        private final List<Change<?, ?>> recorded = new ArrayList<>();
+
+        /**
+         * The releases of the locks handed to the commit, in the order the locks were taken.
+         */
+        private final List<Runnable> releases = new ArrayList<>();
+
+        private boolean changed;
+
+        private Commit() {
+        }
+
+        /**
+         * Sets the artists of the new version.
+         *
+         * @param artists A read-only snapshot of the artists.
+         */
+        void artists(List<Artist> artists) {
+            this.artists = artists;
+            changed = true;
+        }
+
+        /**
+         * Sets the songs of the new version.
+         *
+         * @param songs A read-only snapshot of the songs.
+         */
+        void songs(List<Song> songs) {
+            this.songs = songs;
+            changed = true;
+        }
+
+        /**
+         * Sets the playlists of the new version.
+         *
+         * @param playLists A read-only snapshot of the playlists.
+         */
+        void playLists(List<PlayList> playLists) {
+            this.playLists = playLists;
+            changed = true;
+        }
+
+        /**
+         * Sets the customers of the new version.
+         *
+         * @param customers A read-only snapshot of the customers.
+         */
+        void customers(List<Customer> customers) {
+            this.customers = customers;
+            changed = true;
+        }
+
+        /**
+         * Records the songs of a playlist before they are changed by this commit.
+         *
+         * @param playList The playlist whose songs are about to change.
+         */
+        void changingSongsOf(PlayList playList) {
+            record(songsOfPlayLists, playList, playList.getSongs());
+        }
+
+        /**
+         * Records the artists followed by a customer before they are changed by this commit.
+         *
+         * @param customer The customer whose followed artists are about to change.
+         */
+        void changingFollowedArtistsOf(Customer customer) {
+            record(followedArtistsOfCustomers, customer, customer.getFollowedArtists());
+        }
+
+        /**
+         * Records the playlists of a customer before they are changed by this commit.
+         *
+         * @param customer The customer whose playlists are about to change.
+         */
+        void changingPlayListsOf(Customer customer) {
+            record(playListsOfCustomers, customer, customer.getPlayLists());
+        }
+
+        /**
+         * Hands a lock to the commit, which releases it after publishing the change, so no other change to what the lock guards is made
+         * until the change is published. The locks are released in the reverse order they were handed.
+         *
+         * @param release Releases the lock.
+         */
+        void holdUntilPublished(Runnable release) {
+            releases.add(release);
+        }
+
+        /**
+         * Records the contents of an entity before this commit changes it, unless they were already recorded by this commit.
+         * The change is linked before the entity changes, and is not published yet, so every reader gets the recorded contents until the
+         * commit is published. The caller holds the lock of the entity, so the newest change of the entity, if it is not published yet,
+         * is one of this commit.
+         */
+        private <E, T> void record(Map<E, Change<E, T>> changes, E entity, List<T> contents) {
+
+            changed = true;
+
+            Change<E, T> newest = changes.get(entity);
+            if (newest != null && newest.versionNumber == Change.UNPUBLISHED) {
+                return;
+            }
+
+            Change<E, T> change = new Change<>(changes, entity, contents, newest);
+            if (newest != null) {
+                newest.newer = change;
+            }
+            changes.put(entity, change);
+            recorded.add(change);
+        }
+
+        /**
+         * Publishes the new version, if anything changed, and releases the locks handed to the commit.
+         *
+         * The method does the following:
+         * 1. Publishes the new version, unless the commit changed nothing.
+         * 2. Releases the locks handed to the commit, the last one first, even if publishing failed.
+         */
+        @Override
+        public void close() {
+            try {
+                if (changed) {
+                    publish();
+                }
+            } finally {
+                for (int i = releases.size() - 1; i >= 0; i--) {
+                    releases.get(i).run();
+                }
+            }
+        }
+
+        /**
+         * Publishes the new version and retires the old versions.
+         *
+         * The method does the following:
+         * 1. Takes the commit lock, and numbers the recorded changes with the number of the current version, which is the last one that
+         *    saw the contents they recorded.
+         * 2. Makes a version with the lists set by the commit and the other lists of the current version, and makes it the current one.
+         * 3. Tells the listener of the published versions, if any.
+         * 4. Retires the old versions and releases the commit lock.
+         */
+        private void publish() {
+
+            commitLock.lock();
+            try {
+                Version previous = current;
+
+                for (Change<?, ?> change : recorded) {
+                    change.versionNumber = previous.number;
+                    records.addLast(change);
+                }
+
+                Version version = new Version(previous.number + 1,
+                    artists != null ? artists : previous.artists,
+                    songs != null ? songs : previous.songs,
+                    playLists != null ? playLists : previous.playLists,
+                    customers != null ? customers : previous.customers);
+                previous.next = version;
+                current = version;
+
+                Runnable listener = publishListener;
+                if (listener != null) {
+                    listener.run();
+                }
+
+                retireOldVersions();
+            } finally {
+                commitLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * A version of the catalog.
+     */
+    static final class Version {
+
+        final long number;
+        final List<Artist> artists;
+        final List<Song> songs;
+        final List<PlayList> playLists;
+        final List<Customer> customers;
+
+        /**
+         * The number of readers that pinned the version, or -1 once the version is retired.
+         */
+        final AtomicInteger readers = new AtomicInteger();
+
+        /**
+         * The version published after this one, or null for the current version and the retired ones. Guarded by the commit lock.
+         */
+        Version next;
+
+        private Version(long number, List<Artist> artists, List<Song> songs, List<PlayList> playLists, List<Customer> customers) {
+            this.number = number;
+            this.artists = artists;
+            this.songs = songs;
+            this.playLists = playLists;
+            this.customers = customers;
+        }
+    }
+
+    /**
+     * A recorded change of an entity: the contents the entity had before the change, and the number of the last version that saw them.
+     * The changes of an entity are linked from the newest one, which is in the map of its kind, to the oldest one.
+     */
+    private static final class Change<E, T> {
+
+        /**
+         * The version number of a change that is not published yet, which every version sees as made after it.
+         */
+        private static final long UNPUBLISHED = Long.MAX_VALUE;
+
+        private final Map<E, Change<E, T>> changes;
+        private final E entity;
+        private final List<T> contents;
+
+        /**
+         * The number of the last version that saw the contents, set when the commit of the change is published.
+         */
+        private volatile long versionNumber = UNPUBLISHED;
+
+        /**
+         * The previous change of the entity, or null if it was dropped. Readers follow it without locking: it is only set to null once
+         * no version that is not retired can read the previous change, and a reader stops before it reaches such a change anyway.
+         */
+        private volatile Change<E, T> older;
+
+        /**
+         * The next change of the entity, or null for the newest one. It is set by the commit that records the next change, under the
+         * lock of the entity, and cleared when the change is dropped, under the commit lock. If both happen at once, the next change may
+         * keep a link to the dropped one, which no reader follows, until the next change is dropped too.
+         */
+        private volatile Change<E, T> newer;
+
+        private Change(Map<E, Change<E, T>> changes, E entity, List<T> contents, Change<E, T> older) {
+            this.changes = changes;
+            this.entity = entity;
+            this.contents = contents;
+            this.older = older;
+        }
+
+        /**
+         * Drops the change, which is the oldest published one of its entity, so the change and its contents can be collected.
+         * It is called while holding the commit lock.
+         */
+        private void unlink() {
+            if (newer != null) {
+                newer.older = null;
+                newer = null;
+            } else {
+                changes.remove(entity, this);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.javeriana.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The ChannelTextWriter class writes text to a channel as UTF-8 through a large direct buffer.
+ *
+ * Text is encoded straight into the buffer, and the buffer is only handed to the channel when it is full,
+ * so a file with millions of lines is written with a few hundred system calls instead of one or two per line.
+ *
+ * The writer does not close the channel. Call flush once all the text has been written.
+ */
+final class ChannelTextWriter {
+
+    /**
+     * The size of the direct buffer used to batch writes.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructs a ChannelTextWriter that writes to the given channel.
+     *
+     * @param channel The channel to write to.
+     */
+    ChannelTextWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Encodes the given text into the buffer, writing the buffer to the channel every time it fills up.
+     *
+     * @param text The text to write.
+     * @throws IOException If an I/O error occurs writing to the channel.
+     */
+    void write(CharSequence text) throws IOException {
+
+        CharBuffer chars = CharBuffer.wrap(text);
+
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, false);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Writes everything left in the buffer to the channel.
+     *
+     * @throws IOException If an I/O error occurs writing to the channel.
+     */
+    void flush() throws IOException {
+
+        // Tell the encoder there is no more input, then let it write anything it kept
+        while (encoder.encode(CharBuffer.allocate(0), buffer, true).isOverflow()) {
+            drain();
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            drain();
+        }
+        encoder.reset();
+        drain();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
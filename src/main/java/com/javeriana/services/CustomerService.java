@@ -1,13 +1,26 @@
 package com.javeriana.services;
 
 import com.javeriana.exceptions.AlreadyExistsException;
+import com.javeriana.exceptions.NotFoundException;
 import com.javeriana.exceptions.WrongLogInException;
 import com.javeriana.models.Artist;
 import com.javeriana.models.Customer;
+import com.javeriana.models.Page;
 import com.javeriana.models.PlayList;
+import com.javeriana.models.Session;
+import com.javeriana.utils.SnapshotList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The CustomerService class is part of a music application and is responsible for managing customers.
@@ -15,16 +28,34 @@ import java.util.UUID;
  *
  * This class provides methods for:
  * - Adding new customers
- * - Deleting customers
+ * - Deleting customers, one at a time or many as a single change
  * - Finding a customer by their username
- * - Managing customer login and logout
- * - Managing the playlists of the currently logged in customer
- * - Managing the artists followed by the currently logged in customer
- * - Retrieving a list of all customers, a list of the names of all customers, a list of playlist IDs of a customer with a given username, and a list of all artists followed by all customers
+ * - Managing customer login and logout through sessions
+ * - Managing the playlists of the customer of a session
+ * - Managing the artists followed by the customer of a session
+ * - Retrieving a list of all customers, a page of the customers, a list of playlist IDs of a customer with a given username, and a list of all artists followed by all customers
  * - Replacing the current list of customers with a given list
- * - Checking if a customer is currently logged in
+ * - Making every customer stop following some artists, such as deleted ones
+ * - Getting the customer of a session
  *
- * This class uses a list to store customers and a Customer object to keep track of the currently logged in customer.
+ * This class uses a list to store customers and a SessionRegistry to keep track of the logged in customers. Each login opens a session
+ * and returns its handle, which is passed to the methods that act on behalf of the customer, so many customers can be logged in at once.
+ * It also keeps the customers indexed by username, which is updated whenever the list changes, so finding a customer, and therefore
+ * logging in, takes the same time whatever the number of customers. It also keeps the followers of each artist, by the ID of the artist,
+ * which is updated whenever a customer follows an artist or is added, loaded or deleted, so the customers that follow an artist are found
+ * without reading every customer.
+ *
+ * The service can be used by several threads at the same time, and every public method is linearizable: it takes effect at a single point
+ * between its call and its return. The list of customers is guarded by a ServiceLock: adding, deleting and loading customers take the write
+ * lock, and getCustomers, getCustomersPage and getAllFollowedArtists take the read lock. The index of customers by username is a concurrent
+ * map, so searchCustomerByUsername and logIn do not lock at all; a customer is added to it and removed from it while holding the write lock,
+ * and only added once it is published, so it cannot be found before it is in the catalog.
+ * Changes to the playlists and followed artists of a customer, and reads of them, take the striped lock of the customer instead, so sessions of
+ * customers of different stripes do not wait for each other, nor for the list of customers. unfollowArtists takes the striped locks of all the
+ * customers it changes, in the order of the stripes.
+ * Every change is published to the CatalogVersions object of the service: a snapshot of the list of customers when customers are added or
+ * removed, and the playlists or followed artists a customer had before they change, so a reader that pins a version of the catalog, such as
+ * a report, reads the customers as they were at that version without taking any lock of the service.
  * It also uses several constants for validating usernames, passwords, and the minimum age for registration.
  */
 public class CustomerService {
@@ -49,29 +80,83 @@ public class CustomerService {
     /**
      * A list of customers.
      */
-    private List<Customer> customers;
+    private final SnapshotList<Customer> customers;
+
+    /**
+     * The customers of the list by their usernames, with the number of each customer in the list, by which it is removed from the list.
+     * Usernames are compared exactly, as they are validated and stored.
+     * It is a concurrent map, so lookups, such as the ones of logIn, do not lock and can run while another thread registers a customer.
+     */
+    private final Map<String, IndexedCustomer> customersByUsername;
+
+    /**
+     * The customers of the list that follow each artist, by the ID of the artist. It is a concurrent map, and each set of followers is only
+     * changed inside a compute of the map, so customers of different stripes can follow artists at the same time.
+     */
+    private final Map<UUID, Set<Customer>> followersByArtist;
+
+    /**
+     * The open sessions of the logged in customers.
+     */
+    private final SessionRegistry sessions;
 
     /**
-     * The currently logged in customer.
+     * The lock that guards the list of customers, and whose stripes guard the playlists and followed artists of each customer.
      */
-    private Customer loggedCustomer;
+    private final ServiceLock lock;
+
+    /**
+     * The versions of the catalog, to which the changes to the customers are published.
+     */
+    private final CatalogVersions versions;
 
     /**
      * Constructor for the CustomerService class.
-     * Initializes the customers list and sets the loggedCustomer to null.
+     * Initializes the customers list and a session registry whose sessions expire after the default idle timeout.
      */
     public CustomerService() {
-        this.customers = new ArrayList<>();
-        this.loggedCustomer = null;
+        this(new SessionRegistry());
+    }
+
+    /**
+     * Constructor for the CustomerService class, with its own versions of the catalog.
+     * Initializes the customers list and uses the given session registry to keep track of the logged in customers.
+     *
+     * @param sessions The registry of the open sessions.
+     */
+    public CustomerService(SessionRegistry sessions) {
+        this(sessions, new CatalogVersions());
+    }
+
+    /**
+     * Constructor for the CustomerService class, which publishes its changes to the given versions of the catalog.
+     * Initializes the customers list and uses the given session registry to keep track of the logged in customers.
+     *
+     * @param sessions The registry of the open sessions.
+     * @param versions The versions of the catalog, shared with the other services.
+     */
+    public CustomerService(SessionRegistry sessions, CatalogVersions versions) {
+        this.customers = SnapshotList.numbered();
+        this.customersByUsername = new ConcurrentHashMap<>();
+        this.followersByArtist = new ConcurrentHashMap<>();
+        this.sessions = sessions;
+        this.lock = new ServiceLock();
+        this.versions = versions;
     }
 
     /**
-     * Returns a new list containing all customers.
+     * Returns a read-only snapshot of all customers. The snapshot is taken without copying the customers, and later changes to the customers
+     * do not affect it.
      *
-     * @return A new list containing all customers.
+     * @return A read-only list containing all customers.
      */
     public List<Customer> getCustomers() {
-        return new ArrayList<>(customers);
+        long stamp = lock.readLock();
+        try {
+            return customers.snapshot();
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
     /**
@@ -89,78 +174,132 @@ public class CustomerService {
      * 5. It checks if the provided age is less than `MINIMUM_AGE`. If it is, it throws an `IllegalArgumentException`.
      * 6. It checks if the provided username is already taken. If it is, it throws an `AlreadyExistsException`.
      * 7. It creates a new `Customer` object with the provided details.
-     * 8. It adds the new customer to the list of customers.
+     * 8. It adds the new customer to the list of customers, publishes it, and only then adds it to the index of customers by username, so it
+     *    cannot be found, or log in, before it is in the catalog. The write lock is held throughout, so no other customer claims the username
+     *    meanwhile. It returns the new customer.
      *
      * @param username The username of the new customer.
      * @param password The password of the new customer.
      * @param name The name of the new customer.
      * @param lastName The last name of the new customer.
      * @param age The age of the new customer.
+     * @return The new customer.
      * @throws IllegalArgumentException If the name or last name is empty, the username does not match the USERNAME_PATTERN, the password does not match the PASSWORD_PATTERN, or the age is less than MINIMUM_AGE.
      * @throws AlreadyExistsException If the username is already taken.
      */
-    public void addCustomer(String username, String password, String name, String lastName, int age) {
+    public Customer addCustomer(String username, String password, String name, String lastName, int age)
+        throws AlreadyExistsException {
+
+        if (name == null || name.isEmpty() || lastName == null || lastName.isEmpty()) {
+            throw new IllegalArgumentException("El nombre y el apellido del cliente no pueden ser vacíos");
+        }
+
+        if (username == null || !username.matches(USERNAME_PATTERN)) {
+            throw new IllegalArgumentException("El nombre de usuario debe empezar por una letra y tener entre 8 y 31 letras, números o guiones bajos");
+        }
+
+        if (password == null || !password.matches(PASSWORD_PATTERN)) {
+            throw new IllegalArgumentException("La contraseña debe tener al menos 8 caracteres, una mayúscula, una minúscula, un número y un carácter especial");
+        }
+
+        if (age < MINIMUM_AGE) {
+            throw new IllegalArgumentException("El cliente debe tener al menos " + MINIMUM_AGE + " años");
+        }
 
+        Customer customer = new Customer(username, password, name, lastName, age);
 
+        long stamp = lock.writeLock();
+        try {
+            if (customersByUsername.containsKey(username)) {
+                throw new AlreadyExistsException("El cliente con username " + username + " ya existe");
+            }
+
+            // The customer can only be found once published, so no change to it is made before the customer is in the catalog
+            long number = customers.append(customer);
+            publishCustomers();
+            customersByUsername.put(username, new IndexedCustomer(customer, number));
+        } finally {
+            lock.unlock(stamp);
+        }
+
+        return customer;
+    }
+
+    /**
+     * Adds a customer that already has an ID, such as a customer restored from the mutation journal.
+     * If a customer with the same username already exists, nothing is added, so restoring the same customer twice has no effect.
+     *
+     * @param customer The customer to add.
+     */
+    public void addCustomer(Customer customer) {
+        long stamp = lock.writeLock();
+        try {
+            if (!customersByUsername.containsKey(customer.getUsername())) {
+                long number = customers.append(customer);
+                for (Artist artist : customer.getFollowedArtists()) {
+                    addFollower(artist, customer);
+                }
+                publishCustomers();
+                customersByUsername.put(customer.getUsername(), new IndexedCustomer(customer, number));
+            }
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
     /**
      * This method is responsible for searching a customer by their username. It takes in a parameter: the username of the customer,
-     * then iterates over the list of customers, and for each customer, it checks if the customer's username matches the provided username.
-     * If it does, it returns the customer. If no customer is found with the provided username, it returns null.
+     * and looks it up in the index of customers by username. If no customer is found with the provided username, it returns null.
      *
      * Here's a breakdown of what each part of the method does:
      * 1. It takes in a parameter: the username of the customer.
-     * 2. It iterates over the list of customers.
-     * 3. For each customer, it checks if the customer's username matches the provided username. If it does, it returns the customer.
-     * 4. If no customer is found with the provided username, it returns null.
+     * 2. If the username is null, it returns null, since no customer has a null username.
+     * 3. It looks the username up in the index of customers by username and returns the customer, or null if no customer is found.
      *
      * @param username The username of the customer to search for.
      * @return The Customer object if found, null otherwise.
      */
     public Customer searchCustomerByUsername(String username) {
-        for (Customer customer : customers) {
-            if (customer.getUsername().equals(username)) {
-                return customer;
-            }
-        }
-        return null;
+        IndexedCustomer indexedCustomer = username != null ? customersByUsername.get(username) : null;
+        return indexedCustomer != null ? indexedCustomer.customer() : null;
     }
 
     /**
      * This method is responsible for logging in a customer with a given username and password. It takes in two parameters: the username and password of the customer,
-     * then calls the `searchCustomerByUsername` method to find the customer with the provided username. If the customer is not found, it returns false.
+     * then calls the `searchCustomerByUsername` method to find the customer with the provided username. If the customer is not found, it returns null.
      * If the customer is found, it checks if the provided password matches the customer's password by calling the `checkPassword` method.
-     * If the password is correct, it sets the `loggedCustomer` to the found customer. It returns true if the password is correct, false otherwise.
+     * If the password is correct, it opens a new session for the customer and returns its handle. It returns null if the password is not correct.
      *
      * Here's a breakdown of what each part of the method does:
      * 1. It takes in two parameters: the username and password of the customer.
      * 2. It calls the `searchCustomerByUsername` method to find the customer with the provided username.
-     * 3. If the customer is not found, it returns false.
+     * 3. If the customer is not found, it returns null.
      * 4. If the customer is found, it checks if the provided password matches the customer's password by calling the `checkPassword` method.
-     * 5. If the password is correct, it sets the `loggedCustomer` to the found customer.
-     * 6. It returns true if the password is correct, false otherwise.
+     * 5. If the password is correct, it opens a session for the customer in the session registry and returns its handle.
+     * 6. It returns null if the password is not correct, or if the customer is deleted meanwhile, which the session registry checks.
      *
      * @param username The username of the customer to log in.
      * @param password The password of the customer to log in.
-     * @return True if the login was successful, false otherwise.
+     * @return The handle of the new session if the login was successful, null otherwise.
      */
-    public boolean logIn(String username, String password) {
+    public Session logIn(String username, String password) {
 
         Customer customer = searchCustomerByUsername(username);
 
-        if (customer == null) {
-            return false;
+        if (customer == null || !checkPassword(customer, password)) {
+            return null;
         }
 
-        boolean isPasswordCorrect = checkPassword(customer, password);
+        return sessions.open(customer);
+    }
 
-        if(isPasswordCorrect) {
-            this.loggedCustomer = customer;
+    /**
+     * Publishes a new version of the catalog with a snapshot of the customers. It is called while holding the write lock, after a change.
+     */
+    private void publishCustomers() {
+        try (CatalogVersions.Commit commit = versions.begin()) {
+            commit.customers(customers.snapshot());
         }
-
-        return isPasswordCorrect;
-
     }
 
     /**
@@ -175,164 +314,522 @@ public class CustomerService {
     }
 
     /**
-     * Replaces the current list of customers with the given list.
+     * Replaces the current list of customers with the given list, and rebuilds the index of customers by username and the followers of each artist.
+     * If two customers have the same username, the first one is indexed, as a search over the list would find.
      *
      * @param customers The new list of customers.
      */
     public void loadCustomers(List<Customer> customers) {
+        long stamp = lock.writeLock();
+        try {
+            this.customers.clear();
+            this.customers.addAll(customers);
+
+            customersByUsername.clear();
+            followersByArtist.clear();
+            for (int i = 0; i < this.customers.size(); i++) {
+                Customer customer = this.customers.get(i);
+                customersByUsername.putIfAbsent(customer.getUsername(), new IndexedCustomer(customer, this.customers.numberAt(i)));
+                for (Artist artist : customer.getFollowedArtists()) {
+                    addFollower(artist, customer);
+                }
+            }
 
-
+            publishCustomers();
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
 
     /**
-     * Checks if a customer is currently logged in.
-     * It checks if the loggedCustomer is not null.
+     * This method is responsible for adding a new playlist to the customer of a session. It takes in two parameters: the session and the new playlist to be added.
+     * It resolves the customer of the session. If the session is not valid, it throws a `WrongLogInException`.
+     * Then, it adds the new playlist to the customer's list of playlists.
+     *
+     * Here's a breakdown of what each part of the method does:
+     * 1. It takes in two parameters: the session and the new playlist to be added.
+     * 2. It resolves the customer of the session. If the session does not exist, was closed or has expired, it throws a `WrongLogInException`.
+     * 3. It adds the new playlist to the customer's list of playlists, while holding the striped lock of the customer.
      *
-     * @return True if a customer is logged in, false otherwise.
+     * @param session The session of the customer.
+     * @param newPlayList The new playlist to add.
+     * @throws WrongLogInException If the session is not valid.
      */
-    public boolean isCustomerLogged() {
-        return this.loggedCustomer != null;
+    public void addPlayListToLoggedCustomer(Session session, PlayList newPlayList) throws WrongLogInException {
+        addPlayList(sessions.resolve(session), newPlayList);
     }
 
     /**
-     * This method is responsible for adding a new playlist to the currently logged in customer. It takes in a parameter: the new playlist to be added.
-     * It checks if there is a currently logged in customer. If there isn't, it throws a `WrongLogInException`.
-     * If there is a logged in customer, it adds the new playlist to the customer's list of playlists.
-     *
-     * Here's a breakdown of what each part of the method does:
-     * 1. It takes in a parameter: the new playlist to be added.
-     * 2. It checks if there is a currently logged in customer. If there isn't, it throws a `WrongLogInException`.
-     * 3. If there is a logged in customer, it adds the new playlist to the customer's list of playlists.
+     * Adds a playlist to the given customer, such as the customer a controller resolved from a session, or a customer whose playlist
+     * is restored from the mutation journal.
+     * The playlist is added while holding the striped lock of the customer, and the playlists the customer had before are recorded
+     * for the versions of the catalog.
      *
+     * @param customer The customer.
      * @param newPlayList The new playlist to add.
-     * @throws WrongLogInException If no customer is currently logged in.
      */
-    public void addPlayListToLoggedCustomer(PlayList newPlayList) {
-
+    public void addPlayList(Customer customer, PlayList newPlayList) {
+        try (CatalogVersions.Commit commit = versions.begin()) {
+            addPlayList(customer, newPlayList, commit);
+        }
+    }
 
+    /**
+     * Adds a playlist to the given customer as part of the given commit. The striped lock of the customer is taken as addPlayList does,
+     * and handed to the commit.
+     *
+     * @param customer The customer.
+     * @param newPlayList The new playlist to add.
+     * @param commit The commit the addition is part of.
+     */
+    void addPlayList(Customer customer, PlayList newPlayList, CatalogVersions.Commit commit) {
 
+        ReentrantLock customerLock = lock.stripe(customer.getId());
+        customerLock.lock();
+        commit.holdUntilPublished(customerLock::unlock);
 
+        commit.changingPlayListsOf(customer);
+        customer.addPlayList(newPlayList);
+    }
 
+    /**
+     * Creates a playlist with the given name in the given PlayListService and adds it to the given customer, as a single change.
+     *
+     * The method does the following:
+     * 1. Creates the playlist, holding the write lock of the playlists until the change is published, unless the customer was deleted,
+     *    in which case it throws a NotFoundException.
+     * 2. Adds the playlist to the customer, holding the striped lock of the customer until the change is published.
+     * 3. Publishes both changes as a single version of the catalog, so no reader, and no checkpoint, sees the playlist without its owner.
+     * The deletion of customers marks them as deleted before it reads their playlists under the lock of the playlists, so either the
+     * playlist is refused, or it is added before and deleted with the other playlists of the customer.
+     *
+     * @param customer The customer.
+     * @param name The name of the new playlist.
+     * @param playListService The service of the playlists, which publishes to the same versions of the catalog.
+     * @return The new playlist.
+     * @throws IllegalArgumentException If the name is null or empty.
+     * @throws NotFoundException If the customer was deleted.
+     */
+    public PlayList addNewPlayList(Customer customer, String name, PlayListService playListService) throws NotFoundException {
+        try (CatalogVersions.Commit commit = versions.begin()) {
+            PlayList newPlayList = playListService.addPlayList(name, customer, commit);
+            addPlayList(customer, newPlayList, commit);
+            return newPlayList;
+        }
     }
 
     /**
-     * Retrieves the names of all playlists of the currently logged in customer.
+     * Retrieves the names of all playlists of the customer of a session.
      *
-     * It first checks if a customer is currently logged in. If no customer is logged in, it throws a WrongLogInException.
-     * If a customer is logged in, it retrieves the list of playlists of the logged in customer.
+     * It first resolves the customer of the session. If the session is not valid, it throws a WrongLogInException.
+     * Then, it retrieves the list of playlists of the customer.
      * It then initializes an empty list of strings to store the names of the playlists.
      * It iterates over each playlist in the retrieved list of playlists, converts each playlist to a string representation (presumably the name of the playlist), and adds it to the list.
-     * Finally, it returns the list, which contains the names of all playlists of the currently logged in customer.
+     * Finally, it returns the list, which contains the names of all playlists of the customer of the session.
      *
-     * @return A list of the names of all playlists of the currently logged in customer.
-     * @throws WrongLogInException If no customer is currently logged in.
+     * @param session The session of the customer.
+     * @return A list of the names of all playlists of the customer of the session.
+     * @throws WrongLogInException If the session is not valid.
      */
-    public List<String> getLoggedCustomerPlayLists() throws WrongLogInException {
+    public List<String> getLoggedCustomerPlayLists(Session session) throws WrongLogInException {
+
+        Customer customer = sessions.resolve(session);
+
+        // The playlists are a snapshot, so they are read without holding the lock of the customer
+        List<PlayList> playLists = customer.getPlayLists();
+
+        List<String> playListsNames = new ArrayList<>();
 
-        return new ArrayList<>();
+        for (PlayList playList : playLists) {
+            playListsNames.add(playList.toString());
+        }
 
+        return playListsNames;
     }
 
     /**
-     * Makes the currently logged in customer follow the given artist.
+     * Makes the customer of a session follow the given artist.
      *
-     * It first checks if the currently logged in customer is already following the given artist by calling the `followArtist()` method on the `loggedCustomer` object.
-     * The `followArtist()` method returns `true` if the artist is already being followed, and `false` otherwise. The result is negated (`!`) to get `true` if the artist is not being followed, and `false` if the artist is being followed. This result is stored in the `artistAlreadyExists` variable.
+     * It first resolves the customer of the session. If the session is not valid, it throws a `WrongLogInException`.
+     * It then checks if the customer is already following the given artist by calling the `followArtist()` method on the customer, while holding the striped lock of the customer.
+     * The `followArtist()` method returns `false` if the artist is already being followed, and `true` otherwise. The result is negated (`!`) and stored in the `artistAlreadyExists` variable.
      * If `artistAlreadyExists` is `true`, which means the artist is already being followed by the customer, it throws an `AlreadyExistsException` with a message indicating that the artist is already being followed by the customer.
      *
+     * @param session The session of the customer.
      * @param artist The artist to follow.
      * @throws AlreadyExistsException If the artist is already being followed by the customer.
+     * @throws NotFoundException If the artist was deleted.
+     * @throws WrongLogInException If the session is not valid.
      */
-    public void followArtist(Artist artist) throws AlreadyExistsException {
+    public void followArtist(Session session, Artist artist) throws AlreadyExistsException, NotFoundException, WrongLogInException {
+
+        Customer customer = sessions.resolve(session);
+
+        boolean artistAlreadyExists = !followArtist(customer, artist);
+
+        if (artistAlreadyExists) {
+            throw new AlreadyExistsException("El artista " + artist.getName() + " ya es seguido por el cliente");
+        }
+    }
+
+    /**
+     * Makes a customer follow the given artist, such as when a follow is restored from the mutation journal.
+     *
+     * The method does the following, while holding the striped lock of the customer:
+     * 1. If the customer was deleted, it throws a NotFoundException. The deletion of a customer marks it before it takes its striped lock
+     *    to remove its follows, so either the follow is refused, or it is made before and removed by the deletion.
+     *    If the customer already follows the artist, it returns false, without publishing a version of the catalog.
+     * 2. Adds the customer to the followers of the artist, unless the artist was deleted, in which case it throws a NotFoundException.
+     *    The artist is checked inside the same atomic step that adds the follower, and the deletion of an artist marks it as deleted before
+     *    taking its followers in unfollowArtists, so either the follow is refused, or the customer is among the followers taken, and the
+     *    deletion waits for the striped lock of the customer to remove the follow.
+     * 3. Adds the artist to the followed artists of the customer, and publishes a version of the catalog.
+     *
+     * @param customer The customer.
+     * @param artist The artist to follow.
+     * @return True if the customer did not follow the artist before, false otherwise.
+     * @throws NotFoundException If the customer or the artist was deleted.
+     */
+    public boolean followArtist(Customer customer, Artist artist) throws NotFoundException {
+
+        ReentrantLock customerLock = lock.stripe(customer.getId());
+        customerLock.lock();
+        try {
+            if (customer.isDeleted()) {
+                throw new NotFoundException("El cliente con username " + customer.getUsername() + " no existe");
+            }
+
+            if (customer.isFollowing(artist)) {
+                return false;
+            }
+
+            if (!addFollowerOfExistingArtist(artist, customer)) {
+                throw new NotFoundException("El artista con id " + artist.getId() + " no existe");
+            }
+
+            try (CatalogVersions.Commit commit = versions.begin()) {
+                commit.changingFollowedArtistsOf(customer);
+                customer.followArtist(artist);
+            }
 
+            return true;
+        } finally {
+            customerLock.unlock();
+        }
+    }
 
+    /**
+     * Makes every customer that follows any of the given artists stop following them, as a single change.
+     *
+     * The method does the following:
+     * 1. Takes the followers of each artist out of the followers by artist, so only the customers that follow the artists are visited.
+     * 2. Takes the striped locks of those customers, in the order of the stripes.
+     * 3. Removes the artists from the followed artists of each of those customers, in a single pass over them.
+     * 4. Publishes a single version of the catalog, with the artists the customers followed before.
+     * If the artists were marked as deleted before, no customer can follow them again afterwards, as followArtist explains.
+     *
+     * @param artists The artists to stop following.
+     */
+    public void unfollowArtists(Collection<Artist> artists) {
+        try (CatalogVersions.Commit commit = versions.begin()) {
+            unfollowArtists(artists, commit);
+        }
     }
 
     /**
-     * Returns a list of the names of all customers.
-     * It initializes an empty list of strings to store the names of the customers.
-     * It iterates over each customer in the customers list, converts each customer to a string representation (presumably the name of the customer), and adds it to the list.
-     * Finally, it returns the list, which contains the names of all customers.
+     * Makes every customer that follows any of the given artists stop following them as part of the given commit, such as the one of
+     * a cascade delete. The striped locks of the customers are taken as unfollowArtists does, and handed to the commit.
      *
-     * @return A list of the names of all customers.
+     * @param artists The artists to stop following.
+     * @param commit The commit the change is part of.
      */
-    public List<String> getCustomersToString() {
-        List<String> customersNames = new ArrayList<>();
+    void unfollowArtists(Collection<Artist> artists, CatalogVersions.Commit commit) {
+
+        Map<Customer, Set<UUID>> artistIdsByFollower = new IdentityHashMap<>();
 
-        for (Customer customer : customers) {
-            customersNames.add(customer.toString());
+        for (Artist artist : artists) {
+            Set<Customer> followers = followersByArtist.remove(artist.getId());
+            if (followers != null) {
+                for (Customer follower : followers) {
+                    artistIdsByFollower.computeIfAbsent(follower, customer -> new HashSet<>()).add(artist.getId());
+                }
+            }
         }
 
-        return customersNames;
+        List<UUID> followerIds = new ArrayList<>();
+        for (Customer follower : artistIdsByFollower.keySet()) {
+            followerIds.add(follower.getId());
+        }
+
+        for (ReentrantLock followerLock : lock.stripes(followerIds)) {
+            followerLock.lock();
+            commit.holdUntilPublished(followerLock::unlock);
+        }
+
+        for (Map.Entry<Customer, Set<UUID>> entry : artistIdsByFollower.entrySet()) {
+            commit.changingFollowedArtistsOf(entry.getKey());
+            entry.getKey().unfollowArtists(entry.getValue());
+        }
+    }
+
+    /**
+     * Adds a customer to the followers of an artist.
+     */
+    private void addFollower(Artist artist, Customer customer) {
+        followersByArtist.compute(artist.getId(), (artistId, followers) -> {
+            Set<Customer> artistFollowers = followers != null ? followers : Collections.newSetFromMap(new IdentityHashMap<>());
+            artistFollowers.add(customer);
+            return artistFollowers;
+        });
+    }
+
+    /**
+     * Adds a customer to the followers of an artist, unless the artist was deleted.
+     *
+     * @return True if the customer was added, false if the artist was deleted.
+     */
+    private boolean addFollowerOfExistingArtist(Artist artist, Customer customer) {
+
+        boolean[] added = new boolean[1];
+
+        followersByArtist.compute(artist.getId(), (artistId, followers) -> {
+            if (artist.isDeleted()) {
+                return followers;
+            }
+
+            Set<Customer> artistFollowers = followers != null ? followers : Collections.newSetFromMap(new IdentityHashMap<>());
+            artistFollowers.add(customer);
+            added[0] = true;
+            return artistFollowers;
+        });
+
+        return added[0];
+    }
+
+    /**
+     * Removes a customer from the followers of an artist, dropping the followers of the artist if none is left.
+     */
+    private void removeFollower(Artist artist, Customer customer) {
+        followersByArtist.computeIfPresent(artist.getId(), (artistId, followers) ->
+            followers.remove(customer) && followers.isEmpty() ? null : followers);
+    }
+
+    /**
+     * Returns a page of the list of customers. Only the customers of the page are read, so listing the customers page by page
+     * costs in proportion to the customers shown.
+     *
+     * @param cursor The cursor of the page, as returned with the previous page, or null for the first page.
+     * @param pageSize The maximum number of customers of the page.
+     * @return The page of customers, in the order of the list.
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is not valid.
+     */
+    public Page<Customer> getCustomersPage(String cursor, int pageSize) {
+        long stamp = lock.readLock();
+        try {
+            return PageCursor.page(customers::get, customers::numberAt, customers.size(), cursor, pageSize);
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
 
     /**
      * Returns a list of the IDs of all playlists of the customer with the given username.
      * It first calls the `searchCustomerByUsername` method to find the customer with the provided username. If the customer is not found, it returns an empty list.
-     * If the customer is found, it retrieves the list of playlist IDs of the found customer and returns it.
+     * If the customer is found, it retrieves the list of playlist IDs of the found customer, while holding the striped lock of the customer, and returns it.
      *
      * @param username The username of the customer to get the playlist IDs for.
      * @return A list of the IDs of all playlists of the customer with the given username, or an empty list if no such customer exists.
      */
     public List<UUID> getCustomerPlayListsIds(String username) {
 
-        return new ArrayList<>();
+        Customer customer = searchCustomerByUsername(username);
+
+        if (customer == null) {
+            return new ArrayList<>();
+        }
+
+        ReentrantLock customerLock = lock.stripe(customer.getId());
+        customerLock.lock();
+        try {
+            return customer.getPlayListsIds();
+        } finally {
+            customerLock.unlock();
+        }
     }
 
     /**
      * Deletes the customer with the given username.
-     * It first calls the `searchCustomerByUsername` method to find the customer with the provided username. If the customer is not found, it throws an `IllegalArgumentException`.
-     * If the customer is found, it removes the customer from the customers list.
+     * It deletes the customer as deleteCustomers does: if the customer is not found, it throws an `IllegalArgumentException`.
+     * If the customer is found, it removes the customer from the customers list, from the index of customers by username and from the followers
+     * of the artists they follow, and closes every session of the customer.
+     * The playlists of the customer are not deleted: the CascadeDeleteService class deletes them.
      *
      * @param username The username of the customer to delete.
      * @throws IllegalArgumentException If no customer with the given username exists.
      */
     public void deleteCustomer(String username) {
+        deleteCustomers(List.of(username));
+    }
 
-        Customer customer = searchCustomerByUsername(username);
+    /**
+     * Deletes the customers with the given usernames, as a single change.
+     *
+     * The method does the following:
+     * 1. It takes the write lock and finds every customer in the index of customers by username. If any of them is not found, it throws
+     *    an `IllegalArgumentException` before deleting anything.
+     * 2. It marks the customers as deleted, so they can no longer log in, follow artists or add playlists, and removes them from
+     *    the customers list by the numbers the index of customers by username keeps for them, without comparing the other customers of the list.
+     * 3. It removes each customer from the index of customers by username and, while holding the striped lock of the customer, from the
+     *    followers of the artists they follow, and closes every session of the customer. The striped lock is taken after the mark, so no
+     *    follow is added afterwards.
+     * 4. It publishes a single version of the catalog without the customers.
+     *
+     * @param usernames The usernames of the customers to delete. A username that appears several times deletes the customer once.
+     * @return The deleted customers, in the order of their first username.
+     * @throws IllegalArgumentException If no customer with one of the given usernames exists.
+     */
+    public List<Customer> deleteCustomers(Collection<String> usernames) {
+        try (CatalogVersions.Commit commit = versions.begin()) {
+            return deleteCustomers(usernames, commit);
+        }
+    }
 
-        if (customer == null) {
-            throw new IllegalArgumentException("The customer does not exist");
+    /**
+     * Deletes the customers with the given usernames as part of the given commit, such as the one of a cascade delete.
+     * The write lock is taken as deleteCustomers does, and handed to the commit, so no other customer is added or deleted until the
+     * commit is published.
+     *
+     * @param usernames The usernames of the customers to delete.
+     * @param commit The commit the deletion is part of.
+     * @return The deleted customers, in the order of their first username.
+     * @throws IllegalArgumentException If no customer with one of the given usernames exists.
+     */
+    List<Customer> deleteCustomers(Collection<String> usernames, CatalogVersions.Commit commit) {
+
+        long stamp = lock.writeLock();
+        commit.holdUntilPublished(() -> lock.unlock(stamp));
+
+        Set<Customer> customersToDelete = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Customer> deletedCustomers = new ArrayList<>();
+        long[] numbers = new long[usernames.size()];
+
+        for (String username : usernames) {
+            IndexedCustomer indexedCustomer = username != null ? customersByUsername.get(username) : null;
+
+            if (indexedCustomer == null) {
+                throw new IllegalArgumentException("The customer does not exist");
+            }
+
+            if (customersToDelete.add(indexedCustomer.customer())) {
+                numbers[deletedCustomers.size()] = indexedCustomer.number();
+                deletedCustomers.add(indexedCustomer.customer());
+            }
+        }
+
+        if (deletedCustomers.isEmpty()) {
+            return deletedCustomers;
+        }
+
+        for (Customer customer : deletedCustomers) {
+            customer.markDeleted();
+        }
+
+        this.customers.removeNumbers(Arrays.copyOf(numbers, deletedCustomers.size()));
+        for (Customer customer : deletedCustomers) {
+            customersByUsername.remove(customer.getUsername());
+
+            ReentrantLock customerLock = lock.stripe(customer.getId());
+            customerLock.lock();
+            try {
+                for (Artist artist : customer.getFollowedArtists()) {
+                    removeFollower(artist, customer);
+                }
+            } finally {
+                customerLock.unlock();
+            }
+
+            sessions.closeAll(customer);
         }
+        commit.customers(customers.snapshot());
 
-        this.customers.remove(customer);
+        return deletedCustomers;
     }
 
     /**
-     * Returns a list of the string representation of all artists followed by the currently logged in customer.
-     * It first checks if a customer is currently logged in. If no customer is logged in, it throws a `WrongLogInException`.
-     * If a customer is logged in, it retrieves the list of followed artists of the logged in customer.
-     * It then initializes an empty list of strings to store the names of the artists.
-     * It iterates over each artist in the retrieved list of artists, converts each artist to a string representation (presumably the name of the artist), and adds it to the list.
-     * Finally, it returns the list, which contains the names of all artists followed by the currently logged in customer.
+     * Returns a list of the string representation of all artists followed by the customer of a session.
+     * It first resolves the customer of the session. If the session is not valid, it throws a `WrongLogInException`.
+     * Then, it returns the string representation of each artist followed by the customer, read while holding the striped lock of the customer.
      *
-     * @return A list of the string representation of all artists followed by the currently logged in customer.
-     * @throws WrongLogInException If no customer is currently logged in.
+     * @param session The session of the customer.
+     * @return A list of the string representation of all artists followed by the customer of the session.
+     * @throws WrongLogInException If the session is not valid.
      */
-    public List<String> getFollowedArtistsByLoggedUser() throws WrongLogInException {
+    public List<String> getFollowedArtistsByLoggedUser(Session session) throws WrongLogInException {
+
+        Customer customer = sessions.resolve(session);
 
-        return new ArrayList<>();
+        ReentrantLock customerLock = lock.stripe(customer.getId());
+        customerLock.lock();
+        try {
+            return customer.getFollowedArtistToString();
+        } finally {
+            customerLock.unlock();
+        }
     }
 
     /**
      * Returns a list of all artists followed by all customers.
      * It initializes an empty list of artists to store the followed artists.
-     * It iterates over each customer in the customers list, retrieves the list of followed artists of each customer, and adds all artists in the retrieved list to the followed artists list.
+     * It iterates over each customer in the customers list under the read lock, retrieves a snapshot of the followed artists of each customer, and adds all artists in the snapshot to the followed artists list.
      * Finally, it returns the followed artists list, which contains all artists followed by all customers.
      *
      * @return A list of all artists followed by all customers.
      */
     public List<Artist> getAllFollowedArtists() {
-       return new ArrayList<>();
+
+        List<Artist> followedArtists = new ArrayList<>();
+
+        long stamp = lock.readLock();
+        try {
+            for (Customer customer : customers) {
+                followedArtists.addAll(customer.getFollowedArtists());
+            }
+        } finally {
+            lock.unlock(stamp);
+        }
+
+        return followedArtists;
     }
 
     /**
-     * Logs out the currently logged in customer.
-     * It sets the `loggedCustomer` to null.
+     * Returns the customer of a session.
+     *
+     * @param session The session of the customer.
+     * @return The customer of the session.
+     * @throws WrongLogInException If the session does not exist, was closed or has expired.
+     */
+    public Customer getLoggedCustomer(Session session) throws WrongLogInException {
+        return sessions.resolve(session);
+    }
+
+    /**
+     * Logs out the customer of a session.
+     * It closes the session, so its handle is no longer accepted.
+     *
+     * @param session The session to close.
+     */
+    public void logOut(Session session) {
+        sessions.close(session);
+    }
+
+    /**
+     * A customer of the index of customers by username, with the number of the customer in the list of customers.
+     *
+     * @param customer The customer.
+     * @param number The number of the customer in the list of customers.
      */
-    public void logOut() {
-        this.loggedCustomer = null;
+    private record IndexedCustomer(Customer customer, long number) {
     }
 }
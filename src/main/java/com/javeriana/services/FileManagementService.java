@@ -4,21 +4,16 @@ import com.javeriana.models.Artist;
 import com.javeriana.models.Customer;
 import com.javeriana.models.PlayList;
 import com.javeriana.models.Song;
+import com.javeriana.utils.CSVTokenizer;
+import com.javeriana.utils.StringDictionary;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 
 /**
  * The CustomerService class is part of a music application and is responsible for managing customers.
@@ -40,283 +35,151 @@ import java.util.UUID;
  */
 public class FileManagementService {
 
+    /**
+     * The reader used to parse large CSV files in parallel.
+     */
+    private final ParallelCSVReader parallelCSVReader = new ParallelCSVReader();
+
+    /**
+     * The pipeline used to import the four CSV files, linking each record as soon as it is parsed.
+     */
+    private final CSVImportPipeline csvImportPipeline = new CSVImportPipeline(parallelCSVReader);
+
     //region import from csv
 
     /**
-     * Imports a list of artists from a CSV file.
+     * Imports the artists, songs, playlists and customers CSV files, each one in parallel chunks.
      *
      * The method does the following:
-     * 1. Creates a File object using the provided path and filename.
-     * 2. Reads all lines from the file into a list of strings.
-     * 3. Initializes an empty list to store the Artist objects.
-     * 4. Loops through each line in the file. For each line, it:
-     *    - Creates an Artist object from the line using the Artist.fromCSV method, which takes the line and the provided separator as parameters.
-     *    - Adds the created Artist object to the list of artists.
-     * 5. Returns the list of Artist objects.
-     *
-     * @param path The path to the CSV file.
-     * @param separator The separator used in the CSV file.
-     * @param artistsFileName The name of the CSV file.
-     * @return A list of Artist objects.
-     * @throws IOException If an I/O error occurs reading from the file or a malformed or unmappable byte sequence is read.
+     * 1. Creates a File object for each file using the provided path and filenames.
+     * 2. Uses the CSVImportPipeline to parse the four files in the order of their references, with the parseSong, parsePlayList and parseCustomer methods,
+     *    into records that keep the IDs they refer to.
+     * 3. Links the IDs of each record to the imported entities as soon as it is parsed, so no file is held unlinked. An ID that does not exist is
+     *    linked to an unknown entity with the ID.
+     *
+     * @param path The path to the CSV files.
+     * @param separator The separator used in the CSV files.
+     * @param artistsFileName The name of the artists CSV file.
+     * @param songsFileName The name of the songs CSV file.
+     * @param playListsFileName The name of the playlists CSV file.
+     * @param customersFileName The name of the customers CSV file.
+     * @return The imported artists, songs, playlists and customers, each one in file order.
+     * @throws IOException If an I/O error occurs reading from any of the files.
      */
-    public List<Artist> importArtistsFromCSV(String path, String separator,String artistsFileName) throws IOException {
-
-        // Create a File object with the given path and filename
-        File file = new File(path + artistsFileName);
-
-        // Read all lines from the file
-        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
-
-        // Create a list to store the artists
-        List<Artist> artists = new ArrayList<>();
-
-        // Loop through each line in the file
-        for (String line : lines) {
-            // Split the line into an array using the separator
-            Artist artist = Artist.fromCSV(line, separator);
-
-            // Add the artist to the list
-            artists.add(artist);
-        }
-
-        // Return the list of artists
-        return artists;
+    public ImportedFiles importCSVFilesConcurrently(String path,
+                                                    String separator,
+                                                    String artistsFileName,
+                                                    String songsFileName,
+                                                    String playListsFileName,
+                                                    String customersFileName) throws IOException {
+
+        return csvImportPipeline.importFiles(separator,
+            new File(path + artistsFileName),
+            new File(path + songsFileName),
+            new File(path + playListsFileName),
+            new File(path + customersFileName));
     }
 
     /**
-     * Imports a list of songs from a CSV file.
+     * Parses a single CSV line into a song record, which keeps the IDs of its artists until it is linked.
      *
      * The method does the following:
-     * 1. Creates a File object using the provided path and filename.
-     * 2. Reads all lines from the file into a list of strings.
-     * 3. Initializes an empty list to store the Song objects.
-     * 4. Loops through each line in the file. For each line, it:
-     *    - Splits the line into an array using the provided separator. Each element of the array corresponds to a piece of song data (ID, name, artist IDs, genre, duration in seconds, album).
-     *    - Extracts the artist IDs from the data, loops through each ID, and adds the corresponding Artist object to a list. If an artist ID does not exist in the provided map of artists, it adds an unknown artist with the ID.
-     *    - Creates a Song object using the extracted data and the list of artists.
-     *    - Adds the created Song object to the list of songs.
-     * 5. Returns the list of Song objects.
+     * 1. Reads the fields of the line with the tokenizer, in order: ID, name, artist IDs, genre, duration in seconds, album. No array or intermediate String is created for fields that are not kept.
+     * 2. Reads the artist IDs of the list field as UUIDs. They are linked to the Artist objects by the CSVImportPipeline right after the line is parsed,
+     *    and an artist ID that does not exist is linked to the unknown artist with the ID, which is shared by every reference to that ID.
+     * 3. Reads the genre and the album through the dictionary of song attributes, so songs with the same genre or album share a single String.
      *
-     * @param path The path to the CSV file.
-     * @param separator The separator used in the CSV file.
-     * @param songsFileName The name of the CSV file.
-     * @param artistsById A map of artists by their IDs.
-     * @return A list of Song objects.
-     * @throws IOException If an I/O error occurs reading from the file.
+     * Data format: SongId;SongName;{ArtistId1,ArtistId2,...};Genre;DurationInSeconds;Album
+     *
+     * @param tokenizer The tokenizer reset to the CSV line that represents a Song.
+     * @param songAttributes The dictionary of the genres and albums of the import.
+     * @return The song record created from the line.
      */
-    public List<Song> importSongsFromCSV(String path,
-                                         String separator,
-                                         String songsFileName,
-                                         Map<String,Artist> artistsById) throws IOException {
-
-        // Create a File object with the given path and filename
-        File file = new File(path + songsFileName);
-
-        // Read all lines from the file
-        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
-
-        // Create a list to store the songs
-        List<Song> songs = new ArrayList<>();
-
-        // Loop through each line in the file
-        for (String line : lines) {
-            // Split the line into an array using the separator
-            String[] data = line.split(separator);
-
-            // Create a Song object with the data from the line
-            UUID id = UUID.fromString(data[0]);
-            String name = data[1];
-            List<String> artistIds = extractIds(data[2]);
-            String genre = data[3];
-            int durationInSeconds = Integer.parseInt(data[4]);
-            String album = data[5];
-            List<Artist> artists = new ArrayList<>();
-
-            // Loop through each artist ID
-            for (String artistId : artistIds) {
-                // Add the artist to the list of artists for the song
-                Artist artist = artistsById.getOrDefault(
-                    artistId,
-                    Artist.GetUnknownArtist(artistId)
-                );
-
-                artists.add(artist);
-            }
+    static CSVImportPipeline.UnresolvedSong parseSong(CSVTokenizer tokenizer, StringDictionary songAttributes) {
 
-            // Create a Song object with the data from the line
-            Song song = new Song(id, name, artists, genre, durationInSeconds, album);
-            // Add the song to the list
-            songs.add(song);
-        }
+        // Read the fields of the line
+        UUID id = tokenizer.expectField().fieldAsUUID();
+        String name = tokenizer.expectField().fieldAsString();
+        UUID[] artistIds = readIds(tokenizer);
+        String genre = tokenizer.expectField().fieldAsString(songAttributes);
+        int durationInSeconds = tokenizer.expectField().fieldAsInt();
+        String album = tokenizer.expectField().fieldAsString(songAttributes);
 
-        // Return the list of songs
-        return songs;
+        return new CSVImportPipeline.UnresolvedSong(id, name, artistIds, genre, durationInSeconds, album);
     }
 
-
-
     /**
-     * Imports a list of playlists from a CSV file.
+     * Parses a single CSV line into a playlist record, which keeps the IDs of its songs until it is linked.
      *
      * The method does the following:
-     * 1. Creates a File object using the provided path and filename.
-     * 2. Reads all lines from the file into a list of strings.
-     * 3. Initializes an empty list to store the PlayList objects.
-     * 4. Loops through each line in the file. For each line, it:
-     *    - Splits the line into an array using the provided separator. Each element of the array corresponds to a piece of playlist data (ID, name, song IDs).
-     *    - Extracts the song IDs from the data, loops through each ID, and adds the corresponding Song object to a list. If a song ID does not exist in the provided map of songs, it adds an unknown song with the ID.
-     *    - Creates a PlayList object using the extracted data and the list of songs.
-     *    - Adds the created PlayList object to the list of playlists.
-     * 5. Returns the list of PlayList objects.
+     * 1. Reads the fields of the line with the tokenizer, in order: ID, name, song IDs.
+     * 2. Reads the song IDs of the list field as UUIDs. They are linked to the Song objects by the CSVImportPipeline right after the line is parsed,
+     *    and a song ID that does not exist is linked to the unknown song with the ID, which is shared by every reference to that ID.
      *
-     * @param path The path to the CSV file.
-     * @param separator The separator used in the CSV file.
-     * @param playListsFileName The name of the CSV file.
-     * @param songsById A map of songs by their IDs.
-     * @return A list of PlayList objects.
-     * @throws IOException If an I/O error occurs reading from the file.
+     * Data format: PlayListId;PlayListName;{SongId1,SongId2,SongId3,...}
+     *
+     * @param tokenizer The tokenizer reset to the CSV line that represents a PlayList.
+     * @return The playlist record created from the line.
      */
-    public List<PlayList> importPlayListsFromCSV(String path,
-                                                 String separator,
-                                                 String playListsFileName,
-                                                 Map<String, Song> songsById)
-        throws IOException {
+    static CSVImportPipeline.UnresolvedPlayList parsePlayList(CSVTokenizer tokenizer) {
 
-        //PlayList File has the following format:
-        //PlayListId;PlayListName;{SongId1,SongId2,SongId3,...}
-
-        // Create a File object with the given path and filename
-        File file = new File(path + playListsFileName);
-
-        // Create a list to store the playLists
-        List<PlayList> playLists = new ArrayList<>();
-
-        // Read all lines from the file
-        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
-
-
-        // Loop through each line in the file
-        for(String line : lines) {
-            String[] tokens = line.split(separator);
-
-            // Data format: [PlayListId,
-            // PlayListName,
-            // "{SongId1,SongId2,SongId3,...}"]
-            UUID id = UUID.fromString(tokens[0]);
-            String name = tokens[1];
-            // Extract the song IDs from the data
-            //This is a list of song ids
-            //["SongId1",SongId2,SongId3,...]
-            List<String> songIds = extractIds(tokens[2]);
-            List<Song> songs = new ArrayList<>();
-            for (String songId : songIds) {
-                // Add the song to the list of songs for the playlist
-                Song song = songsById.getOrDefault(
-                    songId,
-                    Song.getUnknownSong(songId)
-                );
-                songs.add(song);
-            }
-
-            PlayList playList = new PlayList(id, name, songs);
-            playLists.add(playList);
-        }
+        UUID id = tokenizer.expectField().fieldAsUUID();
+        String name = tokenizer.expectField().fieldAsString();
+        UUID[] songIds = readIds(tokenizer);
 
-        // Return the list of playLists
-        return playLists;
+        return new CSVImportPipeline.UnresolvedPlayList(id, name, songIds);
     }
 
     /**
-     * Imports a list of customers from a CSV file.
+     * Parses a single CSV line into a customer record, which keeps the IDs of the artists they follow and of their playlists until it is linked.
      *
      * The method does the following:
-     * 1. Creates a File object using the provided path and filename.
-     * 2. Reads all lines from the file into a list of strings.
-     * 3. Initializes an empty list to store the Customer objects.
-     * 4. Loops through each line in the file. For each line, it:
-     *    - Splits the line into an array using the provided separator. Each element of the array corresponds to a piece of customer data (ID, username, password, name, last name, age, artist IDs, playlist IDs).
-     *    - Extracts the artist IDs from the data, loops through each ID, and adds the corresponding Artist object to a set. If an artist ID does not exist in the provided map of artists, it adds an unknown artist with the ID.
-     *    - Extracts the playlist IDs from the data, loops through each ID, and adds the corresponding PlayList object to a list. If a playlist ID does not exist in the provided map of playlists, it adds an unknown playlist with the ID.
-     *    - Creates a Customer object using the extracted data, the set of artists, and the list of playlists.
-     *    - Adds the created Customer object to the list of customers.
-     * 5. Returns the list of Customer objects.
+     * 1. Reads the fields of the line with the tokenizer, in order: ID, username, password, name, last name, age, artist IDs, playlist IDs.
+     * 2. Reads the artist IDs and the playlist IDs of the two list fields as UUIDs. They are linked to the Artist and PlayList objects by the CSVImportPipeline
+     *    right after the line is parsed, and an ID that does not exist is linked to the unknown entity with the ID.
      *
-     * @param path The path to the CSV file.
-     * @param separator The separator used in the CSV file.
-     * @param customersCSVFileName The name of the CSV file.
-     * @param artistsById A map of artists by their IDs.
-     * @param playListById A map of playlists by their IDs.
-     * @return A list of Customer objects.
-     * @throws IOException If an I/O error occurs reading from the file.
+     * Data format: id;username;password;name;lastName;age;{ArtistId1,ArtistId2,...};{PlayListId1,PlayListId2,...}
+     *
+     * @param tokenizer The tokenizer reset to the CSV line that represents a Customer.
+     * @return The customer record created from the line.
      */
-    public List<Customer> importCustomersFromCSV(String path,
-                                                 String separator,
-                                                 String customersCSVFileName,
-                                                 Map<String, Artist> artistsById,
-                                                 Map<String, PlayList> playListById) throws IOException {
-
-        //File has the following format:
-        //id; username; password; name; lastName; age; {ArtistId1,ArtistId2,ArtistId3,...};{PlayListId1,PlayListId2,PlayListId3,...}
+    static CSVImportPipeline.UnresolvedCustomer parseCustomer(CSVTokenizer tokenizer) {
 
-        // Create a File object with the given path and filename
-        File file = new File(path + customersCSVFileName);
+        UUID id = tokenizer.expectField().fieldAsUUID();
+        String username = tokenizer.expectField().fieldAsString();
+        String password = tokenizer.expectField().fieldAsString();
+        String name = tokenizer.expectField().fieldAsString();
+        String lastName = tokenizer.expectField().fieldAsString();
+        int age = tokenizer.expectField().fieldAsInt();
 
-        // Create a list to store the customers
-        List<Customer> customers = new ArrayList<>();
-
-        // Read all lines from the file
-        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
-
-        // Loop through each line in the file
-
-
-        // Return the list of customers
-        return customers;
+        // The followed artists, then the playlists of the customer
+        UUID[] followedArtistIds = readIds(tokenizer);
+        UUID[] playListIds = readIds(tokenizer);
 
+        return new CSVImportPipeline.UnresolvedCustomer(id, username, password, name, lastName, age, followedArtistIds, playListIds);
     }
 
     /**
-     * Extracts IDs from a string and returns them as a list.
-     *
-     * The method does the following:
-     * 1. Initializes an empty list to store the IDs.
-     * 2. Splits the input string into an array using the comma as a separator.
-     * 3. Loops through each ID in the array. For each ID, it:
-     *    - Removes the curly braces from the ID.
-     *    - Adds the cleaned ID to the list of IDs.
-     * 4. Returns the list of IDs.
-     *
-     * @param ids The string containing the IDs.
-     * @return A list of IDs.
+     * Reads the UUIDs of the list field the tokenizer is on.
      */
-    private List<String> extractIds(String ids) {
+    private static UUID[] readIds(CSVTokenizer tokenizer) {
 
-        // Create a list to store the IDs
-        List<String> idList = new ArrayList<>();
-
-        // Split the string into an array using the comma as a separator
-        String[] idArray = ids.split(",");
-
-        // Loop through each ID in the array
-        for (String id : idArray) {
-            // Remove the curly braces and add the ID to the list
-            idList.add(id.replace("{", "").replace("}", ""));
+        List<UUID> ids = new ArrayList<>();
+        tokenizer.expectField().beginList();
+        while (tokenizer.nextListItem()) {
+            ids.add(tokenizer.itemAsUUID());
         }
 
-        // Return the list of IDs
-        return idList;
+        return ids.toArray(new UUID[0]);
     }
 
     /**
      * Exports a list of artists to a CSV file.
      *
      * The method does the following:
-     * 1. Initializes an empty list to store the lines to write to the file.
-     * 2. Loops through each artist in the provided list. For each artist, it:
-     *    - Converts the artist to its CSV representation using the toCSV method of the Artist class, which takes the provided separator as a parameter.
-     *    - Adds the CSV representation of the artist to the list of lines to write.
-     * 3. Writes the lines to the file using the writeTextFile method, which takes the path to the file (constructed by concatenating the provided path and filename) and the list of lines as parameters.
+     * 1. Converts each artist to its CSV representation using the toCSV method of the Artist class, which takes the provided separator as a parameter.
+     * 2. Writes the lines to the file using the writeTextFile method, which takes the path to the file (constructed by concatenating the provided path and filename),
+     *    the list of artists and the conversion to apply to each one. The lines are written one by one, without building a list of lines first.
      *
      * @param defaultPath The default path to the CSV file.
      * @param separator The separator used in the CSV file.
@@ -327,28 +190,17 @@ public class FileManagementService {
     public void exportArtistsToCSV(String defaultPath, String separator, String defaultArtistsFileName, List<Artist> artists)
         throws IOException {
 
-        // Create a list to store the lines to write to the file
-        List<String> linesToWrite = new ArrayList<>();
-
-        // Loop through each artist
-        for (Artist artist : artists) {
-            // Add the CSV representation of the artist to the list
-            linesToWrite.add(artist.toCSV(separator));
-        }
-
-        // Write the lines to the file
-        writeTextFile(defaultPath + defaultArtistsFileName, linesToWrite);
+        // Write the CSV representation of each artist to the file
+        writeTextFile(defaultPath + defaultArtistsFileName, artists, artist -> artist.toCSV(separator));
     }
 
     /**
      * Exports a list of songs to a CSV file.
      *
      * The method does the following:
-     * 1. Initializes an empty list to store the lines to write to the file.
-     * 2. Loops through each song in the provided list. For each song, it:
-     *    - Converts the song to its CSV representation using the toCSV method of the Song class, which takes the provided separator as a parameter.
-     *    - Adds the CSV representation of the song to the list of lines to write.
-     * 3. Writes the lines to the file using the writeTextFile method, which takes the path to the file (constructed by concatenating the provided path and filename) and the list of lines as parameters.
+     * 1. Converts each song to its CSV representation using the toCSV method of the Song class, which takes the provided separator as a parameter.
+     * 2. Writes the lines to the file using the writeTextFile method, which takes the path to the file (constructed by concatenating the provided path and filename),
+     *    the list of songs and the conversion to apply to each one. The lines are written one by one, without building a list of lines first.
      *
      * @param defaultPath The default path to the CSV file.
      * @param separator The separator used in the CSV file.
@@ -359,28 +211,17 @@ public class FileManagementService {
     public void exportSongsToCSV(String defaultPath, String separator, String defaultSongsFileName, List<Song> songs)
         throws IOException {
 
-        // Create a list to store the lines to write to the file
-        List<String> linesToWrite = new ArrayList<>();
-
-        // Loop through each song
-        for (Song song : songs) {
-            // Add the CSV representation of the song to the list
-            linesToWrite.add(song.toCSV(separator));
-        }
-
-        // Write the lines to the file
-        writeTextFile(defaultPath + defaultSongsFileName, linesToWrite);
+        // Write the CSV representation of each song to the file
+        writeTextFile(defaultPath + defaultSongsFileName, songs, song -> song.toCSV(separator));
     }
 
     /**
      * Exports a list of playlists to a CSV file.
      *
      * The method does the following:
-     * 1. Initializes an empty list to store the lines to write to the file.
-     * 2. Loops through each playlist in the provided list. For each playlist, it:
-     *    - Converts the playlist to its CSV representation using the toCSV method of the PlayList class, which takes the provided separator as a parameter.
-     *    - Adds the CSV representation of the playlist to the list of lines to write.
-     * 3. Writes the lines to the file using the writeTextFile method, which takes the path to the file (constructed by concatenating the provided path and filename) and the list of lines as parameters.
+     * 1. Converts each playList to its CSV representation using the toCSV method of the PlayList class, which takes the provided separator as a parameter.
+     * 2. Writes the lines to the file using the writeTextFile method, which takes the path to the file (constructed by concatenating the provided path and filename),
+     *    the list of playlists and the conversion to apply to each one. The lines are written one by one, without building a list of lines first.
      *
      * @param path The path to the CSV file.
      * @param separator The separator used in the CSV file.
@@ -391,29 +232,17 @@ public class FileManagementService {
     public void exportPlayListsToCSV(String path, String separator, String playListsCSVFileName, List<PlayList> playLists)
         throws IOException {
 
-        // Create a list to store the lines to write to the file
-        List<String> linesToWrite = new ArrayList<>();
-
-        // Loop through each playList
-        for (PlayList playList : playLists) {
-            // Add the CSV representation of the playList to the list
-            linesToWrite.add(playList.toCSV(separator));
-        }
-
-        // Write the lines to the file
-        writeTextFile(path + playListsCSVFileName, linesToWrite);
-
+        // Write the CSV representation of each playList to the file
+        writeTextFile(path + playListsCSVFileName, playLists, playList -> playList.toCSV(separator));
     }
 
     /**
      * Exports a list of customers to a CSV file.
      *
      * The method does the following:
-     * 1. Initializes an empty list to store the lines to write to the file.
-     * 2. Loops through each customer in the provided list. For each customer, it:
-     *    - Converts the customer to its CSV representation using the toCSV method of the Customer class, which takes the provided separator as a parameter.
-     *    - Adds the CSV representation of the customer to the list of lines to write.
-     * 3. Writes the lines to the file using the writeTextFile method, which takes the path to the file (constructed by concatenating the provided path and filename) and the list of lines as parameters.
+     * 1. Converts each customer to its CSV representation using the toCSV method of the Customer class, which takes the provided separator as a parameter.
+     * 2. Writes the lines to the file using the writeTextFile method, which takes the path to the file (constructed by concatenating the provided path and filename),
+     *    the list of customers and the conversion to apply to each one. The lines are written one by one, without building a list of lines first.
      *
      * @param path The path to the CSV file.
      * @param separator The separator used in the CSV file.
@@ -424,211 +253,154 @@ public class FileManagementService {
     public void exportCustomersToCSV(String path, String separator, String customersCSVFileName, List<Customer> customers)
         throws IOException {
 
-        // Create a list to store the lines to write to the file
-        List<String> linesToWrite = new ArrayList<>();
-
-        // Loop through each customer
-
-
-        // Write the lines to the file
-        writeTextFile(path + customersCSVFileName, linesToWrite);
-
+        // Write the CSV representation of each customer to the file
+        writeTextFile(path + customersCSVFileName, customers, customer -> customer.toCSV(separator));
     }
 
     /**
-     * Writes a list of strings to a text file.
+     * Writes a list of objects to a text file, one line per object, replacing the file atomically.
      *
      * The method does the following:
-     * 1. Creates a File object using the provided path.
-     * 2. Deletes the file if it already exists.
-     * 3. Creates a new file at the specified path.
-     * 4. Loops through each line in the provided list. For each line, it:
+     * 1. Creates a temporary file next to the target file through the AtomicFileWriter class.
+     * 2. Loops through each object in the provided list. For each object, it:
      *    - Adds a newline character before the line if it's not the first line.
-     *    - Writes the line to the file.
+     *    - Converts the object to its line with the provided function and encodes it into a large direct buffer,
+     *      which is only written to the file when it is full.
+     * 3. Forces the content to disk and renames the temporary file over the target file.
+     *    If anything fails before the rename, the previous file is left untouched, so a crash never leaves a half-written file behind.
      *
      * @param path The path to the text file.
-     * @param linesToWrite The list of strings to write to the file.
+     * @param items The list of objects to write to the file.
+     * @param toLine The function that converts an object to its line, without the newline character.
+     * @param <T> The type of the objects to write.
      * @throws IOException If an I/O error occurs writing to the file.
      */
-    private void writeTextFile(String path,
-                               List<String> linesToWrite)
+    private <T> void writeTextFile(String path,
+                                   List<T> items,
+                                   Function<T, String> toLine)
         throws IOException {
 
-        // Create a File object with the given path
-        File file = new File(path);
+        AtomicFileWriter.write(Path.of(path), channel -> {
 
-        // Delete the file if it exists
-        Files.deleteIfExists(file.toPath());
-        // Create the file
-        Files.createFile(file.toPath());
+            ChannelTextWriter writer = new ChannelTextWriter(channel);
 
-        // Loop through each line in the list
-        for (int i = 0; i < linesToWrite.size(); i++) {
+            // Loop through each object in the list
+            for (int i = 0; i < items.size(); i++) {
 
-            // If it's not the first line, add a newline character
-            if (i!=0) {
-                Files.writeString(file.toPath(), "\n", StandardOpenOption.APPEND);
+                // If it's not the first line, add a newline character
+                if (i != 0) {
+                    writer.write("\n");
+                }
+                // Write the line to the buffer
+                writer.write(toLine.apply(items.get(i)));
             }
-            // Write the line to the file
-            Files.writeString(file.toPath(), linesToWrite.get(i), StandardOpenOption.APPEND);
-        }
+
+            writer.flush();
+        });
     }
 
     //endregion
 
-   //region import from binary
+    //region import from binary
 
     /**
      * Imports a list of artists from a binary file.
      *
      * The method does the following:
-     * 1. Initializes a FileInputStream with the provided path and filename.
-     * 2. Initializes an ObjectInputStream with the FileInputStream.
-     * 3. Reads an object from the ObjectInputStream, casts it to a list of Artist objects, and returns it.
+     * 1. Maps the file with the provided path and filename in memory through the BinarySnapshot class.
+     * 2. Checks the header of the file and reads one Artist object per record, in the order they were saved.
      *
-     * Regarding the risks of using ObjectInputStream and the Serializable interface:
-     * Security Risk: Deserializing objects can lead to security vulnerabilities, as maliciously crafted input can lead to unexpected code execution. This is because the process of deserialization involves executing code defined in the serialized object, which can be manipulated by an attacker.
-     * Versioning: If you change the structure of a class (add/remove fields), you might not be able to deserialize objects serialized with an older version of the class. This can be mitigated by using the serialVersionUID field to manage versions, but it's still a risk.
-     * Performance: Serialization can be slower and produce larger outputs compared to other methods of object persistence, such as converting objects to JSON or XML.
-     * Inheritance: If a superclass implements Serializable, all subclasses are automatically serializable, which might not always be desired. Also, if a superclass does not implement Serializable, the responsibility of saving the state of the superclass falls on the subclass, which can lead to issues.
-     * Encapsulation: Serialization exposes private fields, breaking the principles of encapsulation in object-oriented programming.
+     * The file uses the compact format of the BinarySnapshot class instead of Java serialization, so reading it does not run any code
+     * from the file, does not depend on the internal structure of the Artist class, and stores no class descriptors.
      *
      * @param path The path to the binary file.
      * @param artistsFileName The name of the binary file.
      * @return A list of Artist objects.
-     * @throws IOException If an I/O error occurs reading from the file.
-     * @throws ClassNotFoundException If the class of a serialized object cannot be found.
+     * @throws IOException If an I/O error occurs reading from the file or the file is not an artists file.
      */
-    public List<Artist> importArtistsFromBinary(String path, String artistsFileName) throws IOException, ClassNotFoundException {
-        // We use try-with-resources to automatically close the FileInputStream and ObjectInputStream
-        try (FileInputStream fileInputStream = new FileInputStream(path + artistsFileName);
-             ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream)) {
-            return (List<Artist>) objectInputStream.readObject();
-        }
+    public List<Artist> importArtistsFromBinary(String path, String artistsFileName) throws IOException {
+        return BinarySnapshot.readArtists(Path.of(path + artistsFileName));
     }
 
     /**
      * Imports a list of songs from a binary file.
      *
      * The method does the following:
-     * 1. Initializes an empty list to store the Song objects.
-     * 2. Initializes a FileInputStream with the provided path and filename, and an ObjectInputStream with the FileInputStream.
-     * 3. Loops while there are more bytes available in the ObjectInputStream. For each iteration, it reads an object from the ObjectInputStream, casts it to a Song object, and adds it to the list.
-     * 4. Returns the list of Song objects.
-     *
-     * Regarding the risks of using ObjectInputStream and the Serializable interface:
-     * Security Risk: Deserializing objects can lead to security vulnerabilities, as maliciously crafted input can lead to unexpected code execution. This is because the process of deserialization involves executing code defined in the serialized object, which can be manipulated by an attacker.
-     * Versioning: If you change the structure of a class (add/remove fields), you might not be able to deserialize objects serialized with an older version of the class. This can be mitigated by using the serialVersionUID field to manage versions, but it's still a risk.
-     * Performance: Serialization can be slower and produce larger outputs compared to other methods of object persistence, such as converting objects to JSON or XML.
-     * Inheritance: If a superclass implements Serializable, all subclasses are automatically serializable, which might not always be desired. Also, if a superclass does not implement Serializable, the responsibility of saving the state of the superclass falls on the subclass, which can lead to issues.
-     * Encapsulation: Serialization exposes private fields, breaking the principles of encapsulation in object-oriented programming.
+     * 1. Maps the file with the provided path and filename in memory through the BinarySnapshot class.
+     * 2. Reads one Song object per record. The number of records is stored in the header of the file, so there is no need to guess
+     *    where the file ends.
+     * 3. Replaces the IDs of the artists of each song with the artists in the provided map, or with an unknown artist if the ID is not in the map.
      *
      * @param path The path to the binary file.
      * @param songsFileName The name of the binary file.
+     * @param artistsById The artists by their IDs.
      * @return A list of Song objects.
-     * @throws IOException If an I/O error occurs reading from the file.
-     * @throws ClassNotFoundException If the class of a serialized object cannot be found.
+     * @throws IOException If an I/O error occurs reading from the file or the file is not a songs file.
      */
-    public List<Song> importSongsFromBinary(String path, String songsFileName) throws IOException, ClassNotFoundException {
-        // Read the list of songs from the file
-        List<Song> songs = new ArrayList<>();
-        // We use try-with-resources to automatically close the FileInputStream and ObjectInputStream
-        try(FileInputStream fileInputStream = new FileInputStream(path + songsFileName);
-            ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream)) {
-            while (objectInputStream.available() > 0) {
-                Song songFromFile = (Song) objectInputStream.readObject();
-                songs.add(songFromFile);
-            }
-        }
-        return songs;
+    public List<Song> importSongsFromBinary(String path, String songsFileName, Map<UUID, Artist> artistsById) throws IOException {
+        return BinarySnapshot.readSongs(Path.of(path + songsFileName), artistsById);
     }
 
     /**
-     * Imports a list of playlists from a binary file.
+     * Opens a binary songs file as a memory-mapped catalog, without reading its songs.
      *
      * The method does the following:
-     * 1. Initializes a FileInputStream with the provided path and filename.
-     * 2. Initializes an ObjectInputStream with the FileInputStream.
-     * 3. Reads an object from the ObjectInputStream, casts it to a list of PlayList objects, and returns it.
+     * 1. Maps the file with the provided path and filename in memory and reads its header, its string table and the location of its index.
+     * 2. Returns a catalog that decodes each song the first time it is requested, resolving the IDs of its artists with the provided map.
      *
-     * Regarding the risks of using ObjectInputStream and the Serializable interface:
-     * Security Risk: Deserializing objects can lead to security vulnerabilities, as maliciously crafted input can lead to unexpected code execution. This is because the process of deserialization involves executing code defined in the serialized object, which can be manipulated by an attacker.
-     * Versioning: If you change the structure of a class (add/remove fields), you might not be able to deserialize objects serialized with an older version of the class. This can be mitigated by using the serialVersionUID field to manage versions, but it's still a risk.
-     * Performance: Serialization can be slower and produce larger outputs compared to other methods of object persistence, such as converting objects to JSON or XML.
-     * Inheritance: If a superclass implements Serializable, all subclasses are automatically serializable, which might not always be desired. Also, if a superclass does not implement Serializable, the responsibility of saving the state of the superclass falls on the subclass, which can lead to issues.
-     * Encapsulation: Serialization exposes private fields, breaking the principles of encapsulation in object-oriented programming.
+     * Opening the catalog takes about the same time whatever the number of songs, and only the songs that are used take heap memory.
+     * Files saved before version 2 of the binary format have no index and cannot be opened as a catalog, so null is returned for them,
+     * and their songs are imported with importSongsFromBinary instead.
      *
      * @param path The path to the binary file.
-     * @param playListsFileName The name of the binary file.
-     * @return A list of PlayList objects.
-     * @throws IOException If an I/O error occurs reading from the file.
-     * @throws ClassNotFoundException If the class of a serialized object cannot be found.
+     * @param songsFileName The name of the binary file.
+     * @param artistsById The artists by their IDs.
+     * @return The catalog of songs, or null if the file has no index.
+     * @throws IOException If an I/O error occurs reading from the file or the file is not a songs file.
      */
-    public List<PlayList> importPlayListsFromBinary(String path, String playListsFileName) throws IOException, ClassNotFoundException {
-        // We use try-with-resources to automatically close the FileInputStream and ObjectInputStream
-        return new ArrayList<>();
+    public MappedSongCatalog openSongsCatalogFromBinary(String path, String songsFileName, Map<UUID, Artist> artistsById) throws IOException {
+        return MappedSongCatalog.open(Path.of(path + songsFileName), artistsById);
     }
 
     /**
-     * Imports a list of customers from a binary file.
+     * Imports a list of playlists from a binary file.
      *
      * The method does the following:
-     * 1. Initializes a FileInputStream with the provided path and filename.
-     * 2. Initializes an ObjectInputStream with the FileInputStream.
-     * 3. Reads an object from the ObjectInputStream, casts it to a list of Customer objects, and returns it.
-     *
-     * Regarding the risks of using ObjectInputStream and the Serializable interface:
-     * Security Risk: Deserializing objects can lead to security vulnerabilities, as maliciously crafted input can lead to unexpected code execution. This is because the process of deserialization involves executing code defined in the serialized object, which can be manipulated by an attacker.
-     * Versioning: If you change the structure of a class (add/remove fields), you might not be able to deserialize objects serialized with an older version of the class. This can be mitigated by using the serialVersionUID field to manage versions, but it's still a risk.
-     * Performance: Serialization can be slower and produce larger outputs compared to other methods of object persistence, such as converting objects to JSON or XML.
-     * Inheritance: If a superclass implements Serializable, all subclasses are automatically serializable, which might not always be desired. Also, if a superclass does not implement Serializable, the responsibility of saving the state of the superclass falls on the subclass, which can lead to issues.
-     * Encapsulation: Serialization exposes private fields, breaking the principles of encapsulation in object-oriented programming.
+     * 1. Maps the file with the provided path and filename in memory through the BinarySnapshot class.
+     * 2. Reads one PlayList object per record.
+     * 3. Replaces the IDs of the songs of each playlist with the songs in the provided map, or with an unknown song if the ID is not in the map.
      *
      * @param path The path to the binary file.
-     * @param customersFileName The name of the binary file.
-     * @return A list of Customer objects.
-     * @throws IOException If an I/O error occurs reading from the file.
-     * @throws ClassNotFoundException If the class of a serialized object cannot be found.
+     * @param playListsFileName The name of the binary file.
+     * @param songsById The songs by their IDs.
+     * @return A list of PlayList objects.
+     * @throws IOException If an I/O error occurs reading from the file or the file is not a playlists file.
      */
-    public List<Customer> importCustomersFromBinary(String path, String customersFileName) throws IOException, ClassNotFoundException {
-        // We use try-with-resources to automatically close the FileInputStream and ObjectInputStream
-       return new ArrayList<>();
+    public List<PlayList> importPlayListsFromBinary(String path, String playListsFileName, Map<UUID, Song> songsById) throws IOException {
+        return BinarySnapshot.readPlayLists(Path.of(path + playListsFileName), songsById);
     }
 
     /**
-     * Imports a list of objects from a binary file.
+     * Imports a list of customers from a binary file.
      *
      * The method does the following:
-     * 1. Initializes a FileInputStream with the provided path and filename.
-     * 2. Initializes an ObjectInputStream with the FileInputStream.
-     * 3. Reads an object from the ObjectInputStream, casts it to a list of objects of type T, and returns it.
-     *
-     * Regarding the risks of using ObjectInputStream and the Serializable interface:
-     * Security Risk: Deserializing objects can lead to security vulnerabilities, as maliciously crafted input can lead to unexpected code execution.
-     *      This is because the process of deserialization involves executing code defined in the serialized object, which can be manipulated by an attacker.
-     * Versioning: If you change the structure of a class (add/remove fields), you might not be able to deserialize objects serialized with an older version of the class.
-     *      This can be mitigated by using the serialVersionUID field to manage versions, but it's still a risk.
-     * Performance: Serialization can be slower and produce larger outputs compared to other methods of object persistence, such as converting objects to JSON or XML.
-     * Inheritance: If a superclass implements Serializable, all subclasses are automatically serializable, which might not always be desired.
-     *      Also, if a superclass does not implement Serializable, the responsibility of saving the state of the superclass falls on the subclass, which can lead to issues.
-     * Encapsulation: Serialization exposes private fields, breaking the principles of encapsulation in object-oriented programming.
-     *
-     * Generics in Java is a mechanism that allows for type (classes and interfaces) to be parameters when defining classes, interfaces, and methods.
-     * Much like the more familiar formal parameters used in method declarations, type parameters provide a way for you to re-use the same code with different inputs.
-     * The difference is that the inputs to formal parameters are values, while the inputs to type parameters are types.
-     * In the context of this method, <T> is a type parameter that represents the type of objects in the list that this method will return.
-     * This allows the method to be used with any type of object, increasing its reusability.
-     * The actual type to replace T will be determined at runtime.
+     * 1. Maps the file with the provided path and filename in memory through the BinarySnapshot class.
+     * 2. Reads one Customer object per record.
+     * 3. Replaces the IDs of the followed artists and the playlists of each customer with the ones in the provided maps,
+     *    or with unknown ones if an ID is not in the maps.
      *
      * @param path The path to the binary file.
-     * @param fileName The name of the binary file.
-     * @return A list of objects of type T.
-     * @throws IOException If an I/O error occurs reading from the file.
-     * @throws ClassNotFoundException If the class of a serialized object cannot be found.
+     * @param customersFileName The name of the binary file.
+     * @param artistsById The artists by their IDs.
+     * @param playListsById The playlists by their IDs.
+     * @return A list of Customer objects.
+     * @throws IOException If an I/O error occurs reading from the file or the file is not a customers file.
      */
-    public <T> List<T> importObjectsFromBinary(String path, String fileName) throws IOException, ClassNotFoundException {
-        // We use try-with-resources to automatically close the FileInputStream and ObjectInputStream
-        return new ArrayList<>();
+    public List<Customer> importCustomersFromBinary(String path,
+                                                    String customersFileName,
+                                                    Map<UUID, Artist> artistsById,
+                                                    Map<UUID, PlayList> playListsById) throws IOException {
+        return BinarySnapshot.readCustomers(Path.of(path + customersFileName), artistsById, playListsById);
     }
 
     //endregion
@@ -639,9 +411,9 @@ public class FileManagementService {
      * Exports a list of artists to a binary file.
      *
      * The method does the following:
-     * 1. Initializes a FileOutputStream with the provided path and filename.
-     * 2. Initializes an ObjectOutputStream with the FileOutputStream.
-     * 3. Writes the list of Artist objects to the ObjectOutputStream.
+     * 1. Writes the list of Artist objects with the BinarySnapshot class: a versioned header followed by one length-prefixed record per artist,
+     *    with the ID stored as two longs.
+     * 2. Writes to a temporary file that replaces the previous file atomically once it is complete.
      *
      * @param defaultPath The default path to the binary file.
      * @param defaultArtistsFileName The name of the binary file.
@@ -649,20 +421,18 @@ public class FileManagementService {
      * @throws IOException If an I/O error occurs writing to the file.
      */
     public void exportArtistsToBinary(String defaultPath, String defaultArtistsFileName, List<Artist> artists) throws IOException {
-        // We use try-with-resources to automatically close the FileOutputStream and ObjectOutputStream
-        try (FileOutputStream fileOutputStream = new FileOutputStream(defaultPath + defaultArtistsFileName);
-             ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream)) {
-            objectOutputStream.writeObject(artists);
-        }
+        BinarySnapshot.writeArtists(Path.of(defaultPath + defaultArtistsFileName), artists);
     }
 
     /**
      * Exports a list of songs to a binary file.
      *
      * The method does the following:
-     * 1. Initializes a FileOutputStream with the provided path and filename.
-     * 2. Initializes an ObjectOutputStream with the FileOutputStream.
-     * 3. Writes the list of Song objects to the ObjectOutputStream.
+     * 1. If the list is the read-only view of a memory-mapped catalog, as the songs of the SongService are until they first change, copies
+     *    the mapped file of the catalog, which holds exactly those songs, without decoding them.
+     * 2. Otherwise, writes the list of Song objects with the BinarySnapshot class. Genres and albums are stored once in the string table of the file,
+     *    and the artists of each song are stored by their IDs.
+     * 3. Writes to a temporary file that replaces the previous file atomically once it is complete.
      *
      * @param path The default path to the binary file.
      * @param songsFileName The name of the binary file.
@@ -670,22 +440,22 @@ public class FileManagementService {
      * @throws IOException If an I/O error occurs writing to the file.
      */
     public void exportSongsToBinary(String path, String songsFileName, List<Song> songs) throws IOException {
-        // We use try-with-resources to automatically close the FileOutputStream and ObjectOutputStream
-        try (FileOutputStream fileOutputStream = new FileOutputStream(path + songsFileName);
-             ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream)) {
-            for (Song song : songs) {
-                objectOutputStream.writeObject(song);
-            }
+
+        MappedSongCatalog catalog = MappedSongCatalog.viewedBy(songs);
+        if (catalog != null) {
+            catalog.copyTo(Path.of(path + songsFileName));
+            return;
         }
+
+        BinarySnapshot.writeSongs(Path.of(path + songsFileName), songs);
     }
 
     /**
      * Exports a list of playlists to a binary file.
      *
      * The method does the following:
-     * 1. Initializes a FileOutputStream with the provided path and filename.
-     * 2. Initializes an ObjectOutputStream with the FileOutputStream.
-     * 3. Writes the list of PlayList objects to the ObjectOutputStream.
+     * 1. Writes the list of PlayList objects with the BinarySnapshot class. The songs of each playlist are stored by their IDs.
+     * 2. Writes to a temporary file that replaces the previous file atomically once it is complete.
      *
      * @param path The path to the binary file.
      * @param playListsFileName The name of the binary file.
@@ -693,17 +463,28 @@ public class FileManagementService {
      * @throws IOException If an I/O error occurs writing to the file.
      */
     public void exportPlayListsToBinary(String path, String playListsFileName, List<PlayList> playLists) throws IOException {
-        // We use try-with-resources to automatically close the FileOutputStream and ObjectOutputStream
+        BinarySnapshot.writePlayLists(Path.of(path + playListsFileName), playLists);
+    }
 
+    /**
+     * Exports the playlists of a version of the catalog to a binary file, as exportPlayListsToBinary does with a list, with the songs
+     * each playlist had in that version.
+     *
+     * @param path The path to the binary file.
+     * @param playListsFileName The name of the binary file.
+     * @param snapshot The version of the catalog to export.
+     * @throws IOException If an I/O error occurs writing to the file.
+     */
+    public void exportPlayListsToBinary(String path, String playListsFileName, CatalogSnapshot snapshot) throws IOException {
+        BinarySnapshot.writePlayLists(Path.of(path + playListsFileName), snapshot.getPlayLists(), snapshot::getSongsOf);
     }
 
     /**
      * Exports a list of customers to a binary file.
      *
      * The method does the following:
-     * 1. Initializes a FileOutputStream with the provided path and filename.
-     * 2. Initializes an ObjectOutputStream with the FileOutputStream.
-     * 3. Writes the list of Customer objects to the ObjectOutputStream.
+     * 1. Writes the list of Customer objects with the BinarySnapshot class. The followed artists and the playlists of each customer are stored by their IDs.
+     * 2. Writes to a temporary file that replaces the previous file atomically once it is complete.
      *
      * @param path The path to the binary file.
      * @param customersFileName The name of the binary file.
@@ -711,9 +492,32 @@ public class FileManagementService {
      * @throws IOException If an I/O error occurs writing to the file.
      */
     public void exportCustomersToBinary(String path, String customersFileName, List<Customer> customers) throws IOException {
-        // We use try-with-resources to automatically close the FileOutputStream and ObjectOutputStream
+        BinarySnapshot.writeCustomers(Path.of(path + customersFileName), customers);
+    }
 
+    /**
+     * Exports the customers of a version of the catalog to a binary file, as exportCustomersToBinary does with a list, with the artists
+     * each customer followed and the playlists each customer had in that version.
+     *
+     * @param path The path to the binary file.
+     * @param customersFileName The name of the binary file.
+     * @param snapshot The version of the catalog to export.
+     * @throws IOException If an I/O error occurs writing to the file.
+     */
+    public void exportCustomersToBinary(String path, String customersFileName, CatalogSnapshot snapshot) throws IOException {
+        BinarySnapshot.writeCustomers(Path.of(path + customersFileName), snapshot.getCustomers(), snapshot::getFollowedArtistsOf,
+            snapshot::getPlayListsOf);
     }
     //endregion
 
-}
\ No newline at end of file
+    /**
+     * The ImportedFiles record holds the entities imported from the four CSV files.
+     *
+     * @param artists The imported artists.
+     * @param songs The imported songs, linked to the imported artists.
+     * @param playLists The imported playlists, linked to the imported songs.
+     * @param customers The imported customers, linked to the imported artists and playlists.
+     */
+    public record ImportedFiles(List<Artist> artists, List<Song> songs, List<PlayList> playLists, List<Customer> customers) {
+    }
+}
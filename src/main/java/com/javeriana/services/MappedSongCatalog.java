@@ -0,0 +1,329 @@
+package com.javeriana.services;
+
+import com.javeriana.models.Artist;
+import com.javeriana.models.Song;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The MappedSongCatalog class gives read access to the songs of a binary songs file without loading the whole file.
+ *
+ * The class does the following:
+ * 1. Memory-maps the file and reads only its header, its string table and the location of its index, so opening a catalog
+ *    takes about the same time whatever the number of songs. The operating system loads pages of the file as they are read.
+ * 2. Decodes a song the first time it is requested, by position or by id, and keeps it in a slot of an array indexed by position,
+ *    so each song is kept at most once and the same Song object is returned every time. Songs that are never requested only use their slot.
+ * 3. Finds a song by id with a binary search over the id index of the file, which is sorted by id.
+ * 4. Writes the mapped bytes to another file as they are (copyTo), so a catalog that was never changed is saved without decoding its songs.
+ *
+ * Catalogs are opened by the FileManagementService class and handed to the SongService class, which are the only classes that use its methods.
+ * The catalog has no index other than the one by id, so the SongService class decodes the whole catalog the first time it needs any other
+ * index or changes the songs.
+ * The catalog is read only. The file is mapped when the catalog is opened, so replacing the file afterwards, which the application
+ * does with an atomic rename, does not change what the catalog sees, nor what copyTo writes.
+ */
+public final class MappedSongCatalog {
+
+    /**
+     * The file, used in error messages.
+     */
+    private final Path file;
+
+    /**
+     * The mapped bytes of the file. Only absolute reads are used, so the buffer can be shared between threads.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The string table of the file.
+     */
+    private final String[] strings;
+
+    /**
+     * The number of songs in the file.
+     */
+    private final int size;
+
+    /**
+     * The offset of the record offsets and the offset of the id index.
+     */
+    private final int recordOffsetsStart;
+    private final int idIndexStart;
+
+    /**
+     * The artists used to resolve the artist ids of the songs, copied when the catalog is opened.
+     * A song is decoded while another service may hold its lock, as a cascade delete holds the one of the ArtistService while it
+     * deletes the songs of the artists, so decoding never reads the ArtistService. The copy also keeps resolving a deleted artist
+     * to the artist itself, so the songs of an artist are still found by it after the artist is deleted.
+     */
+    private final Map<UUID, Artist> artistsById;
+
+    /**
+     * The unknown artists of the missing artist IDs, shared by every song decoded from the catalog.
+     */
+    private final PlaceholderRegistry placeholders = new PlaceholderRegistry();
+
+    /**
+     * The songs decoded so far, by their position in the file. The slot of a song that was not decoded is null.
+     */
+    private final AtomicReferenceArray<Song> decodedSongs;
+
+    private MappedSongCatalog(Path file,
+                              ByteBuffer buffer,
+                              BinarySnapshot.Header header,
+                              Map<UUID, Artist> artistsById) {
+        this.file = file;
+        this.buffer = buffer;
+        this.strings = header.strings();
+        this.size = header.recordCount();
+        this.recordOffsetsStart = header.indexOffset();
+        this.idIndexStart = header.indexOffset() + size * Long.BYTES;
+        this.artistsById = Map.copyOf(artistsById);
+        this.decodedSongs = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Opens a catalog over a binary songs file.
+     *
+     * The method does the following:
+     * 1. Maps the file in memory and reads its header and string table.
+     * 2. Checks that the file has an index, which files written before version 2 of the format do not have. If it has none, returns null,
+     *    so the caller can read the songs of the file with BinarySnapshot.readSongs instead.
+     * 3. Checks that the index fits in the file. The records themselves are not read.
+     *
+     * @param file The binary songs file.
+     * @param artistsById The artists used to resolve the artist ids of the songs.
+     * @return The catalog, or null if the file has no index.
+     * @throws IOException If an I/O error occurs or the file is not a songs file.
+     */
+    static MappedSongCatalog open(Path file, Map<UUID, Artist> artistsById) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            ByteBuffer buffer = BinarySnapshot.map(file, channel);
+
+            try {
+                BinarySnapshot.Header header = BinarySnapshot.readHeader(file, buffer, BinarySnapshot.SONGS);
+
+                if (header.indexOffset() < 0) {
+                    return null;
+                }
+
+                long indexEnd = header.indexOffset()
+                    + (long) header.recordCount() * (Long.BYTES + BinarySnapshot.ID_INDEX_ENTRY_SIZE);
+                if (indexEnd > buffer.limit()) {
+                    throw new BufferUnderflowException();
+                }
+
+                return new MappedSongCatalog(file, buffer, header, artistsById);
+
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw BinarySnapshot.corrupted(file, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of songs in the catalog.
+     *
+     * @return The number of songs.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the song at the given position of the file, decoding it the first time it is requested.
+     *
+     * @param position The position of the song, from 0 to size() - 1.
+     * @return The song at the given position.
+     * @throws IndexOutOfBoundsException If the position is out of range.
+     */
+    Song get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException(position);
+        }
+
+        Song song = decodedSongs.get(position);
+        if (song == null) {
+            // Two threads may decode the same song at the same time, but only the first one is kept and returned to both
+            song = decode(position);
+            if (!decodedSongs.compareAndSet(position, null, song)) {
+                song = decodedSongs.get(position);
+            }
+        }
+
+        return song;
+    }
+
+    /**
+     * Returns the song with the given id, or null if the catalog has no such song.
+     *
+     * The method does the following:
+     * 1. Binary searches the id index, comparing the two longs of the id without creating UUID objects.
+     * 2. If the id is found, returns the song at the position stored in the index entry.
+     *
+     * @param id The id of the song.
+     * @return The song with the given id, or null if no such song exists.
+     */
+    Song findById(UUID id) {
+
+        long mostSignificantBits = id.getMostSignificantBits();
+        long leastSignificantBits = id.getLeastSignificantBits();
+
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = idIndexStart + middle * BinarySnapshot.ID_INDEX_ENTRY_SIZE;
+
+            int comparison = BinarySnapshot.compareIds(buffer.getLong(entry), buffer.getLong(entry + Long.BYTES),
+                mostSignificantBits, leastSignificantBits);
+
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return get(buffer.getInt(entry + 2 * Long.BYTES));
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns all the songs of the catalog in file order, decoding the ones that were not requested before.
+     *
+     * @return A new list with all the songs.
+     */
+    List<Song> getAll() {
+        List<Song> songs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            songs.add(get(i));
+        }
+        return songs;
+    }
+
+    /**
+     * Returns a read-only list view of the catalog in file order. Reading a song of the view only decodes that song, so the view can be
+     * kept as a version of the songs without decoding the whole catalog.
+     *
+     * @return A read-only list of the songs.
+     */
+    List<Song> asList() {
+        return new ReadOnlySongs();
+    }
+
+    /**
+     * Returns a read-only map view of the catalog by song id. Looking up a song through the view only decodes that song,
+     * so it can be passed to code that resolves song ids, such as the import of playlists, without loading the whole catalog.
+     * Iterating over the view decodes every song.
+     *
+     * @return A read-only map of songs by their IDs.
+     */
+    Map<UUID, Song> asMap() {
+        return new AbstractMap<>() {
+
+            @Override
+            public Song get(Object key) {
+                return key instanceof UUID id ? findById(id) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Set<Entry<UUID, Song>> entrySet() {
+                Map<UUID, Song> songsById = new LinkedHashMap<>();
+                for (Song song : getAll()) {
+                    songsById.put(song.getId(), song);
+                }
+                return Collections.unmodifiableMap(songsById).entrySet();
+            }
+        };
+    }
+
+    /**
+     * Returns the catalog a list was returned by, if the list is the read-only view of a catalog returned by asList.
+     *
+     * @param songs The list of songs.
+     * @return The catalog of the view, or null if the list is not such a view.
+     */
+    static MappedSongCatalog viewedBy(List<Song> songs) {
+        return songs instanceof ReadOnlySongs view ? view.catalog() : null;
+    }
+
+    /**
+     * Writes the mapped file of the catalog, as it was when the catalog was opened, to the given file, without decoding any song.
+     * The file is written with the AtomicFileWriter class, so it replaces the previous file atomically once it is complete.
+     *
+     * @param target The file to write.
+     * @throws IOException If an I/O error occurs writing the file.
+     */
+    void copyTo(Path target) throws IOException {
+        AtomicFileWriter.write(target, channel -> {
+            ByteBuffer bytes = buffer.duplicate().clear();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        });
+    }
+
+    /**
+     * The read-only list view of the catalog.
+     */
+    private final class ReadOnlySongs extends AbstractList<Song> implements RandomAccess {
+
+        @Override
+        public Song get(int index) {
+            return MappedSongCatalog.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        MappedSongCatalog catalog() {
+            return MappedSongCatalog.this;
+        }
+    }
+
+    /**
+     * Decodes the record at the given position.
+     */
+    private Song decode(int position) {
+        try {
+            int recordOffset = (int) buffer.getLong(recordOffsetsStart + position * Long.BYTES);
+            int length = buffer.getInt(recordOffset);
+            ByteBuffer record = buffer.slice(recordOffset + Integer.BYTES, length);
+            return BinarySnapshot.readSong(record, strings, artistsById, placeholders);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalStateException(BinarySnapshot.corrupted(file, e).getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,1000 @@
+package com.javeriana.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The MutationJournal class is an append-only log of the changes made through the controllers, so that no change is lost
+ * if the application stops before the data is saved again.
+ *
+ * The journal lives in its own directory, which contains:
+ * - journal.log: a header with the magic number (int), the format version (short) and the generation of the journal (long),
+ *   followed by one record per change. Each record is the length of its payload (int), the CRC32C checksum of the payload (int)
+ *   and the payload: the code of the operation (byte), the number of arguments (int) and the arguments as strings.
+ * - snapshot-N: the snapshot of generation N, that is, the saved state on top of which the changes of journal.log must be replayed.
+ *   Generation 0 has no snapshot: its changes are replayed on top of an empty application.
+ *
+ * The class does the following:
+ * 1. When opened, it reads the records of journal.log through its channel. A record that was only partly written when the application stopped,
+ *    which is detected by its length or its checksum, is discarded together with everything after it, and the file is cut there.
+ *    Snapshot directories of other generations, left over by a checkpoint that did not finish or whose old snapshot could not be deleted,
+ *    are deleted.
+ * 2. Gives each change a ticket (begin), which the caller holds while it applies the change to the services and appends its record.
+ *    Tickets do not exclude each other: changes are applied at the same time, under the locks of the services they change only.
+ * 3. Puts each record in the order its change was published to the versions of the catalog. The journal listens to the versions it is
+ *    opened with, and when a thread that holds a ticket publishes a version, the ticket takes the next sequence number, under the commit
+ *    lock of the versions. A change that reads what another one did can only do so once the other one is published, so it always gets
+ *    a later number, and replaying the records in order applies every change on top of the same data it was applied to.
+ * 4. Appends records with group commit: the record of a ticket is added to the pending records, and once the ticket is released the caller
+ *    waits until the record is on disk. The records are written in the order of their numbers, so a record waits for the ones before it,
+ *    whose changes are being appended. While a batch is being forced to disk, the records of other changes accumulate in the next batch,
+ *    so many changes share a single write and a single fsync. A change is only acknowledged once its record is on disk.
+ * 5. Takes checkpoints without stopping the changes. It pins the current version of the catalog, and at the same point notes the last
+ *    number given, so the snapshot holds exactly the changes numbered up to it. It writes the snapshot of the pinned version in
+ *    snapshot-N+1 through a SnapshotWriter, and forces every file of it, and the directories, to disk. Meanwhile the changes keep being
+ *    applied and written to the current journal. Only then it replaces journal.log with a journal of generation N+1 that holds the records
+ *    numbered after the snapshot, and forces the rename to disk. The replacement is an atomic rename, so after a crash the journal either
+ *    still points to the old snapshot with all its records, or to the new snapshot, complete on disk, with the records after it.
+ *    The old snapshot is deleted only once the new journal is on disk, so the journal never points to a deleted snapshot. Deleting it is
+ *    best-effort: the checkpoint is already complete, so a failure is logged and the directory is deleted the next time the journal is opened.
+ *
+ * A change is visible to the readers of the services as soon as it is applied, before its record is on disk. If the application stops
+ * before that, the change is lost, but so is every change numbered after it, since the records are written in order, so the journal
+ * always holds the changes in a prefix of the order they were published, and only unacknowledged changes are lost.
+ */
+public final class MutationJournal implements Closeable {
+
+    /**
+     * The first four bytes of the journal file, "SPJL" in ASCII.
+     */
+    private static final int MAGIC = 0x53504A4C;
+
+    /**
+     * The version of the journal format written by this class.
+     */
+    private static final short VERSION = 1;
+
+    /**
+     * The size of the header of the journal file.
+     */
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Long.BYTES;
+
+    /**
+     * The size of the length and checksum that precede the payload of each record.
+     */
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+    /**
+     * The largest payload accepted. A larger length can only come from a damaged record.
+     */
+    private static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The name of the journal file and the prefix of the snapshot directories.
+     */
+    private static final String JOURNAL_FILE_NAME = "journal.log";
+    private static final String SNAPSHOT_DIRECTORY_PREFIX = "snapshot-";
+
+    /**
+     * The size of the buffer the records are read through when the journal is opened. A larger record gets a buffer of its own size.
+     */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The logger of the failures that do not stop the journal, such as the deletion of an old snapshot.
+     */
+    private static final Logger LOGGER = Logger.getLogger(MutationJournal.class.getName());
+
+    /**
+     * The pending record of a number whose ticket was closed without appending a record, which is skipped when the records are written.
+     */
+    private static final byte[] NO_RECORD = new byte[0];
+
+    /**
+     * The directory of the journal.
+     */
+    private final Path directory;
+
+    /**
+     * The versions of the catalog, whose publications number the changes, and which checkpoints pin.
+     */
+    private final CatalogVersions versions;
+
+    /**
+     * The open ticket of each thread, which takes a number when its thread publishes a version.
+     */
+    private final ThreadLocal<Ticket> currentTicket = new ThreadLocal<>();
+
+    /**
+     * The lock held by a checkpoint, so only one runs at a time. Changes never take it.
+     */
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+
+    /**
+     * The lock that guards the state below, and the condition signaled every time a batch is forced to disk or the next record to write
+     * is appended.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition progress = lock.newCondition();
+
+    /**
+     * The channel of the journal file.
+     */
+    private FileChannel channel;
+
+    /**
+     * The generation of the journal, which is also the generation of the snapshot it applies to.
+     */
+    private long generation;
+
+    /**
+     * The records read when the journal was opened, which are the changes to replay.
+     */
+    private final List<Entry> recoveredEntries;
+
+    /**
+     * The last number given to a ticket, and the last number of a record appended, as opposed to a ticket closed without a record.
+     */
+    private long reservedSequence;
+    private long lastRecordSequence;
+
+    /**
+     * The records waiting to be written, by their numbers, and the last number taken by a batch. The records are taken in order, so every
+     * number up to it was written or skipped, or is being written.
+     */
+    private final Map<Long, byte[]> pendingRecords = new HashMap<>();
+    private long batchedSequence;
+
+    /**
+     * The last number known to be on disk, and whether a batch, or the journal of a checkpoint, is being written.
+     */
+    private long durableSequence;
+    private boolean flushing;
+
+    /**
+     * The last number held by the snapshot of the journal, or 0 if the journal was not checkpointed since it was opened.
+     */
+    private long checkpointSequence;
+
+    /**
+     * While a checkpoint is writing its snapshot, the last number the snapshot holds, and the records numbered after it that were
+     * written to the current journal meanwhile, which the journal of the checkpoint carries over. The records are null otherwise.
+     */
+    private long checkpointCut;
+    private List<byte[]> carriedRecords;
+
+    /**
+     * The error that made the journal unusable, if any. After a failed write, the content of the file is unknown,
+     * so no more changes are accepted.
+     */
+    private IOException failure;
+
+    private MutationJournal(Path directory, CatalogVersions versions, FileChannel channel, long generation, List<Entry> recoveredEntries) {
+        this.directory = directory;
+        this.versions = versions;
+        this.channel = channel;
+        this.generation = generation;
+        this.recoveredEntries = recoveredEntries;
+    }
+
+    /**
+     * Opens the journal in the given directory, creating the directory and an empty journal of generation 0 if needed.
+     *
+     * The method does the following:
+     * 1. Creates the journal file if it does not exist.
+     * 2. Checks the header and reads every complete record, stopping at the first record that is incomplete or whose checksum does not match.
+     * 3. Cuts the file after the last complete record, so new records are appended right after it. The records are read through the
+     *    channel, not a mapping of the file, so no mapping of the cut bytes is left behind.
+     * 4. Deletes the snapshot directories of other generations than the one of the journal, best-effort.
+     * 5. Listens to the given versions of the catalog, to number the changes as they are published.
+     *
+     * @param directory The directory of the journal.
+     * @param versions The versions of the catalog the services publish their changes to.
+     * @return The opened journal.
+     * @throws IOException If an I/O error occurs or the file is not a journal.
+     */
+    public static MutationJournal open(Path directory, CatalogVersions versions) throws IOException {
+
+        Files.createDirectories(directory);
+        Path file = directory.resolve(JOURNAL_FILE_NAME);
+
+        if (!Files.exists(file)) {
+            writeEmptyJournal(file, 0);
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // Keep reading until the header is complete or the file ends
+            }
+            header.flip();
+
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("El archivo " + file + " no es un diario de cambios");
+            }
+
+            short version = header.getShort();
+            if (version != VERSION) {
+                throw new IOException("La versión " + version + " del diario de cambios " + file + " no es soportada");
+            }
+
+            long generation = header.getLong();
+
+            List<Entry> entries = new ArrayList<>();
+            long validEnd = readRecords(channel, entries);
+
+            // Drop the record that was being written when the application stopped, if any
+            if (validEnd < channel.size()) {
+                channel.truncate(validEnd);
+                channel.force(true);
+            }
+            channel.position(validEnd);
+
+            deleteStaleSnapshots(directory, generation);
+
+            MutationJournal journal = new MutationJournal(directory, versions, channel, generation, entries);
+            versions.onPublish(journal::published);
+            return journal;
+
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the changes read when the journal was opened, in the order they were made.
+     *
+     * @return The changes to replay on top of the snapshot of the journal.
+     */
+    public List<Entry> getRecoveredEntries() {
+        return List.copyOf(recoveredEntries);
+    }
+
+    /**
+     * Returns the directory of the snapshot the changes of the journal apply to.
+     *
+     * @return The snapshot directory, or null if the journal applies to an empty application.
+     */
+    public Path getSnapshotDirectory() {
+        lock.lock();
+        try {
+            return generation == 0 ? null : snapshotDirectory(generation);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the journal has any change since its last checkpoint.
+     *
+     * @return True if the journal has no changes, false otherwise.
+     */
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return recoveredEntries.isEmpty() && lastRecordSequence <= checkpointSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives a ticket for a change. The caller applies the change to the services, appends its record with the ticket and closes
+     * the ticket, which waits until the record is on disk:
+     * <pre>
+     * try (MutationJournal.Ticket ticket = journal.begin()) {
+     *     Artist artist = artistService.addArtist(name);
+     *     ticket.append(Operation.ADD_ARTIST, artist.getId().toString(), artist.getName());
+     * }
+     * </pre>
+     * Beginning a change does not wait for any other change nor for a checkpoint. The change must be published to the versions of the
+     * catalog as a single version, which gives the ticket its place in the journal, so a checkpoint never holds part of a change.
+     * If the change fails, the ticket is closed without a record and nothing is written.
+     *
+     * @return The ticket, which must be closed by the thread that got it.
+     * @throws IllegalStateException If the thread already holds an open ticket.
+     */
+    public Ticket begin() {
+
+        if (currentTicket.get() != null) {
+            throw new IllegalStateException("Cada cambio del diario debe terminar antes de empezar otro");
+        }
+
+        Ticket ticket = new Ticket();
+        currentTicket.set(ticket);
+        return ticket;
+    }
+
+    /**
+     * Gives the next number to the ticket of the thread that published a version, unless it has one. It is called by the versions of
+     * the catalog while holding their commit lock, so the numbers follow the order of the versions.
+     */
+    private void published() {
+        Ticket ticket = currentTicket.get();
+        if (ticket != null) {
+            lock.lock();
+            try {
+                reserve(ticket);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Gives the next number to a ticket that has none. It is called with the lock held.
+     */
+    private void reserve(Ticket ticket) {
+        if (ticket.sequence == 0) {
+            ticket.sequence = ++reservedSequence;
+        }
+    }
+
+    /**
+     * Adds the record of a ticket to the pending records, under the number of the ticket. The ticket must have a number.
+     * For a ticket closed without a record, NO_RECORD is added instead, which is skipped when the records are written.
+     */
+    private void enqueue(Ticket ticket, byte[] record) {
+        pendingRecords.put(ticket.sequence, record);
+
+        if (record != NO_RECORD) {
+            lastRecordSequence = Math.max(lastRecordSequence, ticket.sequence);
+        }
+
+        // The record may be the one a batch is waiting for
+        if (ticket.sequence == batchedSequence + 1) {
+            progress.signalAll();
+        }
+    }
+
+    /**
+     * Waits until the record with the given number is on disk.
+     *
+     * The method does the following:
+     * 1. If no batch is being written and the next record to write has been appended, takes every pending record that follows the last
+     *    batch without a gap, writes them with a single write and forces them to disk with a single fsync.
+     * 2. Otherwise, waits for the batch being written to finish, or for the next record to be appended, and tries again, so the records
+     *    that arrived meanwhile are written together.
+     * 3. Returns once the batch that contains the record is on disk.
+     */
+    private void awaitDurable(long sequence) throws IOException {
+        lock.lock();
+        try {
+            while (durableSequence < sequence) {
+                checkUsable();
+                if (!flushing && pendingRecords.containsKey(batchedSequence + 1)) {
+                    flushPendingRecords();
+                } else {
+                    progress.awaitUninterruptibly();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a checkpoint: writes a snapshot of the catalog and starts a journal with only the changes made after it.
+     *
+     * The method does the following:
+     * 1. Pins the current version of the catalog and notes the last number given to a change at the same point, so the version holds
+     *    exactly the changes numbered up to it.
+     * 2. Waits until the records of those changes are on disk in the current journal, so the journal on disk has every change of the
+     *    snapshot if the checkpoint does not finish.
+     * 3. Creates the directory of the next generation and lets the snapshot writer write the pinned version in it.
+     * 4. Forces every file of the snapshot, then the snapshot directory, then the journal directory to disk, so the whole snapshot
+     *    survives a crash before the journal points to it.
+     * 5. Waits until no batch is being written, and replaces the journal file with a journal of the next generation that holds the records
+     *    numbered after the snapshot that are already on disk, with an atomic rename that is forced to disk. The records that are not on
+     *    disk yet are written to the new journal.
+     * 6. Deletes the snapshot of the previous generation, which no journal on disk points to any more. A failure is logged and does not
+     *    fail the checkpoint.
+     *
+     * The changes are applied and written while the snapshot is written, and only the batches wait while the new journal replaces the
+     * current one. Only one checkpoint runs at a time.
+     * If the snapshot writer fails, the journal is left as it was.
+     *
+     * @param snapshotWriter The code that writes the pinned version of the catalog in the given directory.
+     * @throws IOException If an I/O error occurs writing the snapshot or the new journal.
+     */
+    public void checkpoint(SnapshotWriter snapshotWriter) throws IOException {
+
+        checkpointLock.lock();
+        try {
+            lock.lock();
+            try {
+                checkUsable();
+            } finally {
+                lock.unlock();
+            }
+
+            try (CatalogSnapshot snapshot = versions.pin(this::startCheckpoint)) {
+
+                try {
+                    // The changes in the snapshot are written first in case the checkpoint does not finish
+                    awaitDurable(checkpointCut);
+
+                    long nextGeneration = generation + 1;
+                    Path nextSnapshot = snapshotDirectory(nextGeneration);
+
+                    // A directory of the next generation can only be left over from a checkpoint that did not finish
+                    deleteDirectory(nextSnapshot);
+                    Files.createDirectories(nextSnapshot);
+
+                    snapshotWriter.write(nextSnapshot, snapshot);
+
+                    // The snapshot must be complete on disk before the journal points to it
+                    forceDirectoryTree(nextSnapshot);
+                    AtomicFileWriter.forceDirectory(directory);
+
+                    switchJournal(nextGeneration);
+
+                } finally {
+                    lock.lock();
+                    try {
+                        carriedRecords = null;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+
+            // The checkpoint is complete, so an old snapshot that cannot be deleted now is deleted when the journal is opened again
+            Path previousSnapshot = generation == 1 ? null : snapshotDirectory(generation - 1);
+            if (previousSnapshot != null) {
+                deleteDirectoryBestEffort(previousSnapshot);
+            }
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    /**
+     * Notes the last number given to a change as the cut of the checkpoint, and starts keeping the records numbered after it.
+     * It is called while the versions of the catalog pin the version of the checkpoint, so no change is numbered meanwhile.
+     */
+    private void startCheckpoint() {
+        lock.lock();
+        try {
+            checkpointCut = reservedSequence;
+            carriedRecords = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the journal file with a journal of the given generation that holds the records written after the cut of the checkpoint,
+     * and makes it the current journal. No batch is written meanwhile.
+     */
+    private void switchJournal(long nextGeneration) throws IOException {
+
+        List<byte[]> records;
+
+        lock.lock();
+        try {
+            while (flushing) {
+                progress.awaitUninterruptibly();
+            }
+            checkUsable();
+
+            records = List.copyOf(carriedRecords);
+            flushing = true;
+        } finally {
+            lock.unlock();
+        }
+
+        FileChannel nextChannel = null;
+        try {
+            Path file = directory.resolve(JOURNAL_FILE_NAME);
+            writeJournal(file, nextGeneration, records);
+
+            nextChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            nextChannel.position(nextChannel.size());
+        } finally {
+            lock.lock();
+            try {
+                if (nextChannel != null) {
+                    FileChannel previousChannel = channel;
+                    channel = nextChannel;
+                    generation = nextGeneration;
+                    checkpointSequence = checkpointCut;
+                    recoveredEntries.clear();
+                    previousChannel.close();
+                }
+            } finally {
+                flushing = false;
+                progress.signalAll();
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Closes the journal file. Changes appended before have already been forced to disk.
+     *
+     * @throws IOException If an I/O error occurs closing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            while (flushing) {
+                progress.awaitUninterruptibly();
+            }
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the pending records that follow the last batch without a gap, and forces them to disk. It is called with the lock held
+     * and releases it during the I/O, so other callers can keep adding records to the next batch.
+     */
+    private void flushPendingRecords() {
+
+        List<byte[]> batch = new ArrayList<>();
+        byte[] record;
+        while ((record = pendingRecords.remove(batchedSequence + 1)) != null) {
+            batchedSequence++;
+            if (record != NO_RECORD) {
+                batch.add(record);
+                if (carriedRecords != null && batchedSequence > checkpointCut) {
+                    carriedRecords.add(record);
+                }
+            }
+        }
+
+        long batchEnd = batchedSequence;
+        flushing = true;
+
+        IOException error = null;
+        lock.unlock();
+        try {
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            lock.lock();
+            flushing = false;
+        }
+
+        if (error != null) {
+            failure = error;
+        } else {
+            durableSequence = batchEnd;
+        }
+        progress.signalAll();
+    }
+
+    private void writeBatch(List<byte[]> batch) throws IOException {
+        writeRecords(channel, batch);
+        channel.force(false);
+    }
+
+    private void checkUsable() throws IOException {
+        if (failure != null) {
+            throw new IOException("El diario de cambios no está disponible después de un error de escritura", failure);
+        }
+    }
+
+    private Path snapshotDirectory(long snapshotGeneration) {
+        return directory.resolve(SNAPSHOT_DIRECTORY_PREFIX + snapshotGeneration);
+    }
+
+    //region encoding
+
+    /**
+     * Encodes a change as a record: the length of the payload, its checksum and the payload.
+     */
+    private static byte[] encode(Operation operation, String[] arguments) throws IOException {
+
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+
+        payload.writeByte(operation.code);
+        payload.writeInt(arguments.length);
+        for (String argument : arguments) {
+            if (argument == null) {
+                payload.writeInt(-1);
+            } else {
+                byte[] bytes = argument.getBytes(StandardCharsets.UTF_8);
+                payload.writeInt(bytes.length);
+                payload.write(bytes);
+            }
+        }
+
+        byte[] payloadArray = payloadBytes.toByteArray();
+        if (payloadArray.length > MAX_PAYLOAD_SIZE) {
+            throw new IOException("El cambio es demasiado grande para el diario de cambios");
+        }
+
+        CRC32C checksum = new CRC32C();
+        checksum.update(payloadArray);
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payloadArray.length);
+        record.putInt(payloadArray.length);
+        record.putInt((int) checksum.getValue());
+        record.put(payloadArray);
+
+        return record.array();
+    }
+
+    /**
+     * Reads every complete record after the header and returns the offset right after the last one.
+     * The file is read through the channel into a buffer that holds the bytes from the current record on, and is refilled when a record
+     * does not fit in what it holds.
+     */
+    private static long readRecords(FileChannel channel, List<Entry> entries) throws IOException {
+
+        long size = channel.size();
+        long position = HEADER_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE).flip();
+
+        while (size - position >= RECORD_HEADER_SIZE) {
+
+            buffer = fill(channel, buffer, position, RECORD_HEADER_SIZE);
+            int length = buffer.getInt(buffer.position());
+            int expectedChecksum = buffer.getInt(buffer.position() + Integer.BYTES);
+            long payloadStart = position + RECORD_HEADER_SIZE;
+
+            if (length < 0 || length > MAX_PAYLOAD_SIZE || size - payloadStart < length) {
+                break;
+            }
+
+            buffer = fill(channel, buffer, position, RECORD_HEADER_SIZE + length);
+            ByteBuffer payload = buffer.slice(buffer.position() + RECORD_HEADER_SIZE, length);
+
+            CRC32C checksum = new CRC32C();
+            checksum.update(payload.duplicate());
+            if ((int) checksum.getValue() != expectedChecksum) {
+                break;
+            }
+
+            entries.add(decode(payload));
+            buffer.position(buffer.position() + RECORD_HEADER_SIZE + length);
+            position = payloadStart + length;
+        }
+
+        return position;
+    }
+
+    /**
+     * Returns a buffer that holds at least the given number of bytes of the file from the given position on, keeping the bytes the given
+     * buffer already holds from that position. The caller checks that the file has those bytes.
+     */
+    private static ByteBuffer fill(FileChannel channel, ByteBuffer buffer, long position, int needed) throws IOException {
+
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+
+        ByteBuffer filled = buffer.capacity() >= needed ? buffer.compact() : ByteBuffer.allocate(needed).put(buffer);
+        while (filled.position() < needed) {
+            if (channel.read(filled, position + filled.position()) < 0) {
+                throw new IOException("El diario de cambios terminó mientras era leído");
+            }
+        }
+
+        return filled.flip();
+    }
+
+    /**
+     * Decodes the payload of a record whose checksum matched.
+     */
+    private static Entry decode(ByteBuffer payload) throws IOException {
+        try {
+            Operation operation = Operation.fromCode(payload.get());
+
+            int argumentCount = payload.getInt();
+            if (argumentCount < 0) {
+                throw new BufferUnderflowException();
+            }
+
+            List<String> arguments = new ArrayList<>(argumentCount);
+            for (int i = 0; i < argumentCount; i++) {
+                int length = payload.getInt();
+                if (length < 0) {
+                    arguments.add(null);
+                } else {
+                    byte[] bytes = new byte[length];
+                    payload.get(bytes);
+                    arguments.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+            }
+
+            return new Entry(operation, arguments);
+
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("El diario de cambios contiene un registro dañado", e);
+        }
+    }
+
+    private static void writeEmptyJournal(Path file, long generation) throws IOException {
+        writeJournal(file, generation, List.of());
+    }
+
+    /**
+     * Writes a journal file with the given generation and records, replacing the previous one with an atomic rename forced to disk.
+     */
+    private static void writeJournal(Path file, long generation, List<byte[]> records) throws IOException {
+        AtomicFileWriter.write(file, newChannel -> {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putShort(VERSION);
+            header.putLong(generation);
+            header.flip();
+            while (header.hasRemaining()) {
+                newChannel.write(header);
+            }
+            writeRecords(newChannel, records);
+        });
+    }
+
+    /**
+     * Writes the given records one after the other with a single write.
+     */
+    private static void writeRecords(FileChannel target, List<byte[]> records) throws IOException {
+
+        int size = 0;
+        for (byte[] record : records) {
+            size += record.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] record : records) {
+            buffer.put(record);
+        }
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    /**
+     * Forces every file of a directory and its subdirectories to disk, then the directories themselves, deepest first.
+     */
+    private static void forceDirectoryTree(Path directoryToForce) throws IOException {
+
+        try (Stream<Path> paths = Files.walk(directoryToForce)) {
+            List<Path> pathsToForce = paths.sorted(Comparator.reverseOrder()).toList();
+            for (Path path : pathsToForce) {
+                if (Files.isDirectory(path)) {
+                    AtomicFileWriter.forceDirectory(path);
+                } else {
+                    AtomicFileWriter.force(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the snapshot directories of the journal directory whose generation is not the given one.
+     */
+    private static void deleteStaleSnapshots(Path journalDirectory, long generation) throws IOException {
+
+        List<Path> staleSnapshots = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(journalDirectory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                String name = path.getFileName().toString();
+                if (Files.isDirectory(path) && name.startsWith(SNAPSHOT_DIRECTORY_PREFIX)
+                    && !name.equals(SNAPSHOT_DIRECTORY_PREFIX + generation) && isGeneration(name.substring(SNAPSHOT_DIRECTORY_PREFIX.length()))) {
+                    staleSnapshots.add(path);
+                }
+            }
+        }
+
+        for (Path staleSnapshot : staleSnapshots) {
+            deleteDirectoryBestEffort(staleSnapshot);
+        }
+    }
+
+    private static boolean isGeneration(String text) {
+        return !text.isEmpty() && text.chars().allMatch(Character::isDigit);
+    }
+
+    /**
+     * Deletes a directory, logging the failure instead of throwing it.
+     */
+    private static void deleteDirectoryBestEffort(Path directoryToDelete) {
+        try {
+            deleteDirectory(directoryToDelete);
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.log(Level.WARNING, "No se pudo borrar la instantánea " + directoryToDelete + ", se borrará al abrir el diario de cambios", e);
+        }
+    }
+
+    private static void deleteDirectory(Path directoryToDelete) throws IOException {
+
+        if (!Files.exists(directoryToDelete)) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(directoryToDelete)) {
+            List<Path> pathsToDelete = paths.sorted(Comparator.reverseOrder()).toList();
+            for (Path path : pathsToDelete) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    //endregion
+
+    /**
+     * The Operation enum lists the changes the journal can record. Each operation has a fixed code that is stored in the file,
+     * so operations can be added or reordered without changing the meaning of existing journals.
+     */
+    public enum Operation {
+        ADD_ARTIST(1),
+        DELETE_ARTIST(2),
+        ADD_SONG(3),
+        DELETE_SONG(4),
+        ADD_CUSTOMER(5),
+        DELETE_CUSTOMER(6),
+        ADD_PLAYLIST(7),
+        ADD_SONG_TO_PLAYLIST(8),
+        DELETE_SONG_FROM_PLAYLIST(9),
+        FOLLOW_ARTIST(10);
+
+        private final byte code;
+
+        Operation(int code) {
+            this.code = (byte) code;
+        }
+
+        private static Operation fromCode(byte code) {
+            for (Operation operation : values()) {
+                if (operation.code == code) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Operación desconocida en el diario de cambios: " + code);
+        }
+    }
+
+    /**
+     * The Ticket class is the right to append the record of a change, given by begin. It is used from a single thread.
+     */
+    public final class Ticket implements AutoCloseable {
+
+        /**
+         * The number of the ticket in the journal, or 0 until the change is published or its record is appended.
+         * It is only read and written with the lock of the journal held.
+         */
+        private long sequence;
+
+        private boolean appended;
+
+        private boolean closed;
+
+        private Ticket() {
+        }
+
+        /**
+         * Appends the record of the change applied with this ticket. The record is written when the ticket is closed.
+         *
+         * @param operation The operation of the change.
+         * @param arguments The arguments needed to make the change again.
+         * @throws IOException If the record could not be encoded, or the journal does not accept more changes after an error.
+         * @throws IllegalStateException If a record was already appended with this ticket, or the ticket is closed.
+         */
+        public void append(Operation operation, String... arguments) throws IOException {
+
+            if (closed || appended) {
+                throw new IllegalStateException("Cada cambio del diario tiene un solo registro");
+            }
+
+            byte[] record = encode(operation, arguments);
+
+            lock.lock();
+            try {
+                checkUsable();
+
+                // A change that published no version takes its number now, since no other change can have read it
+                reserve(this);
+                enqueue(this, record);
+                appended = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Releases the ticket and waits until the record appended with it, if any, is on disk. If the change was published but no record
+         * was appended, the number of the ticket is skipped, so the records after it are not kept waiting.
+         *
+         * @throws IOException If the record could not be written. The journal does not accept more changes after an error.
+         */
+        @Override
+        public void close() throws IOException {
+
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            currentTicket.remove();
+
+            long recordSequence;
+            lock.lock();
+            try {
+                if (sequence != 0 && !appended) {
+                    enqueue(this, NO_RECORD);
+                }
+                recordSequence = appended ? sequence : 0;
+            } finally {
+                lock.unlock();
+            }
+
+            if (recordSequence != 0) {
+                awaitDurable(recordSequence);
+            }
+        }
+    }
+
+    /**
+     * The Entry record is a change read from the journal.
+     *
+     * @param operation The operation of the change.
+     * @param arguments The arguments of the change, in the order they were appended.
+     */
+    public record Entry(Operation operation, List<String> arguments) {
+
+        /**
+         * Returns the argument at the given position.
+         *
+         * @param index The position of the argument.
+         * @return The argument.
+         */
+        public String argument(int index) {
+            return arguments.get(index);
+        }
+    }
+
+    /**
+     * The SnapshotWriter interface writes a pinned version of the catalog in a directory during a checkpoint.
+     */
+    @FunctionalInterface
+    public interface SnapshotWriter {
+
+        /**
+         * Writes the given version of the catalog. The files do not need to be forced to disk: the journal forces the whole
+         * directory afterwards, whatever way they were written.
+         * The services keep changing while the snapshot is written, so only the version must be read, including the contents of the
+         * entities, which are read through the snapshot as of its version.
+         *
+         * @param snapshotDirectory The directory where the snapshot must be written.
+         * @param snapshot The version of the catalog to write. The journal closes it afterwards.
+         * @throws IOException If an I/O error occurs writing the snapshot.
+         */
+        void write(Path snapshotDirectory, CatalogSnapshot snapshot) throws IOException;
+    }
+}
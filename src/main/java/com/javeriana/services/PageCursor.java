@@ -0,0 +1,95 @@
+package com.javeriana.services;
+
+import com.javeriana.models.Page;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+
+/**
+ * The PageCursor class reads the pages of a listing of entities, used by the services to list their entities a page at a time.
+ *
+ * Every entity of a listing has a number that grows along the listing and does not change while the entity is in it: the number of its
+ * append to a numbered SnapshotList, or its position in a memory-mapped catalog, which never changes. The cursor of a page is the number
+ * of the last entity of the page. The class does the following:
+ * 1. Starts the next page at the first entity whose number is greater than the one of the cursor, found with a binary search over the
+ *    numbers. The page starts right after the last entity shown whether or not entities before it, or the entity itself, were deleted,
+ *    and finding it costs a logarithm of the size of the listing instead of a scan from the cursor.
+ * 2. Only reads the entities of the page, through a function from positions to entities, so listing a page of a memory-mapped catalog only
+ *    decodes the entities of that page.
+ *
+ * The class has no state. It is used by the services, which pass it the entities of their lists and their numbers.
+ */
+final class PageCursor {
+
+    private PageCursor() {
+    }
+
+    /**
+     * Returns the page of the entities of a listing that starts at the given cursor.
+     *
+     * @param entityAt The function that returns the entity at each position of the listing.
+     * @param numberAt The function that returns the number of the entity at each position of the listing.
+     * @param size The number of entities of the listing.
+     * @param cursor The cursor of the page, or null for the first page.
+     * @param pageSize The maximum number of entities of the page.
+     * @param <T> The type of the entities.
+     * @return The page, with the cursor of the next page if there are entities after it.
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is not valid.
+     */
+    static <T> Page<T> page(IntFunction<T> entityAt, IntToLongFunction numberAt, int size, String cursor, int pageSize) {
+
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("El tamaño de la página debe ser mayor a 0");
+        }
+
+        int start = cursor == null ? 0 : firstAfter(numberAt, size, parse(cursor));
+        int end = (int) Math.min((long) start + pageSize, size);
+
+        List<T> items = new ArrayList<>(Math.max(0, end - start));
+        for (int position = start; position < end; position++) {
+            items.add(entityAt.apply(position));
+        }
+
+        String nextCursor = end < size && !items.isEmpty() ? Long.toString(numberAt.applyAsLong(end - 1)) : null;
+
+        return new Page<>(items, nextCursor);
+    }
+
+    /**
+     * Returns the number of the last entity shown, read from the cursor.
+     */
+    private static long parse(String cursor) {
+
+        long lastNumber;
+        try {
+            lastNumber = Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El cursor de la página no es válido: " + cursor);
+        }
+        if (lastNumber < 0) {
+            throw new IllegalArgumentException("El cursor de la página no es válido: " + cursor);
+        }
+
+        return lastNumber;
+    }
+
+    /**
+     * Returns the position of the first entity whose number is greater than the given one, or the size if there is none.
+     */
+    private static int firstAfter(IntToLongFunction numberAt, int size, long lastNumber) {
+
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (numberAt.applyAsLong(middle) <= lastNumber) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+}
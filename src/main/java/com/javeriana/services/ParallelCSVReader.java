@@ -0,0 +1,280 @@
+package com.javeriana.services;
+
+import com.javeriana.utils.CSVTokenizer;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serial;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * The ParallelCSVReader class parses large CSV files using every available core.
+ *
+ * The class does the following:
+ * 1. Memory-maps the file and splits it into chunks whose boundaries always fall right after a newline character.
+ *    Since the newline byte never appears inside a multi-byte UTF-8 sequence, every chunk can be decoded on its own.
+ * 2. Parses every chunk in a fork-join worker, turning each non-blank line into an object with the given line parser.
+ * 3. Merges the results of the chunks in file order, so the returned list is exactly the one a sequential read would produce.
+ *
+ * The line parser is called from several threads at the same time, so it must not modify shared state.
+ */
+final class ParallelCSVReader {
+
+    /**
+     * The smallest chunk handed to a worker. Files smaller than this are parsed in a single chunk.
+     */
+    private static final long MIN_CHUNK_SIZE = 1024L * 1024;
+
+    /**
+     * The largest chunk handed to a worker, which bounds the memory used to decode a chunk.
+     */
+    private static final long MAX_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The number of chunks created per worker thread, so faster workers can pick up the remaining work.
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * The size of the buffer used to look for the next newline when placing a chunk boundary.
+     */
+    private static final int BOUNDARY_SCAN_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * The fork-join pool that runs the workers.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a ParallelCSVReader that runs its workers in the common fork-join pool.
+     */
+    ParallelCSVReader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a ParallelCSVReader that runs its workers in the given fork-join pool.
+     *
+     * @param pool The fork-join pool that runs the workers.
+     */
+    ParallelCSVReader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Parses every non-blank line of the given file and returns the results in file order.
+     *
+     * @param file The CSV file to parse.
+     * @param lineParser The function that turns a line into an object. It must be safe to call from several threads.
+     * @param <T> The type of the parsed objects.
+     * @return A list with one parsed object per non-blank line, in file order.
+     * @throws IOException If an I/O error occurs reading from the file or a malformed byte sequence is read.
+     */
+    <T> List<T> read(File file, Function<CharSequence, T> lineParser) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            long[] boundaries = splitOnNewlines(channel);
+            int chunkCount = boundaries.length - 1;
+
+            // Each worker writes the objects of its chunk in its own slot, so no synchronization is needed
+            List<List<T>> results = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                results.add(null);
+            }
+
+            try {
+                pool.invoke(new ChunkTask<>(channel, boundaries, 0, chunkCount, lineParser, results));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            // Merge the chunks in file order, releasing each one once it is merged
+            int total = 0;
+            for (List<T> chunk : results) {
+                total += chunk.size();
+            }
+
+            List<T> parsed = new ArrayList<>(total);
+            for (int i = 0; i < chunkCount; i++) {
+                parsed.addAll(results.set(i, null));
+            }
+
+            return parsed;
+        }
+    }
+
+    /**
+     * Computes the chunk boundaries of the file.
+     *
+     * The method does the following:
+     * 1. Picks a chunk size based on the size of the file and the parallelism of the pool.
+     * 2. Starting at each multiple of the chunk size, looks for the next newline and places a boundary right after it.
+     * 3. Returns the boundaries, starting at 0 and ending at the size of the file.
+     *
+     * @param channel The channel of the file.
+     * @return The offsets where each chunk starts, followed by the size of the file.
+     * @throws IOException If an I/O error occurs reading from the file.
+     */
+    private long[] splitOnNewlines(FileChannel channel) throws IOException {
+
+        long size = channel.size();
+        long chunkSize = Math.min(MAX_CHUNK_SIZE,
+            Math.max(MIN_CHUNK_SIZE, size / ((long) pool.getParallelism() * CHUNKS_PER_WORKER)));
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+
+        ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_SCAN_BUFFER_SIZE);
+        long position = chunkSize;
+
+        while (position < size) {
+            long boundary = findNextLineStart(channel, buffer, position, size);
+            if (boundary >= size) {
+                break;
+            }
+            boundaries.add(boundary);
+            position = boundary + chunkSize;
+        }
+
+        boundaries.add(size);
+
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Returns the offset of the first byte after the next newline at or after the given position,
+     * or the size of the file if there is no such newline.
+     */
+    private long findNextLineStart(FileChannel channel, ByteBuffer buffer, long position, long size) throws IOException {
+
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+
+        return size;
+    }
+
+    /**
+     * The ChunkTask class parses a range of chunks. It splits the range in half until a single chunk is left,
+     * which it maps, decodes and parses line by line.
+     *
+     * @param <T> The type of the parsed objects.
+     */
+    private static final class ChunkTask<T> extends RecursiveAction {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] boundaries;
+        private final int from;
+        private final int to;
+        private final Function<CharSequence, T> lineParser;
+        private final List<List<T>> results;
+
+        ChunkTask(FileChannel channel,
+                  long[] boundaries,
+                  int from,
+                  int to,
+                  Function<CharSequence, T> lineParser,
+                  List<List<T>> results) {
+            this.channel = channel;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+            this.lineParser = lineParser;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask<>(channel, boundaries, from, middle, lineParser, results),
+                    new ChunkTask<>(channel, boundaries, middle, to, lineParser, results));
+                return;
+            }
+
+            try {
+                results.set(from, parseChunk(boundaries[from], boundaries[from + 1]));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Maps the bytes between the given offsets, decodes them as UTF-8 and parses every non-blank line.
+         */
+        private List<T> parseChunk(long start, long end) throws IOException {
+
+            List<T> parsed = new ArrayList<>();
+            if (end <= start) {
+                return parsed;
+            }
+
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("La línea que empieza en el byte " + start + " es demasiado larga para ser leída");
+            }
+
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            CharBuffer chars = decode(bytes);
+
+            int length = chars.length();
+            int lineStart = 0;
+
+            while (lineStart < length) {
+                int lineEnd = lineStart;
+                while (lineEnd < length && chars.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+
+                // Ignore the carriage return of Windows line endings
+                int contentEnd = lineEnd;
+                if (contentEnd > lineStart && chars.get(contentEnd - 1) == '\r') {
+                    contentEnd--;
+                }
+
+                // The line is a view over the decoded chunk, so its characters are not copied
+                CharSequence line = chars.subSequence(lineStart, contentEnd);
+                if (!CSVTokenizer.isBlank(line)) {
+                    parsed.add(lineParser.apply(line));
+                }
+
+                lineStart = lineEnd + 1;
+            }
+
+            return parsed;
+        }
+
+        private static CharBuffer decode(ByteBuffer bytes) throws CharacterCodingException {
+            return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(bytes);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.javeriana.services;
+
+import com.javeriana.models.Artist;
+import com.javeriana.models.PlayList;
+import com.javeriana.models.Song;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The PlaceholderRegistry class resolves the IDs read from a file to entities, using a single unknown entity per missing ID.
+ *
+ * When a file refers to an ID that does not exist, the reference is replaced by an unknown entity with that ID,
+ * built by Artist.GetUnknownArtist, Song.getUnknownSong or PlayList.getUnknownPlayList.
+ * The class does the following:
+ * 1. Looks the ID up in the map of known entities first, so no object is created when the entity exists.
+ * 2. For a missing ID, creates the unknown entity the first time the ID is seen and returns that same instance every time after,
+ *    so a dirty file that repeats the same missing ID in many records uses one object for it instead of one per reference.
+ *
+ * A registry lives as long as the import that uses it, so the unknown entities of a previous import are not kept.
+ * It can be used from several threads at the same time, such as the workers of a parallel import.
+ */
+final class PlaceholderRegistry {
+
+    /**
+     * The unknown entities created so far, by their IDs.
+     */
+    private final Map<UUID, Artist> unknownArtists = new ConcurrentHashMap<>();
+    private final Map<UUID, Song> unknownSongs = new ConcurrentHashMap<>();
+    private final Map<UUID, PlayList> unknownPlayLists = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the artist with the given ID, or the unknown artist with that ID if it is not in the given map.
+     *
+     * @param artistsById The known artists by their IDs.
+     * @param artistId The ID of the artist.
+     * @return The known artist, or the shared unknown artist with the ID.
+     */
+    Artist resolveArtist(Map<UUID, Artist> artistsById, UUID artistId) {
+        Artist artist = artistsById.get(artistId);
+        return artist != null ? artist : unknownArtist(artistId);
+    }
+
+    /**
+     * Returns the song with the given ID, or the unknown song with that ID if it is not in the given map.
+     *
+     * @param songsById The known songs by their IDs.
+     * @param songId The ID of the song.
+     * @return The known song, or the shared unknown song with the ID.
+     */
+    Song resolveSong(Map<UUID, Song> songsById, UUID songId) {
+        Song song = songsById.get(songId);
+        return song != null ? song : unknownSong(songId);
+    }
+
+    /**
+     * Returns the playlist with the given ID, or the unknown playlist with that ID if it is not in the given map.
+     *
+     * @param playListsById The known playlists by their IDs.
+     * @param playListId The ID of the playlist.
+     * @return The known playlist, or the shared unknown playlist with the ID.
+     */
+    PlayList resolvePlayList(Map<UUID, PlayList> playListsById, UUID playListId) {
+        PlayList playList = playListsById.get(playListId);
+        return playList != null ? playList : unknownPlayList(playListId);
+    }
+
+    // A plain get comes first because computeIfAbsent may lock the bin even when the key is present
+    private Artist unknownArtist(UUID artistId) {
+        Artist artist = unknownArtists.get(artistId);
+        return artist != null ? artist : unknownArtists.computeIfAbsent(artistId, Artist::GetUnknownArtist);
+    }
+
+    private Song unknownSong(UUID songId) {
+        Song song = unknownSongs.get(songId);
+        return song != null ? song : unknownSongs.computeIfAbsent(songId, Song::getUnknownSong);
+    }
+
+    private PlayList unknownPlayList(UUID playListId) {
+        PlayList playList = unknownPlayLists.get(playListId);
+        return playList != null ? playList : unknownPlayLists.computeIfAbsent(playListId, PlayList::getUnknownPlayList);
+    }
+}
@@ -1,10 +1,22 @@
 package com.javeriana.services;
 
+import com.javeriana.exceptions.NotFoundException;
+import com.javeriana.models.Customer;
+import com.javeriana.models.Page;
 import com.javeriana.models.PlayList;
 import com.javeriana.models.Song;
+import com.javeriana.utils.SnapshotList;
+import com.javeriana.utils.UUIDCodec;
+import com.javeriana.utils.UUIDIndex;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -13,30 +25,90 @@ import java.util.UUID;
  * The class does the following:
  * 1. Initializes a list of PlayList objects in the constructor.
  * 2. Provides methods for adding a new playlist (addPlayList), replacing the current list of playlists with a given list (loadPlayLists), and getting a playlist by its ID (getPlayListById).
- * 3. Provides methods for removing a song from a specific playlist (deleteSongFromPlayList) and from all playlists (deleteSongFromPlayLists).
- * 4. Provides methods for getting a list of all playlists (getPlayLists), getting a map of playlists by their IDs (getPlayListsById), getting a list of the names of all playlists (getPlayListsToString), and getting a list of all songs in all playlists (getAllSongsInPlayLists).
+ * 3. Provides methods for removing a song from a specific playlist (deleteSongFromPlayList) and from all playlists (deleteSongFromPlayLists),
+ *    and many songs from all playlists as a single change (deleteSongsFromPlayLists).
+ * 4. Provides methods for getting a list of all playlists (getPlayLists), getting a read-only, live map of playlists by their IDs (getPlayListsById), getting a page of the playlists (getPlayListsPage), and getting a list of all songs in all playlists (getAllSongsInPlayLists).
  * 5. Provides a method for removing playlists with given IDs from the list of playlists (deletePlayLists).
+ * 6. Keeps the playlists indexed by ID, updating the index whenever the list of playlists changes, so getPlayListById is a single lookup.
+ * 7. Keeps a reverse index from the ID of each song to the playlists that contain it, so deleting a song from all playlists only touches
+ *    the playlists that hold it. Songs must be added to the playlists of the service through addSongToPlayList to keep the index current.
+ * 8. Can be used by several threads at the same time. The list of playlists, the indexes and the songs of the playlists of the service are
+ *    guarded by a ServiceLock, and every public method is linearizable: it takes effect at a single point between its call and its return.
+ *    The changes (addPlayList, loadPlayLists, addSongToPlayList, deleteSongFromPlayList, deletePlayLists, deleteSongFromPlayLists,
+ *    deleteSongsFromPlayLists) take the write lock, since each of them changes the index of playlists by song as well. getPlayListById, and lookups through the map of
+ *    getPlayListsById, are optimistic reads, which do not lock unless a playlist is added or deleted while they run. getPlayLists and
+ *    getPlayListsPage take the read lock.
+ * 9. Publishes every change to the CatalogVersions object of the service: a snapshot of the list of playlists when playlists are added or
+ *    removed, and the songs a playlist had before its songs change, so a reader that pins a version of the catalog, such as a report,
+ *    reads the playlists and their songs as they were at that version without taking the lock of the service.
  */
 public class PlayListService {
 
-    private final List<PlayList> playLists;
+    private final SnapshotList<PlayList> playLists;
 
+    /**
+     * The playlists of the list by their IDs, with the number of each playlist in the list, by which it is removed from the list.
+     */
+    private final UUIDIndex<PlayList> playListsIndex;
+
+    /**
+     * The playlists that contain each song, by the ID of the song, with the number of times each playlist contains the song.
+     * The playlists are compared by identity, so removing one occurrence of a song takes the same time whatever the number of
+     * playlists that contain it.
+     */
+    private final UUIDIndex<Map<PlayList, Integer>> playListsBySongIndex;
+
+    /**
+     * The lock that guards the list of playlists, the indexes above and the songs of the playlists.
+     */
+    private final ServiceLock lock;
+
+    /**
+     * The read-only map view of the index of playlists by ID, whose lookups are optimistic reads.
+     */
+    private final Map<UUID, PlayList> playListsById;
 
     /**
-     * Constructor for the PlayListService class.
+     * The versions of the catalog, to which the changes to the playlists are published.
+     */
+    private final CatalogVersions versions;
+
+    /**
+     * Constructor for the PlayListService class, with its own versions of the catalog.
      * Initializes the playLists list.
      */
     public PlayListService() {
-        this.playLists = new ArrayList<>();
+        this(new CatalogVersions());
+    }
+
+    /**
+     * Constructor for the PlayListService class, which publishes its changes to the given versions of the catalog.
+     * Initializes the playLists list.
+     *
+     * @param versions The versions of the catalog, shared with the other services.
+     */
+    public PlayListService(CatalogVersions versions) {
+        this.playLists = SnapshotList.numbered();
+        this.playListsIndex = UUIDIndex.numbered();
+        this.playListsBySongIndex = new UUIDIndex<>();
+        this.lock = new ServiceLock();
+        this.playListsById = lock.guard(playListsIndex.asMap());
+        this.versions = versions;
     }
 
     /**
-     * Returns a new list containing all playlists.
+     * Returns a read-only snapshot of all playlists. The snapshot is taken without copying the playlists, and later changes to the playlists
+     * do not affect it.
      *
-     * @return A new list containing all playlists.
+     * @return A read-only list containing all playlists.
      */
     public List<PlayList> getPlayLists() {
-        return new ArrayList<>(playLists);
+        long stamp = lock.readLock();
+        try {
+            return playLists.snapshot();
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
     /**
@@ -45,7 +117,7 @@ public class PlayListService {
      * The method does the following:
      * 1. Checks if the provided name is null or empty. If it is, it throws an IllegalArgumentException.
      * 2. Creates a new PlayList object with the provided name.
-     * 3. Adds the newly created PlayList object to the playLists list.
+     * 3. Adds the newly created PlayList object to the playLists list and to the index of playlists by ID.
      * 4. Returns the newly created PlayList object.
      *
      * @param name The name of the new playlist.
@@ -54,7 +126,83 @@ public class PlayListService {
      */
     public PlayList addPlayList(String name) {
 
-        return PlayList.getUnknownPlayList(UUID.randomUUID().toString());
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("El nombre de la playlist no puede ser nulo o vacío");
+        }
+
+        PlayList playList = new PlayList(name);
+
+        long stamp = lock.writeLock();
+        try {
+            playListsIndex.put(playList.getId(), playList, playLists.append(playList));
+            publishPlayLists();
+        } finally {
+            lock.unlock(stamp);
+        }
+
+        return playList;
+    }
+
+    /**
+     * Adds a new playlist with the given name for the given customer as part of the given commit, such as the one that also adds the
+     * playlist to the customer. The write lock is taken as addPlayList does, and handed to the commit, so the playlist cannot be found
+     * until the commit is published.
+     * The playlist is refused if the customer was deleted. The mark of the customer is checked under the write lock, which the deletion
+     * of customers takes after it marks them, to read their playlists in deletePlayListsOf.
+     *
+     * @param name The name of the new playlist.
+     * @param owner The customer the playlist is for.
+     * @param commit The commit the addition is part of.
+     * @return The newly created playlist.
+     * @throws IllegalArgumentException If the name is null or empty.
+     * @throws NotFoundException If the customer was deleted.
+     */
+    PlayList addPlayList(String name, Customer owner, CatalogVersions.Commit commit) throws NotFoundException {
+
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("El nombre de la playlist no puede ser nulo o vacío");
+        }
+
+        PlayList playList = new PlayList(name);
+
+        long stamp = lock.writeLock();
+        commit.holdUntilPublished(() -> lock.unlock(stamp));
+
+        if (owner.isDeleted()) {
+            throw new NotFoundException("El cliente con username " + owner.getUsername() + " no existe");
+        }
+
+        playListsIndex.put(playList.getId(), playList, playLists.append(playList));
+        commit.playLists(playLists.snapshot());
+
+        return playList;
+    }
+
+    /**
+     * Adds a playlist that already has an ID, such as a playlist restored from the mutation journal.
+     * If a playlist with the same ID already exists, nothing is added and the existing playlist is returned,
+     * so restoring the same playlist twice has no effect.
+     *
+     * @param playList The playlist to add.
+     * @return The playlist with the ID of the given playlist that is in the service after the call.
+     */
+    public PlayList addPlayList(PlayList playList) {
+
+        long stamp = lock.writeLock();
+        try {
+            PlayList existingPlayList = playListsIndex.get(playList.getId());
+
+            if (existingPlayList != null) {
+                return existingPlayList;
+            }
+
+            playListsIndex.put(playList.getId(), playList, playLists.append(playList));
+            indexSongs(playList);
+            publishPlayLists();
+            return playList;
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
     /**
@@ -63,79 +211,137 @@ public class PlayListService {
      * The method does the following:
      * 1. Clears the current playLists list.
      * 2. Adds all elements from the provided list to the playLists list.
+     * 3. Rebuilds the index of playlists by ID. If two playlists have the same ID, the first one is indexed, as a search over the list would find.
+     * 4. Rebuilds the index of playlists by song.
      *
      * @param playLists The new list of playlists.
      */
     public void loadPlayLists(List<PlayList> playLists) {
+        long stamp = lock.writeLock();
+        try {
+            this.playLists.clear();
+            this.playLists.addAll(playLists);
+
+            playListsIndex.clear();
+            playListsIndex.ensureCapacity(playLists.size());
+            playListsBySongIndex.clear();
+            for (int i = 0; i < this.playLists.size(); i++) {
+                PlayList playList = this.playLists.get(i);
+                playListsIndex.putIfAbsent(playList.getId(), playList, this.playLists.numberAt(i));
+                indexSongs(playList);
+            }
 
+            publishPlayLists();
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
     /**
-     * Returns the playlist with the given ID.
+     * Adds a song at the end of a playlist.
      *
      * The method does the following:
-     * 1. Converts the provided string ID to a UUID.
-     * 2. Iterates over the playLists list and checks if the ID of each playlist matches the provided ID.
-     * 3. Returns the playlist with the matching ID. If no such playlist is found, it returns null.
+     * 1. Takes the write lock and checks that the playlist was not deleted and the song was not marked as deleted. If either was,
+     *    it throws a NotFoundException. The deletions of playlists take the same lock, and the deletions of songs mark the songs before
+     *    they take it to remove them from the playlists, so a playlist and a song looked up before they are deleted are either refused,
+     *    or the song is added before the deletion, which removes it again.
+     * 2. Adds the song to the playlist.
+     * 3. Adds the playlist to the playlists that contain the song in the index of playlists by song.
      *
-     * @param id The ID of the playlist to return.
-     * @return The playlist with the given ID, or null if no such playlist exists.
-     * @throws IllegalArgumentException If the ID is not a valid UUID.
+     * @param playList The playlist.
+     * @param song The song to add.
+     * @throws NotFoundException If the playlist or the song was deleted.
      */
-    public PlayList getPlayListById(String id) throws IllegalArgumentException {
+    public void addSongToPlayList(PlayList playList, Song song) throws NotFoundException {
+        long stamp = lock.writeLock();
+        try {
+            if (playListsIndex.get(playList.getId()) != playList) {
+                throw new NotFoundException("La playlist con id " + playList.getId() + " no existe");
+            }
 
-        UUID playListId = UUID.fromString(id);
+            if (song.isDeleted()) {
+                throw new NotFoundException("La canción con id " + song.getId() + " no existe");
+            }
 
-        for (PlayList playList : playLists) {
-            if (playList.getId().equals(playListId)) {
-                return playList;
+            try (CatalogVersions.Commit commit = versions.begin()) {
+                commit.changingSongsOf(playList);
+                playList.addSong(song);
+                indexSong(song.getId(), playList);
             }
+        } finally {
+            lock.unlock(stamp);
         }
+    }
 
-        return null;
+    /**
+     * Returns the playlist with the given ID.
+     *
+     * The method does the following:
+     * 1. Looks the provided string ID up in the index of playlists by ID, which reads the digits straight from the string without creating a UUID.
+     *    The lookup is an optimistic read: it only takes the read lock if a playlist was added or deleted while it ran.
+     * 2. Returns the playlist with the matching ID. If no such playlist is found, it returns null.
+     *
+     * @param id The ID of the playlist to return.
+     * @return The playlist with the given ID, or null if no such playlist exists.
+     * @throws IllegalArgumentException If the ID is not a valid UUID.
+     */
+    public PlayList getPlayListById(String id) throws IllegalArgumentException {
+        return lock.readOptimistically(() -> playListsIndex.get(id));
     }
 
     /**
      * Returns a map of playlists by their IDs.
      *
-     * The method does the following:
-     * 1. Creates a stream from the playLists list.
-     * 2. Collects the elements of the stream into a map. The keys of the map are the string representations of the IDs of the playlists, and the values are the playlists themselves.
+     * The method returns a read-only view of the index of playlists by ID, so it does not copy the playlists. The view is live:
+     * playlists added or deleted afterwards are seen through it. Each lookup through the view is an optimistic read, like getPlayListById.
      *
-     * @return A map of playlists by their IDs.
+     * @return A read-only map of playlists by their IDs.
      */
-    public Map<String, PlayList> getPlayListsById() {
-        return playLists.stream()
-                .collect(
-                    java.util.stream.Collectors.toMap(
-                        playList -> playList.getId().toString(),
-                        playList -> playList
-                    )
-                );
+    public Map<UUID, PlayList> getPlayListsById() {
+        return playListsById;
     }
 
     /**
      * Removes the song with the given ID from the playlist with the given ID.
      *
      * The method does the following:
-     * 1. Retrieves the playlist with the provided ID by calling the getPlayListById method.
+     * 1. Takes the write lock and retrieves the playlist with the provided ID from the index of playlists by ID.
      * 2. Checks if the retrieved playlist is null. If it is, it returns false, indicating that the song could not be removed because the playlist does not exist.
-     * 3. Calls the removeSong method on the retrieved playlist with the provided song ID. The removeSong method returns a boolean indicating whether the song was successfully removed.
+     * 3. Checks if the playlist contains the song. If it does not, it returns false without publishing a version of the catalog.
+     *    Otherwise, it calls the removeSong method on the retrieved playlist with the provided song ID.
+     * 4. If the song was removed, removes one occurrence of the playlist from the playlists that contain the song in the index of playlists by song.
      *
      * @param playListId The ID of the playlist.
      * @param songId The ID of the song.
      * @return True if the song was removed, false otherwise.
+     * @throws IllegalArgumentException If an ID is not a valid UUID.
      */
     public boolean deleteSongFromPlayList(String playListId, String songId) {
 
-        PlayList playList = getPlayListById(playListId);
+        UUID id = UUIDCodec.decode(songId);
 
-        if (playList == null) {
-            return false;
-        }
+        long stamp = lock.writeLock();
+        try {
+            PlayList playList = playListsIndex.get(playListId);
+
+            if (playList == null) {
+                return false;
+            }
 
-        return playList.removeSong(songId);
+            if (!playList.containsSong(id)) {
+                return false;
+            }
 
+            try (CatalogVersions.Commit commit = versions.begin()) {
+                commit.changingSongsOf(playList);
+                playList.removeSong(id);
+            }
+
+            unindexSong(id, playList);
+            return true;
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
     /**
@@ -143,50 +349,237 @@ public class PlayListService {
      *
      * The method does the following:
      * 1. Initializes an empty list of playlists to remove.
-     * 2. Iterates over the provided list of playlist IDs, retrieves the playlist with each ID by calling the getPlayListById method, and adds the retrieved playlist to the list of playlists to remove if it is not null.
-     * 3. Removes all playlists in the list of playlists to remove from the playLists list.
+     * 2. Iterates over the provided list of playlist IDs, removes the playlist with each ID from the index of playlists by ID, and adds the removed playlist,
+     *    with the number the index kept for it, to the playlists to remove if it is not null.
+     * 3. Removes the playlists to remove from the playLists list by their numbers, without comparing the other playlists of the list, and removes their songs
+     *    from the index of playlists by song.
      *
      * @param playListsIds The IDs of the playlists to remove.
      */
     public void deletePlayLists(List<UUID> playListsIds) {
+        try (CatalogVersions.Commit commit = versions.begin()) {
+            deletePlayLists(playListsIds, commit);
+        }
+    }
+
+    /**
+     * Removes the playlists with the given IDs as part of the given commit, such as the one of a cascade delete.
+     * The write lock is taken as deletePlayLists does, and handed to the commit, so no other change is made to the playlists until
+     * the commit is published.
+     *
+     * @param playListsIds The IDs of the playlists to remove.
+     * @param commit The commit the deletion is part of.
+     */
+    void deletePlayLists(List<UUID> playListsIds, CatalogVersions.Commit commit) {
+
+        long stamp = lock.writeLock();
+        commit.holdUntilPublished(() -> lock.unlock(stamp));
+
+        removePlayLists(playListsIds, commit);
+    }
+
+    /**
+     * Removes the playlists of the given customers as part of the given commit, such as the one of the deletion of the customers.
+     * The write lock is taken as deletePlayLists does, and handed to the commit, and the playlists of each customer are read after it
+     * is taken. A playlist is added to its customer under the same lock, so a playlist added while the customers are deleted is either
+     * read here and removed, or added after the deletion is published.
+     *
+     * @param customers The customers whose playlists are removed.
+     * @param commit The commit the deletion is part of.
+     */
+    void deletePlayListsOf(List<Customer> customers, CatalogVersions.Commit commit) {
+
+        long stamp = lock.writeLock();
+        commit.holdUntilPublished(() -> lock.unlock(stamp));
+
+        List<UUID> playListsIds = new ArrayList<>();
+        for (Customer customer : customers) {
+            playListsIds.addAll(customer.getPlayListsIds());
+        }
+
+        removePlayLists(playListsIds, commit);
+    }
+
+    /**
+     * Removes the playlists with the given IDs from the list of playlists and the indexes, and sets the playlists of the given commit
+     * without them. It is called while holding the write lock.
+     */
+    private void removePlayLists(List<UUID> playListsIds, CatalogVersions.Commit commit) {
+
+        List<PlayList> playListsToRemove = new ArrayList<>();
+        long[] numbers = new long[playListsIds.size()];
+
+        for (UUID playListId : playListsIds) {
+            long number = playListsIndex.numberOf(playListId);
+            PlayList playList = playListsIndex.remove(playListId);
+            if (playList != null) {
+                numbers[playListsToRemove.size()] = number;
+                playListsToRemove.add(playList);
+            }
+        }
 
+        if (playListsToRemove.isEmpty()) {
+            return;
+        }
 
+        // The playlists are found in the list by the numbers of the index, so no playlist of the list is compared
+        playLists.removeNumbers(Arrays.copyOf(numbers, playListsToRemove.size()));
+        commit.playLists(playLists.snapshot());
 
+        for (PlayList playList : playListsToRemove) {
+            for (Song song : playList.getSongs()) {
+                unindexSong(song.getId(), playList);
+            }
+        }
     }
 
     /**
      * Removes the song with the given ID from all playlists.
      *
      * The method does the following:
-     * 1. Iterates over the playLists list.
-     * 2. Calls the removeSong method on each playlist with the provided song ID.
+     * 1. Removes the song from the index of playlists by song, which gives the playlists that contain it.
+     * 2. Calls the removeAllOccurrences method on each of those playlists, once, so a playlist that holds the song several times loses all of them.
+     * Playlists that do not contain the song are not visited.
      *
      * @param songId The ID of the song to remove.
+     * @throws IllegalArgumentException If the ID is not a valid UUID.
      */
     public void deleteSongFromPlayLists(String songId) {
 
-        for (PlayList playList : playLists) {
-            playList.removeSong(songId);
-        }
+        UUID id = UUIDCodec.decode(songId);
+
+        long stamp = lock.writeLock();
+        try {
+            Map<PlayList, Integer> playListsWithSong = playListsBySongIndex.remove(id);
 
+            if (playListsWithSong == null) {
+                return;
+            }
+
+            try (CatalogVersions.Commit commit = versions.begin()) {
+                for (PlayList playList : playListsWithSong.keySet()) {
+                    commit.changingSongsOf(playList);
+                    playList.removeAllOccurrences(id);
+                }
+            }
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
     /**
-     * Returns a list of the names of all playlists.
+     * Removes the songs with the given IDs from all playlists, as a single change.
      *
      * The method does the following:
-     * 1. Initializes an empty list of playlist names.
-     * 2. Iterates over the playLists list and adds the string representation of each playlist to the list of playlist names.
-     * 3. Returns the list of playlist names.
+     * 1. Removes each song from the index of playlists by song, which gives the playlists that contain it. Playlists that contain none
+     *    of the songs are not visited.
+     * 2. Removes every occurrence of the songs from each of those playlists in a single pass over its songs, so a playlist that holds many
+     *    of the songs is filtered once.
+     * 3. Publishes a single version of the catalog, with the songs the playlists had before.
+     *
+     * @param songIds The IDs of the songs to remove.
+     */
+    public void deleteSongsFromPlayLists(Collection<UUID> songIds) {
+        try (CatalogVersions.Commit commit = versions.begin()) {
+            deleteSongsFromPlayLists(songIds, commit);
+        }
+    }
+
+    /**
+     * Removes the songs with the given IDs from all playlists as part of the given commit, such as the one of a cascade delete.
+     * The write lock is taken as deleteSongsFromPlayLists does, and handed to the commit, so no other change is made to the playlists until
+     * the commit is published.
+     *
+     * @param songIds The IDs of the songs to remove.
+     * @param commit The commit the removal is part of.
+     */
+    void deleteSongsFromPlayLists(Collection<UUID> songIds, CatalogVersions.Commit commit) {
+
+        Set<UUID> songIdsToRemove = new HashSet<>(songIds);
+
+        long stamp = lock.writeLock();
+        commit.holdUntilPublished(() -> lock.unlock(stamp));
+
+        Set<PlayList> playListsWithSongs = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (UUID songId : songIdsToRemove) {
+            Map<PlayList, Integer> playListsWithSong = playListsBySongIndex.remove(songId);
+            if (playListsWithSong != null) {
+                playListsWithSongs.addAll(playListsWithSong.keySet());
+            }
+        }
+
+        for (PlayList playList : playListsWithSongs) {
+            commit.changingSongsOf(playList);
+            playList.removeAllOccurrences(songIdsToRemove);
+        }
+    }
+
+    /**
+     * Publishes a new version of the catalog with a snapshot of the playlists. It is called while holding the write lock, after a change.
+     */
+    private void publishPlayLists() {
+        try (CatalogVersions.Commit commit = versions.begin()) {
+            commit.playLists(playLists.snapshot());
+        }
+    }
+
+    /**
+     * Adds every song of a playlist to the index of playlists by song.
+     */
+    private void indexSongs(PlayList playList) {
+        for (Song song : playList.getSongs()) {
+            indexSong(song.getId(), playList);
+        }
+    }
+
+    /**
+     * Adds one occurrence of a playlist to the playlists that contain a song.
+     */
+    private void indexSong(UUID songId, PlayList playList) {
+        Map<PlayList, Integer> playListsWithSong = playListsBySongIndex.get(songId);
+
+        if (playListsWithSong == null) {
+            playListsWithSong = new IdentityHashMap<>(2);
+            playListsBySongIndex.put(songId, playListsWithSong);
+        }
+
+        playListsWithSong.merge(playList, 1, Integer::sum);
+    }
+
+    /**
+     * Removes one occurrence of a playlist from the playlists that contain a song, dropping the playlist when it no longer contains the song,
+     * and the entry of the song when no playlist contains it.
+     */
+    private void unindexSong(UUID songId, PlayList playList) {
+        Map<PlayList, Integer> playListsWithSong = playListsBySongIndex.get(songId);
+
+        if (playListsWithSong == null) {
+            return;
+        }
+
+        playListsWithSong.computeIfPresent(playList, (indexedPlayList, occurrences) -> occurrences > 1 ? occurrences - 1 : null);
+        if (playListsWithSong.isEmpty()) {
+            playListsBySongIndex.remove(songId);
+        }
+    }
+
+    /**
+     * Returns a page of the list of playlists. Only the playlists of the page are read, so listing the playlists page by page
+     * costs in proportion to the playlists shown.
      *
-     * @return A list of the names of all playlists.
+     * @param cursor The cursor of the page, as returned with the previous page, or null for the first page.
+     * @param pageSize The maximum number of playlists of the page.
+     * @return The page of playlists, in the order of the list.
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is not valid.
      */
-    public List<String> getPlayListsToString() {
-        List<String> playListToString = new ArrayList<>();
-        for (PlayList playList : playLists) {
-            playListToString.add(playList.toString());
+    public Page<PlayList> getPlayListsPage(String cursor, int pageSize) {
+        long stamp = lock.readLock();
+        try {
+            return PageCursor.page(playLists::get, playLists::numberAt, playLists.size(), cursor, pageSize);
+        } finally {
+            lock.unlock(stamp);
         }
-        return playListToString;
     }
 
     /**
@@ -30,7 +30,13 @@ public class ReportService {
      */
     public Map<String, Integer> getMostFollowedArtists(List<Artist> followedArtists) {
 
-       return new HashMap<>();
+        Map<String, Integer> mostFollowedArtists = new HashMap<>();
+
+        for (Artist artist : followedArtists) {
+            mostFollowedArtists.merge(artist.getName(), 1, Integer::sum);
+        }
+
+        return mostFollowedArtists;
     }
 
     /**
@@ -42,11 +48,21 @@ public class ReportService {
      * 3. Returns maxSong, the ID of the song with the maximum count.
      *
      * @param mostAddedSongs A map of song IDs to their counts.
-     * @return The ID of the song with the maximum count.
+     * @return The ID of the song with the maximum count, or null if the map is empty.
      */
     public UUID maxSong(Map<UUID, Integer> mostAddedSongs) {
 
-        return UUID.randomUUID();
+        UUID maxSong = null;
+        int max = 0;
+
+        for (Map.Entry<UUID, Integer> entry : mostAddedSongs.entrySet()) {
+            if (entry.getValue() > max) {
+                max = entry.getValue();
+                maxSong = entry.getKey();
+            }
+        }
+
+        return maxSong;
     }
 
     /**
@@ -62,6 +78,12 @@ public class ReportService {
      */
     public Map<UUID, Integer> getCountOfSongsByArtist(List<Song> songsByArtist) {
 
-        return new HashMap<>();
+        Map<UUID, Integer> countOfSongs = new HashMap<>();
+
+        for (Song song : songsByArtist) {
+            countOfSongs.merge(song.getId(), 1, Integer::sum);
+        }
+
+        return countOfSongs;
     }
 }
@@ -0,0 +1,267 @@
+package com.javeriana.services;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The ServiceLock class is the lock of a service, which lets several threads use the service at the same time.
+ *
+ * The class does the following:
+ * 1. Guards the collections of the service (its list of entities and its indexes) with a StampedLock. Changes to the collections
+ *    take the write lock, and reads that cover many entities, such as a page or a search, take the read lock, so each of them is
+ *    linearizable: it takes effect at one point between its call and its return, and sees every change made before that point.
+ * 2. Runs lookups of a single entity as optimistic reads (readOptimistically): the lookup runs without taking the lock, and is only
+ *    repeated under the read lock if a change was made while it ran, which the stamp of the lock tells. Lookups are usually far more
+ *    frequent than changes, so they usually take no lock and write no shared memory.
+ * 3. Builds the structures that a service builds on first use, such as its search indexes, under the write lock and then hands back
+ *    the read lock (readLockBuilding), so the structure is built by a single thread and then read by many.
+ * 4. Keeps a fixed set of striped locks, one of which guards each entity by the hash of its ID (stripe). Changes to the contents of an entity,
+ *    such as the artists a customer follows, take the stripe of the entity instead of the write lock, so changes to entities of different
+ *    stripes run in parallel, and the collections of the service stay readable meanwhile. A change to many entities takes their stripes
+ *    in a fixed order (stripes).
+ * 5. Wraps the read-only map views of the indexes of a service (guard), so a lookup through a view is an optimistic read as well.
+ *
+ * The StampedLock is not reentrant: a method that holds the lock must use the indexes of the service directly instead of calling
+ * other public methods of the service. When both are needed, the lock of the service is taken before the stripe of an entity.
+ */
+final class ServiceLock {
+
+    /**
+     * The number of striped locks, which must be a power of two. It is a few times the number of threads expected to change entities at once.
+     */
+    private static final int STRIPE_COUNT = 64;
+
+    private final StampedLock lock = new StampedLock();
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPE_COUNT];
+
+    /**
+     * Constructs a ServiceLock with its stripes.
+     */
+    ServiceLock() {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Acquires the read lock, waiting for the write lock to be released if needed.
+     *
+     * @return The stamp of the read lock, to be passed to unlock.
+     */
+    long readLock() {
+        return lock.readLock();
+    }
+
+    /**
+     * Acquires the write lock, waiting for the other locks to be released if needed.
+     *
+     * @return The stamp of the write lock, to be passed to unlock.
+     */
+    long writeLock() {
+        return lock.writeLock();
+    }
+
+    /**
+     * Releases the read or write lock of the given stamp.
+     *
+     * @param stamp The stamp returned when the lock was acquired.
+     */
+    void unlock(long stamp) {
+        lock.unlock(stamp);
+    }
+
+    /**
+     * Runs a read of the collections of the service without taking the lock, and runs it again under the read lock if the collections
+     * changed meanwhile.
+     *
+     * The read must not change anything, and must end whatever state it sees, since it may see a change half made. An exception thrown
+     * by the read is only passed on if no change was made while it ran; otherwise it is taken as a sign of a half-made change.
+     *
+     * @param reader The read.
+     * @return The result of the read, as of a point at which no change was being made.
+     */
+    <T> T readOptimistically(Supplier<T> reader) {
+
+        long stamp = lock.tryOptimisticRead();
+
+        if (stamp != 0) {
+            try {
+                T result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Acquires the read lock after making sure a structure built on first use has been built.
+     *
+     * The method does the following:
+     * 1. Acquires the read lock. If the structure is built, it returns.
+     * 2. Otherwise, it converts the read lock to the write lock, or releases it and waits for the write lock if other threads also hold
+     *    the read lock.
+     * 3. Builds the structure if no other thread built it meanwhile, and converts the write lock back to the read lock, so no change
+     *    can be made between the build and the read that needs it.
+     *
+     * @param isBuilt Tells if the structure is built. It is called while holding the lock.
+     * @param build Builds the structure. It is called while holding the write lock.
+     * @return The stamp of the read lock, to be passed to unlock.
+     */
+    long readLockBuilding(BooleanSupplier isBuilt, Runnable build) {
+
+        long stamp = lock.readLock();
+
+        if (isBuilt.getAsBoolean()) {
+            return stamp;
+        }
+
+        long writeStamp = lock.tryConvertToWriteLock(stamp);
+        if (writeStamp == 0) {
+            lock.unlockRead(stamp);
+            writeStamp = lock.writeLock();
+        }
+
+        try {
+            if (!isBuilt.getAsBoolean()) {
+                build.run();
+            }
+        } catch (RuntimeException | Error e) {
+            lock.unlockWrite(writeStamp);
+            throw e;
+        }
+
+        return lock.tryConvertToReadLock(writeStamp);
+    }
+
+    /**
+     * Returns the striped lock that guards the contents of the entity with the given ID.
+     *
+     * @param id The ID of the entity.
+     * @return The lock of the stripe of the entity, shared with the entities of the same stripe.
+     */
+    ReentrantLock stripe(UUID id) {
+        return stripes[stripeIndex(id)];
+    }
+
+    /**
+     * Returns the striped locks that guard the contents of the entities with the given IDs, each once, in the order of the stripes.
+     * A change to the contents of many entities takes the locks in that order, so two such changes never wait for each other in a cycle.
+     *
+     * @param ids The IDs of the entities.
+     * @return The locks of the stripes of the entities.
+     */
+    List<ReentrantLock> stripes(Collection<UUID> ids) {
+
+        boolean[] used = new boolean[STRIPE_COUNT];
+        for (UUID id : ids) {
+            used[stripeIndex(id)] = true;
+        }
+
+        List<ReentrantLock> usedStripes = new ArrayList<>();
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            if (used[i]) {
+                usedStripes.add(stripes[i]);
+            }
+        }
+
+        return usedStripes;
+    }
+
+    /**
+     * Returns the index of the stripe of the entity with the given ID.
+     */
+    private static int stripeIndex(UUID id) {
+        long hash = id.getMostSignificantBits() ^ id.getLeastSignificantBits();
+        int spread = (int) (hash ^ (hash >>> 32));
+        return (spread ^ (spread >>> 16)) & (STRIPE_COUNT - 1);
+    }
+
+    /**
+     * Wraps a read-only map view of an index of the service, so it can be used while the service is changed by other threads.
+     * Lookups and the size of the returned map are optimistic reads of the view. Iterating over the returned map iterates over a copy
+     * of the entries made under the read lock.
+     *
+     * @param view The map view of the index.
+     * @return The guarded map view.
+     */
+    <K, V> Map<K, V> guard(Map<K, V> view) {
+        return new GuardedMap<>(view);
+    }
+
+    /**
+     * A read-only map that reads another map under the lock.
+     */
+    private final class GuardedMap<K, V> extends AbstractMap<K, V> {
+
+        private final Map<K, V> view;
+
+        private GuardedMap(Map<K, V> view) {
+            this.view = view;
+        }
+
+        @Override
+        public V get(Object key) {
+            return readOptimistically(() -> view.get(key));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return readOptimistically(() -> view.containsKey(key));
+        }
+
+        @Override
+        public int size() {
+            return readOptimistically(view::size);
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+
+            List<Entry<K, V>> entries;
+            long stamp = lock.readLock();
+            try {
+                entries = new ArrayList<>(view.entrySet());
+            } finally {
+                lock.unlockRead(stamp);
+            }
+
+            return new AbstractSet<>() {
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return Collections.unmodifiableList(entries).iterator();
+                }
+
+                @Override
+                public int size() {
+                    return entries.size();
+                }
+            };
+        }
+    }
+}
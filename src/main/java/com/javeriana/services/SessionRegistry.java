@@ -0,0 +1,220 @@
+package com.javeriana.services;
+
+import com.javeriana.exceptions.WrongLogInException;
+import com.javeriana.models.Customer;
+import com.javeriana.models.Session;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The SessionRegistry class keeps the open sessions of the customers, so many customers can be logged in at the same time.
+ *
+ * The class does the following:
+ * 1. Opens a session for a customer, identified by 128 random bits encoded as text, and hands out a Session handle with that token.
+ * 2. Resolves a handle to its customer with a single lookup in a concurrent map. Resolving does not take any lock shared by the sessions:
+ *    it only reads the map and records the time the session was used in the session itself.
+ * 3. Expires the sessions that have not been used for longer than the idle timeout. An expired session is rejected, and removed,
+ *    the next time it is resolved. The registry also sweeps every expired session at most once per timeout, from whichever thread
+ *    opens a session when a sweep is due, so sessions that are never used again do not stay in memory.
+ * 4. Closes a session on logout, and every session of a customer when the customer is deleted. A deleted customer is marked as such
+ *    before its sessions are closed, and the registry checks the mark after it registers a session, and whenever it resolves one,
+ *    so a login that runs while the customer is deleted either has its session closed, or is refused.
+ *
+ * The registry is safe to use from several threads at the same time.
+ */
+public final class SessionRegistry {
+
+    /**
+     * The idle timeout used when none is given.
+     */
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(30);
+
+    /**
+     * The number of random bytes of a session token.
+     */
+    private static final int TOKEN_BYTES = 16;
+
+    /**
+     * The minimum time between two updates of the last access time of a session. Skipping the updates in between keeps the
+     * memory of a session that is used by several threads from being written by all of them on every call.
+     */
+    private static final long ACCESS_TIME_RESOLUTION_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final Base64.Encoder TOKEN_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    /**
+     * The open sessions by their tokens.
+     */
+    private final Map<String, ActiveSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * The time a session can stay unused before it expires, in nanoseconds.
+     */
+    private final long idleTimeoutNanos;
+
+    /**
+     * The time, as given by System.nanoTime, after which the next sweep of the expired sessions is due.
+     */
+    private final AtomicLong nextSweepTime;
+
+    /**
+     * Constructs a SessionRegistry whose sessions expire after the default idle timeout.
+     */
+    public SessionRegistry() {
+        this(DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Constructs a SessionRegistry whose sessions expire after the given idle timeout.
+     *
+     * @param idleTimeout The time a session can stay unused before it expires.
+     * @throws IllegalArgumentException If the timeout is not positive.
+     */
+    public SessionRegistry(Duration idleTimeout) {
+
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("El tiempo de inactividad de las sesiones debe ser positivo");
+        }
+
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.nextSweepTime = new AtomicLong(System.nanoTime() + idleTimeoutNanos);
+    }
+
+    /**
+     * Opens a session for the given customer.
+     *
+     * The method does the following:
+     * 1. Sweeps the expired sessions if a sweep is due.
+     * 2. Creates a random token and registers the session under it.
+     * 3. Checks if the customer was deleted. If it was, it removes the session and returns null. The deletion marks the customer before
+     *    it closes its sessions, so a session registered after they are closed is always seen to belong to a deleted customer here.
+     * 4. Returns the handle of the session.
+     *
+     * @param customer The customer of the session.
+     * @return The handle of the new session, or null if the customer was deleted.
+     */
+    public Session open(Customer customer) {
+
+        long now = System.nanoTime();
+        sweepIfDue(now);
+
+        String token;
+        ActiveSession activeSession = new ActiveSession(customer, now);
+        do {
+            byte[] bytes = new byte[TOKEN_BYTES];
+            RANDOM.nextBytes(bytes);
+            token = TOKEN_ENCODER.encodeToString(bytes);
+        } while (sessions.putIfAbsent(token, activeSession) != null);
+
+        if (customer.isDeleted()) {
+            sessions.remove(token, activeSession);
+            return null;
+        }
+
+        return new Session(token);
+    }
+
+    /**
+     * Returns the customer of the given session, and records that the session was used.
+     *
+     * @param session The handle of the session.
+     * @return The customer of the session.
+     * @throws WrongLogInException If the session does not exist, was closed or has expired, or its customer was deleted.
+     */
+    public Customer resolve(Session session) throws WrongLogInException {
+
+        ActiveSession activeSession = session != null ? sessions.get(session.token()) : null;
+
+        if (activeSession == null) {
+            throw new WrongLogInException("No hay un cliente con sesión iniciada");
+        }
+
+        if (activeSession.customer.isDeleted()) {
+            sessions.remove(session.token(), activeSession);
+            throw new WrongLogInException("El cliente de la sesión fue eliminado");
+        }
+
+        long now = System.nanoTime();
+        long lastAccessTime = activeSession.lastAccessTime;
+
+        if (now - lastAccessTime > idleTimeoutNanos) {
+            sessions.remove(session.token(), activeSession);
+            throw new WrongLogInException("La sesión expiró por inactividad, inicie sesión de nuevo");
+        }
+
+        if (now - lastAccessTime > ACCESS_TIME_RESOLUTION_NANOS) {
+            activeSession.lastAccessTime = now;
+        }
+
+        return activeSession.customer;
+    }
+
+    /**
+     * Closes the given session. Closing a session that is already closed has no effect.
+     *
+     * @param session The handle of the session.
+     */
+    public void close(Session session) {
+        if (session != null) {
+            sessions.remove(session.token());
+        }
+    }
+
+    /**
+     * Closes every session of the given customer, such as when the customer is deleted.
+     * It visits every open session, so it is meant for rare operations only.
+     *
+     * @param customer The customer whose sessions are closed.
+     */
+    public void closeAll(Customer customer) {
+        sessions.values().removeIf(activeSession -> activeSession.customer == customer);
+    }
+
+    /**
+     * Returns the number of sessions in the registry, including the expired ones that have not been swept yet.
+     *
+     * @return The number of sessions.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Removes every expired session if the last sweep was more than one idle timeout ago. Only the thread that moves the time
+     * of the next sweep forward does the sweep, so concurrent callers never sweep twice.
+     */
+    private void sweepIfDue(long now) {
+
+        long sweepTime = nextSweepTime.get();
+
+        if (now - sweepTime < 0 || !nextSweepTime.compareAndSet(sweepTime, now + idleTimeoutNanos)) {
+            return;
+        }
+
+        sessions.values().removeIf(activeSession -> now - activeSession.lastAccessTime > idleTimeoutNanos);
+    }
+
+    /**
+     * The state of an open session.
+     */
+    private static final class ActiveSession {
+
+        private final Customer customer;
+
+        /**
+         * The last time the session was used, as given by System.nanoTime.
+         */
+        private volatile long lastAccessTime;
+
+        private ActiveSession(Customer customer, long lastAccessTime) {
+            this.customer = customer;
+            this.lastAccessTime = lastAccessTime;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.javeriana.services;
+
+import com.javeriana.models.Song;
+import com.javeriana.utils.CompressedBitmap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The SongFilterIndex class is a set of bitmap indexes over the genre and the duration of songs, used to filter the catalog by both
+ * without reading every song.
+ *
+ * The class does the following:
+ * 1. Gives each song an ordinal when it is added, so the songs are numbered densely from 0 in the order they were added, and keeps a
+ *    bitmap of the ordinals of the songs that are in the index.
+ * 2. Keeps one bitmap for each genre, with the ordinals of the songs of that genre. Songs of any of several genres are the union of their bitmaps.
+ * 3. Keeps the durations as a bit-sliced index: one bitmap for each bit of the duration, with the songs whose duration has that bit set.
+ *    This is the base-2 form of a range-encoded index, and takes a dozen bitmaps for durations of up to about an hour, whatever the number
+ *    of distinct durations. The songs within a duration range are found by comparing the slices with the bounds of the range, from the
+ *    highest bit down, 64 songs at a time.
+ * 4. Answers a filter by taking the union of the bitmaps of the genres and comparing the durations of only those songs with the range, and only
+ *    then turns the ordinals of the result into songs, so a filter costs in proportion to the compressed size of the bitmaps and to the number
+ *    of songs returned.
+ * 5. Is updated song by song. A deleted song is removed from every bitmap, and its ordinal is left unused; when unused ordinals outnumber
+ *    the live ones, the index is rebuilt from the live songs so the ordinals stay dense.
+ *
+ * The bitmaps are CompressedBitmap objects, which store sparse parts as sorted arrays and dense parts as plain bitmaps.
+ * The index is owned by the SongService class, which is the only class that changes it. It is not synchronized.
+ */
+final class SongFilterIndex {
+
+    /**
+     * The minimum number of deleted songs before the index is compacted.
+     */
+    private static final int MIN_DELETED_SONGS_TO_COMPACT = 1024;
+
+    /**
+     * The ordinals of the songs in the index.
+     */
+    private CompressedBitmap liveSongs = new CompressedBitmap();
+
+    /**
+     * The ordinals of the songs of each genre.
+     */
+    private final Map<String, CompressedBitmap> songsByGenre = new HashMap<>();
+
+    /**
+     * The ordinals of the songs whose duration has each bit set, from the lowest bit up. There are as many as the bits of the longest duration.
+     */
+    private CompressedBitmap[] durationBits = new CompressedBitmap[0];
+
+    /**
+     * The songs by their ordinals. Deleted songs are null.
+     */
+    private Song[] songs = new Song[1024];
+
+    /**
+     * The ordinals of the songs in the index.
+     */
+    private final Map<Song, Integer> ordinals = new IdentityHashMap<>();
+
+    /**
+     * The number of ordinals given so far, and the number of them that belong to deleted songs.
+     */
+    private int ordinalCount;
+    private int deletedCount;
+
+    /**
+     * Adds a song to the index. Adding a song that is already in the index has no effect.
+     *
+     * @param song The song to add.
+     */
+    void add(Song song) {
+
+        if (ordinals.containsKey(song)) {
+            return;
+        }
+
+        if (ordinalCount == songs.length) {
+            songs = Arrays.copyOf(songs, songs.length * 2);
+        }
+
+        int ordinal = ordinalCount++;
+        songs[ordinal] = song;
+        ordinals.put(song, ordinal);
+
+        liveSongs.add(ordinal);
+        songsByGenre.computeIfAbsent(song.getGenre(), genre -> new CompressedBitmap()).add(ordinal);
+
+        int duration = durationOf(song);
+        int bitCount = Integer.SIZE - Integer.numberOfLeadingZeros(duration);
+        if (bitCount > durationBits.length) {
+            int oldLength = durationBits.length;
+            durationBits = Arrays.copyOf(durationBits, bitCount);
+            for (int bit = oldLength; bit < bitCount; bit++) {
+                durationBits[bit] = new CompressedBitmap();
+            }
+        }
+        for (int bit = 0; bit < bitCount; bit++) {
+            if ((duration & (1 << bit)) != 0) {
+                durationBits[bit].add(ordinal);
+            }
+        }
+    }
+
+    /**
+     * Removes a song from the index. Removing a song that is not in the index has no effect.
+     *
+     * @param song The song to remove.
+     */
+    void remove(Song song) {
+
+        Integer ordinal = ordinals.remove(song);
+
+        if (ordinal == null) {
+            return;
+        }
+
+        songs[ordinal] = null;
+        liveSongs.remove(ordinal);
+
+        CompressedBitmap genreSongs = songsByGenre.get(song.getGenre());
+        genreSongs.remove(ordinal);
+        if (genreSongs.isEmpty()) {
+            songsByGenre.remove(song.getGenre());
+        }
+
+        int duration = durationOf(song);
+        for (int bit = 0; bit < durationBits.length; bit++) {
+            if ((duration & (1 << bit)) != 0) {
+                durationBits[bit].remove(ordinal);
+            }
+        }
+
+        deletedCount++;
+
+        if (deletedCount >= MIN_DELETED_SONGS_TO_COMPACT && deletedCount > ordinalCount - deletedCount) {
+            compact();
+        }
+    }
+
+    /**
+     * Returns the ordinals of the songs of any of the given genres whose duration is within the given range.
+     *
+     * @param genres The genres of the songs, or an empty collection for songs of any genre.
+     * @param minDurationInSeconds The minimum duration of the songs, included.
+     * @param maxDurationInSeconds The maximum duration of the songs, included.
+     * @return A new bitmap with the ordinals of the songs that pass the filter.
+     */
+    CompressedBitmap filter(Collection<String> genres, int minDurationInSeconds, int maxDurationInSeconds) {
+
+        CompressedBitmap genreSongs = liveSongs;
+        if (!genres.isEmpty()) {
+            genreSongs = new CompressedBitmap();
+            for (String genre : genres) {
+                CompressedBitmap songsOfGenre = songsByGenre.get(genre);
+                if (songsOfGenre != null) {
+                    genreSongs = genreSongs.or(songsOfGenre);
+                }
+            }
+        }
+
+        // The durations are only compared for the songs of the genres, so a rare genre only reads a few words of the slices
+        return CompressedBitmap.inSlicedRange(genreSongs, durationBits, minDurationInSeconds, maxDurationInSeconds);
+    }
+
+    /**
+     * Returns the songs with the given ordinals, in ascending ordinal order, which is the order the songs were added in.
+     *
+     * @param songOrdinals The ordinals of the songs.
+     * @param limit The maximum number of songs to return.
+     * @return The songs with the lowest limit ordinals.
+     */
+    List<Song> songs(CompressedBitmap songOrdinals, int limit) {
+
+        int[] selectedOrdinals = songOrdinals.toArray(limit);
+
+        List<Song> selectedSongs = new ArrayList<>(selectedOrdinals.length);
+        for (int ordinal : selectedOrdinals) {
+            selectedSongs.add(songs[ordinal]);
+        }
+
+        return selectedSongs;
+    }
+
+    /**
+     * Returns the duration of a song as indexed. A negative duration, which no valid song has, is indexed as 0.
+     */
+    private static int durationOf(Song song) {
+        return Math.max(0, song.getDurationInSeconds());
+    }
+
+    /**
+     * Rebuilds the index from the live songs, in ordinal order, dropping the deleted ones.
+     */
+    private void compact() {
+
+        Song[] remainingSongs = new Song[ordinalCount - deletedCount];
+        int remainingCount = 0;
+        for (int i = 0; i < ordinalCount; i++) {
+            if (songs[i] != null) {
+                remainingSongs[remainingCount++] = songs[i];
+            }
+        }
+
+        liveSongs = new CompressedBitmap();
+        songsByGenre.clear();
+        durationBits = new CompressedBitmap[0];
+        ordinals.clear();
+        songs = new Song[Math.max(1024, remainingSongs.length * 2)];
+        ordinalCount = 0;
+        deletedCount = 0;
+
+        for (Song song : remainingSongs) {
+            add(song);
+        }
+    }
+}
@@ -0,0 +1,608 @@
+package com.javeriana.services;
+
+import com.javeriana.models.Artist;
+import com.javeriana.models.Song;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * The SongSearchIndex class is a full-text index over the names, albums and artist names of songs.
+ *
+ * The class does the following:
+ * 1. Splits each text into terms: the text is lowercased, accents are removed, and the terms are the runs of letters and digits.
+ *    "Canción de Ñandú" gives the terms "cancion", "de" and "nandu".
+ * 2. Keeps, for each term, the songs that contain it in three posting lists, one for each field the term can best be found in:
+ *    the name, an artist name or the album. Each song gets a document number when it is added, and posting lists are kept in
+ *    document number order.
+ * 3. Keeps the terms in a sorted map, so the terms that start with a prefix are a range of the map. This gives the suggestions of
+ *    autocomplete, and lets the last word of a query match the words it is the start of, as the user is still typing it.
+ *    A term the word is the start of weighs half as much as the word itself. Only the first terms of a range are read, so a prefix of
+ *    one or two letters takes the same time as a longer one.
+ * 4. Scores a song by the sum, over the words of the query, of the weight of the best field the word is in (name before artist before
+ *    album) times the rarity of the word. A one-word query reads its posting lists from the highest score down and stops as soon as it has
+ *    enough songs. A longer query starts from the word with the fewest songs and looks each of those songs up in the posting lists of the
+ *    other words, so its cost depends on the rarest word, not on the size of the catalog.
+ * 5. Is updated song by song. A deleted song is only marked as deleted and skipped by the searches; when deleted songs outnumber
+ *    the live ones, the index is rebuilt from the live songs, so the cost of deleting is spread over many deletes. Each term keeps
+ *    its number of live songs, so the rarity of a term and the suggestions of autocomplete do not count the deleted songs, and a
+ *    term whose songs were all deleted is not suggested.
+ *
+ * The index is owned by the SongService class, which is the only class that changes it. It is not synchronized.
+ */
+final class SongSearchIndex {
+
+    /**
+     * The fields a term can be found in, best first, and the weight of each one in the score.
+     */
+    private static final int NAME_FIELD = 0;
+    private static final int ARTIST_FIELD = 1;
+    private static final int ALBUM_FIELD = 2;
+    private static final float[] FIELD_WEIGHTS = {3, 2, 1};
+
+    /**
+     * The maximum number of terms a prefix is expanded to. The most common terms are kept, so a short prefix does not visit
+     * a large part of the vocabulary.
+     */
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    /**
+     * The weight of a term matched by a prefix of it, relative to a term matched whole.
+     */
+    private static final float PREFIX_MATCH_WEIGHT = 0.5f;
+
+    /**
+     * The maximum number of terms read from the range of a prefix to find its most common terms.
+     */
+    private static final int MAX_PREFIX_TERMS_READ = 2048;
+
+    /**
+     * The minimum number of deleted songs before the index is compacted.
+     */
+    private static final int MIN_DELETED_SONGS_TO_COMPACT = 1024;
+
+    /**
+     * The posting lists of the terms, sorted by term.
+     */
+    private final NavigableMap<String, TermPostings> postingsByTerm = new TreeMap<>();
+
+    /**
+     * The songs by their document numbers. Deleted songs are null.
+     */
+    private Song[] documents = new Song[1024];
+
+    /**
+     * The document numbers of the songs in the index.
+     */
+    private final Map<Song, Integer> documentNumbers = new IdentityHashMap<>();
+
+    /**
+     * The number of document numbers given so far, and the number of them that belong to deleted songs.
+     */
+    private int documentCount;
+    private int deletedCount;
+
+    /**
+     * Adds a song to the index. Adding a song that is already in the index has no effect.
+     *
+     * @param song The song to add.
+     */
+    void add(Song song) {
+
+        if (documentNumbers.containsKey(song)) {
+            return;
+        }
+
+        if (documentCount == documents.length) {
+            documents = Arrays.copyOf(documents, documents.length * 2);
+        }
+
+        int document = documentCount++;
+        documents[document] = song;
+        documentNumbers.put(song, document);
+
+        bestFieldsByTerm(song).forEach((term, field) ->
+            postingsByTerm.computeIfAbsent(term, key -> new TermPostings()).add(document, field));
+    }
+
+    /**
+     * Removes a song from the index. Removing a song that is not in the index has no effect.
+     *
+     * @param song The song to remove.
+     */
+    void remove(Song song) {
+
+        Integer document = documentNumbers.remove(song);
+
+        if (document == null) {
+            return;
+        }
+
+        documents[document] = null;
+        deletedCount++;
+
+        // The postings of the song stay until the index is compacted, but its terms no longer count it as live
+        for (String term : bestFieldsByTerm(song).keySet()) {
+            postingsByTerm.get(term).liveCount--;
+        }
+
+        if (deletedCount >= MIN_DELETED_SONGS_TO_COMPACT && deletedCount > documentCount - deletedCount) {
+            compact();
+        }
+    }
+
+    /**
+     * Returns the songs that contain every word of the query, best first.
+     *
+     * The method does the following:
+     * 1. Splits the query into terms. If it has none, it returns an empty list.
+     * 2. Finds the terms each word matches: the word itself, and, for the last word, also the most common terms that start with it.
+     *    If a word matches no term, no song can match and it returns an empty list.
+     * 3. With a single word, reads the posting lists from the highest score down until it has enough songs.
+     * 4. With several words, takes the songs of the word with the fewest songs, keeps the ones that the other words are also found in,
+     *    adding up the score of each word, and keeps the best ones in a heap of the size of the limit.
+     *
+     * @param query The words to search for.
+     * @param limit The maximum number of songs to return.
+     * @return The matching songs, best first.
+     */
+    List<Song> search(String query, int limit) {
+
+        List<String> words = tokenize(query);
+
+        if (words.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        List<WordMatch> wordMatches = new ArrayList<>(words.size());
+        for (int i = 0; i < words.size(); i++) {
+            boolean isLastWord = i == words.size() - 1;
+            WordMatch wordMatch = new WordMatch(words.get(i), isLastWord ? mostCommonTerms(words.get(i), MAX_PREFIX_EXPANSIONS) : List.of());
+
+            if (wordMatch.size == 0) {
+                return new ArrayList<>();
+            }
+            wordMatches.add(wordMatch);
+        }
+
+        if (wordMatches.size() == 1) {
+            return bestSongs(wordMatches.get(0), limit);
+        }
+
+        wordMatches.sort(Comparator.comparingLong(wordMatch -> wordMatch.size));
+
+        return bestSongs(wordMatches.get(0), wordMatches.subList(1, wordMatches.size()), limit);
+    }
+
+    /**
+     * Returns the terms of the index that start with the given text, the most common first.
+     *
+     * @param prefix The start of the terms. Only its last word is completed.
+     * @param limit The maximum number of terms to return.
+     * @return The terms that complete the prefix.
+     */
+    List<String> autocomplete(String prefix, int limit) {
+
+        List<String> words = tokenize(prefix);
+
+        if (words.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        return mostCommonTerms(words.get(words.size() - 1), limit);
+    }
+
+    //region matching
+
+    /**
+     * Returns the terms that start with the given prefix and have the most live songs, the most common first. Terms whose songs were
+     * all deleted are skipped.
+     */
+    private List<String> mostCommonTerms(String prefix, int limit) {
+
+        PriorityQueue<TermCount> mostCommon = new PriorityQueue<>(Comparator.comparingInt(TermCount::songCount));
+
+        int termsRead = 0;
+        for (Map.Entry<String, TermPostings> entry : postingsByTerm.subMap(prefix, true, prefix + Character.MAX_VALUE, false).entrySet()) {
+            if (termsRead++ == MAX_PREFIX_TERMS_READ) {
+                break;
+            }
+
+            int songCount = entry.getValue().liveCount;
+            if (songCount == 0) {
+                continue;
+            }
+
+            if (mostCommon.size() < limit) {
+                mostCommon.add(new TermCount(entry.getKey(), songCount));
+            } else if (songCount > mostCommon.peek().songCount()) {
+                mostCommon.poll();
+                mostCommon.add(new TermCount(entry.getKey(), songCount));
+            }
+        }
+
+        List<String> terms = new ArrayList<>(mostCommon.size());
+        while (!mostCommon.isEmpty()) {
+            terms.add(mostCommon.poll().term());
+        }
+        Collections.reverse(terms);
+
+        return terms;
+    }
+
+    /**
+     * Returns the best songs of a one-word query. The posting lists of the word are read by descending score, so the first songs found
+     * are the best ones; a song found again through a list with a lower score keeps its first, higher, score.
+     */
+    private List<Song> bestSongs(WordMatch wordMatch, int limit) {
+
+        List<Song> songs = new ArrayList<>(limit);
+        Map<Song, Boolean> foundSongs = new IdentityHashMap<>();
+
+        for (PostingList postingList : wordMatch.postingListsByScore()) {
+            for (int i = 0; i < postingList.postings.size && songs.size() < limit; i++) {
+                Song song = documents[postingList.postings.documents[i]];
+                if (song != null && foundSongs.put(song, Boolean.TRUE) == null) {
+                    songs.add(song);
+                }
+            }
+            if (songs.size() == limit) {
+                break;
+            }
+        }
+
+        return songs;
+    }
+
+    /**
+     * Returns the best songs of a query of several words.
+     *
+     * @param rarestWord The word with the fewest songs, whose songs are the candidates.
+     * @param otherWords The other words, which every candidate must also contain.
+     * @param limit The maximum number of songs to return.
+     */
+    private List<Song> bestSongs(WordMatch rarestWord, List<WordMatch> otherWords, int limit) {
+
+        // Each candidate is packed as its document number in the high bits and its score in the low bits, so sorting
+        // puts the postings of the same song next to each other with the best score last
+        long[] candidates = new long[(int) rarestWord.size];
+        int candidateCount = 0;
+        for (PostingList postingList : rarestWord.postingLists) {
+            for (int i = 0; i < postingList.postings.size; i++) {
+                int document = postingList.postings.documents[i];
+                if (documents[document] != null) {
+                    candidates[candidateCount++] = pack(document, postingList.score);
+                }
+            }
+        }
+        Arrays.sort(candidates, 0, candidateCount);
+
+        // A min-heap of the best candidates so far, by score, so the worst of them is the one replaced
+        PriorityQueue<long[]> best = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(candidate -> Float.intBitsToFloat((int) candidate[1])));
+
+        for (int i = 0; i < candidateCount; i++) {
+            int document = (int) (candidates[i] >>> 32);
+
+            // Only the last posting of each song, which has its best score, is kept
+            if (i + 1 < candidateCount && (int) (candidates[i + 1] >>> 32) == document) {
+                continue;
+            }
+
+            float score = Float.intBitsToFloat((int) candidates[i]);
+            for (WordMatch otherWord : otherWords) {
+                float wordScore = otherWord.bestScore(document);
+                if (wordScore == 0) {
+                    score = -1;
+                    break;
+                }
+                score += wordScore;
+            }
+
+            if (score < 0) {
+                continue;
+            }
+
+            if (best.size() < limit) {
+                best.add(new long[] {document, Float.floatToIntBits(score)});
+            } else if (score > Float.intBitsToFloat((int) best.peek()[1])) {
+                best.poll();
+                best.add(new long[] {document, Float.floatToIntBits(score)});
+            }
+        }
+
+        Song[] songs = new Song[best.size()];
+        for (int i = songs.length - 1; i >= 0; i--) {
+            songs[i] = documents[(int) best.poll()[0]];
+        }
+
+        return new ArrayList<>(Arrays.asList(songs));
+    }
+
+    private static long pack(int document, float score) {
+        return ((long) document << 32) | (Float.floatToIntBits(score) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns how rare a term is: terms found in fewer songs weigh more in the score.
+     */
+    private float rarity(int songsWithTerm) {
+        return (float) Math.log(1 + (double) (documentCount - deletedCount + 1) / songsWithTerm);
+    }
+
+    //endregion
+
+    //region maintenance
+
+    /**
+     * Rebuilds the index from the live songs, in document number order, dropping the deleted ones.
+     */
+    private void compact() {
+
+        Song[] liveSongs = new Song[documentCount - deletedCount];
+        int liveCount = 0;
+        for (int i = 0; i < documentCount; i++) {
+            if (documents[i] != null) {
+                liveSongs[liveCount++] = documents[i];
+            }
+        }
+
+        postingsByTerm.clear();
+        documentNumbers.clear();
+        documents = new Song[Math.max(1024, liveSongs.length * 2)];
+        documentCount = 0;
+        deletedCount = 0;
+
+        for (Song song : liveSongs) {
+            add(song);
+        }
+    }
+
+    //endregion
+
+    //region tokenization
+
+    /**
+     * Splits a text into terms: the runs of letters and digits of the text, lowercased and without accents.
+     *
+     * @param text The text to split.
+     * @return The terms of the text, in order.
+     */
+    static List<String> tokenize(String text) {
+
+        List<String> terms = new ArrayList<>();
+
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+
+        // Accented letters are split into the letter and the accent, and the accent is then skipped. Most texts are plain ASCII,
+        // which has nothing to split
+        String normalizedText = isAscii(text) ? text.toLowerCase(Locale.ROOT)
+            : Normalizer.normalize(text, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i < normalizedText.length(); i++) {
+            char character = normalizedText.charAt(i);
+
+            if (Character.getType(character) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+
+            if (Character.isLetterOrDigit(character)) {
+                term.append(character);
+            } else if (!term.isEmpty()) {
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+        }
+        if (!term.isEmpty()) {
+            terms.add(term.toString());
+        }
+
+        return terms;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the terms of a song with the best field each one is found in, so a term found in several fields gets a single posting.
+     * Songs and artists do not change, so a song gives the same terms when it is removed as when it was added.
+     */
+    private static Map<String, Integer> bestFieldsByTerm(Song song) {
+
+        Map<String, Integer> bestFieldByTerm = new HashMap<>();
+        addTerms(bestFieldByTerm, song.getName(), NAME_FIELD);
+        for (Artist artist : song.getArtists()) {
+            addTerms(bestFieldByTerm, artist.getName(), ARTIST_FIELD);
+        }
+        addTerms(bestFieldByTerm, song.getAlbum(), ALBUM_FIELD);
+
+        return bestFieldByTerm;
+    }
+
+    private static void addTerms(Map<String, Integer> bestFieldByTerm, String text, int field) {
+        for (String term : tokenize(text)) {
+            bestFieldByTerm.merge(term, field, Math::min);
+        }
+    }
+
+    //endregion
+
+    //region posting lists
+
+    /**
+     * The document numbers of the songs that contain a term, in ascending order.
+     */
+    private static final class Postings {
+
+        private int[] documents = new int[2];
+        private int size;
+
+        private void add(int document) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+            }
+            documents[size++] = document;
+        }
+
+        /**
+         * Returns the position of the first document that is not lower than the given one, searching from the given position on.
+         * The search first doubles its step until it passes the document and then searches the last step, so finding a document
+         * close to the previous one only reads the memory between them.
+         */
+        private int advance(int from, int document) {
+
+            int step = 1;
+            int low = from;
+            while (low + step < size && documents[low + step] < document) {
+                low += step;
+                step <<= 1;
+            }
+
+            int found = Arrays.binarySearch(documents, low, Math.min(low + step + 1, size), document);
+            return found >= 0 ? found : -found - 1;
+        }
+    }
+
+    /**
+     * The posting lists of a term, one for each field the term is best found in. Most terms are only found in one field,
+     * so the lists are created when first needed.
+     */
+    private static final class TermPostings {
+
+        private final Postings[] postingsByField = new Postings[FIELD_WEIGHTS.length];
+
+        /**
+         * The number of songs of the postings that are not deleted.
+         */
+        private int liveCount;
+
+        private void add(int document, int field) {
+            if (postingsByField[field] == null) {
+                postingsByField[field] = new Postings();
+            }
+            postingsByField[field].add(document);
+            liveCount++;
+        }
+    }
+
+    private record TermCount(String term, int songCount) {
+    }
+
+    /**
+     * A posting list of a term together with the score a song gets from being in it, and the position reached by the last lookup.
+     * The songs of a query are looked up in ascending document number order, so each lookup starts where the previous one stopped.
+     */
+    private static final class PostingList {
+
+        private final Postings postings;
+        private final float score;
+        private int cursor;
+
+        private PostingList(Postings postings, float score) {
+            this.postings = postings;
+            this.score = score;
+        }
+
+        private boolean contains(int document) {
+            cursor = postings.advance(cursor, document);
+            return cursor < postings.size && postings.documents[cursor] == document;
+        }
+    }
+
+    /**
+     * The posting lists a word of a query matches, from all the terms the word matches.
+     */
+    private final class WordMatch {
+
+        private final List<PostingList> postingLists = new ArrayList<>();
+
+        /**
+         * The total number of postings of the word, which is at least its number of songs.
+         */
+        private final long size;
+
+        /**
+         * @param word The word of the query.
+         * @param prefixTerms The terms the word is the start of, which may include the word itself.
+         */
+        private WordMatch(String word, List<String> prefixTerms) {
+
+            // A term whose songs were all deleted matches nothing
+            TermPostings wordPostings = postingsByTerm.get(word);
+            long postingCount = wordPostings != null && wordPostings.liveCount > 0 ? addTerm(wordPostings, rarity(wordPostings.liveCount)) : 0;
+
+            // The terms the word is the start of share the rarity of all of them together, so a rare completion of a word
+            // does not score higher than the word itself
+            List<TermPostings> completions = new ArrayList<>(prefixTerms.size());
+            long completionCount = postingCount > 0 ? wordPostings.liveCount : 0;
+            for (String term : prefixTerms) {
+                if (!term.equals(word)) {
+                    TermPostings termPostings = postingsByTerm.get(term);
+                    completions.add(termPostings);
+                    completionCount += termPostings.liveCount;
+                }
+            }
+
+            float completionRarity = PREFIX_MATCH_WEIGHT * rarity((int) Math.min(completionCount, Integer.MAX_VALUE));
+            for (TermPostings termPostings : completions) {
+                postingCount += addTerm(termPostings, completionRarity);
+            }
+
+            this.size = postingCount;
+        }
+
+        private long addTerm(TermPostings termPostings, float rarity) {
+
+            long postingCount = 0;
+            for (int field = 0; field < FIELD_WEIGHTS.length; field++) {
+                Postings postings = termPostings.postingsByField[field];
+                if (postings != null && postings.size > 0) {
+                    postingLists.add(new PostingList(postings, FIELD_WEIGHTS[field] * rarity));
+                    postingCount += postings.size;
+                }
+            }
+
+            return postingCount;
+        }
+
+        private List<PostingList> postingListsByScore() {
+            List<PostingList> sortedPostingLists = new ArrayList<>(postingLists);
+            sortedPostingLists.sort(Comparator.comparingDouble((PostingList postingList) -> postingList.score).reversed());
+            return sortedPostingLists;
+        }
+
+        /**
+         * Returns the best score a song gets from the word, or 0 if the song does not contain the word.
+         * The songs must be given in ascending document number order.
+         */
+        private float bestScore(int document) {
+            float bestScore = 0;
+            for (PostingList postingList : postingLists) {
+                if (postingList.contains(document) && postingList.score > bestScore) {
+                    bestScore = postingList.score;
+                }
+            }
+            return bestScore;
+        }
+    }
+
+    //endregion
+}
@@ -3,11 +3,19 @@ package com.javeriana.services;
 import com.javeriana.controllers.AdminController;
 import com.javeriana.exceptions.NotFoundException;
 import com.javeriana.models.Artist;
+import com.javeriana.models.Page;
 import com.javeriana.models.Song;
+import com.javeriana.utils.SnapshotList;
+import com.javeriana.utils.UUIDCodec;
+import com.javeriana.utils.UUIDIndex;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -16,32 +24,124 @@ import java.util.UUID;
  * The class does the following:
  * 1. Initialization: The SongService class has a constructor that initializes an empty list of songs.
  * 2. Song Management: It provides methods for adding a new song (addSong), deleting a song by its ID (deleteSong), and searching for a song by its ID (searchSongById).
- * 3. Song List Management: It provides methods for replacing the current list of songs with a new list (loadSongs), getting a new list containing all songs (getSongs), and getting a list of the names of all songs (getSongsToString).
- * 4. Song Mapping: It provides a method for getting a map of song IDs to their corresponding Song objects (getSongsById).
- * 5. Artist-Song Relationship: It provides a method for getting a list of songs by the artist with a given ID (searchSongsByArtistId).
+ *    It also deletes many songs as a single change, by their IDs (deleteSongs) or by their artists (deleteSongsByArtists), filtering the list once.
+ * 3. Song List Management: It provides methods for replacing the current list of songs with a new list (loadSongs), getting a new list containing all songs (getSongs), and getting a page of the songs (getSongsPage).
+ * 4. Song Mapping: It provides a method for getting a read-only, live map of song IDs to their corresponding Song objects (getSongsById).
+ * 5. Artist-Song Relationship: It provides a method for getting a list of songs by the artist with a given ID (searchSongsByArtistId),
+ *    answered from an index of the songs of each artist, so it takes time proportional to the songs of the artist.
+ * 6. Catalog Mode: It can serve the songs straight from a memory-mapped binary songs file (loadSongCatalog), decoding only the songs that are used.
+ *    Only searchSongById, getSongsById lookups and getSongsPage are answered from the catalog. The indexes are not kept in catalog mode,
+ *    so any change (addSong and the delete methods), searchSongsByArtistId, searchSongs, autocompleteSongs, filterSongs and countSongs
+ *    first decode the whole catalog into the songs list and build the indexes, after which the service works as usual. getSongs returns
+ *    a read-only view of the catalog, which only decodes the songs that are read, and which is saved by copying the mapped file. So the lazy
+ *    decoding speeds up a catalog that is read by ID, page by page or saved, and never changed, such as the start of the application until
+ *    the first change or search.
+ * 7. Primary-Key Index: It keeps the songs of the list indexed by ID, so searchSongById takes the same time whatever the number of songs.
+ *    The index, and the index of the songs of each artist, are updated by loadSongs, addSong and the delete methods, which are the only methods
+ *    that change the list.
+ * 8. Full-Text Search: It provides methods for searching songs by the words of their names, albums and artist names (searchSongs),
+ *    and for completing the last word of a search (autocompleteSongs), answered from a SongSearchIndex. The index is built the first time
+ *    it is used, and then updated by addSong and deleteSong song by song.
+ * 9. Filtering: It provides methods for getting and counting the songs of some genres with a duration within a range (filterSongs, countSongs),
+ *    answered from a SongFilterIndex of bitmaps over the genres and the durations of the songs. Like the full-text index, it is built the first
+ *    time it is used and then updated song by song.
+ * 10. Concurrency: It can be used by several threads at the same time. The songs list, the catalog and the indexes are guarded by a ServiceLock,
+ *    and every public method is linearizable: it takes effect at a single point between its call and its return. The changes (loadSongs,
+ *    loadSongCatalog, addSong, deleteSong, deleteSongs, deleteSongsByArtists) take the write lock. searchSongById, getSongsById and lookups through the map it returns are
+ *    optimistic reads, which do not lock unless a song is added or deleted while they run. The other reads take the read lock; the first
+ *    one that needs an index that is not built, or needs to leave catalog mode, takes the write lock to do so and then reads under the read lock.
+ * 11. Versions: Every change publishes a new version of the songs to the CatalogVersions object of the service, so a reader that pins a version
+ *    of the catalog, such as a report, reads the songs as they were at that version without taking the lock of the service. In catalog mode,
+ *    the version holds a read-only view of the catalog, so loading a catalog still decodes no song.
  */
 public class SongService {
 
     /**
      * A list of songs.
      */
-    private final List<Song> songs;
+    private final SnapshotList<Song> songs;
 
     /**
-     * Constructor for the SongService class.
+     * The songs of the songs list by their IDs, with the number of each song in the list, by which it is removed from the list.
+     * It holds the same songs as the list, and is empty in catalog mode.
+     */
+    private final UUIDIndex<Song> songsIndex;
+
+    /**
+     * The songs of the songs list by the IDs of their artists, in the order of the list. It is empty in catalog mode.
+     */
+    private final UUIDIndex<SnapshotList<Song>> songsByArtistIndex;
+
+    /**
+     * The memory-mapped catalog the songs are served from, or null when the songs are in the songs list.
+     */
+    private MappedSongCatalog catalog;
+
+    /**
+     * The full-text index of the songs of the songs list, or null until the first search after the songs are loaded.
+     */
+    private SongSearchIndex searchIndex;
+
+    /**
+     * The bitmap index of the genres and durations of the songs of the songs list, or null until the first filter after the songs are loaded.
+     */
+    private SongFilterIndex filterIndex;
+
+    /**
+     * The lock that guards the songs list, the catalog and the indexes above.
+     */
+    private final ServiceLock lock;
+
+    /**
+     * The read-only map view of the index of songs by ID, whose lookups are optimistic reads.
+     */
+    private final Map<UUID, Song> songsById;
+
+    /**
+     * The versions of the catalog, to which the changes to the songs are published.
+     */
+    private final CatalogVersions versions;
+
+    /**
+     * Constructor for the SongService class, with its own versions of the catalog.
      * Initializes the songs list.
      */
     public SongService() {
-        this.songs = new ArrayList<>();
+        this(new CatalogVersions());
     }
 
     /**
-     * Returns a new list containing all songs.
+     * Constructor for the SongService class, which publishes its changes to the given versions of the catalog.
+     * Initializes the songs list.
      *
-     * @return A new list containing all songs.
+     * @param versions The versions of the catalog, shared with the other services.
+     */
+    public SongService(CatalogVersions versions) {
+        this.songs = SnapshotList.numbered();
+        this.songsIndex = UUIDIndex.numbered();
+        this.songsByArtistIndex = new UUIDIndex<>();
+        this.lock = new ServiceLock();
+        this.songsById = lock.guard(songsIndex.asMap());
+        this.versions = versions;
+    }
+
+    /**
+     * Returns a read-only snapshot of all songs. The snapshot is taken without copying the songs, and later changes to the songs do not
+     * affect it. In catalog mode, it is a read-only view of the catalog, which only decodes the songs that are read. The catalog is never
+     * changed, so the view is not affected by later changes either.
+     *
+     * @return A read-only list containing all songs.
      */
     public List<Song> getSongs() {
-        return new ArrayList<>(songs);
+        long stamp = lock.readLock();
+        try {
+            if (catalog != null) {
+                return catalog.asList();
+            }
+            return songs.snapshot();
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
     /**
@@ -52,43 +152,125 @@ public class SongService {
      * 2. Checks if the album of the song is null or empty. If it is, it throws an IllegalArgumentException.
      * 3. Creates a new Song object with the given attributes (name, genre, durationInSeconds, album).
      * 4. Adds the list of artists to the song using the addArtists method of the Song class.
-     * 5. Adds the song to the list of songs.
+     * 5. Takes the write lock and checks that none of the artists was deleted. The deletion of an artist marks it as deleted before it
+     *    takes the write lock to delete the songs of the artist, so either the song is refused, or it is added before and deleted with
+     *    the other songs of the artist.
+     * 6. Adds the song to the list of songs, to the index of songs by ID and to the index of songs by artist, and returns it.
      *
      * @param name The name of the new song.
      * @param genre The genre of the new song.
      * @param durationInSeconds The duration of the new song in seconds.
      * @param album The album of the new song.
      * @param artistsList The list of artists of the new song.
+     * @return The new song.
+     * @throws IllegalArgumentException If an attribute of the song is not valid.
+     * @throws NotFoundException If one of the artists was deleted.
      */
-    public void addSong(String name, String genre, int durationInSeconds, String album, List<Artist> artistsList) {
+    public Song addSong(String name, String genre, int durationInSeconds, String album, List<Artist> artistsList) throws NotFoundException {
+
+        AdminController.validateSongAttributes(name, genre, durationInSeconds);
 
+        if (album == null || album.isEmpty()) {
+            throw new IllegalArgumentException("El álbum de la canción no puede ser nulo o vacío");
+        }
 
+        Song song = new Song(name, genre, durationInSeconds, album);
+        song.addArtists(artistsList);
+
+        long stamp = lock.writeLock();
+        try {
+            for (Artist artist : artistsList) {
+                if (artist.isDeleted()) {
+                    throw new NotFoundException("El artista con id " + artist.getId() + " no existe");
+                }
+            }
+
+            // The songs are about to change, so they can no longer be served from the read-only catalog
+            materializeCatalog();
+            songsIndex.put(song.getId(), song, songs.append(song));
+            indexByArtists(song);
+            if (searchIndex != null) {
+                searchIndex.add(song);
+            }
+            if (filterIndex != null) {
+                filterIndex.add(song);
+            }
+            publishSongs();
+        } finally {
+            lock.unlock(stamp);
+        }
 
+        return song;
+    }
 
+    /**
+     * Adds a song that already has an ID, such as a song restored from the mutation journal.
+     * If a song with the same ID already exists, nothing is added, so restoring the same song twice has no effect.
+     *
+     * @param song The song to add.
+     */
+    public void addSong(Song song) {
+        long stamp = lock.writeLock();
+        try {
+            if (findSong(song.getId()) == null) {
+                materializeCatalog();
+                songsIndex.put(song.getId(), song, songs.append(song));
+                indexByArtists(song);
+                if (searchIndex != null) {
+                    searchIndex.add(song);
+                }
+                if (filterIndex != null) {
+                    filterIndex.add(song);
+                }
+                publishSongs();
+            }
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
     /**
      * Searches for a song by its ID.
      *
      * The method does the following:
-     * 1. Converts the input string ID to a UUID using the UUID.fromString method.
-     * 2. Iterates over the songs list. For each song, it checks if the song's ID is equal to the input ID. If it is, it returns the song.
-     * 3. If no song with the input ID is found, it returns null.
+     * 1. Looks the input string ID up in the index of songs by ID, which reads the digits of the ID straight from the string
+     *    without creating a UUID.
+     * 2. Returns the song with the input ID, or null if no song with the input ID is found.
+     * In catalog mode, the ID is converted to a UUID using the UUIDCodec.decode method and looked up in the index of the catalog instead,
+     * which only decodes that song.
+     * The lookup is an optimistic read: it only takes the read lock if a song was added or deleted while it ran.
      *
      * @param id The ID of the song to search for.
      * @return The song with the given ID, or null if no such song exists.
+     * @throws IllegalArgumentException If the ID is not a valid UUID.
      */
     public Song searchSongById(String id) {
+        return lock.readOptimistically(() -> findSong(id));
+    }
 
-        UUID songId = UUID.fromString(id);
+    /**
+     * Looks a song up by its ID in the catalog or in the index of songs by ID, without taking the lock.
+     */
+    private Song findSong(String id) {
 
-        for (Song song : songs) {
-            if (song.getId().equals(songId)) {
-                return song;
-            }
+        if (catalog != null) {
+            return catalog.findById(UUIDCodec.decode(id));
+        }
+
+        return songsIndex.get(id);
+    }
+
+    /**
+     * Looks a song up by its UUID in the catalog or in the index of songs by ID, without taking the lock.
+     * The index is keyed by the two longs of the UUID, so the UUID is looked up as is, without going through its text form.
+     */
+    private Song findSong(UUID id) {
+
+        if (catalog != null) {
+            return catalog.findById(id);
         }
 
-        return null;
+        return songsIndex.get(id);
     }
 
     /**
@@ -97,84 +279,491 @@ public class SongService {
      * The method does the following:
      * 1. Clears the current list of songs using the clear method.
      * 2. Adds all songs from the given list to the current list using the addAll method.
+     * 3. Rebuilds the index of songs by ID and the index of songs by artist. If two songs have the same ID, the first one is indexed by ID,
+     *    as a search over the list would find.
+     * 4. Drops the full-text index, which is rebuilt by the next search.
      *
      * @param songs The new list of songs.
      */
     public void loadSongs(List<Song> songs) {
-        this.songs.clear();
-        this.songs.addAll(songs);
+        long stamp = lock.writeLock();
+        try {
+            this.catalog = null;
+            this.songs.clear();
+            this.songs.addAll(songs);
+            this.searchIndex = null;
+            this.filterIndex = null;
+            rebuildIndex();
+            publishSongs();
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
     /**
-     * Returns a map of song IDs to their corresponding Song objects.
+     * Replaces the current songs with the songs of a memory-mapped catalog, without decoding them.
      *
      * The method does the following:
-     * 1. Initializes an empty map of song IDs to Song objects.
-     * 2. Iterates over the songs list. For each song, it adds the song's ID and the song itself to the map.
-     * 3. Returns the map of song IDs to Song objects.
+     * 1. Clears the current list of songs.
+     * 2. Keeps the catalog, which answers getSongs, searchSongById, getSongsById and getSongsPage from then on.
+     * The first change, search, filter or lookup by artist decodes the whole catalog, as described in the class documentation.
      *
-     * @return A map of song IDs to their corresponding Song objects.
+     * @param catalog The catalog to serve the songs from.
      */
-    public Map<String, Song> getSongsById() {
+    public void loadSongCatalog(MappedSongCatalog catalog) {
+        long stamp = lock.writeLock();
+        try {
+            this.songs.clear();
+            this.songsIndex.clear();
+            this.songsByArtistIndex.clear();
+            this.searchIndex = null;
+            this.filterIndex = null;
+            this.catalog = catalog;
+            publishSongs();
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
 
-        Map<String, Song> songsById = new HashMap<>();
+    /**
+     * Leaves catalog mode, if the service is in it, by decoding every song of the catalog into the songs list and indexing them.
+     * It is called before any operation that modifies the songs or needs an index, while holding the write lock. It costs as much as
+     * loading the songs with loadSongs, once.
+     */
+    private void materializeCatalog() {
+        if (catalog != null) {
+            songs.addAll(catalog.getAll());
+            catalog = null;
+            rebuildIndex();
+        }
+    }
 
-        for (Song song : songs) {
-            songsById.put(
-                song.getId().toString(),
-                song);
+    /**
+     * Publishes a new version of the catalog with the songs: a read-only view of the catalog in catalog mode, or a snapshot of the songs list.
+     * It is called while holding the write lock, after a change.
+     */
+    private void publishSongs() {
+        try (CatalogVersions.Commit commit = versions.begin()) {
+            commit.songs(catalog != null ? catalog.asList() : songs.snapshot());
         }
+    }
 
-        return songsById;
+    /**
+     * Indexes every song of the songs list by its ID, keeping the first song of each ID, and by the IDs of its artists.
+     */
+    private void rebuildIndex() {
+        songsIndex.clear();
+        songsIndex.ensureCapacity(songs.size());
+        songsByArtistIndex.clear();
+        for (int i = 0; i < songs.size(); i++) {
+            Song song = songs.get(i);
+            songsIndex.putIfAbsent(song.getId(), song, songs.numberAt(i));
+            indexByArtists(song);
+        }
     }
 
     /**
-     * Returns a list of the names of all songs.
+     * Adds a song at the end of the list of songs of each of its artists.
+     * An artist that appears twice in the song gets the song only once, since the song is already the last one of its list.
+     */
+    private void indexByArtists(Song song) {
+        for (Artist artist : song.getArtists()) {
+            SnapshotList<Song> songsOfArtist = songsByArtistIndex.get(artist.getId());
+
+            if (songsOfArtist == null) {
+                songsOfArtist = new SnapshotList<>();
+                songsByArtistIndex.put(artist.getId(), songsOfArtist);
+            } else if (songsOfArtist.get(songsOfArtist.size() - 1) == song) {
+                continue;
+            }
+
+            songsOfArtist.add(song);
+        }
+    }
+
+    /**
+     * Removes a song from the list of songs of each of its artists, dropping the lists that become empty.
+     */
+    private void unindexByArtists(Song song) {
+        for (Artist artist : song.getArtists()) {
+            SnapshotList<Song> songsOfArtist = songsByArtistIndex.get(artist.getId());
+
+            if (songsOfArtist != null && songsOfArtist.remove(song) && songsOfArtist.isEmpty()) {
+                songsByArtistIndex.remove(artist.getId());
+            }
+        }
+    }
+
+    /**
+     * Returns a map of song IDs to their corresponding Song objects.
+     *
+     * The method returns a read-only view of the index of songs by ID, so it does not copy the songs. The view is live:
+     * songs added or deleted afterwards are seen through it. Each lookup through the view is an optimistic read, like searchSongById.
+     * In catalog mode, it returns a read-only view of the catalog instead, which only decodes the songs that are looked up.
+     * That view keeps showing the catalog after the service leaves catalog mode, so it should not be kept across changes.
+     *
+     * @return A read-only map of song IDs to their corresponding Song objects.
+     */
+    public Map<UUID, Song> getSongsById() {
+        return lock.readOptimistically(() -> catalog != null ? catalog.asMap() : songsById);
+    }
+
+    /**
+     * Returns a page of the songs.
      *
      * The method does the following:
-     * 1. Initializes an empty list of song names.
-     * 2. Iterates over the songs list. For each song, it adds the song's name to the list.
-     * 3. Returns the list of song names.
+     * 1. In catalog mode, reads the songs of the page from the catalog by position, which only decodes those songs.
+     *    The position of a song in the catalog is also its number once the catalog is decoded into the songs list, so a cursor
+     *    of the catalog stays valid after the catalog is decoded.
+     * 2. Otherwise, reads the songs of the page from the songs list.
+     * Only the songs of the page are read, so listing the songs page by page costs in proportion to the songs shown.
      *
-     * @return A list of the names of all songs.
+     * @param cursor The cursor of the page, as returned with the previous page, or null for the first page.
+     * @param pageSize The maximum number of songs of the page.
+     * @return The page of songs, in the order of the songs list or of the catalog.
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is not valid.
      */
-    public List<String> getSongsToString() {
-        List<String> songNames = new ArrayList<>();
+    public Page<Song> getSongsPage(String cursor, int pageSize) {
 
-        for (Song song : songs) {
-            songNames.add(song.toString());
-        }
+        long stamp = lock.readLock();
+        try {
+            if (catalog != null) {
+                return PageCursor.page(catalog::get, position -> position, catalog.size(), cursor, pageSize);
+            }
 
-        return songNames;
+            return PageCursor.page(songs::get, songs::numberAt, songs.size(), cursor, pageSize);
+        } finally {
+            lock.unlock(stamp);
+        }
     }
 
     /**
      * Deletes the song with the given ID.
      *
      * The method does the following:
-     * 1. Searches for the song with the given ID using the searchSongById method. If the song is found, it is returned; otherwise, null is returned.
+     * 1. Takes the write lock and searches for the song with the given ID. If the song is found, it is returned; otherwise, null is returned.
      * 2. Checks if the song is null (i.e., it does not exist). If it is, it throws a NotFoundException.
-     * 3. Removes the song from the list of songs.
+     * 3. Marks the song as deleted, and removes it from the list of songs, from the index of songs by ID, from the index of songs by artist
+     *    and from the full-text index.
      *
      * @param songId The ID of the song to delete.
      * @throws NotFoundException If no song with the given ID exists.
      */
     public void deleteSong(String songId) throws NotFoundException {
 
+        long stamp = lock.writeLock();
+        try {
+            Song song = findSong(songId);
+
+            if (song == null) {
+                throw new NotFoundException("La canción con id " + songId + " no existe");
+            }
+
+            // The songs are about to change, so they can no longer be served from the read-only catalog
+            materializeCatalog();
+            song.markDeleted();
+            songs.removeNumber(songsIndex.numberOf(song.getId()));
+            songsIndex.remove(song.getId());
+            unindexByArtists(song);
+            if (searchIndex != null) {
+                searchIndex.remove(song);
+            }
+            if (filterIndex != null) {
+                filterIndex.remove(song);
+            }
+            publishSongs();
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Deletes the songs with the given IDs, as a single change.
+     *
+     * The method does the following:
+     * 1. Takes the write lock and searches for every song. If any of them is not found, it throws a NotFoundException before deleting anything.
+     * 2. Removes the songs from the list of songs by their numbers, and from the indexes, as removeSongs does.
+     *
+     * @param songIds The IDs of the songs to delete. An ID that appears several times deletes the song once.
+     * @return The deleted songs, in the order of their first ID.
+     * @throws NotFoundException If no song with one of the given IDs exists.
+     * @throws IllegalArgumentException If an ID is not a valid UUID.
+     */
+    public List<Song> deleteSongs(Collection<String> songIds) throws NotFoundException {
+        try (CatalogVersions.Commit commit = versions.begin()) {
+            return deleteSongs(songIds, commit);
+        }
+    }
+
+    /**
+     * Deletes the songs with the given IDs as part of the given commit, such as the one of a cascade delete.
+     * The write lock is taken as deleteSongs does, and handed to the commit, so no other change is made to the songs until the commit
+     * is published.
+     *
+     * @param songIds The IDs of the songs to delete.
+     * @param commit The commit the deletion is part of.
+     * @return The deleted songs, in the order of their first ID.
+     * @throws NotFoundException If no song with one of the given IDs exists.
+     * @throws IllegalArgumentException If an ID is not a valid UUID.
+     */
+    List<Song> deleteSongs(Collection<String> songIds, CatalogVersions.Commit commit) throws NotFoundException {
+
+        long stamp = lock.writeLock();
+        commit.holdUntilPublished(() -> lock.unlock(stamp));
+
+        Set<Song> songsToDelete = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Song> deletedSongs = new ArrayList<>();
+
+        for (String songId : songIds) {
+            Song song = findSong(songId);
+
+            if (song == null) {
+                throw new NotFoundException("La canción con id " + songId + " no existe");
+            }
+
+            if (songsToDelete.add(song)) {
+                deletedSongs.add(song);
+            }
+        }
+
+        removeSongs(deletedSongs, songsToDelete, commit);
+        return deletedSongs;
+    }
+
+    /**
+     * Deletes every song of any of the given artists, as a single change.
+     *
+     * The method does the following:
+     * 1. Takes the write lock and reads the songs of each artist from the index of songs by artist, so only those songs are visited.
+     * 2. Removes the songs from the list of songs by their numbers, and from the indexes, as removeSongs does.
+     * The songs are found and deleted under the same lock, so a song added meanwhile for one of the artists is either deleted or added after.
+     *
+     * @param artists The artists whose songs are deleted.
+     * @return The deleted songs. A song of several of the artists appears once.
+     */
+    public List<Song> deleteSongsByArtists(Collection<Artist> artists) {
+        try (CatalogVersions.Commit commit = versions.begin()) {
+            return deleteSongsByArtists(artists, commit);
+        }
+    }
+
+    /**
+     * Deletes every song of any of the given artists as part of the given commit, such as the one of a cascade delete.
+     * The write lock is taken as deleteSongsByArtists does, and handed to the commit, so no other change is made to the songs until
+     * the commit is published.
+     *
+     * @param artists The artists whose songs are deleted.
+     * @param commit The commit the deletion is part of.
+     * @return The deleted songs. A song of several of the artists appears once.
+     */
+    List<Song> deleteSongsByArtists(Collection<Artist> artists, CatalogVersions.Commit commit) {
+
+        long stamp = lock.writeLock();
+        commit.holdUntilPublished(() -> lock.unlock(stamp));
+
+        // The songs are about to change, so they can no longer be served from the read-only catalog
+        materializeCatalog();
+
+        Set<Song> songsToDelete = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Song> deletedSongs = new ArrayList<>();
+
+        for (Artist artist : artists) {
+            SnapshotList<Song> songsOfArtist = songsByArtistIndex.get(artist.getId());
+
+            if (songsOfArtist != null) {
+                for (Song song : songsOfArtist) {
+                    if (songsToDelete.add(song)) {
+                        deletedSongs.add(song);
+                    }
+                }
+            }
+        }
+
+        removeSongs(deletedSongs, songsToDelete, commit);
+        return deletedSongs;
+    }
+
+    /**
+     * Marks the given songs as deleted, removes them from the list of songs, the index of songs by ID, the index of songs by artist and
+     * the full-text and filter indexes, and sets the songs of the given commit without them. It is called while holding the write lock.
+     * The songs are marked before the cascade takes the lock of the playlists, so a song looked up before the deletion is either refused
+     * by addSongToPlayList, or added before the songs are removed from the playlists.
+     *
+     * The songs are removed from the list of songs by the numbers the index of songs by ID keeps for them, in a single pass that starts at
+     * the first removed song, so no song of the list is compared. The list of songs of each artist involved is filtered in a single pass.
+     */
+    private void removeSongs(List<Song> deletedSongs, Set<Song> songsToDelete, CatalogVersions.Commit commit) {
+
+        if (deletedSongs.isEmpty()) {
+            return;
+        }
+
+        materializeCatalog();
+
+        long[] numbers = new long[deletedSongs.size()];
+        Set<UUID> artistIds = new HashSet<>();
+        for (int i = 0; i < numbers.length; i++) {
+            Song song = deletedSongs.get(i);
+            song.markDeleted();
+            numbers[i] = songsIndex.numberOf(song.getId());
+            songsIndex.remove(song.getId());
+            if (searchIndex != null) {
+                searchIndex.remove(song);
+            }
+            if (filterIndex != null) {
+                filterIndex.remove(song);
+            }
+            for (Artist artist : song.getArtists()) {
+                artistIds.add(artist.getId());
+            }
+        }
+
+        songs.removeNumbers(numbers);
+
+        for (UUID artistId : artistIds) {
+            SnapshotList<Song> songsOfArtist = songsByArtistIndex.get(artistId);
+
+            if (songsOfArtist != null && songsOfArtist.removeIf(songsToDelete::contains) && songsOfArtist.isEmpty()) {
+                songsByArtistIndex.remove(artistId);
+            }
+        }
+
+        commit.songs(songs.snapshot());
     }
 
     /**
      * Returns a list of songs by the artist with the given ID.
      *
      * The method does the following:
-     * 1. Initializes an empty list of songs by the artist.
-     * 2. Iterates over the songs list. For each song, it iterates over the song's artists. If the artist's ID is equal to the input artist ID, it adds the song to the list of songs by the artist.
-     * 3. Returns the list of songs by the artist.
+     * 1. Looks the input artist ID up in the index of songs by artist, which holds the songs of each artist in the order of the songs list.
+     * 2. Returns a read-only snapshot of the songs of the artist, or an empty list if the artist has no songs. The snapshot is not affected
+     *    by later changes to the songs, so the songs of an artist can be deleted while the snapshot is iterated.
      *
      * @param artistId The ID of the artist to get the songs for.
      * @return A list of songs by the artist with the given ID.
+     * @throws IllegalArgumentException If the ID is not a valid UUID.
      */
     public List<Song> searchSongsByArtistId(String artistId) {
-        return new ArrayList<>();
+
+        long stamp = lock.readLockBuilding(() -> catalog == null, this::materializeCatalog);
+        try {
+            SnapshotList<Song> songsByArtist = songsByArtistIndex.get(artistId);
+
+            return songsByArtist != null ? songsByArtist.snapshot() : List.of();
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Returns the songs whose name, album or artist names contain every word of the given query, best first.
+     *
+     * The method does the following:
+     * 1. Builds the full-text index from the songs list if it has not been built since the songs were loaded.
+     * 2. Searches the index. The last word of the query also matches the words it is the start of, so results can be shown while the
+     *    user types. Songs whose names contain the words come before songs whose artists or albums contain them, and rare words weigh
+     *    more than common ones.
+     *
+     * @param query The words to search for.
+     * @param limit The maximum number of songs to return.
+     * @return A list of at most limit songs, best first, or an empty list if the query has no words or no song matches it.
+     */
+    public List<Song> searchSongs(String query, int limit) {
+        long stamp = lock.readLockBuilding(() -> catalog == null && searchIndex != null, this::buildSearchIndex);
+        try {
+            return searchIndex.search(query, limit);
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Returns the words of the names, albums and artist names of the songs that complete the last word of the given text,
+     * the most common first.
+     *
+     * @param prefix The text to complete.
+     * @param limit The maximum number of words to return.
+     * @return A list of at most limit words.
+     */
+    public List<String> autocompleteSongs(String prefix, int limit) {
+        long stamp = lock.readLockBuilding(() -> catalog == null && searchIndex != null, this::buildSearchIndex);
+        try {
+            return searchIndex.autocomplete(prefix, limit);
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Builds the full-text index of the songs from the songs list if needed, leaving catalog mode first.
+     * It is called while holding the write lock.
+     */
+    private void buildSearchIndex() {
+
+        materializeCatalog();
+
+        if (searchIndex == null) {
+            searchIndex = new SongSearchIndex();
+            for (Song song : songs) {
+                searchIndex.add(song);
+            }
+        }
+    }
+
+    /**
+     * Returns the songs of any of the given genres whose duration is within the given range, in the order of the songs list.
+     *
+     * The method does the following:
+     * 1. Builds the bitmap index of genres and durations from the songs list if it has not been built since the songs were loaded.
+     * 2. Takes the union of the bitmaps of the genres and intersects it with the bitmap of the songs within the duration range.
+     * 3. Returns the first songs of the result, without reading the songs that do not pass the filter or are past the limit.
+     *
+     * @param genres The genres of the songs, or null or an empty set for songs of any genre. Genres are compared exactly.
+     * @param minDurationInSeconds The minimum duration of the songs in seconds, included.
+     * @param maxDurationInSeconds The maximum duration of the songs in seconds, included.
+     * @param limit The maximum number of songs to return.
+     * @return A list of at most limit songs, or an empty list if no song passes the filter.
+     */
+    public List<Song> filterSongs(Set<String> genres, int minDurationInSeconds, int maxDurationInSeconds, int limit) {
+        long stamp = lock.readLockBuilding(() -> catalog == null && filterIndex != null, this::buildFilterIndex);
+        try {
+            return filterIndex.songs(filterIndex.filter(genres != null ? genres : Set.of(), minDurationInSeconds, maxDurationInSeconds), limit);
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Returns the number of songs of any of the given genres whose duration is within the given range.
+     * It is answered from the bitmap index of genres and durations, without reading any song.
+     *
+     * @param genres The genres of the songs, or null or an empty set for songs of any genre. Genres are compared exactly.
+     * @param minDurationInSeconds The minimum duration of the songs in seconds, included.
+     * @param maxDurationInSeconds The maximum duration of the songs in seconds, included.
+     * @return The number of songs that pass the filter.
+     */
+    public int countSongs(Set<String> genres, int minDurationInSeconds, int maxDurationInSeconds) {
+        long stamp = lock.readLockBuilding(() -> catalog == null && filterIndex != null, this::buildFilterIndex);
+        try {
+            return filterIndex.filter(genres != null ? genres : Set.of(), minDurationInSeconds, maxDurationInSeconds).cardinality();
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Builds the bitmap index of the genres and durations of the songs from the songs list if needed, leaving catalog mode first.
+     * It is called while holding the write lock.
+     */
+    private void buildFilterIndex() {
+
+        materializeCatalog();
+
+        if (filterIndex == null) {
+            filterIndex = new SongFilterIndex();
+            for (Song song : songs) {
+                filterIndex.add(song);
+            }
+        }
     }
 }
@@ -0,0 +1,355 @@
+package com.javeriana.utils;
+
+import java.util.UUID;
+
+/**
+ * The CSVTokenizer class splits a CSV line into fields without creating intermediate objects.
+ * It replaces String.split(separator), which compiles or interprets a regular expression and allocates an array plus one String per field.
+ *
+ * The class does the following:
+ * 1. Scans the line in place: a field is only described by its start and end offsets in the line.
+ * 2. Converts a field to a String or an int only when the caller asks for it. Numbers are parsed straight from the line.
+ * 3. Understands the {id1,id2,id3} list syntax used by the application files, iterating over the items of a list field the same way it iterates over fields.
+ *
+ * The line can be any CharSequence, such as a String read by a BufferedReader or a CharBuffer decoded from a memory-mapped file.
+ * The separator is matched literally, not as a regular expression.
+ *
+ * A tokenizer keeps the state of the line being scanned, so it can be reused for every line of a file with the reset method, but it must not be shared between threads.
+ */
+public final class CSVTokenizer {
+
+    /**
+     * The character that opens a list of ids.
+     */
+    private static final char LIST_START = '{';
+
+    /**
+     * The character that closes a list of ids.
+     */
+    private static final char LIST_END = '}';
+
+    /**
+     * The character that separates the items of a list of ids.
+     */
+    private static final char LIST_SEPARATOR = ',';
+
+    /**
+     * The separator between fields.
+     */
+    private final String separator;
+
+    /**
+     * The line being scanned.
+     */
+    private CharSequence line;
+
+    /**
+     * The offset where the next field starts, or -1 when there are no more fields.
+     */
+    private int position;
+
+    /**
+     * The offsets of the current field.
+     */
+    private int fieldStart;
+    private int fieldEnd;
+
+    /**
+     * The offset where the next list item starts, or -1 when there are no more items, and the offset where the list ends.
+     */
+    private int listPosition;
+    private int listEnd;
+
+    /**
+     * The offsets of the current list item.
+     */
+    private int itemStart;
+    private int itemEnd;
+
+    /**
+     * Constructs a CSVTokenizer that splits lines using the given separator.
+     *
+     * @param separator The separator between fields.
+     * @throws IllegalArgumentException If the separator is null or empty.
+     */
+    public CSVTokenizer(String separator) {
+        if (separator == null || separator.isEmpty()) {
+            throw new IllegalArgumentException("El separador no puede ser nulo o vacío");
+        }
+        this.separator = separator;
+    }
+
+    /**
+     * Starts scanning a new line. The first call to nextField moves to the first field of the line.
+     *
+     * @param line The line to scan.
+     * @return This tokenizer.
+     */
+    public CSVTokenizer reset(CharSequence line) {
+        this.line = line;
+        this.position = 0;
+        this.fieldStart = 0;
+        this.fieldEnd = 0;
+        this.listPosition = -1;
+        return this;
+    }
+
+    /**
+     * Returns the line being scanned.
+     *
+     * @return The line being scanned.
+     */
+    public CharSequence line() {
+        return line;
+    }
+
+    /**
+     * Moves to the next field of the line.
+     *
+     * @return True if there was another field, false if the end of the line was reached.
+     */
+    public boolean nextField() {
+
+        if (position < 0) {
+            return false;
+        }
+
+        fieldStart = position;
+        int separatorStart = indexOfSeparator(position);
+
+        if (separatorStart < 0) {
+            fieldEnd = line.length();
+            position = -1;
+        } else {
+            fieldEnd = separatorStart;
+            position = separatorStart + separator.length();
+        }
+
+        return true;
+    }
+
+    /**
+     * Moves to the next field of the line, failing if there is none.
+     *
+     * @return This tokenizer.
+     * @throws IllegalArgumentException If the end of the line was reached.
+     */
+    public CSVTokenizer expectField() {
+        if (!nextField()) {
+            throw new IllegalArgumentException("El formato de la línea no es correcto, faltan campos en "
+                + line + " con el separador " + separator);
+        }
+        return this;
+    }
+
+    /**
+     * Counts the fields of the line the same way String.split does, that is, ignoring trailing empty fields.
+     * It does not move the current field.
+     *
+     * @return The number of fields of the line.
+     */
+    public int countFields() {
+
+        int count = 0;
+        int nonEmptyCount = 0;
+        int start = 0;
+
+        while (start >= 0) {
+            int separatorStart = indexOfSeparator(start);
+            int end = separatorStart < 0 ? line.length() : separatorStart;
+
+            count++;
+            if (end > start) {
+                nonEmptyCount = count;
+            }
+
+            start = separatorStart < 0 ? -1 : separatorStart + separator.length();
+        }
+
+        return nonEmptyCount;
+    }
+
+    /**
+     * Returns the offset where the current field starts.
+     *
+     * @return The offset where the current field starts.
+     */
+    public int fieldStart() {
+        return fieldStart;
+    }
+
+    /**
+     * Returns the offset right after the end of the current field.
+     *
+     * @return The offset right after the end of the current field.
+     */
+    public int fieldEnd() {
+        return fieldEnd;
+    }
+
+    /**
+     * Returns the current field as a String. This is the only point where the field is copied.
+     *
+     * @return The current field.
+     */
+    public String fieldAsString() {
+        return line.subSequence(fieldStart, fieldEnd).toString();
+    }
+
+    /**
+     * Returns the current field as the instance kept by the given dictionary. The field is only copied when the dictionary does not have it yet,
+     * so fields with few distinct values, such as a genre, share a single String.
+     *
+     * @param dictionary The dictionary of the values of the field.
+     * @return The current field.
+     */
+    public String fieldAsString(StringDictionary dictionary) {
+        return dictionary.intern(line, fieldStart, fieldEnd);
+    }
+
+    /**
+     * Parses the current field as a decimal int, straight from the line.
+     *
+     * @return The value of the current field.
+     * @throws NumberFormatException If the field is not a valid int.
+     */
+    public int fieldAsInt() {
+        return Integer.parseInt(line, fieldStart, fieldEnd, 10);
+    }
+
+    /**
+     * Decodes the current field as a UUID, straight from the line.
+     *
+     * @return The UUID in the current field.
+     * @throws IllegalArgumentException If the field is not a valid UUID.
+     */
+    public UUID fieldAsUUID() {
+        return UUIDCodec.decode(line, fieldStart, fieldEnd);
+    }
+
+    /**
+     * Starts iterating over the items of the current field, which is expected to be a list in the {id1,id2,id3} syntax.
+     * The braces are optional. An empty list, {}, has no items.
+     *
+     * @return This tokenizer.
+     */
+    public CSVTokenizer beginList() {
+
+        int start = fieldStart;
+        int end = fieldEnd;
+
+        if (start < end && line.charAt(start) == LIST_START) {
+            start++;
+        }
+        if (end > start && line.charAt(end - 1) == LIST_END) {
+            end--;
+        }
+
+        listEnd = end;
+        listPosition = start < end ? start : -1;
+
+        return this;
+    }
+
+    /**
+     * Moves to the next item of the list started with beginList.
+     *
+     * @return True if there was another item, false if the end of the list was reached.
+     */
+    public boolean nextListItem() {
+
+        if (listPosition < 0) {
+            return false;
+        }
+
+        itemStart = listPosition;
+        int itemSeparator = listPosition;
+        while (itemSeparator < listEnd && line.charAt(itemSeparator) != LIST_SEPARATOR) {
+            itemSeparator++;
+        }
+
+        itemEnd = itemSeparator;
+        listPosition = itemSeparator < listEnd ? itemSeparator + 1 : -1;
+
+        return true;
+    }
+
+    /**
+     * Returns the offset where the current list item starts.
+     *
+     * @return The offset where the current list item starts.
+     */
+    public int itemStart() {
+        return itemStart;
+    }
+
+    /**
+     * Returns the offset right after the end of the current list item.
+     *
+     * @return The offset right after the end of the current list item.
+     */
+    public int itemEnd() {
+        return itemEnd;
+    }
+
+    /**
+     * Returns the current list item as a String.
+     *
+     * @return The current list item.
+     */
+    public String itemAsString() {
+        return line.subSequence(itemStart, itemEnd).toString();
+    }
+
+    /**
+     * Decodes the current list item as a UUID, straight from the line.
+     *
+     * @return The UUID in the current list item.
+     * @throws IllegalArgumentException If the item is not a valid UUID.
+     */
+    public UUID itemAsUUID() {
+        return UUIDCodec.decode(line, itemStart, itemEnd);
+    }
+
+    /**
+     * Returns the offset of the next separator at or after the given offset, or -1 if there is none.
+     */
+    private int indexOfSeparator(int from) {
+
+        char first = separator.charAt(0);
+        int separatorLength = separator.length();
+        int last = line.length() - separatorLength;
+
+        for (int i = from; i <= last; i++) {
+            if (line.charAt(i) == first && matchesSeparatorAt(i, separatorLength)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean matchesSeparatorAt(int offset, int separatorLength) {
+        for (int j = 1; j < separatorLength; j++) {
+            if (line.charAt(offset + j) != separator.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a line is empty or only contains white space, without copying it.
+     *
+     * @param line The line to check.
+     * @return True if the line is blank, false otherwise.
+     */
+    public static boolean isBlank(CharSequence line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (!Character.isWhitespace(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
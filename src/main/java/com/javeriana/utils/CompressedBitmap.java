@@ -0,0 +1,688 @@
+package com.javeriana.utils;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The CompressedBitmap class is a set of non-negative ints stored as a compressed bitmap, used to index dense ordinals such as the
+ * positions of the songs of a catalog.
+ *
+ * A plain bitmap of a catalog with millions of songs takes the same memory whether it holds a few songs or all of them, and a set of boxed
+ * Integers takes tens of bytes per value. The class splits the values into chunks of 65536 consecutive values, keyed by their high 16 bits,
+ * and stores each chunk in the cheapest of two forms:
+ * 1. A sorted array of the low 16 bits of its values, when it has at most 4096 values, which takes 2 bytes per value.
+ * 2. A bitmap of 1024 longs, when it has more, which takes 8 KB whatever the number of values.
+ * Operations between two bitmaps (and, or, andNot) work chunk by chunk, only on the chunks present in the bitmaps, and word by word
+ * when both chunks are bitmaps, so combining two bitmaps costs in proportion to their compressed size, not to the range of their values.
+ *
+ * The results of the operations are new bitmaps; the operands are not modified. The class is not synchronized.
+ */
+public final class CompressedBitmap {
+
+    /**
+     * The maximum number of values of a chunk stored as a sorted array. Above it, a bitmap of the chunk takes less memory.
+     */
+    private static final int MAX_ARRAY_SIZE = 4096;
+
+    /**
+     * The number of longs of the bitmap of a chunk.
+     */
+    private static final int CHUNK_WORDS = 1024;
+
+    /**
+     * The high 16 bits of the values of each chunk, in ascending order.
+     */
+    private char[] keys;
+
+    /**
+     * The chunks, in the order of their keys.
+     */
+    private Chunk[] chunks;
+
+    /**
+     * The number of chunks.
+     */
+    private int chunkCount;
+
+    /**
+     * Constructs an empty bitmap.
+     */
+    public CompressedBitmap() {
+        this.keys = new char[4];
+        this.chunks = new Chunk[4];
+    }
+
+    /**
+     * Returns a bitmap with every value from 0, included, to the given end, excluded.
+     *
+     * @param end The end of the range of values.
+     * @return A new bitmap with the values of the range.
+     */
+    public static CompressedBitmap range(int end) {
+
+        CompressedBitmap bitmap = new CompressedBitmap();
+
+        for (int start = 0; start < end; start += 1 << 16) {
+            int chunkEnd = Math.min(end - start, 1 << 16);
+            Chunk chunk;
+            if (chunkEnd <= MAX_ARRAY_SIZE) {
+                chunk = new Chunk(new char[chunkEnd], null, chunkEnd);
+                for (int i = 0; i < chunkEnd; i++) {
+                    chunk.values[i] = (char) i;
+                }
+            } else {
+                long[] words = new long[CHUNK_WORDS];
+                Arrays.fill(words, 0, chunkEnd >>> 6, -1L);
+                if ((chunkEnd & 63) != 0) {
+                    words[chunkEnd >>> 6] = (1L << chunkEnd) - 1;
+                }
+                chunk = new Chunk(null, words, chunkEnd);
+            }
+            bitmap.append((char) (start >>> 16), chunk);
+        }
+
+        return bitmap;
+    }
+
+    //region values
+
+    /**
+     * Adds a value to the bitmap.
+     *
+     * @param value The value to add, which must not be negative.
+     * @return true if the value was not in the bitmap.
+     */
+    public boolean add(int value) {
+
+        char key = (char) (value >>> 16);
+        int index = indexOfKey(key);
+
+        if (index < 0) {
+            index = -index - 1;
+            insertChunk(index, key, new Chunk(new char[4], null, 0));
+        }
+
+        return chunks[index].add((char) value);
+    }
+
+    /**
+     * Removes a value from the bitmap.
+     *
+     * @param value The value to remove.
+     * @return true if the value was in the bitmap.
+     */
+    public boolean remove(int value) {
+
+        int index = indexOfKey((char) (value >>> 16));
+
+        if (index < 0 || !chunks[index].remove((char) value)) {
+            return false;
+        }
+
+        if (chunks[index].cardinality == 0) {
+            removeChunk(index);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns whether the bitmap contains a value.
+     *
+     * @param value The value.
+     * @return true if the value is in the bitmap.
+     */
+    public boolean contains(int value) {
+        int index = indexOfKey((char) (value >>> 16));
+        return index >= 0 && chunks[index].contains((char) value);
+    }
+
+    /**
+     * Returns the number of values in the bitmap.
+     *
+     * @return The number of values.
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            cardinality += chunks[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    /**
+     * Returns whether the bitmap has no values.
+     *
+     * @return true if the bitmap is empty.
+     */
+    public boolean isEmpty() {
+        return chunkCount == 0;
+    }
+
+    /**
+     * Calls the given action with every value of the bitmap, in ascending order.
+     *
+     * @param action The action to call with each value.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < chunkCount; i++) {
+            chunks[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * Returns the lowest values of the bitmap, in ascending order.
+     *
+     * @param limit The maximum number of values to return.
+     * @return An array with the lowest limit values of the bitmap, or all of them if it has fewer.
+     */
+    public int[] toArray(int limit) {
+
+        int[] values = new int[Math.max(0, Math.min(limit, cardinality()))];
+        int count = 0;
+
+        for (int i = 0; i < chunkCount && count < values.length; i++) {
+            count = chunks[i].copyTo(keys[i] << 16, values, count);
+        }
+
+        return values;
+    }
+
+    //endregion
+
+    //region operations
+
+    /**
+     * Returns the values that are in both this bitmap and the given one.
+     *
+     * @param other The other bitmap.
+     * @return A new bitmap with the intersection of the two bitmaps.
+     */
+    public CompressedBitmap and(CompressedBitmap other) {
+
+        CompressedBitmap result = new CompressedBitmap();
+
+        int i = 0;
+        int j = 0;
+        while (i < chunkCount && j < other.chunkCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendIfNotEmpty(keys[i], Chunk.and(chunks[i], other.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the values that are in this bitmap, in the given one, or in both.
+     *
+     * @param other The other bitmap.
+     * @return A new bitmap with the union of the two bitmaps.
+     */
+    public CompressedBitmap or(CompressedBitmap other) {
+
+        CompressedBitmap result = new CompressedBitmap();
+
+        int i = 0;
+        int j = 0;
+        while (i < chunkCount || j < other.chunkCount) {
+            if (j == other.chunkCount || (i < chunkCount && keys[i] < other.keys[j])) {
+                result.append(keys[i], chunks[i].copy());
+                i++;
+            } else if (i == chunkCount || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.chunks[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], Chunk.or(chunks[i], other.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the values that are in this bitmap and not in the given one.
+     *
+     * @param other The other bitmap.
+     * @return A new bitmap with the difference of the two bitmaps.
+     */
+    public CompressedBitmap andNot(CompressedBitmap other) {
+
+        CompressedBitmap result = new CompressedBitmap();
+
+        int j = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            while (j < other.chunkCount && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.chunkCount && other.keys[j] == keys[i]) {
+                result.appendIfNotEmpty(keys[i], Chunk.andNot(chunks[i], other.chunks[j]));
+            } else {
+                result.append(keys[i], chunks[i].copy());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the values of the candidates whose number, stored in bit slices, is within the given range.
+     *
+     * The slices hold a number for each value: the value is in the slice of each bit that is set in its number. The comparison with the bounds
+     * is done 64 values at a time, word by word, from the highest bit down: the values whose higher bits are all equal to those of a bound
+     * are kept apart from the ones already known to be lower than it. No bitmap is built for the intermediate results.
+     *
+     * @param candidates The values to compare.
+     * @param bitSlices The values whose number has each bit set, from the lowest bit up. A value that is in none of them has the number 0.
+     * @param min The minimum number, included.
+     * @param max The maximum number, included.
+     * @return A new bitmap with the candidates whose number is at least min and at most max.
+     */
+    public static CompressedBitmap inSlicedRange(CompressedBitmap candidates, CompressedBitmap[] bitSlices, long min, long max) {
+
+        CompressedBitmap result = new CompressedBitmap();
+        long largestNumber = (1L << bitSlices.length) - 1;
+
+        if (min > max || min > largestNumber || max < 0) {
+            return result;
+        }
+
+        // A bound outside of the numbers the slices can hold does not exclude any candidate
+        boolean checkMax = max < largestNumber;
+        boolean checkMin = min > 0;
+
+        // The words of the chunks stored as arrays are written into these buffers, which are reused from chunk to chunk
+        long[] candidateBuffer = new long[CHUNK_WORDS];
+        long[][] sliceBuffers = new long[bitSlices.length][];
+        long[][] sliceWords = new long[bitSlices.length][];
+
+        for (int i = 0; i < candidates.chunkCount; i++) {
+            char key = candidates.keys[i];
+
+            long[] words = candidates.chunks[i].words(candidateBuffer);
+            for (int bit = 0; bit < bitSlices.length; bit++) {
+                int index = bitSlices[bit].indexOfKey(key);
+                if (index < 0) {
+                    sliceWords[bit] = null;
+                    continue;
+                }
+                if (sliceBuffers[bit] == null) {
+                    sliceBuffers[bit] = new long[CHUNK_WORDS];
+                }
+                sliceWords[bit] = bitSlices[bit].chunks[index].words(sliceBuffers[bit]);
+            }
+
+            long[] resultWords = new long[CHUNK_WORDS];
+            for (int w = 0; w < CHUNK_WORDS; w++) {
+                long word = words[w];
+                if (word == 0) {
+                    continue;
+                }
+                if (checkMax) {
+                    word &= atMost(sliceWords, w, word, max);
+                }
+                if (checkMin && word != 0) {
+                    word &= ~atMost(sliceWords, w, word, min - 1);
+                }
+                resultWords[w] = word;
+            }
+
+            result.appendIfNotEmpty(key, Chunk.fromWords(resultWords));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the bits of the given word whose number, stored in the given words of the slices, is at most the bound.
+     */
+    private static long atMost(long[][] sliceWords, int w, long word, long bound) {
+
+        long lower = 0;
+        long equal = word;
+
+        for (int bit = sliceWords.length - 1; bit >= 0 && equal != 0; bit--) {
+            long slice = sliceWords[bit] != null ? sliceWords[bit][w] : 0;
+            if ((bound & (1L << bit)) != 0) {
+                lower |= equal & ~slice;
+                equal &= slice;
+            } else {
+                equal &= ~slice;
+            }
+        }
+
+        return lower | equal;
+    }
+
+    //endregion
+
+    //region chunks
+
+    private int indexOfKey(char key) {
+        // Values are mostly added in ascending order, so the last chunk is checked first
+        if (chunkCount > 0 && keys[chunkCount - 1] == key) {
+            return chunkCount - 1;
+        }
+        return Arrays.binarySearch(keys, 0, chunkCount, key);
+    }
+
+    private void insertChunk(int index, char key, Chunk chunk) {
+        if (chunkCount == keys.length) {
+            keys = Arrays.copyOf(keys, chunkCount * 2);
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, chunkCount - index);
+        System.arraycopy(chunks, index, chunks, index + 1, chunkCount - index);
+        keys[index] = key;
+        chunks[index] = chunk;
+        chunkCount++;
+    }
+
+    private void removeChunk(int index) {
+        System.arraycopy(keys, index + 1, keys, index, chunkCount - index - 1);
+        System.arraycopy(chunks, index + 1, chunks, index, chunkCount - index - 1);
+        chunks[--chunkCount] = null;
+    }
+
+    private void append(char key, Chunk chunk) {
+        insertChunk(chunkCount, key, chunk);
+    }
+
+    private void appendIfNotEmpty(char key, Chunk chunk) {
+        if (chunk.cardinality > 0) {
+            append(key, chunk);
+        }
+    }
+
+    /**
+     * The values of a chunk, as a sorted array of their low 16 bits or as a bitmap. Exactly one of values and words is not null.
+     */
+    private static final class Chunk {
+
+        private char[] values;
+        private long[] words;
+        private int cardinality;
+
+        private Chunk(char[] values, long[] words, int cardinality) {
+            this.values = values;
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        private boolean contains(char value) {
+            if (words != null) {
+                return (words[value >>> 6] & (1L << value)) != 0;
+            }
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        private boolean add(char value) {
+
+            if (words != null) {
+                long word = words[value >>> 6];
+                words[value >>> 6] = word | (1L << value);
+                if (word == words[value >>> 6]) {
+                    return false;
+                }
+                cardinality++;
+                return true;
+            }
+
+            // Values are mostly added in ascending order, so a value greater than the last one is appended without searching
+            int index = cardinality == 0 || values[cardinality - 1] < value ? -cardinality - 1
+                : Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return false;
+            }
+            index = -index - 1;
+
+            if (cardinality == MAX_ARRAY_SIZE) {
+                toBitmap();
+                return add(value);
+            }
+
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(Math.max(cardinality * 2, 4), MAX_ARRAY_SIZE));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return true;
+        }
+
+        private boolean remove(char value) {
+
+            if (words != null) {
+                long word = words[value >>> 6];
+                if ((word & (1L << value)) == 0) {
+                    return false;
+                }
+                words[value >>> 6] = word & ~(1L << value);
+                cardinality--;
+                if (cardinality <= MAX_ARRAY_SIZE) {
+                    toArray();
+                }
+                return true;
+            }
+
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+            cardinality--;
+            return true;
+        }
+
+        private void forEach(int high, IntConsumer action) {
+
+            if (words == null) {
+                for (int i = 0; i < cardinality; i++) {
+                    action.accept(high | values[i]);
+                }
+                return;
+            }
+
+            for (int i = 0; i < CHUNK_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        /**
+         * Returns the words of the bitmap of the chunk. A chunk stored as a bitmap returns its own words, which must not be modified;
+         * a chunk stored as an array writes its values into the given buffer and returns it.
+         */
+        private long[] words(long[] buffer) {
+
+            if (words != null) {
+                return words;
+            }
+
+            Arrays.fill(buffer, 0);
+            for (int i = 0; i < cardinality; i++) {
+                buffer[values[i] >>> 6] |= 1L << values[i];
+            }
+            return buffer;
+        }
+
+        /**
+         * Copies the values of the chunk into the array from the given position on, until the array is full, and returns the position
+         * after the last value copied.
+         */
+        private int copyTo(int high, int[] array, int position) {
+
+            if (words == null) {
+                for (int i = 0; i < cardinality && position < array.length; i++) {
+                    array[position++] = high | values[i];
+                }
+                return position;
+            }
+
+            for (int i = 0; i < CHUNK_WORDS && position < array.length; i++) {
+                long word = words[i];
+                while (word != 0 && position < array.length) {
+                    array[position++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return position;
+        }
+
+        private Chunk copy() {
+            return words != null ? new Chunk(null, words.clone(), cardinality)
+                : new Chunk(Arrays.copyOf(values, cardinality), null, cardinality);
+        }
+
+        private void toBitmap() {
+            words = new long[CHUNK_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            values = null;
+        }
+
+        private void toArray() {
+            values = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < CHUNK_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            words = null;
+        }
+
+        /**
+         * Returns a chunk made of the given words, as an array if it has few enough values.
+         */
+        private static Chunk fromWords(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            Chunk chunk = new Chunk(null, words, cardinality);
+            if (cardinality <= MAX_ARRAY_SIZE) {
+                chunk.toArray();
+            }
+            return chunk;
+        }
+
+        private static Chunk and(Chunk first, Chunk second) {
+
+            if (first.words != null && second.words != null) {
+                long[] words = new long[CHUNK_WORDS];
+                for (int i = 0; i < CHUNK_WORDS; i++) {
+                    words[i] = first.words[i] & second.words[i];
+                }
+                return fromWords(words);
+            }
+
+            // At least one chunk is an array, and the result has no more values than it
+            Chunk array = first.words == null ? first : second;
+            Chunk other = array == first ? second : first;
+
+            char[] values = new char[Math.min(array.cardinality, other.cardinality)];
+            int count = 0;
+            if (other.words != null) {
+                for (int i = 0; i < array.cardinality; i++) {
+                    if (other.contains(array.values[i])) {
+                        values[count++] = array.values[i];
+                    }
+                }
+            } else {
+                for (int i = 0, j = 0; i < array.cardinality && j < other.cardinality; ) {
+                    if (array.values[i] < other.values[j]) {
+                        i++;
+                    } else if (array.values[i] > other.values[j]) {
+                        j++;
+                    } else {
+                        values[count++] = array.values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            return new Chunk(values, null, count);
+        }
+
+        private static Chunk or(Chunk first, Chunk second) {
+
+            if (first.words == null && second.words == null && first.cardinality + second.cardinality <= MAX_ARRAY_SIZE) {
+                char[] values = new char[first.cardinality + second.cardinality];
+                int count = 0;
+                int i = 0;
+                int j = 0;
+                while (i < first.cardinality || j < second.cardinality) {
+                    if (j == second.cardinality || (i < first.cardinality && first.values[i] < second.values[j])) {
+                        values[count++] = first.values[i++];
+                    } else if (i == first.cardinality || first.values[i] > second.values[j]) {
+                        values[count++] = second.values[j++];
+                    } else {
+                        values[count++] = first.values[i++];
+                        j++;
+                    }
+                }
+                return new Chunk(values, null, count);
+            }
+
+            long[] words = first.words != null ? first.words.clone() : new long[CHUNK_WORDS];
+            if (first.words == null) {
+                for (int i = 0; i < first.cardinality; i++) {
+                    words[first.values[i] >>> 6] |= 1L << first.values[i];
+                }
+            }
+            if (second.words != null) {
+                for (int i = 0; i < CHUNK_WORDS; i++) {
+                    words[i] |= second.words[i];
+                }
+            } else {
+                for (int i = 0; i < second.cardinality; i++) {
+                    words[second.values[i] >>> 6] |= 1L << second.values[i];
+                }
+            }
+            return fromWords(words);
+        }
+
+        private static Chunk andNot(Chunk first, Chunk second) {
+
+            if (first.words == null) {
+                char[] values = new char[first.cardinality];
+                int count = 0;
+                for (int i = 0; i < first.cardinality; i++) {
+                    if (!second.contains(first.values[i])) {
+                        values[count++] = first.values[i];
+                    }
+                }
+                return new Chunk(values, null, count);
+            }
+
+            long[] words = first.words.clone();
+            if (second.words != null) {
+                for (int i = 0; i < CHUNK_WORDS; i++) {
+                    words[i] &= ~second.words[i];
+                }
+            } else {
+                for (int i = 0; i < second.cardinality; i++) {
+                    words[second.values[i] >>> 6] &= ~(1L << second.values[i]);
+                }
+            }
+            return fromWords(words);
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,416 @@
+package com.javeriana.utils;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+
+/**
+ * The SnapshotList class is an array list that hands out read-only snapshots of itself without copying its elements, used by the services
+ * and the models to return their lists to the controllers.
+ *
+ * Returning a copy of a list on every call keeps callers from changing it, but costs an array and a pass over the list each time, which adds up
+ * when a whole catalog is read. The class does the following:
+ * 1. Stores the elements in an array, like an ArrayList, and can be used wherever an ArrayList was.
+ * 2. Returns a snapshot (snapshot) as a read-only list over the current array and size, in constant time and without copying. The snapshot
+ *    never changes: it shows the elements the list had when it was taken, whatever happens to the list afterwards.
+ * 3. Appends in place, even while snapshots are held, since a snapshot never reads past its own size. When the array is full, the elements
+ *    are moved to a larger one and the snapshots keep the old one.
+ * 4. Copies the array before any other change (removing, replacing or clearing elements) only if a snapshot of the current array has been
+ *    taken, so the snapshots never see the change. A list whose snapshots are taken between appends, which is how the lists of entities
+ *    are used, is never copied at all.
+ * 5. A numbered list (numbered) also gives each element the number of its append, which grows along the list and never changes while the
+ *    element is in it, so a position in the list can be found again with a binary search after elements before it are removed. The
+ *    numbers are not serialized. Elements can also be removed by their numbers (removeNumber, removeNumbers), which finds them with the
+ *    same binary search instead of comparing every element of the list, so an owner that keeps the number of each element, such as in
+ *    a numbered UUIDIndex, removes an element without searching for it.
+ *
+ * The snapshots are RandomAccess lists and throw UnsupportedOperationException on any change. The changes to the list and the taking of
+ * snapshots are synchronized on the list, so a snapshot can be taken from any thread while another thread changes the list, and the
+ * snapshot can then be read from any thread. Reading the list itself (get, size, iterating) and changes made of several calls, such as
+ * finding an element and then removing it, are not: they follow the same rules as the service or the model that owns the list.
+ *
+ * @param <E> The type of the elements.
+ */
+public final class SnapshotList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The initial capacity of the array.
+     */
+    private static final int INITIAL_CAPACITY = 10;
+
+    /**
+     * The elements of the list, in the first size positions of the array.
+     */
+    private transient Object[] elements;
+
+    /**
+     * The number of elements in the list.
+     */
+    private int size;
+
+    /**
+     * Whether a snapshot of the current array has been taken, in which case the array must be copied before any element is changed.
+     */
+    private transient boolean shared;
+
+    /**
+     * The number of the append of each element of a numbered list, in the first size positions of the array, or null if the list is
+     * not numbered. The snapshots do not read it, so it is never shared.
+     */
+    private transient long[] numbers;
+
+    /**
+     * The number of the next element appended to a numbered list.
+     */
+    private transient long nextNumber;
+
+    /**
+     * Constructs an empty SnapshotList.
+     */
+    public SnapshotList() {
+        this.elements = new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Constructs a SnapshotList with the elements of the given collection, in the order of its iterator.
+     *
+     * @param elements The elements of the list.
+     */
+    public SnapshotList(Collection<? extends E> elements) {
+        Object[] array = elements.toArray();
+        this.elements = array.length > 0 ? Arrays.copyOf(array, array.length, Object[].class) : new Object[INITIAL_CAPACITY];
+        this.size = array.length;
+    }
+
+    /**
+     * Constructs an empty SnapshotList that numbers its elements by the order they were appended in, starting at 0.
+     * A numbered list only appends: inserting an element before another one throws UnsupportedOperationException, since there is no
+     * number between the ones of its neighbours.
+     *
+     * @param <E> The type of the elements.
+     * @return The numbered list.
+     */
+    public static <E> SnapshotList<E> numbered() {
+        SnapshotList<E> list = new SnapshotList<>();
+        list.numbers = new long[INITIAL_CAPACITY];
+        return list;
+    }
+
+    /**
+     * Returns the number of the element at the given position of a numbered list. The numbers grow along the list, and the number of
+     * an element is the same for as long as it is in the list. Clearing the list starts the numbers at 0 again.
+     *
+     * @param index The position of the element.
+     * @return The number of the append of the element.
+     * @throws IllegalStateException If the list is not numbered.
+     */
+    public long numberAt(int index) {
+        if (numbers == null) {
+            throw new IllegalStateException("La lista no está numerada");
+        }
+        Objects.checkIndex(index, size);
+        return numbers[index];
+    }
+
+    /**
+     * Appends an element to a numbered list and returns its number.
+     *
+     * @param element The element to append.
+     * @return The number of the append of the element.
+     * @throws IllegalStateException If the list is not numbered.
+     */
+    public synchronized long append(E element) {
+        if (numbers == null) {
+            throw new IllegalStateException("La lista no está numerada");
+        }
+        add(element);
+        return numbers[size - 1];
+    }
+
+    /**
+     * Removes the element with the given number from a numbered list.
+     *
+     * @param number The number of the element.
+     * @return The removed element, or null if no element of the list has the number.
+     * @throws IllegalStateException If the list is not numbered.
+     */
+    public synchronized E removeNumber(long number) {
+        if (numbers == null) {
+            throw new IllegalStateException("La lista no está numerada");
+        }
+        int index = Arrays.binarySearch(numbers, 0, size, number);
+        return index >= 0 ? remove(index) : null;
+    }
+
+    /**
+     * Removes the elements with the given numbers from a numbered list, as a single change.
+     *
+     * The method does the following:
+     * 1. Sorts the numbers and finds the position of each one with a binary search, from the position of the previous one on, since the
+     *    numbers grow along the list. Numbers that no element has are ignored.
+     * 2. Moves down the elements between the removed ones, one run at a time, starting at the first removed element, so the elements
+     *    before it are not touched and each kept element is moved at most once.
+     *
+     * @param removedNumbers The numbers of the elements to remove. A number that appears several times removes its element once.
+     * @return True if an element was removed, false otherwise.
+     * @throws IllegalStateException If the list is not numbered.
+     */
+    public synchronized boolean removeNumbers(long[] removedNumbers) {
+        if (numbers == null) {
+            throw new IllegalStateException("La lista no está numerada");
+        }
+
+        long[] sortedNumbers = removedNumbers.clone();
+        Arrays.sort(sortedNumbers);
+
+        int[] positions = new int[sortedNumbers.length];
+        int count = 0;
+        int from = 0;
+        for (long number : sortedNumbers) {
+            int index = Arrays.binarySearch(numbers, from, size, number);
+            if (index >= 0) {
+                positions[count++] = index;
+                from = index + 1;
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+
+        prepareForChange(size);
+        int kept = positions[0];
+        for (int i = 0; i < count; i++) {
+            int runStart = positions[i] + 1;
+            int runLength = (i + 1 < count ? positions[i + 1] : size) - runStart;
+            System.arraycopy(elements, runStart, elements, kept, runLength);
+            System.arraycopy(numbers, runStart, numbers, kept, runLength);
+            kept += runLength;
+        }
+        Arrays.fill(elements, kept, size, null);
+        size = kept;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Returns a read-only snapshot of the list, without copying it.
+     *
+     * @return A list with the elements the list has now, which later changes to the list do not affect.
+     */
+    public synchronized List<E> snapshot() {
+        if (size == 0) {
+            return List.of();
+        }
+        shared = true;
+        return new Snapshot<>(elements, size);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Objects.checkIndex(index, size);
+        return (E) elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized boolean add(E element) {
+        if (size == elements.length) {
+            // The snapshots keep the old array, so the new one is not shared
+            elements = Arrays.copyOf(elements, Math.max(INITIAL_CAPACITY, size + (size >> 1)));
+            shared = false;
+        }
+        if (numbers != null) {
+            numbers = ensureLength(numbers, elements.length);
+            numbers[size] = nextNumber++;
+        }
+        elements[size++] = element;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized void add(int index, E element) {
+        if (index == size) {
+            add(element);
+            return;
+        }
+        Objects.checkIndex(index, size);
+        if (numbers != null) {
+            throw new UnsupportedOperationException("Una lista numerada solo agrega elementos al final");
+        }
+        prepareForChange(size + 1);
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = element;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends E> collection) {
+        Object[] added = collection.toArray();
+        if (size + added.length > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(size + added.length, size + (size >> 1)));
+            shared = false;
+        }
+        if (numbers != null) {
+            numbers = ensureLength(numbers, elements.length);
+            for (int i = size; i < size + added.length; i++) {
+                numbers[i] = nextNumber++;
+            }
+        }
+        System.arraycopy(added, 0, elements, size, added.length);
+        size += added.length;
+        modCount++;
+        return added.length > 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized E set(int index, E element) {
+        Objects.checkIndex(index, size);
+        prepareForChange(size);
+        E previous = (E) elements[index];
+        elements[index] = element;
+        return previous;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized E remove(int index) {
+        Objects.checkIndex(index, size);
+        prepareForChange(size);
+        E removed = (E) elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        if (numbers != null) {
+            System.arraycopy(numbers, index + 1, numbers, index, size - index - 1);
+        }
+        elements[--size] = null;
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized boolean removeIf(Predicate<? super E> filter) {
+
+        int first = 0;
+        while (first < size && !filter.test((E) elements[first])) {
+            first++;
+        }
+        if (first == size) {
+            return false;
+        }
+
+        // The elements that are kept are moved down in a single pass, instead of shifting the array once for each removed element
+        prepareForChange(size);
+        int kept = first;
+        for (int i = first + 1; i < size; i++) {
+            if (!filter.test((E) elements[i])) {
+                if (numbers != null) {
+                    numbers[kept] = numbers[i];
+                }
+                elements[kept++] = elements[i];
+            }
+        }
+        Arrays.fill(elements, kept, size, null);
+        size = kept;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> collection) {
+        Objects.requireNonNull(collection);
+        return removeIf(collection::contains);
+    }
+
+    @Override
+    public synchronized void clear() {
+        if (shared) {
+            elements = new Object[INITIAL_CAPACITY];
+            shared = false;
+        } else {
+            Arrays.fill(elements, 0, size, null);
+        }
+        size = 0;
+        nextNumber = 0;
+        modCount++;
+    }
+
+    /**
+     * Makes the array writable and at least the given length, copying it if a snapshot holds it.
+     */
+    private void prepareForChange(int minimumLength) {
+        if (shared || minimumLength > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(minimumLength, elements.length));
+            shared = false;
+        }
+    }
+
+    /**
+     * Returns the given array of numbers, or a copy of it with at least the given length if it is shorter.
+     */
+    private static long[] ensureLength(long[] numbers, int minimumLength) {
+        return numbers.length >= minimumLength ? numbers : Arrays.copyOf(numbers, minimumLength);
+    }
+
+    @Serial
+    private void writeObject(ObjectOutputStream output) throws IOException {
+        output.defaultWriteObject();
+        for (int i = 0; i < size; i++) {
+            output.writeObject(elements[i]);
+        }
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+        input.defaultReadObject();
+        elements = new Object[Math.max(INITIAL_CAPACITY, size)];
+        for (int i = 0; i < size; i++) {
+            elements[i] = input.readObject();
+        }
+    }
+
+    /**
+     * A read-only view of the first size elements of an array that is never changed again below that size.
+     */
+    private static final class Snapshot<E> extends AbstractList<E> implements RandomAccess {
+
+        private final Object[] elements;
+        private final int size;
+
+        private Snapshot(Object[] elements, int size) {
+            this.elements = elements;
+            this.size = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            Objects.checkIndex(index, size);
+            return (E) elements[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
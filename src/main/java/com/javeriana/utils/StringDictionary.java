@@ -0,0 +1,157 @@
+package com.javeriana.utils;
+
+/**
+ * The StringDictionary class keeps a single String instance for each distinct value of a low-cardinality attribute,
+ * such as the genre or the album of a song.
+ *
+ * Reading a file creates a new String for every field, so a catalog with millions of songs and a few hundred genres holds
+ * millions of copies of the same few hundred strings. Looking each value up in a dictionary keeps only the first copy.
+ *
+ * The class does the following:
+ * 1. Looks a value up straight from a range of characters, such as a field of a CSV line, so no String is created when the value
+ *    is already in the dictionary.
+ * 2. Stores the values in an open-addressing hash table. Lookups do not lock: they read the current table, which is only replaced,
+ *    never modified in place, except for filling empty slots.
+ * 3. Adds a missing value under a lock, checking the table again first, so two threads that find the same new value at the same time
+ *    still get the same instance.
+ *
+ * A dictionary can be shared by the workers of a parallel import. It is meant for attributes with few distinct values: it keeps every
+ * value it sees until it is discarded, so it should live as long as the data it deduplicates, such as one import.
+ */
+public final class StringDictionary {
+
+    /**
+     * The initial capacity of the table, which must be a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * The table of values. The table is replaced by a larger one when it is half full, so probes stay short.
+     */
+    private volatile String[] table = new String[INITIAL_CAPACITY];
+
+    /**
+     * The number of values in the dictionary. It is only read and written while holding the lock.
+     */
+    private int size;
+
+    /**
+     * Returns the dictionary instance of the given value, adding it if it is not in the dictionary.
+     *
+     * @param value The value.
+     * @return A String equal to the value, which is the same instance for every equal value.
+     */
+    public String intern(String value) {
+        return intern(value, 0, value.length());
+    }
+
+    /**
+     * Returns the dictionary instance of the value made of the characters between the given offsets, adding it if it is not in the dictionary.
+     * The characters are only copied into a new String when the value is not in the dictionary yet.
+     *
+     * @param chars The characters that contain the value.
+     * @param start The offset of the first character of the value.
+     * @param end The offset right after the last character of the value.
+     * @return A String equal to the value, which is the same instance for every equal value.
+     */
+    public String intern(CharSequence chars, int start, int end) {
+
+        int hash = hash(chars, start, end);
+
+        String value = find(table, chars, start, end, hash);
+        if (value != null) {
+            return value;
+        }
+
+        synchronized (this) {
+            String[] currentTable = table;
+
+            // Another thread may have added the value since the first lookup
+            value = find(currentTable, chars, start, end, hash);
+            if (value != null) {
+                return value;
+            }
+
+            value = chars.subSequence(start, end).toString();
+
+            if ((size + 1) * 2 > currentTable.length) {
+                currentTable = grow(currentTable);
+            }
+            insert(currentTable, value, hash);
+            size++;
+            table = currentTable;
+
+            return value;
+        }
+    }
+
+    /**
+     * Returns the number of distinct values in the dictionary.
+     *
+     * @return The number of values.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Looks for the value in the given table, returning null if it is not there.
+     */
+    private static String find(String[] table, CharSequence chars, int start, int end, int hash) {
+
+        int mask = table.length - 1;
+        int slot = hash & mask;
+
+        String candidate;
+        while ((candidate = table[slot]) != null) {
+            if (candidate.hashCode() == hash && contentEquals(candidate, chars, start, end)) {
+                return candidate;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return null;
+    }
+
+    private static void insert(String[] table, String value, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+    }
+
+    private static String[] grow(String[] table) {
+        String[] grownTable = new String[table.length * 2];
+        for (String value : table) {
+            if (value != null) {
+                insert(grownTable, value, value.hashCode());
+            }
+        }
+        return grownTable;
+    }
+
+    /**
+     * Computes the hash of the characters the same way String.hashCode does, so it can be compared with the cached hash of the stored values.
+     */
+    private static int hash(CharSequence chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        return hash;
+    }
+
+    private static boolean contentEquals(String value, CharSequence chars, int start, int end) {
+        if (value.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != chars.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,133 @@
+package com.javeriana.utils;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * The UUIDCodec class decodes UUIDs straight from the characters of their 36-character text form,
+ * for example 33f20939-c665-4e1d-aac1-e340c3d95656.
+ *
+ * The class does the following:
+ * 1. Reads the 32 hexadecimal digits of a range of a CharSequence into the two longs of a UUID, without creating a substring.
+ *    The CSV imports decode each chunk of a file to characters before tokenizing it, so the tokenizer decodes the UUIDs from those characters.
+ * 2. Exposes the two longs separately, so callers that only need them, such as hash indexes, do not have to create a UUID object at all.
+ * 3. Falls back to UUID.fromString for text that is not in the canonical 36-character form, so it accepts exactly the same input.
+ *
+ * All the methods are static and the class has no state, so it is safe to use from several threads.
+ */
+public final class UUIDCodec {
+
+    /**
+     * The length of the canonical text form of a UUID.
+     */
+    public static final int UUID_LENGTH = 36;
+
+    /**
+     * The value of each ASCII character as a hexadecimal digit, or -1 if the character is not a hexadecimal digit.
+     */
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private UUIDCodec() {
+    }
+
+    /**
+     * Decodes a UUID from its text form.
+     *
+     * @param text The text form of the UUID.
+     * @return The decoded UUID.
+     * @throws IllegalArgumentException If the text is not a valid UUID.
+     */
+    public static UUID decode(CharSequence text) {
+        return decode(text, 0, text.length());
+    }
+
+    /**
+     * Decodes a UUID from a range of characters.
+     *
+     * @param text The characters that contain the UUID.
+     * @param start The offset where the UUID starts.
+     * @param end The offset right after the end of the UUID.
+     * @return The decoded UUID.
+     * @throws IllegalArgumentException If the range is not a valid UUID.
+     */
+    public static UUID decode(CharSequence text, int start, int end) {
+
+        if (!isCanonical(text, start, end)) {
+            return UUID.fromString(text.subSequence(start, end).toString());
+        }
+
+        return new UUID(mostSignificantBits(text, start), leastSignificantBits(text, start));
+    }
+
+    /**
+     * Checks if a range of characters has the canonical form of a UUID: 36 characters with dashes at offsets 8, 13, 18 and 23.
+     * It does not check the hexadecimal digits.
+     *
+     * @param text The characters to check.
+     * @param start The offset where the range starts.
+     * @param end The offset right after the end of the range.
+     * @return True if the range has the canonical form, false otherwise.
+     */
+    public static boolean isCanonical(CharSequence text, int start, int end) {
+        return end - start == UUID_LENGTH
+            && text.charAt(start + 8) == '-'
+            && text.charAt(start + 13) == '-'
+            && text.charAt(start + 18) == '-'
+            && text.charAt(start + 23) == '-';
+    }
+
+    /**
+     * Decodes the 64 most significant bits of a UUID in canonical form, which are the first 16 hexadecimal digits.
+     *
+     * @param text The characters that contain the UUID.
+     * @param start The offset where the UUID starts.
+     * @return The most significant bits of the UUID.
+     * @throws IllegalArgumentException If a character is not a hexadecimal digit.
+     */
+    public static long mostSignificantBits(CharSequence text, int start) {
+        long bits = parseHex(text, start, start, start + 8);
+        bits = (bits << 16) | parseHex(text, start, start + 9, start + 13);
+        return (bits << 16) | parseHex(text, start, start + 14, start + 18);
+    }
+
+    /**
+     * Decodes the 64 least significant bits of a UUID in canonical form, which are the last 16 hexadecimal digits.
+     *
+     * @param text The characters that contain the UUID.
+     * @param start The offset where the UUID starts.
+     * @return The least significant bits of the UUID.
+     * @throws IllegalArgumentException If a character is not a hexadecimal digit.
+     */
+    public static long leastSignificantBits(CharSequence text, int start) {
+        long bits = parseHex(text, start, start + 19, start + 23);
+        return (bits << 48) | parseHex(text, start, start + 24, start + 36);
+    }
+
+    private static long parseHex(CharSequence text, int uuidStart, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = hexValue(text.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid UUID string: "
+                    + text.subSequence(uuidStart, Math.min(text.length(), uuidStart + UUID_LENGTH)));
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private static int hexValue(int character) {
+        return character >= 0 && character < HEX_VALUES.length ? HEX_VALUES[character] : -1;
+    }
+}
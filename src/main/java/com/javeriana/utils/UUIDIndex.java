@@ -0,0 +1,499 @@
+package com.javeriana.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The UUIDIndex class is a hash index from UUIDs to values, used as the primary-key index of the entities of the application.
+ *
+ * A HashMap keyed by UUID needs a UUID object for every lookup and an entry object for every value. The index keeps the two longs
+ * of each key in primitive arrays instead. The class does the following:
+ * 1. Stores the keys and the values in three parallel arrays, using open addressing with linear probing, and doubles the arrays
+ *    when they are more than half full, so probes stay short.
+ * 2. Looks a key up from its two longs, or straight from its text form with the UUIDCodec class, so a lookup does not box or allocate.
+ * 3. Removes a key by shifting back the keys that follow it in its probe sequence, so the table never needs tombstones and
+ *    lookups stay as fast after many removals as after none.
+ * 4. Hands out a read-only Map view of itself (asMap), which always shows the current keys, so callers that need a Map do not
+ *    have to copy the index.
+ * 5. A numbered index (numbered) also keeps a number with each key, in a fourth parallel array, such as the number of the entity in
+ *    a numbered SnapshotList, so the entity of a key can be removed from the list by its number without searching the list for it.
+ *
+ * The index does not accept null values. It is not synchronized: it is owned by a service and follows the same rules as the list
+ * of entities of that service. A lookup reads each array of the table once and never probes more slots than the table has, so a lookup
+ * that runs while the index is changed, as the optimistic reads of the services do, always ends, even if its answer is wrong.
+ *
+ * @param <T> The type of the values.
+ */
+public final class UUIDIndex<T> {
+
+    /**
+     * The initial capacity of the table, which must be a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The two longs of the key in each slot.
+     */
+    private long[] mostSignificantBits;
+    private long[] leastSignificantBits;
+
+    /**
+     * The value in each slot, or null if the slot is empty.
+     */
+    private Object[] values;
+
+    /**
+     * The number kept with the key in each slot, or null if the index is not numbered.
+     */
+    private long[] numbers;
+
+    /**
+     * The number of keys in the index.
+     */
+    private int size;
+
+    /**
+     * The number of changes made to the keys of the index, used to detect changes during an iteration of the map view.
+     */
+    private int modificationCount;
+
+    /**
+     * The read-only map view of the index, created the first time it is requested.
+     */
+    private Map<UUID, T> mapView;
+
+    /**
+     * Constructs an empty index.
+     */
+    public UUIDIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty index that keeps a number with each key, set with the put methods that take a number.
+     *
+     * @param <T> The type of the values.
+     * @return The numbered index.
+     */
+    public static <T> UUIDIndex<T> numbered() {
+        UUIDIndex<T> index = new UUIDIndex<>();
+        index.numbers = new long[INITIAL_CAPACITY];
+        return index;
+    }
+
+    /**
+     * Returns the number of keys in the index.
+     *
+     * @return The number of keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value of the given key.
+     *
+     * @param id The key.
+     * @return The value of the key, or null if the key is not in the index.
+     */
+    public T get(UUID id) {
+        return get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    /**
+     * Returns the value of the key with the given text form. The key is decoded into its two longs without creating a UUID,
+     * unless the text is not in the canonical 36-character form.
+     *
+     * @param text The text form of the key.
+     * @return The value of the key, or null if the key is not in the index.
+     * @throws IllegalArgumentException If the text is not a valid UUID.
+     */
+    public T get(CharSequence text) {
+
+        if (!UUIDCodec.isCanonical(text, 0, text.length())) {
+            return get(UUIDCodec.decode(text));
+        }
+
+        return get(UUIDCodec.mostSignificantBits(text, 0), UUIDCodec.leastSignificantBits(text, 0));
+    }
+
+    /**
+     * Returns the value of the key with the given two longs.
+     *
+     * @param mostSignificantBits The most significant bits of the key.
+     * @param leastSignificantBits The least significant bits of the key.
+     * @return The value of the key, or null if the key is not in the index.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(long mostSignificantBits, long leastSignificantBits) {
+        int slot = find(mostSignificantBits, leastSignificantBits);
+        return slot >= 0 ? (T) values[slot] : null;
+    }
+
+    /**
+     * Returns the number kept with the given key in a numbered index.
+     *
+     * @param id The key.
+     * @return The number of the key, or -1 if the key is not in the index.
+     * @throws IllegalStateException If the index is not numbered.
+     */
+    public long numberOf(UUID id) {
+        if (numbers == null) {
+            throw new IllegalStateException("El índice no está numerado");
+        }
+        int slot = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        return slot >= 0 ? numbers[slot] : -1;
+    }
+
+    /**
+     * Checks if the given key is in the index.
+     *
+     * @param id The key.
+     * @return True if the key is in the index, false otherwise.
+     */
+    public boolean containsKey(UUID id) {
+        return find(id.getMostSignificantBits(), id.getLeastSignificantBits()) >= 0;
+    }
+
+    /**
+     * Sets the value of the given key, replacing the previous value if the key is already in the index.
+     *
+     * @param id The key.
+     * @param value The value.
+     * @return The previous value of the key, or null if the key was not in the index.
+     */
+    public T put(UUID id, T value) {
+        return put(id, value, 0, true);
+    }
+
+    /**
+     * Sets the value and the number of the given key in a numbered index, replacing the previous ones if the key is already in the index.
+     *
+     * @param id The key.
+     * @param value The value.
+     * @param number The number kept with the key.
+     * @return The previous value of the key, or null if the key was not in the index.
+     * @throws IllegalStateException If the index is not numbered.
+     */
+    public T put(UUID id, T value, long number) {
+        if (numbers == null) {
+            throw new IllegalStateException("El índice no está numerado");
+        }
+        return put(id, value, number, true);
+    }
+
+    /**
+     * Sets the value of the given key only if the key is not in the index yet.
+     *
+     * @param id The key.
+     * @param value The value.
+     * @return The value the key already had, or null if the value was added.
+     */
+    public T putIfAbsent(UUID id, T value) {
+        return put(id, value, 0, false);
+    }
+
+    /**
+     * Sets the value and the number of the given key in a numbered index only if the key is not in the index yet.
+     *
+     * @param id The key.
+     * @param value The value.
+     * @param number The number kept with the key.
+     * @return The value the key already had, or null if the value was added.
+     * @throws IllegalStateException If the index is not numbered.
+     */
+    public T putIfAbsent(UUID id, T value, long number) {
+        if (numbers == null) {
+            throw new IllegalStateException("El índice no está numerado");
+        }
+        return put(id, value, number, false);
+    }
+
+    /**
+     * Removes the given key from the index.
+     *
+     * The method does the following:
+     * 1. Finds the slot of the key. If the key is not in the index, it returns null.
+     * 2. Empties the slot and moves back each following key of the same cluster whose home slot is not between the emptied slot
+     *    and its current slot, so every key stays reachable from its home slot without gaps.
+     *
+     * @param id The key to remove.
+     * @return The value of the removed key, or null if the key was not in the index.
+     */
+    @SuppressWarnings("unchecked")
+    public T remove(UUID id) {
+
+        int slot = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (slot < 0) {
+            return null;
+        }
+
+        T value = (T) values[slot];
+        int mask = values.length - 1;
+
+        int emptySlot = slot;
+        int nextSlot = (slot + 1) & mask;
+        while (values[nextSlot] != null) {
+            int homeSlot = slot(mostSignificantBits[nextSlot], leastSignificantBits[nextSlot], mask);
+
+            // The key can fill the gap if the gap lies on the way from its home slot to its current slot
+            if (((nextSlot - homeSlot) & mask) >= ((nextSlot - emptySlot) & mask)) {
+                move(nextSlot, emptySlot);
+                emptySlot = nextSlot;
+            }
+            nextSlot = (nextSlot + 1) & mask;
+        }
+
+        values[emptySlot] = null;
+        size--;
+        modificationCount++;
+
+        return value;
+    }
+
+    /**
+     * Removes every key from the index, keeping its capacity.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+        modificationCount++;
+    }
+
+    /**
+     * Makes room for the given number of keys, so adding them does not resize the table more than once.
+     *
+     * @param expectedSize The number of keys the index is expected to hold.
+     */
+    public void ensureCapacity(int expectedSize) {
+        int capacity = values.length;
+        while ((long) expectedSize * 2 > capacity) {
+            capacity *= 2;
+        }
+        if (capacity != values.length) {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Returns a read-only view of the index as a Map.
+     *
+     * The view is live: it reflects every later change of the index, and it is never copied, so it costs nothing to request.
+     * get and containsKey are lookups in the index. Iterating over the view visits the keys in table order and throws a
+     * ConcurrentModificationException if the index changes during the iteration. Every method that would modify the view
+     * throws an UnsupportedOperationException.
+     *
+     * @return The map view of the index.
+     */
+    public Map<UUID, T> asMap() {
+        if (mapView == null) {
+            mapView = new MapView();
+        }
+        return mapView;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T put(UUID id, T value, long number, boolean replace) {
+
+        if (value == null) {
+            throw new IllegalArgumentException("El índice no acepta valores nulos");
+        }
+
+        long most = id.getMostSignificantBits();
+        long least = id.getLeastSignificantBits();
+
+        int slot = find(most, least);
+        if (slot >= 0) {
+            T previousValue = (T) values[slot];
+            if (replace) {
+                values[slot] = value;
+                if (numbers != null) {
+                    numbers[slot] = number;
+                }
+            }
+            return previousValue;
+        }
+
+        if ((size + 1) * 2 > values.length) {
+            resize(values.length * 2);
+        }
+        insert(most, least, value, number);
+        size++;
+        modificationCount++;
+
+        return null;
+    }
+
+    /**
+     * Returns the slot of the given key, or -1 if the key is not in the index.
+     */
+    private int find(long most, long least) {
+
+        long[] mostBits = mostSignificantBits;
+        long[] leastBits = leastSignificantBits;
+        Object[] table = values;
+
+        int mask = table.length - 1;
+        int slot = slot(most, least, mask);
+
+        for (int probes = 0; probes < table.length && table[slot] != null; probes++) {
+            if (mostBits[slot] == most && leastBits[slot] == least) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Stores a key that is not in the index in the first free slot of its probe sequence.
+     */
+    private void insert(long most, long least, Object value, long number) {
+
+        int mask = values.length - 1;
+        int slot = slot(most, least, mask);
+
+        while (values[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+
+        mostSignificantBits[slot] = most;
+        leastSignificantBits[slot] = least;
+        values[slot] = value;
+        if (numbers != null) {
+            numbers[slot] = number;
+        }
+    }
+
+    private void move(int fromSlot, int toSlot) {
+        mostSignificantBits[toSlot] = mostSignificantBits[fromSlot];
+        leastSignificantBits[toSlot] = leastSignificantBits[fromSlot];
+        values[toSlot] = values[fromSlot];
+        if (numbers != null) {
+            numbers[toSlot] = numbers[fromSlot];
+        }
+    }
+
+    private void resize(int capacity) {
+
+        long[] oldMostSignificantBits = mostSignificantBits;
+        long[] oldLeastSignificantBits = leastSignificantBits;
+        Object[] oldValues = values;
+        long[] oldNumbers = numbers;
+
+        allocate(capacity);
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                insert(oldMostSignificantBits[i], oldLeastSignificantBits[i], oldValues[i], oldNumbers != null ? oldNumbers[i] : 0);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mostSignificantBits = new long[capacity];
+        leastSignificantBits = new long[capacity];
+        values = new Object[capacity];
+        if (numbers != null) {
+            numbers = new long[capacity];
+        }
+    }
+
+    /**
+     * The read-only map view of the index.
+     */
+    private final class MapView extends AbstractMap<UUID, T> {
+
+        private Set<Entry<UUID, T>> entrySet;
+
+        @Override
+        public T get(Object key) {
+            return key instanceof UUID id ? UUIDIndex.this.get(id) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof UUID id && UUIDIndex.this.containsKey(id);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<UUID, T>> entrySet() {
+            if (entrySet == null) {
+                entrySet = new AbstractSet<>() {
+
+                    @Override
+                    public Iterator<Entry<UUID, T>> iterator() {
+                        return new EntryIterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+            return entrySet;
+        }
+    }
+
+    /**
+     * Iterates over the occupied slots of the table, creating an entry for each one.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<UUID, T>> {
+
+        private final int expectedModificationCount = modificationCount;
+        private int nextSlot = advance(0);
+
+        @Override
+        public boolean hasNext() {
+            return nextSlot < values.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<UUID, T> next() {
+
+            if (modificationCount != expectedModificationCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            int slot = nextSlot;
+            nextSlot = advance(slot + 1);
+
+            return new AbstractMap.SimpleImmutableEntry<>(
+                new UUID(mostSignificantBits[slot], leastSignificantBits[slot]),
+                (T) values[slot]);
+        }
+
+        private int advance(int slot) {
+            while (slot < values.length && values[slot] == null) {
+                slot++;
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Returns the home slot of a key. The bits of the key are mixed first, so keys that are not random UUIDs still spread over the table.
+     */
+    private static int slot(long most, long least, int mask) {
+        long hash = (most ^ (least * 0x9E3779B97F4A7C15L)) * 0xBF58476D1CE4E5B9L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -3,9 +3,9 @@ package com.javeriana.views;
 import com.javeriana.controllers.AdminController;
 import com.javeriana.exceptions.AlreadyExistsException;
 import com.javeriana.exceptions.NotFoundException;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.InputMismatchException;
-import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
 
@@ -18,7 +18,8 @@ import java.util.Set;
  * 3. Artist Management: It provides methods for adding an artist to the database (addArtistToDatabase) and deleting an artist from the database (deleteArtistFromDatabase).
  * 4. Song Management: It provides methods for adding a song to the database (addSongToDatabase) and deleting a song from the database (deleteSongFromDatabase).
  * 5. Customer Management: It provides methods for adding a customer to the database (addCustomerToDatabase) and deleting a customer from the database (deleteCustomerFromDatabase).
- * 6. Data Display: It provides methods for displaying all customers (showAllCustomers), all songs (showAllSongs), all artists (showAllArtists), and all playlists (showAllPlaylists).
+ * 6. Data Display: It provides methods for displaying all customers (showAllCustomers), all songs (showAllSongs), all artists (showAllArtists), and all playlists (showAllPlaylists),
+ *    a page at a time through a PageRenderer.
  */
 public class AdminView {
 
@@ -35,6 +36,11 @@ public class AdminView {
      */
     private final Scanner scanner;
 
+    /**
+     * The renderer used to print the listings of the database a page at a time.
+     */
+    private final PageRenderer pageRenderer;
+
     /**
      * The constructor of the AdminView class.
      * It takes an AdminController object and a Scanner object as parameters.
@@ -50,6 +56,7 @@ public class AdminView {
     public AdminView(AdminController adminController, Scanner scanner) {
         this.adminController = adminController;
         this.scanner = scanner;
+        this.pageRenderer = new PageRenderer(scanner);
     }
 
     /**
@@ -134,56 +141,60 @@ public class AdminView {
      * The showAllPlaylists method is responsible for displaying all playlists to the user.
      *
      * The method does the following:
-     * 1. Data Retrieval: The method calls the getAllPlaylists method of the adminController object to retrieve a list of all playlists. This list is stored in the playlists variable.
-     * 2. Data Display: The method then enters a for loop to iterate over the playlists list. For each playlist, it prints the index of the playlist in the list and the string representation of the playlist.
-     * 3. End Message: After the loop, the method prints a message to indicate the end of the playlist list.
+     * 1. Data Retrieval and Display: The method passes the getPlaylistsPage method of the adminController object to the page renderer, which retrieves the playlists
+     *    a page at a time and prints the index and the string representation of each playlist, asking the user before showing each following page.
+     * 2. End Message: If every page was shown, the method prints a message to indicate the end of the playlist list.
      */
     private void showAllPlaylists() {
 
+        if (pageRenderer.render(cursor -> adminController.getPlaylistsPage(cursor, PageRenderer.PAGE_SIZE))) {
+            System.out.println("Fin de la lista de playlists.");
+        }
     }
 
     /**
      * The showAllArtists method is responsible for displaying all artists to the user.
      *
      * The method does the following:
-     * 1. Data Retrieval: The method calls the getAllArtists method of the adminController object to retrieve a list of all artists. This list is stored in the artists variable.
-     * 2. Data Display: The method then enters a for loop to iterate over the artists list. For each artist, it prints the index of the artist in the list and the string representation of the artist.
-     * 3. End Message: After the loop, the method prints a message to indicate the end of the artist list.
+     * 1. Data Retrieval and Display: The method passes the getArtistsPage method of the adminController object to the page renderer, which retrieves the artists
+     *    a page at a time and prints the index and the string representation of each artist, asking the user before showing each following page.
+     * 2. End Message: If every page was shown, the method prints a message to indicate the end of the artist list.
      */
     private void showAllArtists() {
 
-        List<String> artists = adminController.getAllArtists();
-
-        for (int i = 0; i < artists.size(); i++) {
-            System.out.println(i + ") " + artists.get(i));
+        if (pageRenderer.render(cursor -> adminController.getArtistsPage(cursor, PageRenderer.PAGE_SIZE))) {
+            System.out.println("Fin de la lista de artistas.");
         }
-
-        System.out.println("Fin de la lista de artistas.");
     }
 
     /**
      * The showAllSongs method is responsible for displaying all songs to the user.
      *
      * The method does the following:
-     * 1. Data Retrieval: The method calls the getAllSongs method of the adminController object to retrieve a list of all songs. This list is stored in the songs variable.
-     * 2. Data Display: The method then enters a for loop to iterate over the songs list. For each song, it prints the index of the song in the list and the string representation of the song.
-     * 3. End Message: After the loop, the method prints a message to indicate the end of the song list.
+     * 1. Data Retrieval and Display: The method passes the getSongsPage method of the adminController object to the page renderer, which retrieves the songs
+     *    a page at a time and prints the index and the string representation of each song, asking the user before showing each following page.
+     * 2. End Message: If every page was shown, the method prints a message to indicate the end of the song list.
      */
     private void showAllSongs() {
 
-
+        if (pageRenderer.render(cursor -> adminController.getSongsPage(cursor, PageRenderer.PAGE_SIZE))) {
+            System.out.println("Fin de la lista de canciones.");
+        }
     }
 
     /**
      * The showAllCustomers method is responsible for displaying all customers to the user.
      *
      * The method does the following:
-     * 1. Data Retrieval: The method calls the getAllCustomers method of the adminController object to retrieve a list of all customers. This list is stored in the customers variable.
-     * 2. Data Display: The method then enters a for loop to iterate over the customers list. For each customer, it prints the index of the customer in the list and the string representation of the customer.
-     * 3. End Message: After the loop, the method prints a message to indicate the end of the customer list.
+     * 1. Data Retrieval and Display: The method passes the getCustomersPage method of the adminController object to the page renderer, which retrieves the customers
+     *    a page at a time and prints the index and the string representation of each customer, asking the user before showing each following page.
+     * 2. End Message: If every page was shown, the method prints a message to indicate the end of the customer list.
      */
     private void showAllCustomers() {
 
+        if (pageRenderer.render(cursor -> adminController.getCustomersPage(cursor, PageRenderer.PAGE_SIZE))) {
+            System.out.println("Fin de la lista de clientes.");
+        }
     }
 
     /**
@@ -196,7 +207,7 @@ public class AdminView {
      * 4. Data Deletion: The method calls the deleteCustomerFromDatabase method of the adminController object, passing the username as a parameter. This operation deletes the customer from the database.
      * 5. Confirmation Message: Finally, the method prints a message to the console to confirm that the customer has been deleted.
      */
-    private void deleteCustomerFromDatabase() {
+    private void deleteCustomerFromDatabase() throws IOException {
 
         System.out.println("Eliminar cliente. Recuerde que esta opción eliminará al cliente y todas sus playlists.");
         System.out.println("Estos son los clientes disponibles:");
@@ -219,7 +230,7 @@ public class AdminView {
      * 3. Data Creation: The method calls the addCustomerToDatabase method of the adminController object, passing the customer details as parameters. This operation creates a new customer in the database.
      * 4. Confirmation Message: Finally, the method prints a message to the console to confirm that the customer has been created.
      */
-    private void addCustomerToDatabase() {
+    private void addCustomerToDatabase() throws AlreadyExistsException, IOException {
 
         System.out.println("Crear cliente.");
 
@@ -254,7 +265,7 @@ public class AdminView {
      * 4. Data Deletion: The method calls the deleteSongFromDatabase method of the adminController object, passing the songId as a parameter. This operation deletes the song from the database.
      * 5. Confirmation Message: Finally, the method prints a message to the console to confirm that the song has been deleted.
      */
-    private void deleteSongFromDatabase()  {
+    private void deleteSongFromDatabase() throws NotFoundException, IOException {
 
         System.out.println("Eliminar canción de la base de datos y las playlists en las que exista.");
         System.out.println("Estas son las canciones disponibles:");
@@ -279,7 +290,7 @@ public class AdminView {
      * 4. Data Creation: The method calls the addSongToDatabase method of the adminController object, passing the song details and the set of artists as parameters. This operation creates a new song in the database.
      * 5. Confirmation Message: Finally, the method prints a message to the console to confirm that the song has been created.
      */
-    private void addSongToDatabase() throws NotFoundException {
+    private void addSongToDatabase() throws NotFoundException, IOException {
 
         System.out.println("Crear canción.");
 
@@ -330,7 +341,7 @@ public class AdminView {
      * 4. Data Deletion: The method calls the deleteArtistFromDatabase method of the adminController object, passing the artistId as a parameter. This operation deletes the artist from the database.
      * 5. Confirmation Message: Finally, the method prints a message to the console to confirm that the artist has been deleted.
      */
-    private void deleteArtistFromDatabase() throws NotFoundException {
+    private void deleteArtistFromDatabase() throws NotFoundException, IOException {
 
         System.out.println("Eliminar artista de la base de datos, las canciones en las que exista y eliminar canciones de las playlists en las que existan esas canciones.");
         System.out.println("Estos son los artistas disponibles:");
@@ -352,7 +363,7 @@ public class AdminView {
      * 2. Input Reading: The method prompts the user to enter the name of the artist they want to create. It reads the user's input from the console and stores it in the name variable.
      * 3. Data Creation: The method calls the addArtistToDatabase method of the adminController object, passing the name as a parameter. This operation creates a new artist in the database.
      */
-    private void addArtistToDatabase() throws AlreadyExistsException {
+    private void addArtistToDatabase() throws AlreadyExistsException, IOException {
         System.out.println("Crear artista.");
         System.out.println("Ingrese el nombre del artista:");
         String name = scanner.nextLine();
@@ -4,9 +4,13 @@ import com.javeriana.controllers.CustomerController;
 import com.javeriana.exceptions.AlreadyExistsException;
 import com.javeriana.exceptions.NotFoundException;
 import com.javeriana.exceptions.WrongLogInException;
+import com.javeriana.models.Session;
+import java.io.IOException;
+import java.util.HashSet;
 import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
 
 public class CustomerView {
 
@@ -24,6 +28,16 @@ public class CustomerView {
      */
     private final Scanner scanner;
 
+    /**
+     * The renderer used to print the listings of songs and artists a page at a time.
+     */
+    private final PageRenderer pageRenderer;
+
+    /**
+     * The session of the customer that is using the view, or null when no customer is logged in.
+     */
+    private Session session;
+
     /**
      * The constructor for the CustomerView class.
      *
@@ -37,13 +51,14 @@ public class CustomerView {
     public CustomerView(CustomerController customerController, Scanner scanner) {
         this.customerController = customerController;
         this.scanner = scanner;
+        this.pageRenderer = new PageRenderer(scanner);
     }
 
     public void showView() throws WrongLogInException {
 
-        boolean customerLogged = logIn();
+        session = logIn();
 
-        if (!customerLogged) {
+        if (session == null) {
             throw new WrongLogInException("Usuario o contraseña incorrectos.");
         }
 
@@ -71,25 +86,90 @@ public class CustomerView {
 
                     case 7 -> seeFollowedArtists();
 
+                    case 8 -> searchSongs();
+
+                    case 9 -> filterSongs();
+
                     case 0 -> System.out.println("Volviendo al menú principal.");
 
                     default -> System.out.println("Opción no válida.");
                 }
             } catch (InputMismatchException | NumberFormatException e) {
                 System.out.println("Ingrese un número válido");
+            } catch (WrongLogInException e) {
+                // The session expired or was closed, so the customer has to log in again
+                System.out.println("Error: " + e.getMessage());
+                option = 0;
             } catch (Exception e) {
                 System.out.println("Error: " + e.getMessage());
             }
 
         } while (option != 0);
 
-        customerController.logOut();
+        customerController.logOut(session);
+        session = null;
+
+    }
+
+    private void searchSongs() {
+
+        System.out.println("Buscar canciones.");
+        System.out.println("Ingrese el nombre, álbum o artista de la canción:");
+        String query = scanner.nextLine();
+
+        List<String> songs = customerController.searchSongs(query);
+
+        if (songs.isEmpty()) {
+            List<String> suggestions = customerController.autocompleteSongSearch(query);
+            System.out.println("No se encontraron canciones.");
+            if (!suggestions.isEmpty()) {
+                System.out.println("Quizás quiso decir: " + String.join(", ", suggestions));
+            }
+            return;
+        }
+
+        for (int i = 0; i < songs.size(); i++) {
+            System.out.println(i + ") " + songs.get(i));
+        }
+
+    }
+
+    private void filterSongs() {
+
+        System.out.println("Filtrar canciones por género y duración.");
+        System.out.println("Ingrese los géneros separados por comas, o deje vacío para todos los géneros:");
+        Set<String> genres = new HashSet<>();
+        for (String genre : scanner.nextLine().split(",")) {
+            if (!genre.isBlank()) {
+                genres.add(genre.trim());
+            }
+        }
+
+        System.out.println("Ingrese la duración mínima en segundos:");
+        int minDuration = Integer.parseInt(scanner.nextLine());
+
+        System.out.println("Ingrese la duración máxima en segundos:");
+        int maxDuration = Integer.parseInt(scanner.nextLine());
+
+        int count = customerController.countFilteredSongs(genres, minDuration, maxDuration);
+
+        if (count == 0) {
+            System.out.println("No se encontraron canciones.");
+            return;
+        }
+
+        List<String> songs = customerController.filterSongs(genres, minDuration, maxDuration);
+
+        System.out.println("Se encontraron " + count + " canciones. Mostrando las primeras " + songs.size() + ":");
+        for (int i = 0; i < songs.size(); i++) {
+            System.out.println(i + ") " + songs.get(i));
+        }
 
     }
 
     private void seeFollowedArtists() throws WrongLogInException {
         System.out.println("Artistas seguidos:");
-        List<String> followedArtists = customerController.getFollowedArtists();
+        List<String> followedArtists = customerController.getFollowedArtists(session);
 
         for (int i = 0; i < followedArtists.size(); i++) {
             System.out.println(i + ") " + followedArtists.get(i));
@@ -97,7 +177,7 @@ public class CustomerView {
 
     }
 
-    private void followArtist() throws NotFoundException, AlreadyExistsException {
+    private void followArtist() throws NotFoundException, AlreadyExistsException, WrongLogInException, IOException {
 
         System.out.println("Seguir artista.");
         System.out.println("Estos son los artistas disponibles:");
@@ -106,7 +186,7 @@ public class CustomerView {
         System.out.println("Ingrese el id del artista que desea seguir:");
         String artistId = scanner.nextLine();
 
-        customerController.followArtist(artistId);
+        customerController.followArtist(session, artistId);
 
     }
 
@@ -114,7 +194,7 @@ public class CustomerView {
 
         String playListId = getPlayListId("Ver todas las canciones de una playlist.");
 
-        List<String> songs = customerController.getAllSongsFromPlayList(playListId);
+        List<String> songs = customerController.getAllSongsFromPlayList(session, playListId);
 
         for (int i = 0; i < songs.size(); i++) {
             System.out.println(i + ") " + songs.get(i));
@@ -133,14 +213,14 @@ public class CustomerView {
         return scanner.nextLine();
     }
 
-    private void deleteSongFromPlayList() throws WrongLogInException, NotFoundException {
+    private void deleteSongFromPlayList() throws WrongLogInException, NotFoundException, IOException {
 
         String playListId = getPlayListId("Eliminar canción de una playlist.");
         System.out.println("Ingrese el id de la canción a eliminar:");
         showSongsInPlayList(playListId);
         String songId = scanner.nextLine();
 
-        boolean songWasDeleted = customerController.deleteSongFromPlayList(playListId, songId);
+        boolean songWasDeleted = customerController.deleteSongFromPlayList(session, playListId, songId);
 
         if (songWasDeleted) {
             System.out.println("Canción eliminada de la playlist.");
@@ -150,23 +230,23 @@ public class CustomerView {
 
     }
 
-    private void showSongsInPlayList(String playListId) throws NotFoundException {
+    private void showSongsInPlayList(String playListId) throws NotFoundException, WrongLogInException {
 
-            List<String> songsFromPlayList = customerController.getAllSongsFromPlayList(playListId);
+            List<String> songsFromPlayList = customerController.getAllSongsFromPlayList(session, playListId);
 
             for (int i = 0; i < songsFromPlayList.size(); i++) {
                 System.out.println(i + ") " + songsFromPlayList.get(i));
             }
     }
 
-    private void addNewSongToPlayList() throws WrongLogInException, NotFoundException {
+    private void addNewSongToPlayList() throws WrongLogInException, NotFoundException, IOException {
 
         System.out.println("Agregar canción a una playlist.");
 
         String playListId = getPlayListId("Elija una playlist.");
         String songId = getSongId("Elige una canción para agregar a la playlist.");
 
-        customerController.addSongToPlayList(playListId, songId);
+        customerController.addSongToPlayList(session, playListId, songId);
 
 
     }
@@ -181,28 +261,19 @@ public class CustomerView {
     private void showAllArtists() {
 
         System.out.println("Artistas disponibles:");
-        List<String> artists = customerController.getAllArtists();
-
-        for (int i = 0; i < artists.size(); i++) {
-            System.out.println(i + ") " + artists.get(i));
-        }
+        pageRenderer.render(cursor -> customerController.getArtistsPage(cursor, PageRenderer.PAGE_SIZE));
 
     }
     private void showAllSongs() {
 
         System.out.println("Canciones disponibles:");
-        List<String> songs = customerController.getAllSongs();
-
-        for (int i = 0; i < songs.size(); i++) {
-            System.out.println(i + ") " + songs.get(i));
-        }
-
+        pageRenderer.render(cursor -> customerController.getSongsPage(cursor, PageRenderer.PAGE_SIZE));
 
     }
 
-    private void showMyPlayLists() {
+    private void showMyPlayLists() throws WrongLogInException {
 
-        List<String> playLists = customerController.getLoggedCustomerPlaylists();
+        List<String> playLists = customerController.getLoggedCustomerPlaylists(session);
         System.out.println("Mis playlist:");
 
         //Prints playlist with index
@@ -212,12 +283,12 @@ public class CustomerView {
 
     }
 
-    private void addNewPlayList()  {
+    private void addNewPlayList() throws WrongLogInException, NotFoundException, IOException {
         System.out.println("Creando una nueva playlist.");
         System.out.println("Ingrese el nombre de la playlist:");
         String playListName = scanner.nextLine();
 
-        customerController.addNewPlayList(playListName);
+        customerController.addNewPlayList(session, playListName);
     }
 
 
@@ -231,6 +302,9 @@ public class CustomerView {
             4. Eliminar canción de una playlist.
             5. Ver todas las canciones de una playlist.
             6. Seguir artista.
+            7. Ver artistas seguidos.
+            8. Buscar canciones.
+            9. Filtrar canciones por género y duración.
             
             0. Volver al menú principal.
             """;
@@ -239,7 +313,7 @@ public class CustomerView {
 
     }
 
-    public boolean logIn() {
+    public Session logIn() {
         System.out.println("Iniciar sesión");
         System.out.println("Ingrese su nombre de usuario:");
         String username = scanner.nextLine();
@@ -132,7 +132,7 @@ public class FileManagementView {
                 defaultCustomersFileName
 
                 );
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             System.out.println("Error al cargar los archivos");
             System.out.println(e.getMessage());
         }
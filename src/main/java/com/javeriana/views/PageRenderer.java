@@ -0,0 +1,70 @@
+package com.javeriana.views;
+
+import com.javeriana.models.Page;
+import java.util.Scanner;
+import java.util.function.Function;
+
+/**
+ * The PageRenderer class prints long listings, such as all the songs of the catalog, to the console a page at a time.
+ *
+ * The class does the following:
+ * 1. Requests one page of the listing at a time from a controller, passing the cursor of the previous page, so only the entities shown
+ *    are read and converted to strings.
+ * 2. Writes each page into a buffer and prints it with a single call, instead of one call per line, numbering the entities from 0
+ *    across pages.
+ * 3. After each page that is not the last one, asks the user whether to show the next page, and stops when the user enters 0.
+ *
+ * It is used by the views, which share the scanner of the application with it.
+ */
+final class PageRenderer {
+
+    /**
+     * The number of entities of each page.
+     */
+    static final int PAGE_SIZE = 20;
+
+    private final Scanner scanner;
+
+    /**
+     * Constructs a PageRenderer that reads the answers of the user from the given scanner.
+     *
+     * @param scanner The scanner of the application.
+     */
+    PageRenderer(Scanner scanner) {
+        this.scanner = scanner;
+    }
+
+    /**
+     * Prints a listing page by page until its last page is printed or the user stops it.
+     *
+     * @param pages The function that returns the page of the listing for a cursor, or for null for the first page.
+     * @return true if the whole listing was printed, false if the user stopped it before its last page.
+     */
+    boolean render(Function<String, Page<String>> pages) {
+
+        StringBuilder buffer = new StringBuilder();
+        String cursor = null;
+        int number = 0;
+
+        while (true) {
+            Page<String> page = pages.apply(cursor);
+
+            buffer.setLength(0);
+            for (String item : page.items()) {
+                buffer.append(number++).append(") ").append(item).append(System.lineSeparator());
+            }
+            System.out.print(buffer);
+            System.out.flush();
+
+            if (!page.hasNext()) {
+                return true;
+            }
+
+            System.out.println("Presione Enter para ver más, o ingrese 0 para dejar de listar:");
+            if (scanner.nextLine().trim().equals("0")) {
+                return false;
+            }
+            cursor = page.nextCursor();
+        }
+    }
+}
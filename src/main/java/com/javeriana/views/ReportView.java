@@ -2,7 +2,6 @@ package com.javeriana.views;
 
 import com.javeriana.controllers.ReportController;
 import java.util.InputMismatchException;
-import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 
@@ -10,10 +9,12 @@ public class ReportView {
 
     private final ReportController reportController;
     private final Scanner scanner;
+    private final PageRenderer pageRenderer;
 
     public ReportView(ReportController reportController, Scanner scanner) {
         this.reportController = reportController;
         this.scanner = scanner;
+        this.pageRenderer = new PageRenderer(scanner);
     }
 
     public void showView() {
@@ -72,11 +73,7 @@ public class ReportView {
 
     private void showAllArtists() {
         System.out.println("Lista de artistas");
-        List<String> artists = reportController.getAllArtists();
-
-        for (String artist : artists) {
-            System.out.println(artist);
-        }
+        pageRenderer.render(cursor -> reportController.getArtistsPage(cursor, PageRenderer.PAGE_SIZE));
     }
 
     private void showMostAddedSong() {
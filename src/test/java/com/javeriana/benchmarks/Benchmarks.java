@@ -0,0 +1,116 @@
+package com.javeriana.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The Benchmarks class holds what the benchmarks of the application share: their sizes, their measures and their synthetic data.
+ *
+ * The benchmarks are JUnit tests tagged "benchmark", which the test task skips. They run with "gradle benchmark". Their sizes are read
+ * from system properties named "benchmark." followed by the name of the size, with defaults that fit a small machine, so a benchmark
+ * can be run at the sizes of a large catalog where there is memory for it:
+ *     gradle benchmark --tests '*LoginThroughputBenchmark' -Dbenchmark.customers=1000000,10000000,50000000 -Dbenchmark.heap=24g
+ * Each benchmark prints its results, and checks that the code it measures gives the same results as the code it replaced.
+ */
+final class Benchmarks {
+
+    /**
+     * The tag of the benchmarks, which the test task skips and the benchmark task runs.
+     */
+    static final String TAG = "benchmark";
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Returns the sizes of a benchmark, read from the system property "benchmark.{name}" as a comma-separated list.
+     *
+     * @param name The name of the size.
+     * @param defaults The sizes used when the property is not set.
+     * @return The sizes.
+     */
+    static int[] sizes(String name, int... defaults) {
+
+        String value = System.getProperty("benchmark." + name);
+        if (value == null || value.isBlank()) {
+            return defaults;
+        }
+
+        return Arrays.stream(value.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * Returns a single size of a benchmark, read from the system property "benchmark.{name}".
+     *
+     * @param name The name of the size.
+     * @param defaultSize The size used when the property is not set.
+     * @return The size.
+     */
+    static int size(String name, int defaultSize) {
+        return sizes(name, defaultSize)[0];
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far.
+     *
+     * @return The allocated bytes.
+     */
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Returns the bytes of heap in use after collecting the garbage, which are the bytes retained by the objects still reachable.
+     *
+     * @return The used heap.
+     */
+    static long usedHeap() {
+
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+
+        return used;
+    }
+
+    /**
+     * Prints a line of the results of a benchmark.
+     *
+     * @param format The format of the line, as in String.format.
+     * @param arguments The arguments of the format.
+     */
+    static void report(String format, Object... arguments) {
+        System.out.printf(format + "%n", arguments);
+    }
+
+    /**
+     * Returns the given amount of bytes in megabytes.
+     *
+     * @param bytes The amount of bytes.
+     * @return The megabytes.
+     */
+    static double megabytes(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    /**
+     * Returns a random word of lowercase letters.
+     *
+     * @param random The source of randomness.
+     * @param length The length of the word.
+     * @return The word.
+     */
+    static String randomWord(Random random, int length) {
+
+        char[] letters = new char[length];
+        for (int i = 0; i < length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+
+        return new String(letters);
+    }
+}
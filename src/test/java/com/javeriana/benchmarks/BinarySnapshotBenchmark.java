@@ -0,0 +1,133 @@
+package com.javeriana.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.javeriana.models.Artist;
+import com.javeriana.models.Song;
+import com.javeriana.services.FileManagementService;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Measures the size of the .spotify files of the artists and the songs, and the time taken to load them, in the binary snapshot format
+ * against Java serialization, which the files used before it.
+ *
+ * The binary files also hold the index that lets the songs be served from the mapped file: the offset of every record and the sorted IDs,
+ * 28 bytes per record, which is reported apart. The number of songs is set with -Dbenchmark.songs. There is one artist for every ten songs.
+ */
+@Tag(Benchmarks.TAG)
+class BinarySnapshotBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    /**
+     * The bytes of the index of a binary file for each record, and for the trailer that locates it.
+     */
+    private static final int INDEX_BYTES_PER_RECORD = Long.BYTES + 2 * Long.BYTES + Integer.BYTES;
+    private static final int INDEX_TRAILER_BYTES = Long.BYTES + Integer.BYTES;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void binarySnapshotLoadsTheSameSongsAsSerialization() throws Exception {
+
+        int songCount = Benchmarks.size("songs", 200_000);
+        Random random = new Random(6);
+
+        List<Artist> artists = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, songCount / 10); i++) {
+            artists.add(new Artist(UUID.randomUUID(), Benchmarks.randomWord(random, 10)));
+        }
+        List<Song> songs = new ArrayList<>(songCount);
+        for (int i = 0; i < songCount; i++) {
+            songs.add(new Song(UUID.randomUUID(), Benchmarks.randomWord(random, 12), List.of(artists.get(random.nextInt(artists.size()))),
+                "genero" + random.nextInt(300), 60 + random.nextInt(600), "album" + random.nextInt(50_000)));
+        }
+
+        FileManagementService fileManagementService = new FileManagementService();
+        String path = directory.toString() + "/";
+        fileManagementService.exportArtistsToBinary(path, "artists.spotify", artists);
+        fileManagementService.exportSongsToBinary(path, "songs.spotify", songs);
+
+        Path serializedFile = directory.resolve("catalog.ser");
+        try (ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(serializedFile)))) {
+            output.writeObject(artists);
+            output.writeObject(songs);
+        }
+
+        long binaryNanos = Long.MAX_VALUE;
+        long serializedNanos = Long.MAX_VALUE;
+        List<Song> binarySongs = null;
+        List<Song> serializedSongs = null;
+
+        // Each load starts from a collected heap, so it does not pay for the garbage of the one before
+        for (int round = 0; round < ROUNDS; round++) {
+
+            binarySongs = null;
+            Benchmarks.usedHeap();
+            long start = System.nanoTime();
+            List<Artist> loadedArtists = fileManagementService.importArtistsFromBinary(path, "artists.spotify");
+            Map<UUID, Artist> artistsById = new HashMap<>();
+            for (Artist artist : loadedArtists) {
+                artistsById.put(artist.getId(), artist);
+            }
+            binarySongs = fileManagementService.importSongsFromBinary(path, "songs.spotify", artistsById);
+            binaryNanos = Math.min(binaryNanos, System.nanoTime() - start);
+
+            serializedSongs = null;
+            Benchmarks.usedHeap();
+            start = System.nanoTime();
+            serializedSongs = readSerializedSongs(serializedFile);
+            serializedNanos = Math.min(serializedNanos, System.nanoTime() - start);
+        }
+
+        long binaryBytes = Files.size(directory.resolve("artists.spotify")) + Files.size(directory.resolve("songs.spotify"));
+        long serializedBytes = Files.size(serializedFile);
+        long indexBytes = (long) (artists.size() + songs.size()) * INDEX_BYTES_PER_RECORD + 2L * INDEX_TRAILER_BYTES;
+
+        Benchmarks.report("Loading %,d artists and %,d songs (serialization / binary):", artists.size(), songs.size());
+        Benchmarks.report("  load time ms  %,d / %,d", serializedNanos / 1_000_000, binaryNanos / 1_000_000);
+        Benchmarks.report("  file size MB  %.1f / %.1f, of which %.1f are the index", Benchmarks.megabytes(serializedBytes),
+            Benchmarks.megabytes(binaryBytes), Benchmarks.megabytes(indexBytes));
+
+        assertEquals(describe(songs), describe(binarySongs));
+        assertEquals(describe(songs), describe(serializedSongs));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Song> readSerializedSongs(Path file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            input.readObject();
+            return (List<Song>) input.readObject();
+        }
+    }
+
+    /**
+     * Describes the songs by the values the formats store, so songs loaded in different ways can be compared.
+     */
+    private static List<String> describe(List<Song> songs) {
+
+        List<String> descriptions = new ArrayList<>(songs.size());
+        for (Song song : songs) {
+            descriptions.add(song.getId() + " " + song.getName() + " " + song.getArtists().get(0).getId() + " " + song.getGenre()
+                + " " + song.getDurationInSeconds() + " " + song.getAlbum());
+        }
+
+        return descriptions;
+    }
+}
@@ -0,0 +1,121 @@
+package com.javeriana.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.javeriana.models.Artist;
+import com.javeriana.models.Song;
+import com.javeriana.services.FileManagementService;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Measures the heap retained by the songs of a CSV import, whose genres and albums are read through a StringDictionary, against the same
+ * songs with a String of their own for each genre and album, as the import made them before the dictionary.
+ *
+ * The number of songs is set with -Dbenchmark.songs, and the number of distinct genres and albums with -Dbenchmark.genres and
+ * -Dbenchmark.albums. The heap is set with -Dbenchmark.heap.
+ */
+@Tag(Benchmarks.TAG)
+class DictionaryFootprintBenchmark {
+
+    private static final String SEPARATOR = ";";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void importSharesOneStringPerGenreAndAlbum() throws Exception {
+
+        int songCount = Benchmarks.size("songs", 1_000_000);
+        int genreCount = Benchmarks.size("genres", 300);
+        int albumCount = Benchmarks.size("albums", 50_000);
+        String path = directory.toString() + "/";
+
+        writeCatalog(path, songCount, genreCount, albumCount, new Random(11));
+
+        long before = Benchmarks.usedHeap();
+
+        FileManagementService.ImportedFiles imported = new FileManagementService().importCSVFilesConcurrently(path, SEPARATOR,
+            "artists.csv", "songs.csv", "playlists.csv", "customers.csv");
+        long dictionaryBytes = Benchmarks.usedHeap() - before;
+        int dictionaryStrings = countAttributeStrings(imported.songs());
+
+        // The same songs with their own genre and album Strings, with the imported ones no longer reachable
+        List<Artist> artists = imported.artists();
+        List<Song> songs = withOwnAttributeStrings(imported.songs());
+        imported = null;
+        long ownStringsBytes = Benchmarks.usedHeap() - before;
+        int ownStrings = countAttributeStrings(songs);
+
+        Benchmarks.report("Heap retained by %,d imported songs with %,d genres and %,d albums (own strings / dictionary):",
+            songs.size(), genreCount, albumCount);
+        Benchmarks.report("  retained MB             %.0f / %.0f", Benchmarks.megabytes(ownStringsBytes), Benchmarks.megabytes(dictionaryBytes));
+        Benchmarks.report("  genre and album Strings %,d / %,d", ownStrings, dictionaryStrings);
+
+        assertEquals(songCount, songs.size());
+        assertTrue(dictionaryStrings <= genreCount + albumCount);
+        assertTrue(dictionaryBytes < ownStringsBytes);
+        assertTrue(artists.size() > 0);
+    }
+
+    /**
+     * Writes the four CSV files of a catalog with the given songs and one artist for every ten songs. Playlists and customers are empty.
+     */
+    private static void writeCatalog(String path, int songCount, int genreCount, int albumCount, Random random) throws Exception {
+
+        List<Artist> artists = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, songCount / 10); i++) {
+            artists.add(new Artist(UUID.randomUUID(), Benchmarks.randomWord(random, 10)));
+        }
+        List<Song> songs = new ArrayList<>(songCount);
+        for (int i = 0; i < songCount; i++) {
+            songs.add(new Song(UUID.randomUUID(), Benchmarks.randomWord(random, 12), List.of(artists.get(random.nextInt(artists.size()))),
+                "genero" + random.nextInt(genreCount), 60 + random.nextInt(600), "album" + random.nextInt(albumCount)));
+        }
+
+        FileManagementService fileManagementService = new FileManagementService();
+        fileManagementService.exportArtistsToCSV(path, SEPARATOR, "artists.csv", artists);
+        fileManagementService.exportSongsToCSV(path, SEPARATOR, "songs.csv", songs);
+        fileManagementService.exportPlayListsToCSV(path, SEPARATOR, "playlists.csv", List.of());
+        fileManagementService.exportCustomersToCSV(path, SEPARATOR, "customers.csv", List.of());
+    }
+
+    /**
+     * Returns copies of the songs with a new String for the genre and the album of each one. Each String gets its own characters, as a
+     * field read from a line did, since new String(String) would share the characters of the original.
+     */
+    private static List<Song> withOwnAttributeStrings(List<Song> songs) {
+
+        List<Song> copies = new ArrayList<>(songs.size());
+        for (Song song : songs) {
+            copies.add(new Song(song.getId(), song.getName(), song.getArtists(), new String(song.getGenre().toCharArray()),
+                song.getDurationInSeconds(), new String(song.getAlbum().toCharArray())));
+        }
+
+        return copies;
+    }
+
+    /**
+     * Counts the distinct String objects, not values, used as genres and albums by the songs.
+     */
+    private static int countAttributeStrings(List<Song> songs) {
+
+        Set<String> strings = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Song song : songs) {
+            strings.add(song.getGenre());
+            strings.add(song.getAlbum());
+        }
+
+        return strings.size();
+    }
+}
@@ -0,0 +1,91 @@
+package com.javeriana.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.javeriana.models.Customer;
+import com.javeriana.models.Session;
+import com.javeriana.services.CustomerService;
+import com.javeriana.services.SessionRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures the logins per second of the CustomerService, which finds the customer through its index of customers by username, against
+ * the search over the list of customers that logIn made before the index.
+ *
+ * The numbers of customers are set with -Dbenchmark.customers as a comma-separated list, such as 1000000,10000000,50000000, the number of
+ * logins measured for each one with -Dbenchmark.logins, and the number of searches over the list with -Dbenchmark.scans. Each customer
+ * takes about 350 bytes of heap, so large numbers need -Dbenchmark.heap, such as 24g for 50M customers.
+ */
+@Tag(Benchmarks.TAG)
+class LoginThroughputBenchmark {
+
+    private static final String PASSWORD = "Clave#123";
+
+    @Test
+    void loginThroughputAtEachNumberOfCustomers() {
+
+        int loginCount = Benchmarks.size("logins", 1_000_000);
+        int scanCount = Benchmarks.size("scans", 20);
+
+        Benchmarks.report("Logins per second (search over the list / index):");
+
+        for (int customerCount : Benchmarks.sizes("customers", 100_000, 1_000_000)) {
+
+            CustomerService customerService = new CustomerService(new SessionRegistry());
+            List<Customer> customers = new ArrayList<>(customerCount);
+            for (int i = 0; i < customerCount; i++) {
+                customers.add(new Customer(username(i), PASSWORD, "Nombre", "Apellido", 20));
+            }
+            customerService.loadCustomers(customers);
+            customers = null;
+
+            Random random = new Random(16);
+            String[] usernames = new String[loginCount];
+            for (int i = 0; i < loginCount; i++) {
+                usernames[i] = username(random.nextInt(customerCount));
+            }
+
+            // The first pass warms up the lookup, and the second one is measured
+            long nanos = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                long start = System.nanoTime();
+                for (String username : usernames) {
+                    Session session = customerService.logIn(username, PASSWORD);
+                    assertNotNull(session);
+                    customerService.logOut(session);
+                }
+                nanos = System.nanoTime() - start;
+            }
+
+            List<Customer> list = customerService.getCustomers();
+            long scanStart = System.nanoTime();
+            for (int i = 0; i < scanCount; i++) {
+                assertEquals(usernames[i], searchOverList(list, usernames[i]).getUsername());
+            }
+            long scanNanos = System.nanoTime() - scanStart;
+
+            Benchmarks.report("  %,13d customers  %,.0f / %,.0f", customerCount, scanCount * 1e9 / scanNanos, loginCount * 1e9 / nanos);
+        }
+    }
+
+    /**
+     * Searches the customer with the given username over the list of customers, as searchCustomerByUsername did before the index.
+     */
+    private static Customer searchOverList(List<Customer> customers, String username) {
+        for (Customer customer : customers) {
+            if (customer.getUsername().equals(username)) {
+                return customer;
+            }
+        }
+        return null;
+    }
+
+    private static String username(int number) {
+        return "usuario_" + number;
+    }
+}
@@ -0,0 +1,126 @@
+package com.javeriana.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.javeriana.models.Artist;
+import com.javeriana.models.Song;
+import com.javeriana.services.SongService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures the time taken to count the songs of some genres within a range of durations with the bitmap index of the SongService,
+ * against a stream filter over the songs list.
+ *
+ * The queries are run again after a third of the songs is deleted, and both ways must give the same songs every time.
+ * The number of songs is set with -Dbenchmark.songs.
+ */
+@Tag(Benchmarks.TAG)
+class SongFilterBenchmark {
+
+    /**
+     * The genres of the songs, each one given to the share of the songs that follows it, out of 10000.
+     */
+    private static final String[] GENRES = {"Pop", "Rock", "Jazz", "Blues", "Reggae", "Salsa", "Electronic", "Classical"};
+    private static final int[] GENRE_SHARES = {3000, 2500, 1000, 800, 1000, 800, 899, 1};
+
+    private static final int BITMAP_ROUNDS = 50;
+    private static final int STREAM_ROUNDS = 5;
+
+    private record Query(String description, Set<String> genres, int minDurationInSeconds, int maxDurationInSeconds) {
+    }
+
+    private static final List<Query> QUERIES = List.of(
+        new Query("Pop, 180-240 s", Set.of("Pop"), 180, 240),
+        new Query("Jazz or Blues, 300-600 s", Set.of("Jazz", "Blues"), 300, 600),
+        new Query("Classical, 180-240 s", Set.of("Classical"), 180, 240),
+        new Query("any genre, 200-201 s", Set.of(), 200, 201));
+
+    @Test
+    void bitmapFilterMatchesStreamFilter() throws Exception {
+
+        int songCount = Benchmarks.size("songs", 2_000_000);
+        Random random = new Random(20);
+
+        List<Artist> artists = List.of(new Artist(UUID.randomUUID(), "artista"));
+        List<Song> songs = new ArrayList<>(songCount);
+        for (int i = 0; i < songCount; i++) {
+            songs.add(new Song(UUID.randomUUID(), "cancion" + i, artists, randomGenre(random), 60 + random.nextInt(600), "album"));
+        }
+
+        SongService songService = new SongService();
+        songService.loadSongs(songs);
+
+        long start = System.nanoTime();
+        songService.countSongs(Set.of(), 0, 0);
+        Benchmarks.report("Building the index for %,d songs took %,d ms", songCount, (System.nanoTime() - start) / 1_000_000);
+
+        runQueries(songService);
+
+        List<String> deletedIds = new ArrayList<>();
+        for (int i = 0; i < songs.size(); i += 3) {
+            deletedIds.add(songs.get(i).getId().toString());
+        }
+        songService.deleteSongs(deletedIds);
+        Benchmarks.report("After deleting %,d songs:", deletedIds.size());
+
+        runQueries(songService);
+    }
+
+    /**
+     * Runs every query with the bitmap index and with a stream filter, checks that both give the same songs, and prints their times.
+     */
+    private static void runQueries(SongService songService) {
+
+        List<Song> songs = songService.getSongs();
+        Benchmarks.report("Microseconds per count (bitmap / stream):");
+
+        for (Query query : QUERIES) {
+
+            long streamCount = 0;
+            long streamNanos = Long.MAX_VALUE;
+            for (int round = 0; round < STREAM_ROUNDS; round++) {
+                long start = System.nanoTime();
+                streamCount = songs.stream().filter(song -> matches(query, song)).count();
+                streamNanos = Math.min(streamNanos, System.nanoTime() - start);
+            }
+
+            int bitmapCount = 0;
+            long bitmapNanos = Long.MAX_VALUE;
+            for (int round = 0; round < BITMAP_ROUNDS; round++) {
+                long start = System.nanoTime();
+                bitmapCount = songService.countSongs(query.genres(), query.minDurationInSeconds(), query.maxDurationInSeconds());
+                bitmapNanos = Math.min(bitmapNanos, System.nanoTime() - start);
+            }
+
+            Benchmarks.report("  %-26s %,9d matches  %,7d / %,d", query.description(), bitmapCount, bitmapNanos / 1_000, streamNanos / 1_000);
+
+            assertEquals(streamCount, bitmapCount);
+            assertEquals(
+                songs.stream().filter(song -> matches(query, song)).limit(100).toList(),
+                songService.filterSongs(query.genres(), query.minDurationInSeconds(), query.maxDurationInSeconds(), 100));
+        }
+    }
+
+    private static boolean matches(Query query, Song song) {
+        return (query.genres().isEmpty() || query.genres().contains(song.getGenre()))
+            && song.getDurationInSeconds() >= query.minDurationInSeconds()
+            && song.getDurationInSeconds() <= query.maxDurationInSeconds();
+    }
+
+    private static String randomGenre(Random random) {
+        int share = random.nextInt(10_000);
+        for (int i = 0; i < GENRES.length; i++) {
+            share -= GENRE_SHARES[i];
+            if (share < 0) {
+                return GENRES[i];
+            }
+        }
+        return GENRES[GENRES.length - 1];
+    }
+}
@@ -0,0 +1,143 @@
+package com.javeriana.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.javeriana.utils.CSVTokenizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures the bytes allocated and the time taken to parse the lines of a songs CSV file with the CSVTokenizer, against String.split
+ * and the split and replace chain the parsers used before it.
+ *
+ * Both parsers read the same values from each line: the ID, the name, the artist IDs, the genre, the duration and the album.
+ * The number of lines is set with -Dbenchmark.lines.
+ */
+@Tag(Benchmarks.TAG)
+class TokenizerAllocationBenchmark {
+
+    private static final String SEPARATOR = ";";
+    private static final int ROUNDS = 5;
+
+    @Test
+    void tokenizerAllocatesLessThanSplit() {
+
+        List<String> lines = songLines(Benchmarks.size("lines", 200_000), new Random(3));
+        CSVTokenizer tokenizer = new CSVTokenizer(SEPARATOR);
+
+        // The first rounds warm up both parsers, and each one is measured by its fastest round
+        long splitBytes = Long.MAX_VALUE;
+        long splitNanos = Long.MAX_VALUE;
+        long tokenizerBytes = Long.MAX_VALUE;
+        long tokenizerNanos = Long.MAX_VALUE;
+        long splitChecksum = 0;
+        long tokenizerChecksum = 0;
+
+        for (int round = 0; round < ROUNDS; round++) {
+
+            long bytes = Benchmarks.allocatedBytes();
+            long start = System.nanoTime();
+            splitChecksum = parseWithSplit(lines);
+            splitNanos = Math.min(splitNanos, System.nanoTime() - start);
+            splitBytes = Math.min(splitBytes, Benchmarks.allocatedBytes() - bytes);
+
+            bytes = Benchmarks.allocatedBytes();
+            start = System.nanoTime();
+            tokenizerChecksum = parseWithTokenizer(lines, tokenizer);
+            tokenizerNanos = Math.min(tokenizerNanos, System.nanoTime() - start);
+            tokenizerBytes = Math.min(tokenizerBytes, Benchmarks.allocatedBytes() - bytes);
+        }
+
+        Benchmarks.report("Parsing %,d song lines (split / tokenizer):", lines.size());
+        Benchmarks.report("  bytes allocated per line  %,d / %,d", splitBytes / lines.size(), tokenizerBytes / lines.size());
+        Benchmarks.report("  nanoseconds per line      %,d / %,d", splitNanos / lines.size(), tokenizerNanos / lines.size());
+
+        assertEquals(splitChecksum, tokenizerChecksum);
+        assertTrue(tokenizerBytes < splitBytes);
+    }
+
+    /**
+     * Parses the lines the way the parsers did before the tokenizer: String.split for the fields, and split and replace for the IDs.
+     */
+    private static long parseWithSplit(List<String> lines) {
+
+        long checksum = 0;
+        for (String line : lines) {
+            String[] data = line.split(SEPARATOR);
+            UUID id = UUID.fromString(data[0]);
+            String name = data[1];
+
+            List<UUID> artistIds = new ArrayList<>();
+            for (String artistId : data[2].split(",")) {
+                artistIds.add(UUID.fromString(artistId.replace("{", "").replace("}", "")));
+            }
+
+            String genre = data[3];
+            int durationInSeconds = Integer.parseInt(data[4]);
+            String album = data[5];
+
+            checksum += checksum(id, name, artistIds, genre, durationInSeconds, album);
+        }
+
+        return checksum;
+    }
+
+    /**
+     * Parses the lines the way FileManagementService.parseSong does, with one tokenizer reused for every line.
+     */
+    private static long parseWithTokenizer(List<String> lines, CSVTokenizer tokenizer) {
+
+        long checksum = 0;
+        for (String line : lines) {
+            tokenizer.reset(line);
+            UUID id = tokenizer.expectField().fieldAsUUID();
+            String name = tokenizer.expectField().fieldAsString();
+
+            List<UUID> artistIds = new ArrayList<>();
+            tokenizer.expectField().beginList();
+            while (tokenizer.nextListItem()) {
+                artistIds.add(tokenizer.itemAsUUID());
+            }
+
+            String genre = tokenizer.expectField().fieldAsString();
+            int durationInSeconds = tokenizer.expectField().fieldAsInt();
+            String album = tokenizer.expectField().fieldAsString();
+
+            checksum += checksum(id, name, artistIds, genre, durationInSeconds, album);
+        }
+
+        return checksum;
+    }
+
+    private static long checksum(UUID id, String name, List<UUID> artistIds, String genre, int durationInSeconds, String album) {
+        return 31L * id.hashCode() + name.hashCode() + artistIds.hashCode() + genre.hashCode() + durationInSeconds + album.hashCode();
+    }
+
+    /**
+     * Returns lines in the format of the songs CSV file: SongId;SongName;{ArtistId1,ArtistId2,...};Genre;DurationInSeconds;Album
+     */
+    private static List<String> songLines(int count, Random random) {
+
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String artistIds = random.nextBoolean()
+                ? "{" + UUID.randomUUID() + "}"
+                : "{" + UUID.randomUUID() + "," + UUID.randomUUID() + "}";
+
+            lines.add(String.join(SEPARATOR,
+                UUID.randomUUID().toString(),
+                Benchmarks.randomWord(random, 12),
+                artistIds,
+                "genero" + random.nextInt(300),
+                Integer.toString(60 + random.nextInt(600)),
+                "album" + random.nextInt(50_000)));
+        }
+
+        return lines;
+    }
+}
@@ -0,0 +1,390 @@
+package com.javeriana.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.javeriana.exceptions.AlreadyExistsException;
+import com.javeriana.exceptions.NotFoundException;
+import com.javeriana.models.Artist;
+import com.javeriana.models.Customer;
+import com.javeriana.models.Page;
+import com.javeriana.models.PlayList;
+import com.javeriana.models.Session;
+import com.javeriana.models.Song;
+import com.javeriana.services.ArtistService;
+import com.javeriana.services.CascadeDeleteService;
+import com.javeriana.services.CatalogSnapshot;
+import com.javeriana.services.CatalogVersions;
+import com.javeriana.services.CustomerService;
+import com.javeriana.services.FileManagementService;
+import com.javeriana.services.MutationJournal;
+import com.javeriana.services.PlayListService;
+import com.javeriana.services.SessionRegistry;
+import com.javeriana.services.SongService;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs administrators, customers, readers of the catalog and checkpoints at the same time over one application, and checks that:
+ * - every version of the catalog a reader pins is consistent: no song of a deleted artist, no follow of a deleted artist and no
+ *   song of a playlist that was deleted from the catalog;
+ * - the application recovered from the journal and its checkpoints is the same as the one the changes were applied to, so the
+ *   journal recorded every change, in the order they were applied, and no checkpoint split a change.
+ */
+class ConcurrentChangesTest {
+
+    private static final int CUSTOMER_THREADS = 4;
+    private static final int OPERATIONS_PER_THREAD = 250;
+    private static final String PASSWORD = "Clave#123";
+
+    @TempDir
+    Path journalDirectory;
+
+    @Test
+    void concurrentChangesAreConsistentAndRecoveredInTheOrderTheyWereApplied() throws Exception {
+
+        Application application = Application.open(journalDirectory);
+
+        for (int i = 0; i < 10; i++) {
+            application.admin.addArtistToDatabase(randomName(new Random(i)));
+        }
+        for (Artist artist : application.artistService.getArtists()) {
+            application.admin.addSongToDatabase("Canción inicial", "pop", 180, "Álbum", Set.of(artist.getId().toString()));
+        }
+        for (int i = 0; i < CUSTOMER_THREADS; i++) {
+            application.admin.addCustomerToDatabase("cliente_" + i, PASSWORD, "Nombre", "Apellido", 20);
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CUSTOMER_THREADS + 3);
+
+        List<Future<?>> writers = new ArrayList<>();
+        writers.add(executor.submit(wrap(start, () -> runAdministrator(application, new Random(42)))));
+        for (int i = 0; i < CUSTOMER_THREADS; i++) {
+            int customer = i;
+            writers.add(executor.submit(wrap(start, () -> runCustomer(application, "cliente_" + customer, new Random(customer)))));
+        }
+
+        List<Future<?>> background = new ArrayList<>();
+        background.add(executor.submit(wrap(start, () -> {
+            while (running.get()) {
+                checkPinnedVersion(application.versions);
+            }
+        })));
+        background.add(executor.submit(wrap(start, () -> {
+            while (running.get()) {
+                application.files.checkpoint();
+                Thread.sleep(5);
+            }
+        })));
+
+        start.countDown();
+        try {
+            for (Future<?> writer : writers) {
+                writer.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            running.set(false);
+            for (Future<?> task : background) {
+                task.get(1, TimeUnit.MINUTES);
+            }
+            executor.shutdown();
+        }
+
+        String applied = dump(application);
+        application.journal.close();
+
+        Application recovered = Application.open(journalDirectory);
+        try {
+            recovered.files.recover();
+            assertEquals(applied, dump(recovered));
+        } finally {
+            recovered.journal.close();
+        }
+    }
+
+    @Test
+    void deletedCustomerCannotActThroughAReferenceResolvedBefore() throws Exception {
+
+        Application application = Application.open(journalDirectory);
+
+        application.admin.addArtistToDatabase(randomName(new Random(1)));
+        Artist artist = application.artistService.getArtists().get(0);
+        application.admin.addCustomerToDatabase("cliente_0", PASSWORD, "Nombre", "Apellido", 20);
+        Customer customer = application.customerService.searchCustomerByUsername("cliente_0");
+
+        application.admin.deleteCustomerFromDatabase("cliente_0");
+
+        // A controller that resolved the customer before the deletion still holds it
+        assertThrows(NotFoundException.class, () -> application.customerService.followArtist(customer, artist));
+        assertThrows(NotFoundException.class,
+            () -> application.customerService.addNewPlayList(customer, "Lista", application.playListService));
+        assertNull(new SessionRegistry().open(customer));
+        assertNull(application.customer.logIn("cliente_0", PASSWORD));
+        assertTrue(application.playListService.getPlayLists().isEmpty());
+
+        String applied = dump(application);
+        application.journal.close();
+
+        Application recovered = Application.open(journalDirectory);
+        try {
+            recovered.files.recover();
+            assertEquals(applied, dump(recovered));
+        } finally {
+            recovered.journal.close();
+        }
+    }
+
+    /**
+     * Adds artists, songs and customers, and deletes some of them, through the administrator controller.
+     */
+    private static void runAdministrator(Application application, Random random) throws Exception {
+
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+            List<Artist> artists = application.artistService.getArtists();
+            List<Song> songs = application.songService.getSongs();
+
+            try {
+                switch (random.nextInt(6)) {
+                    case 0, 1 -> application.admin.addArtistToDatabase(randomName(random));
+                    case 2 -> {
+                        if (!artists.isEmpty()) {
+                            String artistId = artists.get(random.nextInt(artists.size())).getId().toString();
+                            application.admin.addSongToDatabase("Canción " + i, "rock", 60 + i, "Álbum " + i, Set.of(artistId));
+                        }
+                    }
+                    case 3 -> {
+                        if (!songs.isEmpty()) {
+                            application.admin.deleteSongFromDatabase(songs.get(random.nextInt(songs.size())).getId().toString());
+                        }
+                    }
+                    case 4 -> {
+                        if (artists.size() > 3) {
+                            application.admin.deleteArtistFromDatabase(artists.get(random.nextInt(artists.size())).getId().toString());
+                        }
+                    }
+                    default -> {
+                        String username = "invitado_" + i;
+                        application.admin.addCustomerToDatabase(username, PASSWORD, "Invitado", "Apellido", 30);
+                        if (random.nextBoolean()) {
+                            application.admin.deleteCustomerFromDatabase(username);
+                        }
+                    }
+                }
+            } catch (NotFoundException | AlreadyExistsException e) {
+                // The entity was deleted by another thread after it was chosen, or the random name was too close to an existing one
+            }
+        }
+    }
+
+    /**
+     * Creates playlists, adds and removes songs and follows artists on behalf of a customer, and reads the catalog in between.
+     */
+    private static void runCustomer(Application application, String username, Random random) throws Throwable {
+
+        Session session = application.customer.logIn(username, PASSWORD);
+        assertNotNull(session);
+        Customer customer = application.customerService.getLoggedCustomer(session);
+
+        application.customer.addNewPlayList(session, "Lista de " + username);
+
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+            List<PlayList> playLists = customer.getPlayLists();
+            String playListId = playLists.get(random.nextInt(playLists.size())).getId().toString();
+            List<Song> songs = application.songService.getSongs();
+            List<Artist> artists = application.artistService.getArtists();
+
+            try {
+                switch (random.nextInt(6)) {
+                    case 0 -> application.customer.addNewPlayList(session, "Lista " + i);
+                    case 1, 2 -> {
+                        if (!songs.isEmpty()) {
+                            String songId = songs.get(random.nextInt(songs.size())).getId().toString();
+                            application.customer.addSongToPlayList(session, playListId, songId);
+                        }
+                    }
+                    case 3 -> {
+                        List<Song> songsOfPlayList = playLists.get(0).getSongs();
+                        if (!songsOfPlayList.isEmpty()) {
+                            String songId = songsOfPlayList.get(random.nextInt(songsOfPlayList.size())).getId().toString();
+                            application.customer.deleteSongFromPlayList(session, playLists.get(0).getId().toString(), songId);
+                        }
+                    }
+                    case 4 -> application.customer.followArtist(session, artists.get(random.nextInt(artists.size())).getId().toString());
+                    default -> {
+                        Page<String> page = application.customer.getSongsPage(null, 10);
+                        assertTrue(page.items().size() <= 10);
+                        application.customer.getFollowedArtists(session);
+                        application.customer.getAllSongsFromPlayList(session, playListId);
+                        application.customer.searchSongs("canción");
+                    }
+                }
+            } catch (NotFoundException | AlreadyExistsException e) {
+                // The artist or song was deleted by the administrator after it was chosen, or the artist was already followed
+            }
+        }
+
+        application.customer.logOut(session);
+    }
+
+    /**
+     * Pins the current version of the catalog and checks that it does not refer to anything deleted in it.
+     */
+    private static void checkPinnedVersion(CatalogVersions versions) {
+
+        try (CatalogSnapshot snapshot = versions.pin()) {
+
+            Set<Artist> artists = identitySet(snapshot.getArtists());
+            Set<Song> songs = identitySet(snapshot.getSongs());
+
+            for (Song song : songs) {
+                for (Artist artist : song.getArtists()) {
+                    assertTrue(artists.contains(artist), "Song " + song.getId() + " of a deleted artist at version " + snapshot.getVersion());
+                }
+            }
+
+            for (PlayList playList : snapshot.getPlayLists()) {
+                for (Song song : snapshot.getSongsOf(playList)) {
+                    assertTrue(songs.contains(song), "Deleted song " + song.getId() + " in a playlist at version " + snapshot.getVersion());
+                }
+            }
+
+            for (Customer customer : snapshot.getCustomers()) {
+                for (Artist artist : snapshot.getFollowedArtistsOf(customer)) {
+                    assertTrue(artists.contains(artist), "Follow of deleted artist " + artist.getId() + " at version " + snapshot.getVersion());
+                }
+            }
+        }
+    }
+
+    /**
+     * Describes the whole application by IDs, in a form that does not depend on the identity of the objects.
+     */
+    private static String dump(Application application) {
+
+        StringBuilder dump = new StringBuilder();
+
+        Set<String> artists = new TreeSet<>();
+        for (Artist artist : application.artistService.getArtists()) {
+            artists.add(artist.getId() + " " + artist.getName());
+        }
+        dump.append("artists ").append(artists).append('\n');
+
+        Set<String> songs = new TreeSet<>();
+        for (Song song : application.songService.getSongs()) {
+            songs.add(song.getId() + " " + song.getName() + " " + song.getArtists().get(0).getId());
+        }
+        dump.append("songs ").append(songs).append('\n');
+
+        Set<String> customers = new TreeSet<>();
+        for (Customer customer : application.customerService.getCustomers()) {
+            Set<String> followedArtists = new TreeSet<>();
+            for (Artist artist : customer.getFollowedArtists()) {
+                followedArtists.add(artist.getId().toString());
+            }
+
+            List<String> playLists = new ArrayList<>();
+            for (PlayList playList : customer.getPlayLists()) {
+                playLists.add(playList.getId() + " " + playList.getName() + " " + playList.getSongIds());
+            }
+
+            customers.add(customer.getId() + " " + customer.getUsername() + " follows " + followedArtists + " playlists " + playLists);
+        }
+        dump.append("customers ").append(customers).append('\n');
+
+        return dump.toString();
+    }
+
+    private static <T> Set<T> identitySet(List<T> elements) {
+        Set<T> set = java.util.Collections.newSetFromMap(new java.util.IdentityHashMap<>());
+        set.addAll(elements);
+        return set;
+    }
+
+    /**
+     * Returns a name of ten random letters, which is never similar enough to another one to be taken as a duplicate.
+     */
+    private static String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            name.append((char) ('a' + random.nextInt(26)));
+        }
+        return name.toString();
+    }
+
+    private static Callable<Void> wrap(CountDownLatch start, ThrowingRunnable task) {
+        return () -> {
+            start.await();
+            try {
+                task.run();
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new AssertionError(e);
+            }
+            return null;
+        };
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Throwable;
+    }
+
+    /**
+     * The services and controllers of the application, wired as the Main class does, over a journal in the given directory.
+     */
+    private static final class Application {
+
+        final CatalogVersions versions;
+        final MutationJournal journal;
+        final ArtistService artistService;
+        final SongService songService;
+        final PlayListService playListService;
+        final CustomerService customerService;
+        final AdminController admin;
+        final CustomerController customer;
+        final FileManagementController files;
+
+        private Application(CatalogVersions versions, MutationJournal journal) {
+            this.versions = versions;
+            this.journal = journal;
+            this.artistService = new ArtistService(versions);
+            this.songService = new SongService(versions);
+            this.playListService = new PlayListService(versions);
+            this.customerService = new CustomerService(new SessionRegistry(), versions);
+
+            CascadeDeleteService cascadeDeleteService = new CascadeDeleteService(artistService, songService, playListService,
+                customerService, versions);
+
+            this.admin = new AdminController(artistService, playListService, customerService, songService, cascadeDeleteService, journal);
+            this.customer = new CustomerController(customerService, artistService, playListService, songService, journal);
+            this.files = new FileManagementController(new FileManagementService(), artistService, songService, customerService,
+                playListService, cascadeDeleteService, versions, journal);
+        }
+
+        static Application open(Path journalDirectory) throws IOException {
+            CatalogVersions versions = new CatalogVersions();
+            return new Application(versions, MutationJournal.open(journalDirectory, versions));
+        }
+    }
+}
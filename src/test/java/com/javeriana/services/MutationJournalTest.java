@@ -0,0 +1,143 @@
+package com.javeriana.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Opens journals whose last record was only partly written or was damaged when the application stopped, and checks that the complete
+ * records before it are recovered, that the file is cut after them, and that the records appended after recovery are read back.
+ */
+class MutationJournalTest {
+
+    @TempDir
+    Path journalDirectory;
+
+    @Test
+    void recoversFromATruncatedLastRecord() throws IOException {
+
+        appendEntries(3);
+        long validEnd = Files.size(journalFile());
+        List<MutationJournal.Entry> entries = appendEntries(1);
+        truncate(journalFile(), Files.size(journalFile()) - 3);
+
+        assertRecovers(entries.subList(0, 3), validEnd);
+    }
+
+    @Test
+    void recoversFromACorruptLastRecord() throws IOException {
+
+        appendEntries(3);
+        long validEnd = Files.size(journalFile());
+        List<MutationJournal.Entry> entries = appendEntries(1);
+        flipLastByte(journalFile());
+
+        assertRecovers(entries.subList(0, 3), validEnd);
+    }
+
+    @Test
+    void recoversRecordsLargerThanTheReadBuffer() throws IOException {
+
+        String largeArgument = "a".repeat(200_000);
+        List<MutationJournal.Entry> entries = new ArrayList<>(appendEntries(2));
+
+        try (MutationJournal journal = MutationJournal.open(journalDirectory, new CatalogVersions())) {
+            append(journal, new MutationJournal.Entry(MutationJournal.Operation.ADD_ARTIST, List.of("grande", largeArgument)));
+        }
+        entries.add(new MutationJournal.Entry(MutationJournal.Operation.ADD_ARTIST, List.of("grande", largeArgument)));
+
+        try (MutationJournal journal = MutationJournal.open(journalDirectory, new CatalogVersions())) {
+            assertEquals(entries, journal.getRecoveredEntries());
+        }
+    }
+
+    @Test
+    void deletesSnapshotsOfOtherGenerationsWhenOpened() throws IOException {
+
+        Path staleSnapshot = journalDirectory.resolve("snapshot-3");
+        Files.createDirectories(staleSnapshot.resolve("nested"));
+        Files.writeString(staleSnapshot.resolve("nested").resolve("artists.spotify"), "viejo");
+        Path otherDirectory = Files.createDirectories(journalDirectory.resolve("snapshot-notes"));
+
+        MutationJournal.open(journalDirectory, new CatalogVersions()).close();
+
+        assertFalse(Files.exists(staleSnapshot));
+        assertTrue(Files.exists(otherDirectory));
+    }
+
+    /**
+     * Reopens the journal, checks that it recovers the given entries and was cut at the given size, and that a record appended after
+     * recovery is read back after them.
+     */
+    private void assertRecovers(List<MutationJournal.Entry> expected, long validEnd) throws IOException {
+
+        MutationJournal.Entry appended = new MutationJournal.Entry(MutationJournal.Operation.DELETE_ARTIST, List.of("despues"));
+
+        try (MutationJournal journal = MutationJournal.open(journalDirectory, new CatalogVersions())) {
+            assertEquals(expected, journal.getRecoveredEntries());
+            assertEquals(validEnd, Files.size(journalFile()));
+            append(journal, appended);
+        }
+
+        List<MutationJournal.Entry> recovered = new ArrayList<>(expected);
+        recovered.add(appended);
+        try (MutationJournal journal = MutationJournal.open(journalDirectory, new CatalogVersions())) {
+            assertEquals(recovered, journal.getRecoveredEntries());
+        }
+    }
+
+    /**
+     * Appends the given number of records to the journal and returns every record of the journal, in the order they were appended.
+     */
+    private List<MutationJournal.Entry> appendEntries(int count) throws IOException {
+
+        List<MutationJournal.Entry> entries = new ArrayList<>();
+        try (MutationJournal journal = MutationJournal.open(journalDirectory, new CatalogVersions())) {
+            entries.addAll(journal.getRecoveredEntries());
+            int first = entries.size();
+            for (int i = first; i < first + count; i++) {
+                MutationJournal.Entry entry = new MutationJournal.Entry(MutationJournal.Operation.ADD_ARTIST, List.of("id" + i, "artista" + i));
+                append(journal, entry);
+                entries.add(entry);
+            }
+        }
+
+        return entries;
+    }
+
+    private static void append(MutationJournal journal, MutationJournal.Entry entry) throws IOException {
+        try (MutationJournal.Ticket ticket = journal.begin()) {
+            ticket.append(entry.operation(), entry.arguments().toArray(String[]::new));
+        }
+    }
+
+    private Path journalFile() {
+        return journalDirectory.resolve("journal.log");
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static void flipLastByte(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+            channel.read(lastByte, channel.size() - 1);
+            lastByte.put(0, (byte) ~lastByte.get(0)).clear();
+            channel.write(lastByte, channel.size() - 1);
+        }
+    }
+}
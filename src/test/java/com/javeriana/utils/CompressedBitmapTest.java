@@ -0,0 +1,177 @@
+package com.javeriana.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks CompressedBitmap against BitSet: a chunk that grows past 4096 values, and so turns from a sorted array into a bitmap, and
+ * shrinks back, and the operations between bitmaps whose chunks are arrays, bitmaps or missing.
+ */
+class CompressedBitmapTest {
+
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int MAX_ARRAY_SIZE = 4096;
+
+    @Test
+    void chunkCrossesTheArraySizeBothWays() {
+
+        CompressedBitmap bitmap = new CompressedBitmap();
+        BitSet expected = new BitSet();
+        Random random = new Random(4);
+
+        // Grows the chunk to just past the size of an array, in random order, and then removes values until it is below it again
+        while (expected.cardinality() <= MAX_ARRAY_SIZE) {
+            int value = CHUNK_SIZE + random.nextInt(CHUNK_SIZE);
+            assertEquals(!expected.get(value), bitmap.add(value));
+            expected.set(value);
+        }
+        assertSameValues(expected, bitmap);
+
+        while (expected.cardinality() >= MAX_ARRAY_SIZE - 1) {
+            int value = expected.nextSetBit(CHUNK_SIZE + random.nextInt(CHUNK_SIZE));
+            if (value < 0) {
+                continue;
+            }
+            assertTrue(bitmap.remove(value));
+            expected.clear(value);
+        }
+        assertFalse(bitmap.remove(expected.nextClearBit(CHUNK_SIZE)));
+        assertSameValues(expected, bitmap);
+
+        // And back over the size of an array, and down to empty, which drops the chunk
+        for (int value = CHUNK_SIZE; expected.cardinality() <= MAX_ARRAY_SIZE; value++) {
+            bitmap.add(value);
+            expected.set(value);
+        }
+        assertSameValues(expected, bitmap);
+
+        for (int value = expected.nextSetBit(0); value >= 0; value = expected.nextSetBit(value + 1)) {
+            bitmap.remove(value);
+        }
+        assertSameValues(new BitSet(), bitmap);
+    }
+
+    @Test
+    void rangeMatchesBitSet() {
+        for (int end : new int[] {0, 1, MAX_ARRAY_SIZE, MAX_ARRAY_SIZE + 1, CHUNK_SIZE - 1, CHUNK_SIZE, 3 * CHUNK_SIZE + 100}) {
+            BitSet expected = new BitSet();
+            expected.set(0, end);
+            assertSameValues(expected, CompressedBitmap.range(end));
+        }
+    }
+
+    @Test
+    void operationsMatchBitSet() {
+
+        Random random = new Random(8);
+
+        for (int round = 0; round < 20; round++) {
+            BitSet firstValues = randomValues(random);
+            BitSet secondValues = randomValues(random);
+            CompressedBitmap first = bitmapOf(firstValues);
+            CompressedBitmap second = bitmapOf(secondValues);
+
+            BitSet and = (BitSet) firstValues.clone();
+            and.and(secondValues);
+            assertSameValues(and, first.and(second));
+
+            BitSet or = (BitSet) firstValues.clone();
+            or.or(secondValues);
+            assertSameValues(or, first.or(second));
+
+            BitSet andNot = (BitSet) firstValues.clone();
+            andNot.andNot(secondValues);
+            assertSameValues(andNot, first.andNot(second));
+
+            // The operands are not modified
+            assertSameValues(firstValues, first);
+            assertSameValues(secondValues, second);
+        }
+    }
+
+    @Test
+    void inSlicedRangeMatchesBitSet() {
+
+        Random random = new Random(16);
+        int bitCount = 6;
+
+        for (int round = 0; round < 10; round++) {
+            BitSet candidateValues = randomValues(random);
+            CompressedBitmap candidates = bitmapOf(candidateValues);
+
+            // Each value of the chunks gets a random number, stored in one slice per bit
+            int[] numbers = new int[4 * CHUNK_SIZE];
+            CompressedBitmap[] bitSlices = new CompressedBitmap[bitCount];
+            for (int bit = 0; bit < bitCount; bit++) {
+                bitSlices[bit] = new CompressedBitmap();
+            }
+            for (int value = 0; value < numbers.length; value++) {
+                numbers[value] = random.nextInt(1 << bitCount);
+                for (int bit = 0; bit < bitCount; bit++) {
+                    if ((numbers[value] & (1 << bit)) != 0) {
+                        bitSlices[bit].add(value);
+                    }
+                }
+            }
+
+            for (long[] bounds : new long[][] {{0, 63}, {0, 0}, {63, 63}, {10, 20}, {20, 10}, {-5, 5}, {60, 100}, {64, 100}, {5, 5}}) {
+                BitSet expected = new BitSet();
+                for (int value = candidateValues.nextSetBit(0); value >= 0; value = candidateValues.nextSetBit(value + 1)) {
+                    if (numbers[value] >= bounds[0] && numbers[value] <= bounds[1]) {
+                        expected.set(value);
+                    }
+                }
+                assertSameValues(expected, CompressedBitmap.inSlicedRange(candidates, bitSlices, bounds[0], bounds[1]));
+            }
+        }
+    }
+
+    /**
+     * Returns random values over four chunks, each one missing, sparse enough to be an array, or dense enough to be a bitmap.
+     */
+    private static BitSet randomValues(Random random) {
+
+        BitSet values = new BitSet();
+        for (int chunk = 0; chunk < 4; chunk++) {
+            int count = switch (random.nextInt(3)) {
+                case 0 -> 0;
+                case 1 -> 1 + random.nextInt(MAX_ARRAY_SIZE);
+                default -> 2 * MAX_ARRAY_SIZE + random.nextInt(CHUNK_SIZE / 2);
+            };
+            for (int i = 0; i < count; i++) {
+                values.set(chunk * CHUNK_SIZE + random.nextInt(CHUNK_SIZE));
+            }
+        }
+
+        return values;
+    }
+
+    private static CompressedBitmap bitmapOf(BitSet values) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        values.stream().forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static void assertSameValues(BitSet expected, CompressedBitmap bitmap) {
+
+        assertEquals(expected.cardinality(), bitmap.cardinality());
+        assertEquals(expected.isEmpty(), bitmap.isEmpty());
+
+        BitSet actual = new BitSet();
+        bitmap.forEach(actual::set);
+        assertEquals(expected, actual);
+
+        int[] lowest = bitmap.toArray(100);
+        assertEquals(expected.stream().limit(100).boxed().toList(), Arrays.stream(lowest).boxed().toList());
+
+        for (int value = expected.nextSetBit(0); value >= 0; value = expected.nextSetBit(value + 1)) {
+            assertTrue(bitmap.contains(value));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.javeriana.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the removal of keys from a UUIDIndex, which shifts the keys after the removed one back into the gap instead of leaving a marker,
+ * against a HashMap. The keys that collide at the end of the table wrap around to its start, which is where a wrong shift would lose a key.
+ */
+class UUIDIndexTest {
+
+    /**
+     * The number of slots of a new index, which holds up to half as many keys before it is resized.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    @Test
+    void removesAndReinsertsKeysThatWrapAroundTheTable() {
+
+        // Keys whose home slot is the last one, so all but the first are stored at the start of the table, and a key that belongs there
+        List<UUID> wrappedKeys = keysWithHomeSlot(INITIAL_CAPACITY - 1, 4, new Random(1));
+        UUID startKey = keysWithHomeSlot(0, 1, new Random(2)).get(0);
+
+        UUIDIndex<String> index = UUIDIndex.numbered();
+        Map<UUID, String> expected = new HashMap<>();
+        for (UUID key : wrappedKeys) {
+            put(index, expected, key);
+        }
+        put(index, expected, startKey);
+        assertSameKeys(expected, index);
+
+        // Removing each key in turn must leave the others reachable, and the key must be found again once reinserted
+        for (UUID key : List.of(wrappedKeys.get(0), wrappedKeys.get(2), startKey, wrappedKeys.get(3), wrappedKeys.get(1))) {
+            assertEquals(expected.remove(key), index.remove(key));
+            assertNull(index.get(key));
+            assertEquals(-1, index.numberOf(key));
+            assertSameKeys(expected, index);
+
+            put(index, expected, key);
+            assertSameKeys(expected, index);
+        }
+    }
+
+    @Test
+    void randomPutsAndRemovesMatchAHashMap() {
+
+        Random random = new Random(12);
+
+        // A small pool of keys keeps the table small, so most keys collide and many clusters wrap around the end of the table
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            keys.add(UUID.randomUUID());
+        }
+
+        UUIDIndex<String> index = UUIDIndex.numbered();
+        Map<UUID, String> expected = new HashMap<>();
+
+        for (int operation = 0; operation < 100_000; operation++) {
+            UUID key = keys.get(random.nextInt(keys.size()));
+            if (random.nextBoolean()) {
+                put(index, expected, key);
+            } else {
+                assertEquals(expected.remove(key), index.remove(key));
+            }
+            assertSameKeys(expected, index);
+        }
+    }
+
+    /**
+     * Puts a key with a value and a number derived from it, in the index and in the expected map.
+     */
+    private static void put(UUIDIndex<String> index, Map<UUID, String> expected, UUID key) {
+        String value = key.toString();
+        assertEquals(expected.put(key, value), index.put(key, value, value.hashCode()));
+    }
+
+    private static void assertSameKeys(Map<UUID, String> expected, UUIDIndex<String> index) {
+        assertEquals(expected.size(), index.size());
+        assertEquals(expected, index.asMap());
+        for (Map.Entry<UUID, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), index.get(entry.getKey()));
+            assertEquals(entry.getValue(), index.get(entry.getKey().toString()));
+            assertEquals(entry.getValue().hashCode(), index.numberOf(entry.getKey()));
+        }
+    }
+
+    /**
+     * Returns random keys whose home slot in a table of the initial capacity is the given one.
+     */
+    private static List<UUID> keysWithHomeSlot(int homeSlot, int count, Random random) {
+
+        List<UUID> keys = new ArrayList<>();
+        while (keys.size() < count) {
+            UUID key = new UUID(random.nextLong(), random.nextLong());
+            if (homeSlot(key, INITIAL_CAPACITY - 1) == homeSlot) {
+                keys.add(key);
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * The home slot of a key, mixed as UUIDIndex mixes it.
+     */
+    private static int homeSlot(UUID key, int mask) {
+        long hash = (key.getMostSignificantBits() ^ (key.getLeastSignificantBits() * 0x9E3779B97F4A7C15L)) * 0xBF58476D1CE4E5B9L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}